@@ -0,0 +1,137 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.CitaException;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.Hospital;
+import org.jcr.federacion.ClienteFederacion;
+import org.jcr.federacion.DireccionNodo;
+import org.jcr.metricas.HistogramaLatencia;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Federación de varios procesos en una sola máquina: lanza un NodoPrueba por nodo
+ * (JVM aparte, loopback), reserva en hospitales al azar a través del anillo y compara la
+ * historia de pacientes compartidos consultando a todos los nodos contra la réplica de
+ * un solo nodo.
+ *
+ *   --nodos 3
+ *   --hospitales 6
+ *   --pacientes 2000     por hospital; los mismos DNI en todos
+ *   --reservas 5000
+ *   --puerto 7100        el nodo i escucha en puerto + i
+ */
+public class ArnesFederacion {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int cantidadNodos = Integer.parseInt(opciones.getOrDefault("nodos", "3"));
+        int hospitales = Integer.parseInt(opciones.getOrDefault("hospitales", "6"));
+        int pacientes = Integer.parseInt(opciones.getOrDefault("pacientes", "2000"));
+        int reservas = Integer.parseInt(opciones.getOrDefault("reservas", "5000"));
+        int puerto = Integer.parseInt(opciones.getOrDefault("puerto", "7100"));
+
+        List<DireccionNodo> nodos = new ArrayList<>();
+        for (int i = 0; i < cantidadNodos; i++) {
+            nodos.add(new DireccionNodo("nodo-" + i, "127.0.0.1", puerto + i));
+        }
+        String lista = String.join(",", nodos.stream().map(DireccionNodo::toString).toList());
+
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        List<Process> procesos = new ArrayList<>();
+        try (ClienteFederacion cliente = new ClienteFederacion(nodos)) {
+            for (DireccionNodo nodo : nodos) {
+                procesos.add(new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                        NodoPrueba.class.getName(), nodo.toString(), lista,
+                        String.valueOf(hospitales), String.valueOf(pacientes))
+                        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            esperarNodos(cliente, nodos);
+            for (int h = 0; h < hospitales; h++) {
+                System.out.printf("%s -> %s%n", nombreHospital(h), cliente.nodoDe(nombreHospital(h)).id());
+            }
+
+            // Misma estructura que generan los nodos, para elegir médico y sala compatibles
+            List<Departamento> departamentos = GeneradorDatos.generar(2, 3, 0).getDepartamentos();
+            HistogramaLatencia latencia = new HistogramaLatencia("reserva");
+            ThreadLocalRandom azar = ThreadLocalRandom.current();
+            LocalDateTime base = LocalDateTime.now().plusDays(1).withHour(0).withMinute(0);
+            int aceptadas = 0, rechazadas = 0;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < reservas; i++) {
+                Departamento departamento = departamentos.get(azar.nextInt(departamentos.size()));
+                long inicio = System.nanoTime();
+                try {
+                    cliente.reservar(nombreHospital(azar.nextInt(hospitales)),
+                            String.valueOf(GeneradorDatos.DNI_BASE_PACIENTES + azar.nextInt(Math.min(pacientes, 200))),
+                            departamento.getMedicos().get(azar.nextInt(departamento.getMedicos().size())).getDni(),
+                            departamento.getSalas().get(azar.nextInt(departamento.getSalas().size())).getNumero(),
+                            base.plusMinutes(60L * azar.nextInt(24 * 90)), BigDecimal.TEN);
+                    aceptadas++;
+                } catch (CitaException e) {
+                    rechazadas++;
+                }
+                latencia.registrarDesde(inicio);
+            }
+            double segundos = (System.nanoTime() - t0) / 1e9;
+            System.out.printf("%n%,d reservas en %.1f s: %,.0f/s, p50 %.2f ms, p99 %.2f ms (%,d aceptadas, %,d rechazadas)%n",
+                    reservas, segundos, reservas / segundos, latencia.percentil(50) / 1e6,
+                    latencia.percentil(99) / 1e6, aceptadas, rechazadas);
+
+            TimeUnit.MILLISECONDS.sleep(500); // que terminen de llegar los eventos
+            HistogramaLatencia todos = new HistogramaLatencia("todos");
+            HistogramaLatencia replica = new HistogramaLatencia("replica");
+            int distintas = 0;
+            for (int p = 0; p < 200 && p < pacientes; p++) {
+                String dni = String.valueOf(GeneradorDatos.DNI_BASE_PACIENTES + p);
+                long inicio = System.nanoTime();
+                List<String> autoritativa = cliente.historialPaciente(dni);
+                todos.registrarDesde(inicio);
+                inicio = System.nanoTime();
+                List<String> replicada = cliente.historialReplicado(nombreHospital(p % hospitales), dni);
+                replica.registrarDesde(inicio);
+                if (autoritativa.size() != replicada.size()) distintas++;
+            }
+            System.out.printf("historia consultando %d nodos: p50 %.2f ms, p99 %.2f ms%n", cantidadNodos,
+                    todos.percentil(50) / 1e6, todos.percentil(99) / 1e6);
+            System.out.printf("historia desde la réplica:    p50 %.2f ms, p99 %.2f ms (%d de 200 difieren)%n",
+                    replica.percentil(50) / 1e6, replica.percentil(99) / 1e6, distintas);
+            System.out.println("Paciente " + GeneradorDatos.DNI_BASE_PACIENTES + ": "
+                    + cliente.buscarPaciente(String.valueOf(GeneradorDatos.DNI_BASE_PACIENTES)).size()
+                    + " hospitales");
+        } finally {
+            for (Process proceso : procesos) {
+                proceso.getOutputStream().close();
+            }
+            for (Process proceso : procesos) {
+                if (!proceso.waitFor(10, TimeUnit.SECONDS)) proceso.destroyForcibly();
+            }
+        }
+    }
+
+    static String nombreHospital(int i) {
+        return "Hospital " + i;
+    }
+
+    private static void esperarNodos(ClienteFederacion cliente, List<DireccionNodo> nodos) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        for (DireccionNodo nodo : nodos) {
+            while (!cliente.disponible(nodo)) {
+                if (System.nanoTime() > limite) {
+                    throw new IllegalStateException("El nodo no respondió: " + nodo);
+                }
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        }
+    }
+}
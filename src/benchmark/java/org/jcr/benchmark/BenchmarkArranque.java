@@ -0,0 +1,132 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Tiempo hasta la primera consulta, en JVMs nuevas que corren ArranqueRapido.main contra
+ * una base H2 temporal con datos de GeneradorDatos:
+ *
+ *   normal        hbm2ddl=update, como Main
+ *   rápido        -Dhospital.arranque.rapido=true
+ *   rápido + CDS  además con un archivo AppCDS grabado en una corrida de entrenamiento
+ *
+ *   --corridas 7      por modo; se informa la mediana
+ *   --pacientes 2000
+ */
+public class BenchmarkArranque {
+
+    private static final Pattern TIEMPOS = Pattern.compile(
+            "primera consulta: (\\d+) ms .*antes de la fábrica (\\d+) ms, fábrica (\\d+) ms, consulta (\\d+) ms");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int corridas = Integer.parseInt(opciones.getOrDefault("corridas", "7"));
+        int pacientes = Integer.parseInt(opciones.getOrDefault("pacientes", "2000"));
+
+        Path directorio = Files.createTempDirectory("arranque");
+        String url = "jdbc:h2:file:" + directorio.resolve("hospidb");
+        EntityManagerFactory emf = GeneradorDatos.crearFabrica("arranque",
+                Map.of("jakarta.persistence.jdbc.url", url, "hibernate.hbm2ddl.auto", "create"));
+        GeneradorDatos.persistir(emf, GeneradorDatos.generar(4, 10, pacientes));
+        emf.close();
+        Path archivoCds = directorio.resolve("hospital.jsa");
+        String classpath = classpathDeJars(directorio);
+
+        try {
+            medir("normal", corridas, url, classpath, List.of());
+            medir("rápido", corridas, url, classpath, List.of("-Dhospital.arranque.rapido=true"));
+            lanzar(url, classpath, List.of("-Dhospital.arranque.rapido=true", "-XX:ArchiveClassesAtExit=" + archivoCds));
+            medir("rápido + CDS", corridas, url, classpath,
+                    List.of("-Dhospital.arranque.rapido=true", "-XX:SharedArchiveFile=" + archivoCds));
+        } finally {
+            try (var archivos = Files.walk(directorio)) {
+                archivos.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void medir(String modo, int corridas, String url, String classpath,
+                              List<String> opcionesJvm) throws Exception {
+        lanzar(url, classpath, opcionesJvm); // descarta la primera: caché de disco
+        long[][] tiempos = new long[4][corridas];
+        for (int i = 0; i < corridas; i++) {
+            Matcher m = TIEMPOS.matcher(lanzar(url, classpath, opcionesJvm));
+            if (!m.find()) {
+                throw new IllegalStateException("Salida inesperada del proceso hijo");
+            }
+            for (int j = 0; j < 4; j++) {
+                tiempos[j][i] = Long.parseLong(m.group(j + 1));
+            }
+        }
+        System.out.printf("%-13s primera consulta %5d ms  (JVM %4d, fábrica %4d, consulta %4d)%n", modo,
+                mediana(tiempos[0]), mediana(tiempos[1]), mediana(tiempos[2]), mediana(tiempos[3]));
+    }
+
+    private static String lanzar(String url, String classpath, List<String> opcionesJvm) throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        comando.addAll(opcionesJvm);
+        comando.addAll(List.of("-Dhospital.jdbc.url=" + url, "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+                "-cp", classpath, "org.jcr.persistencia.ArranqueRapido"));
+        Process proceso = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        StringBuilder salida = new StringBuilder();
+        try (BufferedReader lector = new BufferedReader(
+                new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                salida.append(linea).append('\n');
+            }
+        }
+        if (proceso.waitFor() != 0) {
+            throw new IllegalStateException("El proceso hijo terminó con error:\n" + salida);
+        }
+        return salida.toString();
+    }
+
+    // CDS sólo acepta jars en el classpath: los directorios de clases se empaquetan.
+    private static String classpathDeJars(Path directorio) throws IOException {
+        List<String> entradas = new ArrayList<>();
+        int numero = 0;
+        for (String entrada : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path origen = Paths.get(entrada);
+            if (!Files.isDirectory(origen)) {
+                entradas.add(entrada);
+                continue;
+            }
+            Path jar = directorio.resolve("clases-" + numero++ + ".jar");
+            try (JarOutputStream salida = new JarOutputStream(Files.newOutputStream(jar));
+                 var archivos = Files.walk(origen)) {
+                for (Path archivo : (Iterable<Path>) archivos.filter(Files::isRegularFile)::iterator) {
+                    salida.putNextEntry(new JarEntry(origen.relativize(archivo).toString().replace('\\', '/')));
+                    Files.copy(archivo, salida);
+                    salida.closeEntry();
+                }
+            }
+            entradas.add(jar.toString());
+        }
+        return String.join(File.pathSeparator, entradas);
+    }
+
+    private static long mediana(long[] valores) {
+        long[] copia = valores.clone();
+        Arrays.sort(copia);
+        return copia[copia.length / 2];
+    }
+}
@@ -0,0 +1,147 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.persistencia.ReintentoOptimista;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Hilos que agregan diagnósticos a pocas historias clínicas a la vez: control optimista con
+ * reintento acotado (ReintentoOptimista) contra lock pesimista (SELECT ... FOR UPDATE) para
+ * la misma operación. La contención la da la cantidad de historias: con 1, todos los hilos
+ * pelean por la misma fila.
+ *
+ * Por cada corrida: operaciones confirmadas por segundo, abortos (transacciones deshechas
+ * por conflicto o por esperar el lock, sobre el total de intentos), operaciones que fallaron
+ * del todo y diagnósticos perdidos (confirmados que no están en la base; tiene que dar 0).
+ *
+ *   --hilos 4,16
+ *   --historias 1,10,1000
+ *   --operaciones 2000      (por corrida, repartidas entre los hilos)
+ *   --intentos 5            (máximo de intentos del modo optimista)
+ */
+public class BenchmarkBloqueos {
+
+    private enum Modo {OPTIMISTA, PESIMISTA}
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int[] hilos = enteros(opciones.getOrDefault("hilos", "4,16"));
+        int[] historias = enteros(opciones.getOrDefault("historias", "1,10,1000"));
+        int operaciones = Integer.parseInt(opciones.getOrDefault("operaciones", "2000"));
+        int intentos = Integer.parseInt(opciones.getOrDefault("intentos", "5"));
+
+        System.out.printf("%-10s %5s %9s %12s %9s %8s %9s%n",
+                "modo", "hilos", "historias", "ops/s", "abortos", "fallidas", "perdidos");
+        int corrida = 0;
+        for (int cantidadHistorias : historias) {
+            for (int cantidadHilos : hilos) {
+                for (Modo modo : Modo.values()) {
+                    EntityManagerFactory emf = GeneradorDatos.crearFabrica("bloqueos" + corrida++,
+                            Map.of("hibernate.connection.pool_size", String.valueOf(cantidadHilos + 2)));
+                    try {
+                        GeneradorDatos.persistir(emf, GeneradorDatos.generar(1, 1, cantidadHistorias));
+                        medir(emf, modo, cantidadHilos, cantidadHistorias, operaciones, intentos);
+                    } finally {
+                        emf.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void medir(EntityManagerFactory emf, Modo modo, int hilos, int historias, int operaciones,
+                              int intentos) throws InterruptedException {
+        Long[] ids = idsHistorias(emf);
+        ReintentoOptimista reintento = new ReintentoOptimista(emf, intentos, 200);
+        AtomicLong confirmadas = new AtomicLong();
+        AtomicLong abortos = new AtomicLong();
+        AtomicLong fallidas = new AtomicLong();
+
+        Thread[] trabajadores = new Thread[hilos];
+        long t0 = System.nanoTime();
+        for (int h = 0; h < hilos; h++) {
+            int propias = operaciones / hilos + (h < operaciones % hilos ? 1 : 0);
+            trabajadores[h] = new Thread(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                for (int i = 0; i < propias; i++) {
+                    Long id = ids[azar.nextInt(ids.length)];
+                    String diagnostico = "Control " + Thread.currentThread().getName() + "-" + i;
+                    try {
+                        if (modo == Modo.OPTIMISTA) {
+                            reintento.agregarDiagnostico(id, diagnostico);
+                        } else {
+                            agregarConLock(emf, id, diagnostico);
+                        }
+                        confirmadas.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        if (!ReintentoOptimista.esConflicto(e)) {
+                            throw e;
+                        }
+                        if (modo == Modo.PESIMISTA) abortos.incrementAndGet();
+                        fallidas.incrementAndGet();
+                    }
+                }
+            }, "clinico-" + h);
+            trabajadores[h].start();
+        }
+        for (Thread trabajador : trabajadores) {
+            trabajador.join();
+        }
+        double segundos = (System.nanoTime() - t0) / 1e9;
+
+        if (modo == Modo.OPTIMISTA) {
+            // Los agotados también abortaron en su último intento
+            abortos.addAndGet(reintento.getConflictos() + fallidas.get());
+        }
+        long intentosTotales = confirmadas.get() + abortos.get();
+        long perdidos = confirmadas.get() - contarDiagnosticos(emf);
+        System.out.printf("%-10s %5d %9d %,12.0f %8.1f%% %8d %9d%n", modo.name().toLowerCase(), hilos, historias,
+                confirmadas.get() / segundos, 100.0 * abortos.get() / Math.max(1, intentosTotales),
+                fallidas.get(), perdidos);
+    }
+
+    private static void agregarConLock(EntityManagerFactory emf, Long id, String diagnostico) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.find(HistoriaClinica.class, id, LockModeType.PESSIMISTIC_WRITE).agregarDiagnostico(diagnostico);
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static Long[] idsHistorias(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Long> ids = em.createQuery("SELECT h.id FROM HistoriaClinica h", Long.class).getResultList();
+            return ids.toArray(Long[]::new);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long contarDiagnosticos(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM diagnosticos").getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static int[] enteros(String lista) {
+        return Arrays.stream(lista.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,162 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.jcr.eventos.BusEventos;
+import org.jcr.eventos.Evento;
+import org.jcr.eventos.EventoRegistrado;
+import org.jcr.eventos.PuenteEventos;
+import org.jcr.eventos.Suscripcion;
+import org.jcr.metricas.HistogramaLatencia;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Eventos por segundo y latencia publicación -> consumo del BusEventos con varios
+ * productores y tres suscriptores (más el diario). Después relee todo desde el diario con
+ * una suscripción nueva y verifica que no falte ni se repita ninguna secuencia, y mide
+ * el costo que agrega el bus a las reservas de CitaManager.
+ *
+ *   --productores 4
+ *   --eventos 2000000    en total, repartidos entre los productores
+ *   --capacidad 65536
+ */
+public class BenchmarkBusEventos {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int productores = Integer.parseInt(opciones.getOrDefault("productores", "4"));
+        int eventos = Integer.parseInt(opciones.getOrDefault("eventos", "2000000"));
+        int capacidad = Integer.parseInt(opciones.getOrDefault("capacidad", "65536"));
+
+        Path diario = Files.createTempFile("eventos", ".diario");
+        try {
+            medirBus(productores, eventos, capacidad, diario);
+            medirReservas(capacidad);
+        } finally {
+            Files.deleteIfExists(diario);
+        }
+    }
+
+    private static void medirBus(int productores, int eventos, int capacidad, Path diario) throws Exception {
+        BusEventos bus = new BusEventos(capacidad, diario);
+        HistogramaLatencia latencia = new HistogramaLatencia("publicación -> consumo");
+        AtomicLong contados = new AtomicLong();
+        AtomicLong reservadas = new AtomicLong();
+        Suscripcion medidor = bus.suscribir("latencia", lote -> {
+            long ahora = System.nanoTime();
+            for (EventoRegistrado evento : lote) {
+                latencia.registrar(ahora - evento.publicadoNanos());
+            }
+        });
+        Suscripcion contador = bus.suscribir("contador", lote -> contados.addAndGet(lote.size()), 64);
+        Suscripcion filtro = bus.suscribir("reservas", lote -> {
+            for (EventoRegistrado evento : lote) {
+                if (evento.evento() instanceof Evento.CitaReservada) reservadas.incrementAndGet();
+            }
+        });
+
+        LocalDateTime base = LocalDateTime.now().withSecond(0).withNano(0);
+        Thread[] hilos = new Thread[productores];
+        long t0 = System.nanoTime();
+        for (int p = 0; p < productores; p++) {
+            String medico = String.valueOf(GeneradorDatos.DNI_BASE_MEDICOS + p);
+            int propios = eventos / productores;
+            hilos[p] = new Thread(() -> {
+                for (int i = 0; i < propios; i++) {
+                    String paciente = String.valueOf(GeneradorDatos.DNI_BASE_PACIENTES + i % 10_000);
+                    LocalDateTime fechaHora = base.plusMinutes(i);
+                    bus.publicar(i % 4 == 0
+                            ? new Evento.EstadoCitaCambiado(paciente, medico, fechaHora,
+                                    EstadoCita.PROGRAMADA, EstadoCita.EN_CURSO)
+                            : new Evento.CitaReservada(paciente, medico, "S-" + (i % 40), fechaHora, BigDecimal.TEN));
+                }
+            });
+            hilos[p].start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        long ultima = bus.getUltimaSecuencia();
+        medidor.esperarHasta(ultima, 60_000);
+        contador.esperarHasta(ultima, 60_000);
+        filtro.esperarHasta(ultima, 60_000);
+        double segundos = (System.nanoTime() - t0) / 1e9;
+        long total = (long) (eventos / productores) * productores;
+        System.out.printf("%d productores, capacidad %d: %,d eventos en %.2f s = %,.0f eventos/s%n",
+                productores, capacidad, total, segundos, total / segundos);
+        System.out.println("  " + latencia.resumen());
+        System.out.printf("  contador=%,d reservas=%,d%n", contados.get(), reservadas.get());
+
+        // Suscripción tardía: todo lo anterior sale del diario, lo nuevo del buffer
+        AtomicLong esperada = new AtomicLong(0);
+        AtomicLong saltos = new AtomicLong();
+        Suscripcion tardia = bus.suscribirDesde("relectura", lote -> {
+            for (EventoRegistrado evento : lote) {
+                if (evento.secuencia() != esperada.getAndIncrement()) saltos.incrementAndGet();
+            }
+        }, 0, 1024);
+        long r0 = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            bus.publicar(new Evento.CitaCancelada("1", "2", base.plusMinutes(i), "cancelada"));
+        }
+        boolean completa = tardia.esperarHasta(bus.getUltimaSecuencia(), 120_000);
+        System.out.printf("  relectura: %,d eventos en %.2f s, completa=%b, fuera de orden=%d, diario=%,d KiB%n",
+                esperada.get(), (System.nanoTime() - r0) / 1e9, completa, saltos.get(), Files.size(diario) / 1024);
+        bus.close();
+    }
+
+    // Reservas por segundo de CitaManager con y sin el bus conectado.
+    private static void medirReservas(int capacidad) throws Exception {
+        for (int corrida = 0; corrida < 2; corrida++) {
+            medirReservas(GeneradorDatos.generar(4, 10, 10_000), new CitaManager(), null);
+            try (BusEventos bus = new BusEventos(capacidad)) {
+                AtomicLong recibidos = new AtomicLong();
+                Suscripcion suscripcion = bus.suscribir("contador", lote -> recibidos.addAndGet(lote.size()));
+                CitaManager manager = new CitaManager();
+                PuenteEventos.conectar(bus, manager);
+                try {
+                    medirReservas(GeneradorDatos.generar(4, 10, 10_000), manager, bus);
+                } finally {
+                    PuenteEventos.desconectar();
+                }
+                suscripcion.esperarHasta(bus.getUltimaSecuencia(), 10_000);
+                System.out.printf("    eventos recibidos: %,d%n", recibidos.get());
+            }
+        }
+    }
+
+    // Hospital nuevo en cada corrida: las citas quedan en las listas de pacientes, médicos y salas.
+    private static void medirReservas(Hospital hospital, CitaManager manager, BusEventos bus) {
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+        int aceptadas = 0;
+        long t0 = System.nanoTime();
+        int intento = 0;
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            for (int d = 0; d < departamento.getMedicos().size(); d++) {
+                for (int i = 0; i < 5_000; i++, intento++) {
+                    Paciente paciente = hospital.getPacientes().get(intento % hospital.getPacientes().size());
+                    try {
+                        manager.programarCita(paciente, departamento.getMedicos().get(d),
+                                departamento.getSalas().get(d % departamento.getSalas().size()),
+                                base.plusHours(i).plusMinutes(d), BigDecimal.TEN);
+                        aceptadas++;
+                    } catch (Exception e) {
+                        // conflicto de sala: esperado
+                    }
+                }
+            }
+        }
+        double segundos = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("  reservas %s: %,d en %.2f s = %,.0f/s%n", bus == null ? "sin bus" : "con bus",
+                aceptadas, segundos, aceptadas / segundos);
+    }
+}
@@ -0,0 +1,227 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaManagerParticionado;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.jcr.facturacion.Centavos;
+import org.jcr.facturacion.Cobertura;
+import org.jcr.facturacion.Conciliacion;
+import org.jcr.facturacion.Descuento;
+import org.jcr.facturacion.MotorFacturacion;
+import org.jcr.facturacion.ResumenFacturacion;
+import org.jcr.facturacion.Tarifa;
+import org.jcr.facturacion.Tarifario;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Un año de facturación sobre la agenda en memoria: la misma liquidación (tarifa, descuentos,
+ * cobertura) hecha con BigDecimal en cada suma contra MotorFacturacion en centavos, con 1 y
+ * varios hilos. Los netos por especialidad tienen que dar idénticos en las dos versiones.
+ * Después se concilia la corrida con la tabla Cita: primero tiene que cuadrar, y una cita
+ * agregada sólo a la agenda tiene que aparecer como diferencia.
+ *
+ *   --pacientes 10000
+ *   --citas 12             (por paciente)
+ *   --hilos 1,4
+ *   --repeticiones 5
+ */
+public class BenchmarkFacturacion {
+
+    private static final YearMonth DESDE = YearMonth.of(2030, 1);
+    private static final YearMonth HASTA = YearMonth.of(2030, 12);
+    private static final EstadoCita[] ESTADOS = {EstadoCita.COMPLETADA, EstadoCita.COMPLETADA,
+            EstadoCita.COMPLETADA, EstadoCita.COMPLETADA, EstadoCita.NO_ASISTIO, EstadoCita.CANCELADA};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int pacientes = Integer.parseInt(opciones.getOrDefault("pacientes", "10000"));
+        int citasPorPaciente = Integer.parseInt(opciones.getOrDefault("citas", "12"));
+        int[] hilos = Arrays.stream(opciones.getOrDefault("hilos", "1,4").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int repeticiones = Integer.parseInt(opciones.getOrDefault("repeticiones", "5"));
+
+        Hospital hospital = GeneradorDatos.generar(1, 2, pacientes);
+        List<Paciente> lista = hospital.getPacientes();
+        Tarifario tarifario = tarifario(lista);
+        MotorFacturacion motor = new MotorFacturacion(tarifario);
+
+        EntityManagerFactory emf = GeneradorDatos.crearFabrica("facturacion", Map.of("hibernate.jdbc.batch_size", "50"));
+        try (CitaManagerParticionado agenda = new CitaManagerParticionado()) {
+            poblar(hospital, agenda, citasPorPaciente);
+            GeneradorDatos.persistir(emf, hospital);
+            System.out.printf("%,d pacientes, %,d citas, facturación %s a %s%n", pacientes,
+                    agenda.getCantidadCitas(), DESDE, HASTA);
+
+            Map<EspecialidadMedica, BigDecimal> esperado = null;
+            long mejor = Long.MAX_VALUE, bytes = 0;
+            for (int r = 0; r < repeticiones; r++) {
+                long b0 = asignados(), t0 = System.nanoTime();
+                esperado = conBigDecimal(agenda, lista, tarifario);
+                mejor = Math.min(mejor, System.nanoTime() - t0);
+                bytes = asignados() - b0;
+            }
+            imprimir("BigDecimal", mejor, bytes, agenda.getCantidadCitas());
+
+            mejor = Long.MAX_VALUE;
+            MotorFacturacion.Lote lote = null;
+            for (int r = 0; r < repeticiones; r++) {
+                long b0 = asignados(), t0 = System.nanoTime();
+                lote = motor.facturar(agenda, lista, DESDE, HASTA, Runnable::run, 1);
+                mejor = Math.min(mejor, System.nanoTime() - t0);
+                bytes = asignados() - b0;
+            }
+            imprimir("centavos", mejor, bytes, agenda.getCantidadCitas());
+            verificar(esperado, lote.resumen());
+
+            for (int cantidad : hilos) {
+                ExecutorService ejecutor = Executors.newFixedThreadPool(cantidad);
+                try {
+                    mejor = Long.MAX_VALUE;
+                    for (int r = 0; r < repeticiones; r++) {
+                        long t0 = System.nanoTime();
+                        lote = motor.facturar(agenda, lista, DESDE, HASTA, ejecutor, cantidad * 4);
+                        mejor = Math.min(mejor, System.nanoTime() - t0);
+                    }
+                    imprimir("centavos, " + cantidad + " hilo" + (cantidad > 1 ? "s" : ""), mejor, -1,
+                            agenda.getCantidadCitas());
+                    verificar(esperado, lote.resumen());
+                } finally {
+                    ejecutor.shutdown();
+                }
+            }
+            System.out.printf("%,d facturas, neto %s%n", lote.facturas().size(),
+                    Centavos.formatear(lote.resumen().getNeto()));
+
+            conciliar(emf, lote.resumen(), tarifario, "base y agenda");
+            // Una cita que la base no tiene: tiene que aparecer en su especialidad y su mes
+            Departamento departamento = hospital.getDepartamentos().get(0);
+            Cita extra = new Cita(lista.get(0), departamento.getMedicos().get(0), departamento.getSalas().get(0),
+                    LocalDateTime.of(2030, 6, 15, 23, 0), new BigDecimal("123.45"));
+            extra.setEstado(EstadoCita.COMPLETADA);
+            agenda.registrarCita(extra);
+            conciliar(emf, motor.facturar(agenda, lista, DESDE, HASTA, Runnable::run, 1).resumen(), tarifario,
+                    "con una cita sólo en la agenda");
+        } finally {
+            emf.close();
+        }
+    }
+
+    private static Tarifario tarifario(List<Paciente> pacientes) {
+        Tarifario tarifario = new Tarifario();
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            int i = especialidad.ordinal();
+            tarifario.tarifa(especialidad, new Tarifa(500 + 150L * i, 125 * (i % 5)));
+        }
+        tarifario.facturable(EstadoCita.NO_ASISTIO);
+        for (int i = 0; i < pacientes.size(); i++) {
+            String dni = pacientes.get(i).getDni();
+            if (i % 7 == 0) tarifario.descuento(dni, Descuento.porcentaje("Jubilado", 1_000));
+            if (i % 11 == 0) tarifario.descuento(dni, Descuento.fijo("Bonificación", 750));
+            if (i % 5 < 3) tarifario.cobertura(dni, new Cobertura("Obra Social " + (i % 3), 7_000, 250_000));
+        }
+        return tarifario;
+    }
+
+    private static void poblar(Hospital hospital, CitaManagerParticionado agenda, int citasPorPaciente) {
+        List<Departamento> departamentos = hospital.getDepartamentos();
+        LocalDateTime inicio = DESDE.atDay(1).atTime(8, 0);
+        long minutosDelAnio = 365L * 24 * 60;
+        int n = 0;
+        for (Paciente paciente : hospital.getPacientes()) {
+            for (int k = 0; k < citasPorPaciente; k++, n++) {
+                Departamento departamento = departamentos.get(n % departamentos.size());
+                Cita cita = new Cita(paciente, departamento.getMedicos().get(n % 2), departamento.getSalas().get(0),
+                        inicio.plusMinutes(n * 7919L % minutosDelAnio), BigDecimal.valueOf(1_000 + n * 7_877L % 90_000, 2));
+                cita.setEstado(ESTADOS[n % ESTADOS.length]);
+                paciente.addCita(cita);
+                agenda.registrarCita(cita);
+            }
+        }
+    }
+
+    // La misma liquidación que MotorFacturacion, con un BigDecimal nuevo por operación.
+    private static Map<EspecialidadMedica, BigDecimal> conBigDecimal(CitaManagerParticionado agenda,
+                                                                    List<Paciente> pacientes, Tarifario tarifario) {
+        Map<EspecialidadMedica, BigDecimal> netos = new EnumMap<>(EspecialidadMedica.class);
+        BigDecimal diezMil = BigDecimal.valueOf(Centavos.PUNTOS_BASE_TOTAL);
+        LocalDateTime inicio = DESDE.atDay(1).atStartOfDay(), fin = HASTA.plusMonths(1).atDay(1).atStartOfDay();
+        for (Paciente paciente : pacientes) {
+            for (Cita cita : agenda.getCitasPorPaciente(paciente)) {
+                if (!tarifario.esFacturable(cita.getEstado()) || cita.getFechaHora().isBefore(inicio)
+                        || !cita.getFechaHora().isBefore(fin)) {
+                    continue;
+                }
+                EspecialidadMedica especialidad = cita.getMedico().getEspecialidad();
+                Tarifa tarifa = tarifario.getTarifa(especialidad);
+                BigDecimal importe = cita.getCosto()
+                        .add(Centavos.aBigDecimal(tarifa.arancelCentavos()))
+                        .add(cita.getCosto().multiply(BigDecimal.valueOf(tarifa.recargoPuntosBase()))
+                                .divide(diezMil, 2, RoundingMode.HALF_EVEN));
+                BigDecimal descontado = BigDecimal.ZERO;
+                for (Descuento descuento : tarifario.getDescuentos(paciente.getDni())) {
+                    BigDecimal restante = importe.subtract(descontado);
+                    BigDecimal monto = Centavos.aBigDecimal(descuento.montoCentavos())
+                            .add(restante.multiply(BigDecimal.valueOf(descuento.puntosBase()))
+                                    .divide(diezMil, 2, RoundingMode.HALF_EVEN));
+                    descontado = descontado.add(monto.min(restante));
+                }
+                netos.merge(especialidad, importe.subtract(descontado), BigDecimal::add);
+            }
+        }
+        return netos;
+    }
+
+    private static void verificar(Map<EspecialidadMedica, BigDecimal> esperado, ResumenFacturacion resumen) {
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            BigDecimal bigDecimal = esperado.getOrDefault(especialidad, BigDecimal.ZERO);
+            if (bigDecimal.compareTo(Centavos.aBigDecimal(resumen.getNeto(especialidad))) != 0) {
+                throw new IllegalStateException(especialidad + ": BigDecimal " + bigDecimal + " contra centavos "
+                        + Centavos.formatear(resumen.getNeto(especialidad)));
+            }
+        }
+    }
+
+    private static void conciliar(EntityManagerFactory emf, ResumenFacturacion resumen, Tarifario tarifario,
+                                  String caso) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Conciliacion conciliacion = Conciliacion.contra(em, resumen, tarifario.getFacturables(), DESDE, HASTA);
+            System.out.printf("conciliación (%s): %s, %,d citas en la base, %,d facturadas%n", caso,
+                    conciliacion.cuadra() ? "cuadra" : "no cuadra", conciliacion.citasBase(),
+                    conciliacion.citasFacturadas());
+            for (Conciliacion.Diferencia diferencia : conciliacion.diferencias()) {
+                System.out.printf("  %-16s base %,d citas %s  facturado %,d citas %s%n", diferencia.clave(),
+                        diferencia.citasBase(), diferencia.costoBase().toPlainString(),
+                        diferencia.citasFacturadas(), diferencia.costoFacturado().toPlainString());
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long asignados() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static void imprimir(String nombre, long nanos, long bytes, int citas) {
+        System.out.printf("  %-20s %,9.1f ms%s%n", nombre, nanos / 1e6,
+                bytes < 0 ? "" : String.format("  %,8.0f bytes/cita", (double) bytes / citas));
+    }
+}
@@ -0,0 +1,170 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.hibernate.stat.Statistics;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Flush con un contexto de persistencia grande: se cargan todas las citas, solas o con su
+ * paciente y la historia clínica (3 entidades por paciente), se modifica una fracción como
+ * en Main.mostrarConsultas y se mide el flush. Sin seguimiento de cambios Hibernate compara
+ * cada entidad administrada con su copia; con la mejora de bytecode sólo mira las marcadas.
+ *
+ * Para comparar, compilar con o sin cada parte de la mejora (el seguimiento de cambios viene
+ * apagado por defecto):
+ *   gradle benchmark -Pclase=BenchmarkFlush -PseguimientoDeCambios=true
+ *   gradle benchmark -Pclase=BenchmarkFlush -PcargaPerezosa=false
+ *
+ *   --pacientes 10000,100000     (1.000.000 necesita -Pxmx=4g para las citas solas; con
+ *                                 pacientes e historias no entra en 4g)
+ *   --modificadas 1              (porcentaje de pacientes cuya cita y teléfono cambian)
+ *   --repeticiones 3
+ */
+public class BenchmarkFlush {
+
+    private static final int LOTE = 10_000;
+
+    public static void main(String[] args) {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int[] tamanios = Arrays.stream(opciones.getOrDefault("pacientes", "10000,100000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        double porcentaje = Double.parseDouble(opciones.getOrDefault("modificadas", "1"));
+        int repeticiones = Integer.parseInt(opciones.getOrDefault("repeticiones", "3"));
+
+        System.out.printf("seguimiento de cambios en línea: %s%n",
+                SelfDirtinessTracker.class.isAssignableFrom(Cita.class) ? "sí" : "no");
+        for (int pacientes : tamanios) {
+            EntityManagerFactory emf = GeneradorDatos.crearFabrica("flush" + pacientes,
+                    Map.of("hibernate.generate_statistics", "true", "hibernate.session.events.log", "false",
+                            "hibernate.jdbc.batch_size", "50"));
+            try {
+                poblar(emf, pacientes);
+                System.out.printf("%n%,d pacientes%n", pacientes);
+                medirCargaSinHistoria(emf);
+                int modificadas = Math.max(1, (int) (pacientes * porcentaje / 100));
+                medirFlush(emf, "citas", "SELECT c FROM Cita c ORDER BY c.id", modificadas, repeticiones);
+                medirFlush(emf, "citas+pacientes+hist.", "SELECT c FROM Cita c JOIN FETCH c.paciente p "
+                        + "JOIN FETCH p.historiaClinica ORDER BY c.id", modificadas, repeticiones);
+            } finally {
+                emf.close();
+            }
+        }
+    }
+
+    // Por lotes y limpiando el contexto: persistir el millón de una vez no entra en memoria.
+    private static void poblar(EntityManagerFactory emf, int pacientes) {
+        Hospital hospital = GeneradorDatos.generar(1, 1, 0);
+        GeneradorDatos.persistir(emf, hospital);
+        List<Departamento> departamentos = hospital.getDepartamentos();
+        LocalDateTime inicio = LocalDateTime.of(2030, 1, 7, 8, 0);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (int desde = 0; desde < pacientes; desde += LOTE) {
+                em.getTransaction().begin();
+                for (int i = desde; i < Math.min(pacientes, desde + LOTE); i++) {
+                    Paciente paciente = GeneradorDatos.paciente(i);
+                    Departamento departamento = departamentos.get(i % departamentos.size());
+                    paciente.addCita(new Cita(paciente, departamento.getMedicos().get(0),
+                            departamento.getSalas().get(0), inicio.plusMinutes(30L * i), new BigDecimal("1500.00")));
+                    paciente.getHistoriaClinica().agregarDiagnostico("Control anual");
+                    em.persist(paciente);
+                }
+                em.getTransaction().commit();
+                em.clear();
+            }
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    // Con la historia perezosa de verdad, listar pacientes es una sola sentencia y no 1 + N.
+    private static void medirCargaSinHistoria(EntityManagerFactory emf) {
+        Statistics estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        EntityManager em = emf.createEntityManager();
+        try {
+            long t0 = System.nanoTime();
+            int cantidad = em.createQuery("SELECT p FROM Paciente p", Paciente.class).getResultList().size();
+            System.out.printf("  %-22s %,8.1f ms  %,8d sentencias  (%,d pacientes)%n", "pacientes sin historia",
+                    (System.nanoTime() - t0) / 1e6, estadisticas.getPrepareStatementCount(), cantidad);
+        } finally {
+            em.close();
+        }
+    }
+
+    /*
+     * Cita no tiene colecciones: el flush es casi sólo el chequeo de cambios. Paciente e
+     * HistoriaClinica traen 4 colecciones cada par, que el flush recorre igual con o sin
+     * seguimiento de cambios.
+     */
+    private static void medirFlush(EntityManagerFactory emf, String contexto, String consulta, int modificadas,
+                                   int repeticiones) {
+        Statistics estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        long mejorCarga = Long.MAX_VALUE, mejorSinCambios = Long.MAX_VALUE, mejorConCambios = Long.MAX_VALUE;
+        long memoria = 0, actualizaciones = 0;
+        for (int r = 0; r < repeticiones; r++) {
+            long antes = memoriaUsada();
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                long t0 = System.nanoTime();
+                List<Cita> citas = em.createQuery(consulta, Cita.class).getResultList();
+                mejorCarga = Math.min(mejorCarga, System.nanoTime() - t0);
+                memoria = memoriaUsada() - antes;
+
+                t0 = System.nanoTime();
+                em.flush();
+                mejorSinCambios = Math.min(mejorSinCambios, System.nanoTime() - t0);
+
+                int paso = Math.max(1, citas.size() / modificadas);
+                for (int i = 0; i < citas.size(); i += paso) {
+                    Cita cita = citas.get(i);
+                    cita.setEstado(EstadoCita.COMPLETADA);
+                    cita.setObservaciones("Consulta completada sin complicaciones.");
+                    if (Hibernate.isInitialized(cita.getPaciente())) {
+                        cita.getPaciente().setTelefono("011-9999-" + (1000 + i % 9000));
+                    }
+                }
+                estadisticas.clear();
+                t0 = System.nanoTime();
+                em.flush();
+                mejorConCambios = Math.min(mejorConCambios, System.nanoTime() - t0);
+                actualizaciones = estadisticas.getEntityUpdateCount();
+            } finally {
+                // Deshacer: cada repetición parte de los mismos datos
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                em.close();
+            }
+        }
+        System.out.printf("  %s%n", contexto);
+        System.out.printf("    %-20s %,10.1f ms  %,8.1f MB de contexto%n", "carga", mejorCarga / 1e6,
+                memoria / (1024.0 * 1024));
+        System.out.printf("    %-20s %,10.1f ms%n", "flush sin cambios", mejorSinCambios / 1e6);
+        System.out.printf("    %-20s %,10.1f ms  %,8d actualizaciones%n", "flush con " + modificadas + " modif.",
+                mejorConCambios / 1e6, actualizaciones);
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,102 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.jcr.persistencia.ConsultasClinicas;
+import org.jcr.persistencia.ResumenClinico;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * Listado de historias clínicas de todo un hospital: sentencias JDBC preparadas y tiempo
+ * de cada estrategia.
+ *
+ *   navegacion    SELECT p FROM Paciente p, luego historia y colecciones por paciente
+ *   joinFetch     historia en el JOIN, colecciones por @BatchSize
+ *   resumen       ConsultasClinicas.resumenesPorHospital (cabeceras + UNION ALL)
+ *
+ *   --pacientes 1000,10000
+ *   --repeticiones 5
+ */
+public class BenchmarkHistorias {
+
+    public static void main(String[] args) {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int[] tamanios = Arrays.stream(opciones.getOrDefault("pacientes", "1000,10000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int repeticiones = Integer.parseInt(opciones.getOrDefault("repeticiones", "5"));
+
+        for (int pacientes : tamanios) {
+            EntityManagerFactory emf = GeneradorDatos.crearFabrica("historias" + pacientes,
+                    Map.of("hibernate.generate_statistics", "true", "hibernate.session.events.log", "false",
+                            "hibernate.jdbc.batch_size", "50"));
+            try {
+                Hospital hospital = GeneradorDatos.generar(1, 1, pacientes);
+                for (Paciente paciente : hospital.getPacientes()) {
+                    HistoriaClinica historia = paciente.getHistoriaClinica();
+                    historia.agregarDiagnostico("Hipertensión arterial");
+                    historia.agregarDiagnostico("Diabetes tipo 2");
+                    historia.agregarTratamiento("Enalapril 10mg");
+                    historia.agregarAlergia("Penicilina");
+                }
+                GeneradorDatos.persistir(emf, hospital);
+                Long hospitalId = hospital.getId();
+
+                System.out.printf("%n%,d pacientes%n", pacientes);
+                medir(emf, "navegacion", repeticiones, em -> tocar(em.createQuery(
+                                "SELECT p FROM Paciente p WHERE p.hospital.id = :hospital", Paciente.class)
+                        .setParameter("hospital", hospitalId).getResultList()));
+                medir(emf, "joinFetch", repeticiones,
+                        em -> tocar(ConsultasClinicas.pacientesConHistoria(em, hospitalId)));
+                medir(emf, "resumen", repeticiones, em -> {
+                    long total = 0;
+                    for (ResumenClinico resumen : ConsultasClinicas.resumenesPorHospital(em, hospitalId)) {
+                        total += resumen.diagnosticos().size() + resumen.tratamientos().size()
+                                + resumen.alergias().size();
+                    }
+                    return total;
+                });
+            } finally {
+                emf.close();
+            }
+        }
+    }
+
+    private static long tocar(List<Paciente> pacientes) {
+        long total = 0;
+        for (Paciente paciente : pacientes) {
+            HistoriaClinica historia = paciente.getHistoriaClinica();
+            total += historia.getDiagnosticos().size() + historia.getTratamientos().size()
+                    + historia.getAlergias().size();
+        }
+        return total;
+    }
+
+    private static void medir(EntityManagerFactory emf, String nombre, int repeticiones,
+                              Function<EntityManager, Long> listado) {
+        Statistics estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        long mejor = Long.MAX_VALUE, sentencias = 0, registros = 0;
+        for (int i = 0; i < repeticiones; i++) {
+            estadisticas.clear();
+            EntityManager em = emf.createEntityManager();
+            try {
+                long t0 = System.nanoTime();
+                registros = listado.apply(em);
+                mejor = Math.min(mejor, System.nanoTime() - t0);
+                sentencias = estadisticas.getPrepareStatementCount();
+            } finally {
+                em.close();
+            }
+        }
+        System.out.printf("  %-11s %,8d sentencias %,10.1f ms  (%,d registros)%n",
+                nombre, sentencias, mejor / 1e6, registros);
+    }
+}
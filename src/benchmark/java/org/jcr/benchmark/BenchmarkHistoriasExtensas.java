@@ -0,0 +1,71 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+ * Agregar un diagnóstico a historias que ya tienen muchos: sentencias JDBC y tiempo por
+ * transacción. Con @OrderColumn debe ser un solo INSERT además de las lecturas; como bag
+ * era un DELETE de la colección más un INSERT por cada elemento.
+ *
+ *   --registros 10,100,1000     diagnósticos previos por historia
+ *   --pacientes 20
+ *   --agregados 50              transacciones medidas (una por agregado)
+ */
+public class BenchmarkHistoriasExtensas {
+
+    public static void main(String[] args) {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int[] tamanios = Arrays.stream(opciones.getOrDefault("registros", "10,100,1000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int pacientes = Integer.parseInt(opciones.getOrDefault("pacientes", "20"));
+        int agregados = Integer.parseInt(opciones.getOrDefault("agregados", "50"));
+
+        for (int registros : tamanios) {
+            EntityManagerFactory emf = GeneradorDatos.crearFabrica("extensas" + registros,
+                    Map.of("hibernate.generate_statistics", "true", "hibernate.session.events.log", "false",
+                            "hibernate.jdbc.batch_size", "50"));
+            try {
+                Hospital hospital = GeneradorDatos.generar(1, 1, pacientes);
+                for (Paciente paciente : hospital.getPacientes()) {
+                    for (int i = 0; i < registros; i++) {
+                        paciente.getHistoriaClinica().agregarDiagnostico("Control " + i);
+                    }
+                }
+                GeneradorDatos.persistir(emf, hospital);
+                Long[] ids = hospital.getPacientes().stream()
+                        .map(p -> p.getHistoriaClinica().getId()).toArray(Long[]::new);
+
+                Statistics estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+                estadisticas.clear();
+                long t0 = System.nanoTime();
+                for (int i = 0; i < agregados; i++) {
+                    EntityManager em = emf.createEntityManager();
+                    try {
+                        em.getTransaction().begin();
+                        HistoriaClinica historia = em.find(HistoriaClinica.class, ids[i % ids.length]);
+                        historia.agregarDiagnostico("Nota " + i);
+                        em.getTransaction().commit();
+                    } finally {
+                        if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                        em.close();
+                    }
+                }
+                long total = System.nanoTime() - t0;
+                System.out.printf("%,6d registros previos: %,8.1f sentencias/agregado %,8.3f ms/agregado%n",
+                        registros, (double) estadisticas.getPrepareStatementCount() / agregados,
+                        total / 1e6 / agregados);
+            } finally {
+                emf.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaException;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.instantanea.InstantaneaHospital;
+import org.jcr.instantanea.PublicadorInstantaneas;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Un tablero (citas programadas y facturación por departamento) leído por varios hilos
+ * mientras un hilo reserva sin parar:
+ *
+ *   sin lock       entidades vivas sin sincronizar: cuenta las ConcurrentModificationException
+ *   lock L/E       entidades vivas con un ReentrantReadWriteLock entre tablero y reservas
+ *   instantáneas   PublicadorInstantaneas: los lectores no toman ningún lock
+ *
+ *   --lectores 1,2,4,8
+ *   --segundos 3     por corrida
+ */
+public class BenchmarkInstantaneas {
+
+    private enum Modo { SIN_LOCK, LOCK, INSTANTANEAS }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int[] lectores = Arrays.stream(opciones.getOrDefault("lectores", "1,2,4,8").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int segundos = Integer.parseInt(opciones.getOrDefault("segundos", "3"));
+        System.out.printf("%d núcleos disponibles%n", Runtime.getRuntime().availableProcessors());
+        for (int cantidad : lectores) {
+            for (Modo modo : Modo.values()) {
+                medir(modo, cantidad, segundos);
+            }
+        }
+    }
+
+    private static void medir(Modo modo, int cantidadLectores, int segundos) throws Exception {
+        Hospital hospital = GeneradorDatos.generar(4, 10, 10_000);
+        CitaManager manager = new CitaManager();
+        PublicadorInstantaneas publicador = modo == Modo.INSTANTANEAS ? new PublicadorInstantaneas(hospital, manager) : null;
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+        AtomicLong tableros = new AtomicLong();
+        AtomicLong errores = new AtomicLong();
+        AtomicLong reservas = new AtomicLong();
+
+        Thread escritor = new Thread(() -> {
+            List<Departamento> departamentos = hospital.getDepartamentos();
+            List<Paciente> pacientes = hospital.getPacientes();
+            SplittableRandom azar = new SplittableRandom(3);
+            LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+            while (corriendo.get()) {
+                Departamento departamento = departamentos.get(azar.nextInt(departamentos.size()));
+                if (modo == Modo.LOCK) lock.writeLock().lock();
+                try {
+                    Cita cita = manager.programarCita(pacientes.get(azar.nextInt(pacientes.size())),
+                            departamento.getMedicos().get(azar.nextInt(departamento.getMedicos().size())),
+                            departamento.getSalas().get(azar.nextInt(departamento.getSalas().size())),
+                            base.plusHours(azar.nextInt(5 * 365 * 24)), BigDecimal.valueOf(1000 + azar.nextInt(9000)));
+                    // Los modos sin instantánea leen la lista del médico, que CitaManager ya no llena
+                    if (modo != Modo.INSTANTANEAS) cita.getMedico().addCita(cita);
+                    if (azar.nextInt(20) == 0) manager.cambiarEstado(cita, EstadoCita.CANCELADA);
+                    reservas.incrementAndGet();
+                } catch (CitaException e) {
+                    // conflicto: esperado con horarios al azar
+                } finally {
+                    if (modo == Modo.LOCK) lock.writeLock().unlock();
+                }
+            }
+        }, "reservas");
+
+        Thread[] lectores = new Thread[cantidadLectores];
+        for (int i = 0; i < cantidadLectores; i++) {
+            lectores[i] = new Thread(() -> {
+                long total = 0;
+                while (corriendo.get()) {
+                    try {
+                        if (modo == Modo.INSTANTANEAS) {
+                            total += tablero(publicador.getInstantanea());
+                        } else if (modo == Modo.LOCK) {
+                            lock.readLock().lock();
+                            try {
+                                total += tablero(hospital);
+                            } finally {
+                                lock.readLock().unlock();
+                            }
+                        } else {
+                            total += tablero(hospital);
+                        }
+                        tableros.incrementAndGet();
+                    } catch (ConcurrentModificationException e) {
+                        errores.incrementAndGet();
+                    }
+                }
+                if (total == 42) System.out.print("");
+            }, "tablero-" + i);
+        }
+        escritor.start();
+        for (Thread lector : lectores) lector.start();
+        Thread.sleep(segundos * 1000L);
+        corriendo.set(false);
+        escritor.join();
+        for (Thread lector : lectores) lector.join();
+        if (publicador != null) publicador.close();
+
+        System.out.printf("%-13s %d lectores: %,8.0f tableros/s  %,8.0f reservas/s  CME=%,d%n",
+                modo.name().toLowerCase().replace('_', ' '), cantidadLectores,
+                tableros.get() / (double) segundos, reservas.get() / (double) segundos, errores.get());
+    }
+
+    private static long tablero(Hospital hospital) {
+        long total = 0;
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            for (Medico medico : departamento.getMedicos()) {
+                for (Cita cita : medico.getCitas()) {
+                    if (cita.getEstado() == EstadoCita.PROGRAMADA) total += cita.getCosto().longValue();
+                }
+            }
+        }
+        return total;
+    }
+
+    private static long tablero(InstantaneaHospital instantanea) {
+        long total = 0;
+        for (InstantaneaHospital.VistaDepartamento departamento : instantanea.getDepartamentos()) {
+            for (InstantaneaHospital.VistaMedico medico : departamento.medicos()) {
+                for (InstantaneaHospital.VistaCita cita : medico.citas()) {
+                    if (cita.estado() == EstadoCita.PROGRAMADA) total += cita.costo().longValue();
+                }
+            }
+        }
+        return total;
+    }
+}
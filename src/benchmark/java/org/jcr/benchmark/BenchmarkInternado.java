@@ -0,0 +1,231 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.DiccionarioTextos;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.jcr.persistencia.ResolutorReferencias;
+
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Heap retenido por textos repetidos, con y sin DiccionarioTextos. Se genera una base H2 en
+ * disco (pacientes con historia clínica y citas con observaciones de un vocabulario chico)
+ * y un CSV de las mismas citas; después dos JVMs nuevas cargan todo por JPA y el CSV con
+ * CitaManager, una con -Dhospital.diccionario.posiciones=0, y cada una imprime su histograma
+ * de clases tras un GC completo (lo mismo que jcmd GC.class_histogram).
+ *
+ *   --pacientes 20000
+ *   --citas 10          (por paciente)
+ */
+public class BenchmarkInternado {
+
+    private static final int LOTE = 5_000;
+    private static final String[] OBSERVACIONES = {"", "Control de rutina", "Control de rutina", "Primera consulta",
+            "Control post operatorio", "Trae estudios; derivado por guardia", "Reprogramada a pedido del paciente"};
+    private static final String[] DIAGNOSTICOS = {"Hipertensión arterial", "Diabetes tipo 2", "Asma bronquial",
+            "Hipotiroidismo", "Lumbalgia", "Migraña", "Dermatitis atópica", "Gastritis crónica"};
+    private static final String[] TRATAMIENTOS = {"Enalapril 10 mg", "Metformina 850 mg", "Salbutamol inhalado",
+            "Levotiroxina 50 mcg", "Kinesiología", "Ibuprofeno 400 mg"};
+    private static final String[] ALERGIAS = {"Penicilina", "Ibuprofeno", "Lactosa", "Polen", "Látex"};
+    private static final Pattern FILA = Pattern.compile("^\\s*\\d+:\\s+(\\d+)\\s+(\\d+)\\s+(\\S+)");
+    private static final Pattern TOTAL = Pattern.compile("^Total\\s+(\\d+)\\s+(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        if ("hijo".equals(opciones.get("modo"))) {
+            cargarYMedir(opciones.get("url"), Paths.get(opciones.get("csv")));
+            return;
+        }
+        int pacientes = Integer.parseInt(opciones.getOrDefault("pacientes", "20000"));
+        int citasPorPaciente = Integer.parseInt(opciones.getOrDefault("citas", "10"));
+
+        Path directorio = Files.createTempDirectory("internado");
+        String url = "jdbc:h2:file:" + directorio.resolve("hospidb");
+        Path csv = directorio.resolve("citas.csv");
+        try {
+            EntityManagerFactory emf = GeneradorDatos.crearFabrica("internado",
+                    Map.of("jakarta.persistence.jdbc.url", url, "hibernate.hbm2ddl.auto", "create",
+                            "hibernate.jdbc.batch_size", "50"));
+            try {
+                poblar(emf, pacientes, citasPorPaciente, csv);
+            } finally {
+                emf.close();
+            }
+            System.out.printf("%,d pacientes con historia, %,d citas en la base y %,d en el CSV%n",
+                    pacientes, (long) pacientes * citasPorPaciente, (long) pacientes * citasPorPaciente);
+            Histograma sin = lanzar(url, csv, List.of("-Dhospital.diccionario.posiciones=0"));
+            Histograma con = lanzar(url, csv, List.of());
+            imprimir("sin diccionario", sin);
+            imprimir("con diccionario", con);
+            System.out.println(con.resumen);
+            System.out.printf("ahorro: %,.1f MB en String + byte[], %,.1f MB del heap vivo (%.0f%%)%n",
+                    (sin.textos() - con.textos()) / 1e6, (sin.total - con.total) / 1e6,
+                    100.0 * (sin.total - con.total) / sin.total);
+        } finally {
+            try (var archivos = Files.walk(directorio)) {
+                archivos.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void poblar(EntityManagerFactory emf, int pacientes, int citasPorPaciente, Path csv)
+            throws IOException {
+        Hospital hospital = GeneradorDatos.generar(2, 2, 0);
+        GeneradorDatos.persistir(emf, hospital);
+        List<Departamento> departamentos = hospital.getDepartamentos();
+        LocalDateTime inicio = LocalDateTime.of(2030, 1, 7, 8, 0);
+
+        EntityManager em = emf.createEntityManager();
+        try (PrintWriter escritor = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+            int n = 0;
+            for (int desde = 0; desde < pacientes; desde += LOTE) {
+                em.getTransaction().begin();
+                for (int i = desde; i < Math.min(pacientes, desde + LOTE); i++) {
+                    Paciente paciente = GeneradorDatos.paciente(i);
+                    HistoriaClinica historia = paciente.getHistoriaClinica();
+                    historia.agregarDiagnostico(DIAGNOSTICOS[i % DIAGNOSTICOS.length]);
+                    historia.agregarDiagnostico(DIAGNOSTICOS[(i / 3) % DIAGNOSTICOS.length]);
+                    historia.agregarTratamiento(TRATAMIENTOS[i % TRATAMIENTOS.length]);
+                    historia.agregarAlergia(ALERGIAS[i % ALERGIAS.length]);
+                    for (int k = 0; k < citasPorPaciente; k++, n++) {
+                        Departamento departamento = departamentos.get(n % departamentos.size());
+                        Cita cita = new Cita(paciente, departamento.getMedicos().get(n % 2),
+                                departamento.getSalas().get(n % 2), inicio.plusMinutes(15L * n),
+                                new BigDecimal("1500.00"));
+                        cita.setEstado(EstadoCita.COMPLETADA);
+                        cita.setObservaciones(OBSERVACIONES[n % OBSERVACIONES.length]);
+                        paciente.addCita(cita);
+                        escritor.println(cita.toCsvString());
+                    }
+                    em.persist(paciente);
+                }
+                em.getTransaction().commit();
+                em.clear();
+            }
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    // Proceso hijo: deja todo cargado y alcanzable mientras se toma el histograma.
+    private static void cargarYMedir(String url, Path csv) throws Exception {
+        EntityManagerFactory emf = GeneradorDatos.crearFabrica("internado",
+                Map.of("jakarta.persistence.jdbc.url", url, "hibernate.hbm2ddl.auto", "none"));
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Paciente> pacientes = em.createQuery("SELECT p FROM Paciente p LEFT JOIN FETCH p.historiaClinica",
+                    Paciente.class).getResultList();
+            for (Paciente paciente : pacientes) {
+                HistoriaClinica historia = paciente.getHistoriaClinica();
+                historia.getDiagnosticos().size();
+                historia.getTratamientos().size();
+                historia.getAlergias().size();
+            }
+            List<Cita> citas = em.createQuery("SELECT c FROM Cita c", Cita.class).getResultList();
+
+            ResolutorReferencias resolutor = new ResolutorReferencias(em);
+            CitaManager agenda = new CitaManager();
+            agenda.cargarCitas(csv.toString(), resolutor.pacientes(), resolutor.medicos(), resolutor.salas());
+
+            String histograma = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                    new Object[]{new String[0]}, new String[]{String[].class.getName()});
+            for (String linea : histograma.split("\n")) {
+                Matcher fila = FILA.matcher(linea);
+                if (fila.find() && (fila.group(3).equals("java.lang.String") || fila.group(3).equals("[B"))) {
+                    System.out.println(linea);
+                } else if (TOTAL.matcher(linea).find()) {
+                    System.out.println(linea);
+                }
+            }
+            DiccionarioTextos diccionario = DiccionarioTextos.COMPARTIDO;
+            System.out.printf("diccionario: %,d posiciones, %,d aciertos, %,d altas (%,d pacientes, %,d citas, "
+                            + "%,d en agenda)%n", diccionario.getPosiciones(), diccionario.getAciertos(),
+                    diccionario.getAltas(), pacientes.size(), citas.size(), agenda.getCantidadCitas());
+            Reference.reachabilityFence(pacientes);
+            Reference.reachabilityFence(citas);
+            Reference.reachabilityFence(agenda);
+        } finally {
+            em.close();
+            emf.close();
+        }
+    }
+
+    private static Histograma lanzar(String url, Path csv, List<String> opcionesJvm)
+            throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        comando.addAll(opcionesJvm);
+        comando.addAll(List.of("-Dorg.slf4j.simpleLogger.defaultLogLevel=warn", "-cp",
+                System.getProperty("java.class.path"), BenchmarkInternado.class.getName(),
+                "--modo", "hijo", "--url", url, "--csv", csv.toString()));
+        Process proceso = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        Histograma histograma = new Histograma();
+        StringBuilder salida = new StringBuilder();
+        try (BufferedReader lector = new BufferedReader(
+                new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                salida.append(linea).append('\n');
+                Matcher fila = FILA.matcher(linea);
+                Matcher total = TOTAL.matcher(linea);
+                if (fila.find()) {
+                    if (fila.group(3).equals("java.lang.String")) {
+                        histograma.strings = Long.parseLong(fila.group(1));
+                        histograma.bytesStrings = Long.parseLong(fila.group(2));
+                    } else {
+                        histograma.arreglos = Long.parseLong(fila.group(1));
+                        histograma.bytesArreglos = Long.parseLong(fila.group(2));
+                    }
+                } else if (total.find()) {
+                    histograma.total = Long.parseLong(total.group(2));
+                } else if (linea.startsWith("diccionario:")) {
+                    histograma.resumen = linea;
+                }
+            }
+        }
+        if (proceso.waitFor() != 0 || histograma.total == 0) {
+            throw new IllegalStateException("El proceso hijo terminó con error:\n" + salida);
+        }
+        return histograma;
+    }
+
+    private static void imprimir(String modo, Histograma h) {
+        System.out.printf("  %-16s String %,10d (%,6.1f MB)  byte[] %,10d (%,6.1f MB)  heap vivo %,7.1f MB%n", modo,
+                h.strings, h.bytesStrings / 1e6, h.arreglos, h.bytesArreglos / 1e6, h.total / 1e6);
+    }
+
+    private static final class Histograma {
+        long strings, bytesStrings, arreglos, bytesArreglos, total;
+        String resumen = "";
+
+        long textos() {
+            return bytesStrings + bytesArreglos;
+        }
+    }
+}
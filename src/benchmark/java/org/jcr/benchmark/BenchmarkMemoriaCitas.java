@@ -0,0 +1,127 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Memoria retenida por cita: las mismas filas CSV cargadas como objetos Cita (lo que
+ * guardaba CitaManager antes, más sus tres índices) y en la agenda compacta, recién
+ * cargada y después de leer todas las citas por paciente como lo hace la facturación.
+ *
+ *   --citas 1000000
+ *   --pacientes 20000
+ */
+public class BenchmarkMemoriaCitas {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int cantidad = Integer.parseInt(opciones.getOrDefault("citas", "1000000"));
+        int cantidadPacientes = Integer.parseInt(opciones.getOrDefault("pacientes", "20000"));
+
+        Hospital hospital = GeneradorDatos.generar(4, 10, cantidadPacientes);
+        Map<String, Paciente> pacientes = new HashMap<>();
+        Map<String, Medico> medicos = new HashMap<>();
+        Map<String, Sala> salas = new HashMap<>();
+        hospital.getPacientes().forEach(p -> pacientes.put(p.getDni(), p));
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            departamento.getMedicos().forEach(m -> medicos.put(m.getDni(), m));
+            departamento.getSalas().forEach(s -> salas.put(s.getNumero(), s));
+        }
+        Path archivo = escribirCsv(hospital, cantidad);
+
+        try {
+            long base = memoriaUsada();
+            List<Cita> citas = new ArrayList<>();
+            Map<Paciente, List<Cita>> porPaciente = new HashMap<>();
+            Map<Medico, List<Cita>> porMedico = new HashMap<>();
+            Map<Sala, List<Cita>> porSala = new HashMap<>();
+            for (String linea : Files.readAllLines(archivo)) {
+                Cita cita = Cita.fromCsvString(linea, pacientes, medicos, salas);
+                citas.add(cita);
+                porPaciente.computeIfAbsent(cita.getPaciente(), k -> new ArrayList<>()).add(cita);
+                porMedico.computeIfAbsent(cita.getMedico(), k -> new ArrayList<>()).add(cita);
+                porSala.computeIfAbsent(cita.getSala(), k -> new ArrayList<>()).add(cita);
+            }
+            long objetos = memoriaUsada() - base;
+            informar("objetos Cita", objetos, citas.size());
+            citas = null;
+            porPaciente = null;
+            porMedico = null;
+            porSala = null;
+
+            base = memoriaUsada();
+            CitaManager manager = new CitaManager();
+            long t0 = System.nanoTime();
+            manager.cargarCitas(archivo.toString(), pacientes, medicos, salas);
+            long carga = System.nanoTime() - t0;
+            long compacta = memoriaUsada() - base;
+            informar("agenda compacta", compacta, manager.getCantidadCitas());
+            System.out.printf("carga compacta: %,.0f citas/s, reducción %.1fx%n",
+                    manager.getCantidadCitas() / (carga / 1e9), (double) objetos / compacta);
+
+            t0 = System.nanoTime();
+            long centavos = 0;
+            for (Paciente paciente : hospital.getPacientes()) {
+                for (Cita cita : manager.getCitasPorPaciente(paciente)) {
+                    centavos += cita.getCosto().unscaledValue().longValue();
+                }
+            }
+            long lectura = System.nanoTime() - t0;
+            informar("tras lecturas", memoriaUsada() - base, manager.getCantidadCitas());
+            System.out.printf("lectura por paciente: %,.0f citas/s (total %,d centavos)%n",
+                    manager.getCantidadCitas() / (lectura / 1e9), centavos);
+        } finally {
+            Files.deleteIfExists(archivo);
+        }
+    }
+
+    private static Path escribirCsv(Hospital hospital, int cantidad) throws IOException {
+        List<Medico> medicos = new ArrayList<>();
+        List<Sala> salas = new ArrayList<>();
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            medicos.addAll(departamento.getMedicos());
+            salas.addAll(departamento.getSalas());
+        }
+        List<Paciente> pacientes = hospital.getPacientes();
+        LocalDateTime inicio = LocalDateTime.now().plusDays(1).withHour(8).withMinute(0).withSecond(0).withNano(0);
+        Path archivo = Files.createTempFile("citas", ".csv");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(archivo))) {
+            for (int i = 0; i < cantidad; i++) {
+                Medico medico = medicos.get(i % medicos.size());
+                writer.printf("%s,%s,%s,%s,%d.00,PROGRAMADA,%n", pacientes.get(i % pacientes.size()).getDni(),
+                        medico.getDni(), salas.get(i % salas.size()).getNumero(),
+                        inicio.plusHours(i / medicos.size()), 5_000 + i % 20_000);
+            }
+        }
+        return archivo;
+    }
+
+    private static long memoriaUsada() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void informar(String nombre, long bytes, int citas) {
+        System.out.printf("%-16s %,10d citas %,8.1f MB %,8.1f bytes/cita%n",
+                nombre, citas, bytes / 1048576.0, (double) bytes / citas);
+    }
+}
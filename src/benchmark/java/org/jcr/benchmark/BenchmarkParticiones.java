@@ -0,0 +1,128 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaException;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.CitaManagerParticionado;
+import org.jcr.entidades.CitaService;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Reservas por segundo con varios hilos: un CitaManager compartido contra
+ * CitaManagerParticionado (una partición y un hilo por especialidad), esperando cada
+ * reserva o con hasta 64 reservas asíncronas en vuelo por hilo.
+ *
+ *   --hilos 1,2,4,8
+ *   --reservas 200000    por corrida, repartidas entre los hilos
+ */
+public class BenchmarkParticiones {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int[] hilos = Arrays.stream(opciones.getOrDefault("hilos", "1,2,4,8").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int reservas = Integer.parseInt(opciones.getOrDefault("reservas", "200000"));
+
+        Hospital hospital = GeneradorDatos.generar(4, 10, 10_000);
+        List<Departamento> departamentos = hospital.getDepartamentos();
+        List<Paciente> pacientes = hospital.getPacientes();
+        System.out.printf("%d núcleos disponibles%n", Runtime.getRuntime().availableProcessors());
+
+        for (int cantidadHilos : hilos) {
+            medir("único", cantidadHilos, reservas, CitaManager::new, departamentos, pacientes);
+            medir("particionado", cantidadHilos, reservas, CitaManagerParticionado::new, departamentos, pacientes);
+            medirAsincrono(cantidadHilos, reservas, departamentos, pacientes);
+        }
+    }
+
+    private static void medir(String nombre, int cantidadHilos, int reservas, Supplier<CitaService> fabrica,
+                              List<Departamento> departamentos, List<Paciente> pacientes) throws Exception {
+        CitaService servicio = fabrica.get();
+        AtomicLong aceptadas = new AtomicLong();
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withHour(0).withMinute(0);
+        Thread[] trabajadores = new Thread[cantidadHilos];
+        long t0 = System.nanoTime();
+        for (int h = 0; h < cantidadHilos; h++) {
+            int propias = reservas / cantidadHilos;
+            trabajadores[h] = new Thread(() -> {
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                for (int i = 0; i < propias; i++) {
+                    Departamento departamento = departamentos.get(azar.nextInt(departamentos.size()));
+                    Medico medico = departamento.getMedicos().get(azar.nextInt(departamento.getMedicos().size()));
+                    Sala sala = departamento.getSalas().get(azar.nextInt(departamento.getSalas().size()));
+                    Paciente paciente = pacientes.get(azar.nextInt(pacientes.size()));
+                    try {
+                        servicio.programarCita(paciente, medico, sala,
+                                base.plusMinutes(30L * azar.nextInt(365 * 48)), BigDecimal.TEN);
+                        aceptadas.incrementAndGet();
+                    } catch (CitaException e) {
+                        // conflicto: esperado con horarios al azar
+                    }
+                }
+            });
+            trabajadores[h].start();
+        }
+        for (Thread trabajador : trabajadores) {
+            trabajador.join();
+        }
+        long total = System.nanoTime() - t0;
+        if (servicio instanceof AutoCloseable cerrable) {
+            cerrable.close();
+        }
+        System.out.printf("%-13s %2d hilos %,10.0f reservas/s (%,d aceptadas)%n",
+                nombre, cantidadHilos, reservas / (total / 1e9), aceptadas.get());
+    }
+
+    private static void medirAsincrono(int cantidadHilos, int reservas, List<Departamento> departamentos,
+                                       List<Paciente> pacientes) throws Exception {
+        AtomicLong aceptadas = new AtomicLong();
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withHour(0).withMinute(0);
+        Thread[] trabajadores = new Thread[cantidadHilos];
+        try (CitaManagerParticionado servicio = new CitaManagerParticionado()) {
+            long t0 = System.nanoTime();
+            for (int h = 0; h < cantidadHilos; h++) {
+                int propias = reservas / cantidadHilos;
+                trabajadores[h] = new Thread(() -> {
+                    ThreadLocalRandom azar = ThreadLocalRandom.current();
+                    ArrayDeque<CompletableFuture<Cita>> enVuelo = new ArrayDeque<>();
+                    for (int i = 0; i < propias; i++) {
+                        Departamento departamento = departamentos.get(azar.nextInt(departamentos.size()));
+                        Medico medico = departamento.getMedicos().get(azar.nextInt(departamento.getMedicos().size()));
+                        Sala sala = departamento.getSalas().get(azar.nextInt(departamento.getSalas().size()));
+                        enVuelo.add(servicio.programarCitaAsync(pacientes.get(azar.nextInt(pacientes.size())),
+                                medico, sala, base.plusMinutes(30L * azar.nextInt(365 * 48)), BigDecimal.TEN)
+                                .whenComplete((cita, error) -> {
+                                    if (error == null) aceptadas.incrementAndGet();
+                                }));
+                        if (enVuelo.size() == 64) {
+                            enVuelo.poll().exceptionally(e -> null).join();
+                        }
+                    }
+                    enVuelo.forEach(f -> f.exceptionally(e -> null).join());
+                });
+                trabajadores[h].start();
+            }
+            for (Thread trabajador : trabajadores) {
+                trabajador.join();
+            }
+            long total = System.nanoTime() - t0;
+            System.out.printf("%-13s %2d hilos %,10.0f reservas/s (%,d aceptadas)%n",
+                    "asíncrono", cantidadHilos, reservas / (total / 1e9), aceptadas.get());
+        }
+    }
+}
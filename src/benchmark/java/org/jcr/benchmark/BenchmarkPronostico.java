@@ -0,0 +1,217 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+import org.jcr.pronostico.CargaHistorica;
+import org.jcr.pronostico.DemandaSemanal;
+import org.jcr.pronostico.Estimacion;
+import org.jcr.pronostico.Pronostico;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Varios años de citas en H2 con una demanda armada a mano (días hábiles de 8 a 18, con
+ * PEDIATRIA cargada los martes a la mañana), leídos a DemandaSemanal con 1 y varios hilos
+ * (un año por tarea). Después se pregunta cuántos consultorios necesita PEDIATRIA los martes
+ * de 8 a 12 y cuánto se ocuparían los que hay.
+ *
+ *   --anios 4
+ *   --citas 100000       (por año)
+ *   --hilos 1,4
+ *   --repeticiones 3
+ *   --espera 0.2         (probabilidad de espera máxima)
+ */
+public class BenchmarkPronostico {
+
+    private static final int LOTE = 10_000;
+    private static final int PACIENTES = 2_000;
+    private static final int PRIMER_ANIO = 2026;
+    private static final EstadoCita[] ESTADOS = {EstadoCita.COMPLETADA, EstadoCita.COMPLETADA,
+            EstadoCita.COMPLETADA, EstadoCita.COMPLETADA, EstadoCita.NO_ASISTIO, EstadoCita.CANCELADA};
+    // Peso relativo de cada hora de un día hábil, de 8 a 17
+    private static final int[] PESO_HORA = {6, 9, 10, 9, 5, 4, 7, 8, 6, 3};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int anios = Integer.parseInt(opciones.getOrDefault("anios", "4"));
+        int citasPorAnio = Integer.parseInt(opciones.getOrDefault("citas", "100000"));
+        int[] hilos = Arrays.stream(opciones.getOrDefault("hilos", "1,4").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int repeticiones = Integer.parseInt(opciones.getOrDefault("repeticiones", "3"));
+        double espera = Double.parseDouble(opciones.getOrDefault("espera", "0.2"));
+
+        EntityManagerFactory emf = GeneradorDatos.crearFabrica("pronostico", Map.of("hibernate.jdbc.batch_size", "50"));
+        try {
+            Hospital hospital = GeneradorDatos.generar(3, 4, PACIENTES);
+            GeneradorDatos.persistir(emf, hospital);
+            long t0 = System.nanoTime();
+            poblar(emf, anios, citasPorAnio);
+            System.out.printf("%,d citas en %d años, cargadas en %,.0f ms%n", (long) anios * citasPorAnio, anios,
+                    (System.nanoTime() - t0) / 1e6);
+
+            LocalDate desde = LocalDate.of(PRIMER_ANIO, 1, 1), hasta = desde.plusYears(anios);
+            DemandaSemanal demanda = CargaHistorica.cargar(emf, desde, hasta, Runnable::run);
+            long mejor = Long.MAX_VALUE;
+            for (int r = 0; r < repeticiones; r++) {
+                long inicio = System.nanoTime();
+                demanda = CargaHistorica.cargar(emf, desde, hasta, Runnable::run);
+                mejor = Math.min(mejor, System.nanoTime() - inicio);
+            }
+            imprimir("secuencial", mejor, demanda.getTotal());
+            for (int cantidad : hilos) {
+                ExecutorService ejecutor = Executors.newFixedThreadPool(cantidad);
+                try {
+                    mejor = Long.MAX_VALUE;
+                    for (int r = 0; r < repeticiones; r++) {
+                        long inicio = System.nanoTime();
+                        DemandaSemanal paralela = CargaHistorica.cargar(emf, desde, hasta, ejecutor);
+                        mejor = Math.min(mejor, System.nanoTime() - inicio);
+                        verificar(demanda, paralela);
+                    }
+                    imprimir(cantidad + " hilo" + (cantidad > 1 ? "s" : ""), mejor, demanda.getTotal());
+                } finally {
+                    ejecutor.shutdown();
+                }
+            }
+
+            Map<EspecialidadMedica, Integer> salas;
+            EntityManager em = emf.createEntityManager();
+            try {
+                salas = Pronostico.salasPorEspecialidad(em);
+            } finally {
+                em.close();
+            }
+            Pronostico pronostico = new Pronostico(demanda);
+            long inicio = System.nanoTime();
+            List<Estimacion> estimaciones = pronostico.estimar(EspecialidadMedica.PEDIATRIA, DayOfWeek.TUESDAY,
+                    LocalTime.of(8, 0), LocalTime.of(12, 0), espera);
+            int necesarias = pronostico.salasNecesarias(EspecialidadMedica.PEDIATRIA, DayOfWeek.TUESDAY,
+                    LocalTime.of(8, 0), LocalTime.of(12, 0), espera);
+            double[] ocupacion = pronostico.utilizacion(EspecialidadMedica.PEDIATRIA,
+                    salas.getOrDefault(EspecialidadMedica.PEDIATRIA, 0));
+            long nanos = System.nanoTime() - inicio;
+
+            System.out.printf("PEDIATRIA, martes de 8 a 12, espera <= %.0f%% (%d martes observados, %,.0f µs):%n",
+                    espera * 100, demanda.getDias(DayOfWeek.TUESDAY), nanos / 1e3);
+            System.out.println("  hora  llegadas/h  Erlangs  salas  ocupación  P(espera)  espera media  ocupación actual");
+            for (Estimacion e : estimaciones) {
+                System.out.printf("  %02d h  %10.2f  %7.2f  %5d  %8.0f%%  %8.1f%%  %9.1f min  %14.0f%%%n", e.hora(),
+                        e.llegadasPorHora(), e.carga(), e.servidores(), e.utilizacion() * 100,
+                        e.probabilidadEspera() * 100, e.esperaMediaMinutos(),
+                        ocupacion[DemandaSemanal.franja(e.dia(), e.hora())] * 100);
+            }
+            System.out.printf("  hacen falta %d consultorios; hay %d%n", necesarias,
+                    salas.getOrDefault(EspecialidadMedica.PEDIATRIA, 0));
+        } finally {
+            emf.close();
+        }
+    }
+
+    // Por lotes con referencias: las citas no necesitan cargar pacientes, médicos ni salas.
+    private static void poblar(EntityManagerFactory emf, int anios, int citasPorAnio) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Long> pacientes = em.createQuery("SELECT p.id FROM Paciente p ORDER BY p.id", Long.class)
+                    .getResultList();
+            Map<EspecialidadMedica, List<Long>> medicos = ids(em,
+                    "SELECT m.especialidad, m.id FROM Medico m ORDER BY m.id");
+            Map<EspecialidadMedica, List<Long>> salas = ids(em,
+                    "SELECT d.especialidad, s.id FROM Sala s JOIN s.departamento d ORDER BY s.id");
+            EspecialidadMedica[] especialidades = EspecialidadMedica.values();
+            Random azar = new Random(42);
+            long total = (long) anios * citasPorAnio;
+
+            em.getTransaction().begin();
+            for (long n = 0; n < total; n++) {
+                LocalDate inicioAnio = LocalDate.of(PRIMER_ANIO + (int) (n / citasPorAnio), 1, 1);
+                EspecialidadMedica especialidad = especialidades[azar.nextInt(especialidades.length)];
+                LocalDate dia;
+                do {
+                    dia = inicioAnio.plusDays(azar.nextInt(inicioAnio.lengthOfYear()));
+                } while (dia.getDayOfWeek().getValue() > 5);
+                int hora = hora(azar);
+                // Pediatría duplica la demanda de los martes a la mañana
+                if (especialidad == EspecialidadMedica.PEDIATRIA && azar.nextBoolean()) {
+                    dia = dia.with(TemporalAdjusters.nextOrSame(DayOfWeek.TUESDAY));
+                    hora = 8 + azar.nextInt(4);
+                    if (dia.getYear() != inicioAnio.getYear()) dia = dia.minusWeeks(1);
+                }
+                List<Long> medicosEsp = medicos.get(especialidad), salasEsp = salas.get(especialidad);
+                Cita cita = new Cita(em.getReference(Paciente.class, pacientes.get((int) (n % pacientes.size()))),
+                        em.getReference(Medico.class, medicosEsp.get((int) (n % medicosEsp.size()))),
+                        em.getReference(Sala.class, salasEsp.get((int) (n % salasEsp.size()))),
+                        dia.atTime(hora, azar.nextInt(4) * 15), new BigDecimal("1500.00"));
+                cita.setEstado(ESTADOS[(int) (n % ESTADOS.length)]);
+                em.persist(cita);
+                if ((n + 1) % LOTE == 0) {
+                    em.getTransaction().commit();
+                    em.clear();
+                    em.getTransaction().begin();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    private static Map<EspecialidadMedica, List<Long>> ids(EntityManager em, String jpql) {
+        Map<EspecialidadMedica, List<Long>> ids = new EnumMap<>(EspecialidadMedica.class);
+        for (Object[] fila : em.createQuery(jpql, Object[].class).getResultList()) {
+            ids.computeIfAbsent((EspecialidadMedica) fila[0], e -> new ArrayList<>()).add((Long) fila[1]);
+        }
+        return ids;
+    }
+
+    private static int hora(Random azar) {
+        int objetivo = azar.nextInt(Arrays.stream(PESO_HORA).sum());
+        for (int i = 0; i < PESO_HORA.length; i++) {
+            objetivo -= PESO_HORA[i];
+            if (objetivo < 0) {
+                return 8 + i;
+            }
+        }
+        return 8;
+    }
+
+    private static void verificar(DemandaSemanal esperada, DemandaSemanal obtenida) {
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            for (DayOfWeek dia : DayOfWeek.values()) {
+                for (int hora = 0; hora < 24; hora++) {
+                    if (esperada.getCitas(especialidad, dia, hora) != obtenida.getCitas(especialidad, dia, hora)) {
+                        throw new IllegalStateException("Difiere " + especialidad + " " + dia + " " + hora + " h");
+                    }
+                }
+            }
+        }
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            if (esperada.getDias(dia) != obtenida.getDias(dia)) {
+                throw new IllegalStateException("Difieren los " + dia + " observados");
+            }
+        }
+    }
+
+    private static void imprimir(String nombre, long nanos, long citas) {
+        System.out.printf("  %-12s %,9.1f ms  %,6.0f citas/ms%n", nombre, nanos / 1e6, citas / (nanos / 1e6));
+    }
+}
@@ -0,0 +1,78 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.Matricula;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Persona;
+import org.jcr.entidades.TipoSangre;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+/*
+ * Costo de validar DNI y matrícula y de construir entidades (un Paciente y un Medico por fila).
+ *
+ *   regex          dni.matches("\\d{7,8}") y numero.matches("MP-\\d{4,6}"), la validación anterior
+ *   manual         Persona.esDniValido y Matricula.esMatriculaValida
+ *   constructor    new Paciente + new Medico (validación completa)
+ *   sinValidar     Paciente.sinValidar + Medico.sinValidar
+ *
+ *   --filas 1000000
+ *   --rondas 5
+ */
+public class BenchmarkValidacion {
+
+    private static final TipoSangre[] TIPOS = TipoSangre.values();
+    private static final EspecialidadMedica[] ESPECIALIDADES = EspecialidadMedica.values();
+
+    private static String[] dnis;
+    private static String[] matriculas;
+    private static final LocalDate NACIMIENTO = LocalDate.of(1980, 5, 17);
+
+    public static void main(String[] args) {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int filas = Integer.parseInt(opciones.getOrDefault("filas", "1000000"));
+        int rondas = Integer.parseInt(opciones.getOrDefault("rondas", "5"));
+
+        dnis = new String[filas];
+        matriculas = new String[filas];
+        for (int i = 0; i < filas; i++) {
+            dnis[i] = String.valueOf(GeneradorDatos.DNI_BASE_PACIENTES + i);
+            matriculas[i] = "MP-" + (10_000 + i % 990_000);
+        }
+
+        medir("regex", filas, rondas, i -> (dnis[i].matches("\\d{7,8}") ? 1 : 0)
+                + (matriculas[i].matches("MP-\\d{4,6}") ? 1 : 0));
+        medir("manual", filas, rondas, i -> (Persona.esDniValido(dnis[i]) ? 1 : 0)
+                + (Matricula.esMatriculaValida(matriculas[i]) ? 1 : 0));
+        medir("constructor", filas, rondas, i -> {
+            Paciente paciente = new Paciente("María", "López", dnis[i], NACIMIENTO, TIPOS[i % TIPOS.length],
+                    "011-4000-0000", "Calle 1");
+            Medico medico = new Medico("Juan", "Pérez", dnis[i], NACIMIENTO, TIPOS[i % TIPOS.length],
+                    matriculas[i], ESPECIALIDADES[i % ESPECIALIDADES.length]);
+            return paciente.getDni().length() + medico.getMatricula().getNumero().length();
+        });
+        medir("sinValidar", filas, rondas, i -> {
+            Paciente paciente = Paciente.sinValidar("María", "López", dnis[i], NACIMIENTO, TIPOS[i % TIPOS.length],
+                    "011-4000-0000", "Calle 1");
+            Medico medico = Medico.sinValidar("Juan", "Pérez", dnis[i], NACIMIENTO, TIPOS[i % TIPOS.length],
+                    matriculas[i], ESPECIALIDADES[i % ESPECIALIDADES.length]);
+            return paciente.getDni().length() + medico.getMatricula().getNumero().length();
+        });
+    }
+
+    private static void medir(String nombre, int filas, int rondas, IntToLongFunction operacion) {
+        long mejor = Long.MAX_VALUE, control = 0;
+        for (int r = 0; r < rondas; r++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < filas; i++) {
+                control += operacion.applyAsLong(i);
+            }
+            mejor = Math.min(mejor, System.nanoTime() - t0);
+        }
+        System.out.printf("%-12s %,12.0f filas/s  %,8.1f ns/fila  (control %d)%n",
+                nombre, filas / (mejor / 1e9), (double) mejor / filas, control);
+    }
+}
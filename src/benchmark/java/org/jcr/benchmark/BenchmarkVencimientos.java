@@ -0,0 +1,205 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaException;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.jcr.temporizacion.OyenteRecordatorio;
+import org.jcr.temporizacion.PlanificadorVencimientos;
+import org.jcr.temporizacion.RuedaTemporal;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Costo de los vencimientos de citas:
+ *
+ * 1. RuedaTemporal sola: programar, cancelar una parte y recorrer 30 días de ticks de un
+ *    segundo, contra lo que costaría revisar todas las citas en cada tick.
+ * 2. PlanificadorVencimientos con CitaManager y un reloj simulado: reservas, cancelaciones,
+ *    llegadas avisadas al recibir el recordatorio y 31 días de recorrido con un "reinicio"
+ *    a la mitad (planificador nuevo + restaurar() con las citas abiertas).
+ *
+ *   --temporizadores 1000000
+ *   --reservas 200000
+ */
+public class BenchmarkVencimientos {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int temporizadores = Integer.parseInt(opciones.getOrDefault("temporizadores", "1000000"));
+        int reservas = Integer.parseInt(opciones.getOrDefault("reservas", "200000"));
+        for (int corrida = 0; corrida < 2; corrida++) {
+            medirRueda(temporizadores);
+        }
+        medirPlanificador(reservas);
+    }
+
+    private static void medirRueda(int cantidad) {
+        int ticks = 30 * 24 * 3600;
+        SplittableRandom azar = new SplittableRandom(7);
+        RuedaTemporal<Integer> rueda = new RuedaTemporal<>(0);
+        List<RuedaTemporal.Temporizador<Integer>> creados = new ArrayList<>(cantidad);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < cantidad; i++) {
+            creados.add(rueda.programar(azar.nextInt(ticks), i));
+        }
+        long t1 = System.nanoTime();
+        int canceladas = 0;
+        for (int i = 0; i < cantidad; i += 10) {
+            if (rueda.cancelar(creados.get(i))) canceladas++;
+        }
+        long t2 = System.nanoTime();
+        AtomicLong suma = new AtomicLong();
+        int vencidos = rueda.avanzarHasta(ticks, v -> suma.addAndGet(v));
+        long t3 = System.nanoTime();
+
+        // Alternativa: revisar todas las citas en cada tick
+        int[] vencimientos = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) vencimientos[i] = azar.nextInt(ticks);
+        long s0 = System.nanoTime();
+        int enEsteTick = 0;
+        for (int repeticion = 0; repeticion < 20; repeticion++) {
+            for (int v : vencimientos) if (v == repeticion) enEsteTick++;
+        }
+        double barridoNs = (System.nanoTime() - s0) / 20.0;
+
+        System.out.printf("rueda: %,d temporizadores en 30 días de ticks de 1 s%n", cantidad);
+        System.out.printf("  programar %.0f ns c/u, cancelar %.0f ns c/u (%,d), recorrer %.2f s: %,d vencidos, %.0f ns por vencido%n",
+                (t1 - t0) / (double) cantidad, (t2 - t1) / (double) Math.max(1, canceladas), canceladas,
+                (t3 - t2) / 1e9, vencidos, (t3 - t2) / (double) Math.max(1, vencidos));
+        System.out.printf("  barrido de todas las citas: %.2f ms por tick -> %,.0f s de CPU por día (%d)%n",
+                barridoNs / 1e6, barridoNs * 86_400 / 1e9, enEsteTick);
+    }
+
+    private static void medirPlanificador(int reservas) throws CitaException {
+        Hospital hospital = GeneradorDatos.generar(4, 10, 10_000);
+        List<Departamento> departamentos = hospital.getDepartamentos();
+        List<Paciente> pacientes = hospital.getPacientes();
+        LocalDateTime inicio = LocalDateTime.of(2030, 1, 1, 0, 0);
+        RelojManual reloj = new RelojManual(inicio.toInstant(ZoneOffset.UTC));
+
+        CitaManager manager = new CitaManager();
+        Map<EstadoCita, AtomicLong> cambios = new EnumMap<>(EstadoCita.class);
+        for (EstadoCita estado : EstadoCita.values()) cambios.put(estado, new AtomicLong());
+        PlanificadorVencimientos[] planificadorActual = new PlanificadorVencimientos[1];
+        PlanificadorVencimientos planificador = new PlanificadorVencimientos(manager, reloj,
+                Duration.ofSeconds(1), Duration.ofHours(24), Duration.ofMinutes(15), CitaManager.DURACION_PREDETERMINADA,
+                cita -> cambios.get(cita.getEstado()).incrementAndGet());
+        AtomicLong recordatorios = new AtomicLong();
+        SplittableRandom azar = new SplittableRandom(11);
+        // 7 de cada 10 pacientes se presentan; avisan su llegada después del recordatorio
+        OyenteRecordatorio llegada = cita -> {
+            recordatorios.incrementAndGet();
+            if (Math.floorMod(cita.getPaciente().getDni().hashCode(), 10) < 7) {
+                try {
+                    planificadorActual[0].registrarLlegada(cita);
+                } catch (CitaException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        planificadorActual[0] = planificador;
+        planificador.agregarOyente(llegada);
+        manager.agregarOyente(planificador);
+
+        List<Cita> citas = new ArrayList<>(reservas);
+        int canceladas = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < reservas; i++) {
+            Departamento departamento = departamentos.get(azar.nextInt(departamentos.size()));
+            try {
+                Cita cita = manager.programarCita(pacientes.get(azar.nextInt(pacientes.size())),
+                        departamento.getMedicos().get(azar.nextInt(departamento.getMedicos().size())),
+                        departamento.getSalas().get(azar.nextInt(departamento.getSalas().size())),
+                        inicio.plusHours(2).plusMinutes(60L * azar.nextInt(30 * 24)), BigDecimal.TEN);
+                citas.add(cita);
+                if (azar.nextInt(10) == 0) {
+                    manager.cambiarEstado(cita, EstadoCita.CANCELADA);
+                    canceladas++;
+                }
+            } catch (CitaException e) {
+                // conflicto: esperado con horarios al azar
+            }
+        }
+        long t1 = System.nanoTime();
+        System.out.printf("planificador: %,d citas (%,d canceladas) en %.2f s, %,d temporizadores%n",
+                citas.size(), canceladas, (t1 - t0) / 1e9, planificador.getPendientes());
+
+        // Mitad del recorrido, "reinicio" y el resto con un planificador nuevo
+        long procesados = avanzar(planificador, reloj, Duration.ofDays(15));
+        manager.quitarOyente(planificador);
+        planificador.close();
+        PlanificadorVencimientos restaurado = new PlanificadorVencimientos(manager, reloj,
+                Duration.ofSeconds(1), Duration.ofHours(24), Duration.ofMinutes(15), CitaManager.DURACION_PREDETERMINADA,
+                cita -> cambios.get(cita.getEstado()).incrementAndGet());
+        planificadorActual[0] = restaurado;
+        restaurado.agregarOyente(llegada);
+        manager.agregarOyente(restaurado);
+        long r0 = System.nanoTime();
+        int restauradas = restaurado.restaurar(citas);
+        System.out.printf("  restaurar: %,d citas abiertas en %.1f ms%n", restauradas, (System.nanoTime() - r0) / 1e6);
+        long t2 = System.nanoTime();
+        procesados += avanzar(restaurado, reloj, Duration.ofDays(16));
+        long t3 = System.nanoTime();
+        manager.quitarOyente(restaurado);
+        restaurado.close();
+
+        Map<EstadoCita, Integer> finales = new EnumMap<>(EstadoCita.class);
+        for (Cita cita : citas) finales.merge(cita.getEstado(), 1, Integer::sum);
+        System.out.printf("  %,d vencimientos procesados, %.0f ns c/u (segunda mitad), pendientes al final: %d%n",
+                procesados, (t3 - t2) / (double) Math.max(1, procesados), restaurado.getPendientes());
+        System.out.printf("  recordatorios=%,d en curso=%,d completadas=%,d ausentes=%,d%n", recordatorios.get(),
+                cambios.get(EstadoCita.EN_CURSO).get(),
+                cambios.get(EstadoCita.COMPLETADA).get(), cambios.get(EstadoCita.NO_ASISTIO).get());
+        System.out.println("  estados finales: " + finales);
+    }
+
+    // Avanza el reloj de a un minuto, como lo haría el hilo del planificador.
+    private static long avanzar(PlanificadorVencimientos planificador, RelojManual reloj, Duration total) {
+        long procesados = 0;
+        Instant fin = reloj.instant().plus(total);
+        while (reloj.instant().isBefore(fin)) {
+            reloj.ahora = reloj.ahora.plusSeconds(60);
+            procesados += planificador.avanzar(reloj.ahora);
+        }
+        return procesados;
+    }
+
+    private static final class RelojManual extends Clock {
+        private Instant ahora;
+
+        RelojManual(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
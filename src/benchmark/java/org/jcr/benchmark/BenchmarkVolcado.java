@@ -0,0 +1,195 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+import org.jcr.volcado.ExportadorVolcado;
+import org.jcr.volcado.RestauradorVolcado;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Vuelca un hospital completo de una base H2 a un archivo, lo restaura en otra base vacía y
+ * en una agenda en memoria, y compara cantidades y suma de costos con el origen.
+ *
+ *   --pacientes 50000
+ *   --citas 10          (por paciente)
+ */
+public class BenchmarkVolcado {
+
+    private static final int LOTE = 10_000;
+    private static final String[] DIAGNOSTICOS = {"Hipertensión arterial", "Diabetes tipo 2", "Asma bronquial",
+            "Hipotiroidismo", "Lumbalgia"};
+    private static final String[] OBSERVACIONES = {"", "Control de rutina", "Primera consulta", "Trae estudios"};
+    private static final EstadoCita[] ESTADOS = {EstadoCita.COMPLETADA, EstadoCita.COMPLETADA,
+            EstadoCita.NO_ASISTIO, EstadoCita.CANCELADA, EstadoCita.PROGRAMADA};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = PruebaCarga.opciones(args);
+        int pacientes = Integer.parseInt(opciones.getOrDefault("pacientes", "50000"));
+        int citasPorPaciente = Integer.parseInt(opciones.getOrDefault("citas", "10"));
+
+        Path archivo = Files.createTempFile("hospital", ".volcado");
+        EntityManagerFactory origen = GeneradorDatos.crearFabrica("volcado-origen",
+                Map.of("hibernate.jdbc.batch_size", "50"));
+        EntityManagerFactory destino = GeneradorDatos.crearFabrica("volcado-destino", Map.of());
+        try {
+            Hospital hospital = GeneradorDatos.generar(3, 4, 0);
+            GeneradorDatos.persistir(origen, hospital);
+            long t0 = System.nanoTime();
+            poblar(origen, hospital.getId(), pacientes, citasPorPaciente);
+            Totales esperados = totales(origen);
+            System.out.printf("origen: %s, poblado en %,.0f ms%n", esperados, (System.nanoTime() - t0) / 1e6);
+
+            EntityManager em = origen.createEntityManager();
+            long registros;
+            t0 = System.nanoTime();
+            try {
+                registros = ExportadorVolcado.exportar(em, hospital.getId(),
+                        new BufferedOutputStream(Files.newOutputStream(archivo), 64 * 1024));
+            } finally {
+                em.close();
+            }
+            long nanos = System.nanoTime() - t0;
+            long bytes = Files.size(archivo);
+            System.out.printf("exportar:        %,10.0f ms  %,d registros, %,.1f MB (%,.0f bytes por registro), "
+                            + "%,.0f registros/s%n", nanos / 1e6, registros, bytes / 1e6, (double) bytes / registros,
+                    registros / (nanos / 1e9));
+
+            t0 = System.nanoTime();
+            RestauradorVolcado.Resultado resultado;
+            try (InputStream entrada = abrir(archivo)) {
+                resultado = RestauradorVolcado.aBase(destino, entrada);
+            }
+            nanos = System.nanoTime() - t0;
+            Totales restaurados = totales(destino);
+            System.out.printf("restaurar en H2: %,10.0f ms  %,.0f registros/s, hospital nuevo %d%n", nanos / 1e6,
+                    registros / (nanos / 1e9), resultado.hospital());
+            verificar("H2", esperados, restaurados);
+
+            CitaManager agenda = new CitaManager();
+            t0 = System.nanoTime();
+            Hospital enMemoria;
+            try (InputStream entrada = abrir(archivo)) {
+                enMemoria = RestauradorVolcado.aMemoria(entrada, agenda::registrarCita);
+            }
+            nanos = System.nanoTime() - t0;
+            System.out.printf("restaurar en agenda: %,6.0f ms  %,.0f registros/s%n", nanos / 1e6,
+                    registros / (nanos / 1e9));
+            long diagnosticos = 0;
+            BigDecimal costo = BigDecimal.ZERO;
+            for (Paciente paciente : enMemoria.getPacientes()) {
+                diagnosticos += paciente.getHistoriaClinica().getDiagnosticos().size();
+                for (Cita cita : agenda.getCitasPorPaciente(paciente)) {
+                    costo = costo.add(cita.getCosto());
+                }
+            }
+            verificar("agenda", esperados, new Totales(enMemoria.getDepartamentos().size(),
+                    enMemoria.getDepartamentos().stream().mapToLong(d -> d.getSalas().size()).sum(),
+                    enMemoria.getDepartamentos().stream().mapToLong(d -> d.getMedicos().size()).sum(),
+                    enMemoria.getPacientes().size(), diagnosticos, agenda.getCantidadCitas(), costo));
+
+            // Desde memoria los ids se renumeran, pero todos los campos de largo fijo ocupan lo mismo
+            t0 = System.nanoTime();
+            long reexportados = ExportadorVolcado.exportar(enMemoria, agenda,
+                    new BufferedOutputStream(Files.newOutputStream(archivo), 64 * 1024));
+            nanos = System.nanoTime() - t0;
+            System.out.printf("exportar desde agenda: %,4.0f ms  %,d registros, %,d bytes (%s al original)%n",
+                    nanos / 1e6, reexportados, Files.size(archivo), Files.size(archivo) == bytes ? "igual" : "distinto");
+        } finally {
+            origen.close();
+            destino.close();
+            Files.deleteIfExists(archivo);
+        }
+    }
+
+    private static InputStream abrir(Path archivo) throws IOException {
+        return new BufferedInputStream(Files.newInputStream(archivo), 64 * 1024);
+    }
+
+    // Pacientes con historia y citas repartidas entre todos los médicos y salas, por lotes.
+    private static void poblar(EntityManagerFactory emf, Long hospitalId, int pacientes, int citasPorPaciente) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Long> medicos = em.createQuery("SELECT m.id FROM Medico m ORDER BY m.id", Long.class).getResultList();
+            List<Long> salas = em.createQuery("SELECT s.id FROM Sala s ORDER BY s.id", Long.class).getResultList();
+            LocalDateTime inicio = LocalDateTime.of(2030, 1, 7, 8, 0);
+            long n = 0;
+            em.getTransaction().begin();
+            Hospital hospital = em.getReference(Hospital.class, hospitalId);
+            for (int i = 0; i < pacientes; i++) {
+                Paciente paciente = GeneradorDatos.paciente(i);
+                paciente.setHospital(hospital);
+                HistoriaClinica historia = paciente.getHistoriaClinica();
+                historia.agregarDiagnostico(DIAGNOSTICOS[i % DIAGNOSTICOS.length]);
+                if (i % 3 == 0) historia.agregarTratamiento("Control trimestral");
+                if (i % 7 == 0) historia.agregarAlergia("Penicilina");
+                em.persist(paciente);
+                for (int k = 0; k < citasPorPaciente; k++, n++) {
+                    Cita cita = new Cita(paciente, em.getReference(Medico.class, medicos.get((int) (n % medicos.size()))),
+                            em.getReference(Sala.class, salas.get((int) (n % salas.size()))),
+                            inicio.plusMinutes(15 * n), BigDecimal.valueOf(100_000 + n % 2_500 * 37, 2));
+                    cita.setEstado(ESTADOS[(int) (n % ESTADOS.length)]);
+                    cita.setObservaciones(OBSERVACIONES[(int) (n % OBSERVACIONES.length)]);
+                    em.persist(cita);
+                }
+                if ((i + 1) % (LOTE / Math.max(1, citasPorPaciente)) == 0) {
+                    em.getTransaction().commit();
+                    em.clear();
+                    em.getTransaction().begin();
+                    hospital = em.getReference(Hospital.class, hospitalId);
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    private static Totales totales(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            BigDecimal costo = em.createQuery("SELECT SUM(c.costo) FROM Cita c", BigDecimal.class).getSingleResult();
+            return new Totales(contar(em, "SELECT COUNT(d) FROM Departamento d"),
+                    contar(em, "SELECT COUNT(s) FROM Sala s"), contar(em, "SELECT COUNT(m) FROM Medico m"),
+                    contar(em, "SELECT COUNT(p) FROM Paciente p"),
+                    contar(em, "SELECT COUNT(d) FROM HistoriaClinica h JOIN h.diagnosticos d"),
+                    contar(em, "SELECT COUNT(c) FROM Cita c"), costo != null ? costo : BigDecimal.ZERO);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long contar(EntityManager em, String jpql) {
+        return em.createQuery(jpql, Long.class).getSingleResult();
+    }
+
+    private static void verificar(String destino, Totales esperados, Totales obtenidos) {
+        if (!esperados.equals(obtenidos)) {
+            throw new IllegalStateException("El volcado restaurado en " + destino + " no coincide: " + obtenidos
+                    + " en lugar de " + esperados);
+        }
+        System.out.println("  " + destino + " coincide con el origen: " + obtenidos);
+    }
+
+    private record Totales(long departamentos, long salas, long medicos, long pacientes, long diagnosticos,
+                           long citas, BigDecimal costo) {
+    }
+}
@@ -0,0 +1,81 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.TipoSangre;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+// Datos sintéticos y bases H2 en memoria para las pruebas de rendimiento.
+// Los datos son válidos por construcción, por eso se usan las fábricas sinValidar.
+public final class GeneradorDatos {
+
+    public static final int DNI_BASE_PACIENTES = 10_000_000;
+    public static final int DNI_BASE_MEDICOS = 90_000_000;
+
+    private static final String[] NOMBRES = {"María", "Juan", "Sofía", "Carlos", "Lucía", "Jorge", "Ana", "Pedro"};
+    private static final String[] APELLIDOS = {"López", "Pérez", "García", "González", "Martínez", "Suárez",
+            "Romero", "Fernández", "Díaz", "Álvarez"};
+    private static final TipoSangre[] TIPOS = TipoSangre.values();
+
+    private GeneradorDatos() {
+    }
+
+    public static EntityManagerFactory crearFabrica(String base, Map<String, Object> propiedadesExtra) {
+        Map<String, Object> propiedades = new HashMap<>();
+        propiedades.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:" + base + ";DB_CLOSE_DELAY=-1");
+        propiedades.put("hibernate.hbm2ddl.auto", "create-drop");
+        propiedades.put("hibernate.show_sql", "false");
+        propiedades.put("hibernate.format_sql", "false");
+        propiedades.putAll(propiedadesExtra);
+        return Persistence.createEntityManagerFactory("hospital-persistence-unit", propiedades);
+    }
+
+    public static Hospital generar(int salasPorDepartamento, int medicosPorDepartamento, int pacientes) {
+        Hospital hospital = new Hospital("Hospital de Pruebas", "Av. Siempre Viva 742", "011-0000-0000");
+        int medico = 0;
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            Departamento departamento = new Departamento(especialidad.getDescripcion(), especialidad);
+            hospital.agregarDepartamento(departamento);
+            for (int s = 0; s < salasPorDepartamento; s++) {
+                departamento.crearSala(especialidad.name().substring(0, 4) + "-" + (100 + s), "Consultorio");
+            }
+            for (int m = 0; m < medicosPorDepartamento; m++, medico++) {
+                departamento.agregarMedico(Medico.sinValidar(NOMBRES[medico % NOMBRES.length],
+                        APELLIDOS[medico % APELLIDOS.length], String.valueOf(DNI_BASE_MEDICOS + medico),
+                        LocalDate.of(1960 + medico % 30, 1 + medico % 12, 1 + medico % 28),
+                        TIPOS[medico % TIPOS.length], "MP-" + (10_000 + medico), especialidad));
+            }
+        }
+        for (int i = 0; i < pacientes; i++) {
+            hospital.agregarPaciente(paciente(i));
+        }
+        return hospital;
+    }
+
+    public static Paciente paciente(int i) {
+        return Paciente.sinValidar(NOMBRES[i % NOMBRES.length], APELLIDOS[(i / NOMBRES.length) % APELLIDOS.length],
+                String.valueOf(DNI_BASE_PACIENTES + i), LocalDate.of(1930 + i % 90, 1 + i % 12, 1 + i % 28),
+                TIPOS[i % TIPOS.length], "011-" + (1000 + i % 9000) + "-0000", "Calle " + (i % 500) + " " + i);
+    }
+
+    public static void persistir(EntityManagerFactory emf, Hospital hospital) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.persist(hospital);
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+    }
+}
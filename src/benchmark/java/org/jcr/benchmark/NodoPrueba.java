@@ -0,0 +1,45 @@
+package org.jcr.benchmark;
+
+import org.jcr.entidades.Hospital;
+import org.jcr.federacion.AnilloConsistente;
+import org.jcr.federacion.DireccionNodo;
+import org.jcr.federacion.NodoFederado;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Proceso de nodo para ArnesFederacion: genera los hospitales que el anillo le asigna
+ * (mismos pacientes en todos, para tener pacientes compartidos) y atiende hasta que se
+ * cierra su entrada estándar.
+ *
+ *   NodoPrueba <yo> <nodo,nodo,...> <hospitales> <pacientes>
+ */
+public class NodoPrueba {
+
+    public static void main(String[] args) throws Exception {
+        DireccionNodo yo = DireccionNodo.parse(args[0]);
+        List<DireccionNodo> nodos = Arrays.stream(args[1].split(",")).map(DireccionNodo::parse).toList();
+        int hospitales = Integer.parseInt(args[2]);
+        int pacientes = Integer.parseInt(args[3]);
+
+        AnilloConsistente<DireccionNodo> anillo = new AnilloConsistente<>();
+        nodos.forEach(n -> anillo.agregar(n.id(), n));
+
+        try (NodoFederado nodo = new NodoFederado(yo, nodos)) {
+            for (int h = 0; h < hospitales; h++) {
+                String nombre = ArnesFederacion.nombreHospital(h);
+                if (anillo.nodoPara(nombre).id().equals(yo.id())) {
+                    Hospital hospital = GeneradorDatos.generar(2, 3, pacientes);
+                    hospital.setNombre(nombre);
+                    nodo.alojar(hospital);
+                }
+            }
+            nodo.iniciar();
+            System.out.println("Nodo " + yo + " alojando " + nodo.getHospitales());
+            while (System.in.read() != -1) {
+                // el arnés cierra stdin para detener el nodo
+            }
+        }
+    }
+}
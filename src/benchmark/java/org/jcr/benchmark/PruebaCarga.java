@@ -0,0 +1,188 @@
+package org.jcr.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.metricas.HistogramaLatencia;
+import org.jcr.servidor.ServidorHospital;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Prueba de carga del servidor HTTP. Sin --url levanta un ServidorHospital en proceso
+ * sobre una base H2 en memoria con datos generados.
+ *
+ *   --url http://127.0.0.1:8080   servidor externo
+ *   --clientes 1000,2000,5000,10000
+ *   --segundos 10
+ *   --pacientes 5000
+ *   --solicitudes 2000             solicitudes en curso antes de contestar 503
+ */
+public class PruebaCarga {
+
+    private static final int OK = 0, CONFLICTO = 1, SATURADO = 2, ERROR = 3;
+
+    private final HttpClient cliente;
+    private final String base;
+    private final List<String> pacientes = new ArrayList<>();
+    private final Map<String, List<String>> medicosPorEspecialidad = new HashMap<>();
+    private final Map<String, List<String>> salasPorEspecialidad = new HashMap<>();
+    private final List<String> especialidades = new ArrayList<>();
+
+    PruebaCarga(String base, ExecutorService ejecutor) {
+        this.base = base;
+        this.cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(ejecutor)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = opciones(args);
+        int[] niveles = Arrays.stream(opciones.getOrDefault("clientes", "1000,2000,5000,10000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int segundos = Integer.parseInt(opciones.getOrDefault("segundos", "10"));
+
+        EntityManagerFactory emf = null;
+        ServidorHospital servidor = null;
+        String url = opciones.get("url");
+        if (url == null) {
+            int conexiones = 16;
+            emf = GeneradorDatos.crearFabrica("carga", ServidorHospital.propiedadesPersistencia(conexiones));
+            GeneradorDatos.persistir(emf, GeneradorDatos.generar(4, 5,
+                    Integer.parseInt(opciones.getOrDefault("pacientes", "5000"))));
+            servidor = new ServidorHospital(emf,
+                    Integer.parseInt(opciones.getOrDefault("solicitudes", "2000")), conexiones);
+            servidor.iniciar(0);
+            url = "http://127.0.0.1:" + servidor.getPuerto();
+        }
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            PruebaCarga prueba = new PruebaCarga(url, ejecutor);
+            prueba.leerCatalogo();
+            System.out.printf("%-9s %10s %10s %9s %9s %9s %9s %9s %9s%n",
+                    "clientes", "solicitudes", "sol/s", "p50 ms", "p99 ms", "max ms", "409", "503", "errores");
+            for (int clientes : niveles) {
+                prueba.ejecutar(clientes, segundos);
+            }
+        } finally {
+            ejecutor.shutdownNow();
+            if (servidor != null) servidor.detener();
+            if (emf != null) emf.close();
+        }
+    }
+
+    void leerCatalogo() throws Exception {
+        String cuerpo = cliente.send(HttpRequest.newBuilder(URI.create(base + "/catalogo")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        for (String linea : cuerpo.split("\n")) {
+            String[] campos = linea.split(",");
+            switch (campos[0]) {
+                case "paciente" -> pacientes.add(campos[1]);
+                case "medico" -> medicosPorEspecialidad.computeIfAbsent(campos[2], k -> new ArrayList<>()).add(campos[1]);
+                case "sala" -> salasPorEspecialidad.computeIfAbsent(campos[2], k -> new ArrayList<>()).add(campos[1]);
+                default -> {
+                }
+            }
+        }
+        for (String especialidad : medicosPorEspecialidad.keySet()) {
+            if (salasPorEspecialidad.containsKey(especialidad)) {
+                especialidades.add(especialidad);
+            }
+        }
+        if (pacientes.isEmpty() || especialidades.isEmpty()) {
+            throw new IllegalStateException("El catálogo del servidor está vacío.");
+        }
+    }
+
+    void ejecutar(int clientes, int segundos) throws InterruptedException {
+        HistogramaLatencia latencias = new HistogramaLatencia("carga-" + clientes);
+        AtomicLongArray resultados = new AtomicLongArray(4);
+        CountDownLatch terminados = new CountDownLatch(clientes);
+        long inicio = System.nanoTime();
+        long fin = inicio + Duration.ofSeconds(segundos).toNanos();
+        for (int i = 0; i < clientes; i++) {
+            siguiente(fin, latencias, resultados, terminados);
+        }
+        terminados.await();
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("%-9d %10d %10.0f %9.2f %9.2f %9.2f %9d %9d %9d%n",
+                clientes, latencias.getConteo(), latencias.getConteo() / transcurrido,
+                latencias.percentil(50) / 1e6, latencias.percentil(99) / 1e6, latencias.getMaximo() / 1e6,
+                resultados.get(CONFLICTO), resultados.get(SATURADO), resultados.get(ERROR));
+    }
+
+    private void siguiente(long fin, HistogramaLatencia latencias, AtomicLongArray resultados,
+                           CountDownLatch terminados) {
+        if (System.nanoTime() >= fin) {
+            terminados.countDown();
+            return;
+        }
+        long inicio = System.nanoTime();
+        cliente.sendAsync(solicitudAleatoria(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((respuesta, error) -> {
+                    latencias.registrarDesde(inicio);
+                    resultados.incrementAndGet(clasificar(respuesta, error));
+                    siguiente(fin, latencias, resultados, terminados);
+                });
+    }
+
+    private static int clasificar(HttpResponse<?> respuesta, Throwable error) {
+        if (error != null) return ERROR;
+        int estado = respuesta.statusCode();
+        if (estado < 300) return OK;
+        if (estado == 409) return CONFLICTO;
+        if (estado == 503) return SATURADO;
+        return ERROR;
+    }
+
+    // 80% citas de un paciente (memoria), 10% médicos por especialidad (JDBC), 10% reservas.
+    private HttpRequest solicitudAleatoria() {
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        int tipo = azar.nextInt(10);
+        String especialidad = especialidades.get(azar.nextInt(especialidades.size()));
+        if (tipo < 8) {
+            String dni = pacientes.get(azar.nextInt(pacientes.size()));
+            return HttpRequest.newBuilder(URI.create(base + "/pacientes/" + dni + "/citas")).build();
+        }
+        if (tipo == 8) {
+            return HttpRequest.newBuilder(URI.create(base + "/medicos?especialidad=" + especialidad)).build();
+        }
+        List<String> medicos = medicosPorEspecialidad.get(especialidad);
+        List<String> salas = salasPorEspecialidad.get(especialidad);
+        LocalDateTime fecha = LocalDateTime.now().plusDays(1 + azar.nextInt(365))
+                .withHour(8 + azar.nextInt(10)).withMinute(0).withSecond(0).withNano(0);
+        String form = "paciente=" + pacientes.get(azar.nextInt(pacientes.size()))
+                + "&medico=" + medicos.get(azar.nextInt(medicos.size()))
+                + "&sala=" + salas.get(azar.nextInt(salas.size()))
+                + "&fechaHora=" + fecha
+                + "&costo=" + (10_000 + azar.nextInt(10_000));
+        return HttpRequest.newBuilder(URI.create(base + "/citas"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    static Map<String, String> opciones(String[] args) {
+        Map<String, String> opciones = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            opciones.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return opciones;
+    }
+}
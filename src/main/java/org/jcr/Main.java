@@ -2,9 +2,10 @@ package org.jcr;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
 import jakarta.persistence.TypedQuery;
 import org.jcr.entidades.*;
+import org.jcr.metricas.Metricas;
+import org.jcr.persistencia.ArranqueRapido;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -14,7 +15,8 @@ import java.util.List;
 public class Main {
 
     public static void main(String[] args) {
-        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hospital-persistence-unit");
+        EntityManagerFactory emf = ArranqueRapido.crearFabrica(Metricas.propiedadesHibernate());
+        Metricas.iniciar(emf);
         EntityManager em = emf.createEntityManager();
 
         try {
@@ -26,6 +28,7 @@ public class Main {
             e.printStackTrace();
             if (em.getTransaction().isActive()) em.getTransaction().rollback();
         } finally {
+            Metricas.detener();
             em.close();
             emf.close();
         }
@@ -43,30 +46,34 @@ public class Main {
 
         //Hospitales
         TypedQuery<Hospital> q1 = em.createQuery("SELECT h FROM Hospital h", Hospital.class);
-        q1.getResultList().forEach(h -> System.out.println("Hospital: " + h.getNombre()));
+        Metricas.medirConsulta("hospitales", q1::getResultList).forEach(h -> System.out.println("Hospital: " + h.getNombre()));
 
         // Médicos por especialidad
         TypedQuery<Medico> q2 = em.createQuery(
                 "SELECT m FROM Medico m WHERE m.especialidad = :esp", Medico.class);
         q2.setParameter("esp", EspecialidadMedica.CARDIOLOGIA);
-        q2.getResultList().forEach(m -> System.out.println("Cardiólogo: " + m.getNombreCompleto()));
+        Metricas.medirConsulta("medicosPorEspecialidad", q2::getResultList).forEach(m -> System.out.println("Cardiólogo: " + m.getNombreCompleto()));
 
         // Citas ordenadas por fecha
         TypedQuery<Cita> q3 = em.createQuery("SELECT c FROM Cita c ORDER BY c.fechaHora", Cita.class);
-        q3.getResultList().forEach(c ->
+        List<Cita> citasOrdenadas = Metricas.medirConsulta("citasPorFecha", q3::getResultList);
+        citasOrdenadas.forEach(c ->
                 System.out.println("Cita: " + c.getPaciente().getNombreCompleto() +
                         " con " + c.getMedico().getNombreCompleto() + " el " + c.getFechaHora()));
 
         // Actualizar una cita a COMPLETADA
-        Cita citaActualizable = q3.getResultList().get(0);
+        Cita citaActualizable = citasOrdenadas.get(0);
         citaActualizable.setEstado(EstadoCita.COMPLETADA);
         citaActualizable.setObservaciones("Consulta completada sin complicaciones.");
         em.merge(citaActualizable);
 
         // Estadísticas (COUNT)
-        Long totalPacientes = em.createQuery("SELECT COUNT(p) FROM Paciente p", Long.class).getSingleResult();
-        Long totalCitas = em.createQuery("SELECT COUNT(c) FROM Cita c", Long.class).getSingleResult();
-        Long totalMedicos = em.createQuery("SELECT COUNT(m) FROM Medico m", Long.class).getSingleResult();
+        Long totalPacientes = Metricas.medirConsulta("contarPacientes", () ->
+                em.createQuery("SELECT COUNT(p) FROM Paciente p", Long.class).getSingleResult());
+        Long totalCitas = Metricas.medirConsulta("contarCitas", () ->
+                em.createQuery("SELECT COUNT(c) FROM Cita c", Long.class).getSingleResult());
+        Long totalMedicos = Metricas.medirConsulta("contarMedicos", () ->
+                em.createQuery("SELECT COUNT(m) FROM Medico m", Long.class).getSingleResult());
 
         System.out.println("\n--- ESTADÍSTICAS ---");
         System.out.println("Pacientes registrados: " + totalPacientes);
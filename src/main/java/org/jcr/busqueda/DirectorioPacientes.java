@@ -0,0 +1,188 @@
+package org.jcr.busqueda;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.jcr.entidades.Paciente;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * Directorio de pacientes en memoria para recepción:
+ *   - DNI -> ficha en un hash abierto, con el DNI como texto: "01234567" y "1234567" son
+ *     dos pacientes (Persona.esDniValido acepta los dos),
+ *   - "apellido nombre" y "nombre apellido" normalizados en mapas ordenados para autocompletar,
+ *   - fecha de nacimiento ordenada para filtrar por rango de edad.
+ *
+ * cargar() trae sólo los pacientes con id mayor al último leído, de a una página por vez,
+ * así puede llamarse periódicamente. Con escucharCambios() se actualiza además cuando se
+ * confirma el insert/update/delete de un Paciente (IntegradorDirectorio), y con
+ * hospitalRestaurado() para los pacientes que entran por JDBC sin pasar por Hibernate
+ * (RestauradorVolcado).
+ */
+public class DirectorioPacientes {
+
+    private static final int TAMANIO_PAGINA = 5_000;
+    private static final List<DirectorioPacientes> ESCUCHANDO = new CopyOnWriteArrayList<>();
+
+    // Día de nacimiento y DNI; el DNI vacío es la cota inferior de un día.
+    private record ClaveNacimiento(long dia, String dni) {
+        static final Comparator<ClaveNacimiento> ORDEN =
+                Comparator.comparingLong(ClaveNacimiento::dia).thenComparing(ClaveNacimiento::dni);
+    }
+
+    private final MapaDni porDni = new MapaDni();
+    private final ConcurrentSkipListMap<String, FichaPaciente> porApellido = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, FichaPaciente> porNombre = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<ClaveNacimiento, FichaPaciente> porNacimiento =
+            new ConcurrentSkipListMap<>(ClaveNacimiento.ORDEN);
+    private volatile long ultimoIdCargado;
+
+    public void escucharCambios() {
+        ESCUCHANDO.add(this);
+    }
+
+    public void dejarDeEscuchar() {
+        ESCUCHANDO.remove(this);
+    }
+
+    // Desde IntegradorDirectorio, después del commit; dniAnterior sólo si el UPDATE lo cambió.
+    static void pacienteGuardado(Paciente paciente, String dniAnterior) {
+        FichaPaciente ficha = new FichaPaciente(paciente.getId() != null ? paciente.getId() : 0, paciente.getDni(),
+                paciente.getNombre(), paciente.getApellido(), paciente.getFechaNacimiento());
+        for (DirectorioPacientes directorio : ESCUCHANDO) {
+            if (dniAnterior != null && !dniAnterior.equals(ficha.dni())) {
+                directorio.quitar(dniAnterior);
+            }
+            directorio.agregar(ficha);
+        }
+    }
+
+    static void pacienteEliminado(String dni) {
+        for (DirectorioPacientes directorio : ESCUCHANDO) {
+            directorio.quitar(dni);
+        }
+    }
+
+    // Carga en los directorios que escuchan cambios los pacientes de un hospital recién restaurado.
+    public static void hospitalRestaurado(EntityManager em, long hospital) {
+        for (DirectorioPacientes directorio : ESCUCHANDO) {
+            directorio.cargar(em, hospital);
+        }
+    }
+
+    public int cargar(EntityManager em) {
+        return cargar(em, null);
+    }
+
+    // Con hospital, sólo sus pacientes y sin mover ultimoIdCargado.
+    private int cargar(EntityManager em, Long hospital) {
+        int cargados = 0;
+        long ultimo = hospital == null ? ultimoIdCargado : 0;
+        List<Object[]> pagina;
+        do {
+            TypedQuery<Object[]> consulta = em.createQuery("SELECT p.id, p.dni, p.nombre, p.apellido, "
+                    + "p.fechaNacimiento FROM Paciente p WHERE p.id > :ultimo"
+                    + (hospital != null ? " AND p.hospital.id = :hospital" : "") + " ORDER BY p.id", Object[].class);
+            if (hospital != null) {
+                consulta.setParameter("hospital", hospital);
+            }
+            pagina = consulta.setParameter("ultimo", ultimo)
+                    .setMaxResults(TAMANIO_PAGINA)
+                    .getResultList();
+            for (Object[] fila : pagina) {
+                long id = (Long) fila[0];
+                agregar(new FichaPaciente(id, (String) fila[1], (String) fila[2], (String) fila[3],
+                        (LocalDate) fila[4]));
+                ultimo = id;
+                if (hospital == null) {
+                    ultimoIdCargado = Math.max(ultimoIdCargado, id);
+                }
+            }
+            cargados += pagina.size();
+        } while (pagina.size() == TAMANIO_PAGINA);
+        return cargados;
+    }
+
+    public synchronized void agregar(FichaPaciente ficha) {
+        quitar(ficha.dni());
+        porDni.put(ficha);
+        porApellido.put(clave(ficha.apellido(), ficha.nombre(), ficha.dni()), ficha);
+        porNombre.put(clave(ficha.nombre(), ficha.apellido(), ficha.dni()), ficha);
+        porNacimiento.put(claveNacimiento(ficha.fechaNacimiento(), ficha.dni()), ficha);
+    }
+
+    public synchronized void quitar(String dni) {
+        FichaPaciente anterior = porDni.remove(dni);
+        if (anterior != null) {
+            porApellido.remove(clave(anterior.apellido(), anterior.nombre(), dni));
+            porNombre.remove(clave(anterior.nombre(), anterior.apellido(), dni));
+            porNacimiento.remove(claveNacimiento(anterior.fechaNacimiento(), dni));
+        }
+    }
+
+    public FichaPaciente porDni(String dni) {
+        return porDni.get(dni);
+    }
+
+    // "lop" encuentra López, María; "maria lo" encuentra María López.
+    public List<FichaPaciente> autocompletar(String prefijo, int maximo) {
+        String normalizado = TextoNormalizado.normalizarFrase(prefijo);
+        List<FichaPaciente> resultado = new ArrayList<>(maximo);
+        agregarPrefijo(porApellido, normalizado, resultado, maximo);
+        agregarPrefijo(porNombre, normalizado, resultado, maximo);
+        return resultado;
+    }
+
+    public List<FichaPaciente> porRangoDeEdad(int edadMinima, int edadMaxima, int maximo) {
+        LocalDate hoy = LocalDate.now();
+        // Edad en [min, max] <=> nacimiento en (hoy - (max + 1) años, hoy - min años]
+        LocalDate desde = hoy.minusYears(edadMaxima + 1L).plusDays(1);
+        LocalDate hasta = hoy.minusYears(edadMinima);
+        List<FichaPaciente> resultado = new ArrayList<>(Math.min(maximo, 1024));
+        for (FichaPaciente ficha : porNacimiento.subMap(claveNacimiento(desde, ""), true,
+                claveNacimiento(hasta.plusDays(1), ""), false).values()) {
+            if (resultado.size() == maximo) {
+                break;
+            }
+            resultado.add(ficha);
+        }
+        return resultado;
+    }
+
+    public int cantidadEnRangoDeEdad(int edadMinima, int edadMaxima) {
+        LocalDate hoy = LocalDate.now();
+        return porNacimiento.subMap(claveNacimiento(hoy.minusYears(edadMaxima + 1L).plusDays(1), ""), true,
+                claveNacimiento(hoy.minusYears(edadMinima).plusDays(1), ""), false).size();
+    }
+
+    public int size() {
+        return porDni.size();
+    }
+
+    private static void agregarPrefijo(ConcurrentSkipListMap<String, FichaPaciente> indice, String prefijo,
+                                       List<FichaPaciente> resultado, int maximo) {
+        for (Map.Entry<String, FichaPaciente> entrada : indice.tailMap(prefijo, true).entrySet()) {
+            if (resultado.size() >= maximo || !entrada.getKey().startsWith(prefijo)) {
+                return;
+            }
+            if (!resultado.contains(entrada.getValue())) {
+                resultado.add(entrada.getValue());
+            }
+        }
+    }
+
+    private static String clave(String primero, String segundo, String dni) {
+        return TextoNormalizado.normalizarFrase(primero).trim() + " "
+                + TextoNormalizado.normalizarFrase(segundo).trim() + "\u0000" + dni;
+    }
+
+    private static ClaveNacimiento claveNacimiento(LocalDate fecha, String dni) {
+        return new ClaveNacimiento(fecha.toEpochDay(), dni);
+    }
+}
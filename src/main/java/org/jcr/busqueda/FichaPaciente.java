@@ -0,0 +1,14 @@
+package org.jcr.busqueda;
+
+import java.time.LocalDate;
+
+public record FichaPaciente(long id, String dni, String nombre, String apellido, LocalDate fechaNacimiento) {
+
+    public String getNombreCompleto() {
+        return nombre + " " + apellido;
+    }
+
+    public int edad(LocalDate hoy) {
+        return fechaNacimiento.until(hoy).getYears();
+    }
+}
@@ -0,0 +1,265 @@
+package org.jcr.busqueda;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.OyenteHistoriaClinica;
+import org.jcr.entidades.TipoRegistroClinico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/*
+ * Índice invertido en memoria sobre diagnósticos, tratamientos y alergias.
+ * Término normalizado (sin acentos ni mayúsculas) -> DNIs de los pacientes, por tipo de registro.
+ *
+ *   indice.buscar(ALERGIA, "penicilina")      todos los alérgicos a la penicilina
+ *   indice.buscar(DIAGNOSTICO, "hipert")      el último término se trata como prefijo
+ *
+ * Los DNIs se guardan tal cual (con sus ceros a la izquierda): cada uno recibe un número
+ * interno denso y las listas de posteo son de esos números. Los resultados salen en orden
+ * de alta del paciente en el índice.
+ *
+ * Con escucharCambios() los registros de HistoriaClinica.agregarDiagnostico/Tratamiento/
+ * Alergia quedan pendientes y entran al índice recién cuando se confirma la transacción que
+ * los guarda (IntegradorIndice): un rollback no deja resultados fantasma. Para historias que
+ * nunca se persisten, usar indexar(); para las que entran por JDBC (RestauradorVolcado),
+ * hospitalRestaurado().
+ */
+public class IndiceClinico implements OyenteHistoriaClinica {
+
+    private static final int[] VACIO = new int[0];
+    private static final List<IndiceClinico> ESCUCHANDO = new CopyOnWriteArrayList<>();
+
+    private record Registro(TipoRegistroClinico tipo, String dni, String texto) {
+    }
+
+    private final Map<TipoRegistroClinico, ConcurrentSkipListMap<String, ListaPosteo>> indices =
+            new EnumMap<>(TipoRegistroClinico.class);
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> dnis = new ArrayList<>();
+    // Débil: la historia de una transacción abandonada se lleva sus pendientes
+    private final Map<HistoriaClinica, List<Registro>> pendientes = new WeakHashMap<>();
+
+    public IndiceClinico() {
+        for (TipoRegistroClinico tipo : TipoRegistroClinico.values()) {
+            indices.put(tipo, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public void escucharCambios() {
+        HistoriaClinica.agregarOyente(this);
+        ESCUCHANDO.add(this);
+    }
+
+    public void dejarDeEscuchar() {
+        HistoriaClinica.quitarOyente(this);
+        ESCUCHANDO.remove(this);
+        synchronized (pendientes) {
+            pendientes.clear();
+        }
+    }
+
+    // Indexa en los índices que escuchan cambios los registros de un hospital recién restaurado.
+    public static void hospitalRestaurado(EntityManager em, long hospital) {
+        for (IndiceClinico indice : ESCUCHANDO) {
+            indice.cargar(em, hospital);
+        }
+    }
+
+    public void cargar(EntityManager em) {
+        cargar(em, (Long) null);
+    }
+
+    private void cargar(EntityManager em, Long hospital) {
+        cargar(em, TipoRegistroClinico.DIAGNOSTICO, "diagnosticos", hospital);
+        cargar(em, TipoRegistroClinico.TRATAMIENTO, "tratamientos", hospital);
+        cargar(em, TipoRegistroClinico.ALERGIA, "alergias", hospital);
+    }
+
+    private void cargar(EntityManager em, TipoRegistroClinico tipo, String coleccion, Long hospital) {
+        TypedQuery<Object[]> consulta = em.createQuery(
+                "SELECT p.dni, r FROM HistoriaClinica h JOIN h.paciente p JOIN h." + coleccion + " r"
+                        + (hospital != null ? " WHERE p.hospital.id = :hospital" : ""), Object[].class);
+        if (hospital != null) {
+            consulta.setParameter("hospital", hospital);
+        }
+        boolean transaccionPropia = !em.getTransaction().isActive();
+        if (transaccionPropia) em.getTransaction().begin();
+        try (Stream<Object[]> filas = consulta.getResultStream()) {
+            filas.forEach(fila -> indexar(tipo, (String) fila[0], (String) fila[1]));
+        } finally {
+            if (transaccionPropia) em.getTransaction().commit();
+        }
+    }
+
+    // Queda pendiente hasta que se confirme la transacción que guarda la historia.
+    @Override
+    public void registroAgregado(HistoriaClinica historia, TipoRegistroClinico tipo, String texto) {
+        if (historia.getPaciente() != null) {
+            synchronized (pendientes) {
+                pendientes.computeIfAbsent(historia, h -> new ArrayList<>())
+                        .add(new Registro(tipo, historia.getPaciente().getDni(), texto));
+            }
+        }
+    }
+
+    // Desde IntegradorIndice, después del commit o del rollback de la historia.
+    static void historiaConfirmada(HistoriaClinica historia, boolean confirmada) {
+        for (IndiceClinico indice : ESCUCHANDO) {
+            List<Registro> registros;
+            synchronized (indice.pendientes) {
+                registros = indice.pendientes.remove(historia);
+            }
+            if (registros != null && confirmada) {
+                registros.forEach(r -> indice.indexar(r.tipo(), r.dni(), r.texto()));
+            }
+        }
+    }
+
+    public void indexar(TipoRegistroClinico tipo, String dni, String texto) {
+        ConcurrentSkipListMap<String, ListaPosteo> indice = indices.get(tipo);
+        int id = id(dni);
+        for (String termino : TextoNormalizado.terminos(texto)) {
+            indice.computeIfAbsent(termino, t -> new ListaPosteo()).agregar(id);
+        }
+    }
+
+    private synchronized int id(String dni) {
+        Integer id = ids.get(dni);
+        if (id == null) {
+            id = dnis.size();
+            ids.put(dni, id);
+            dnis.add(dni);
+        }
+        return id;
+    }
+
+    private synchronized List<String> aDnis(int[] ids) {
+        String[] resultado = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            resultado[i] = dnis.get(ids[i]);
+        }
+        return List.of(resultado);
+    }
+
+    public List<String> buscarTermino(TipoRegistroClinico tipo, String termino) {
+        return aDnis(idsTermino(tipo, TextoNormalizado.normalizar(termino)));
+    }
+
+    public List<String> buscarPrefijo(TipoRegistroClinico tipo, String prefijo) {
+        return aDnis(idsPrefijo(tipo, TextoNormalizado.normalizar(prefijo)));
+    }
+
+    // Todos los términos deben aparecer; el último admite coincidencia por prefijo.
+    public List<String> buscar(TipoRegistroClinico tipo, String consulta) {
+        List<String> terminos = TextoNormalizado.terminos(consulta);
+        if (terminos.isEmpty()) {
+            return List.of();
+        }
+        List<int[]> listas = new ArrayList<>(terminos.size());
+        for (int i = 0; i < terminos.size() - 1; i++) {
+            listas.add(idsTermino(tipo, terminos.get(i)));
+        }
+        listas.add(idsPrefijo(tipo, terminos.get(terminos.size() - 1)));
+        listas.sort((a, b) -> Integer.compare(a.length, b.length));
+
+        int[] resultado = listas.get(0);
+        for (int i = 1; i < listas.size() && resultado.length > 0; i++) {
+            resultado = interseccion(resultado, listas.get(i));
+        }
+        return aDnis(resultado);
+    }
+
+    private int[] idsTermino(TipoRegistroClinico tipo, String normalizado) {
+        ListaPosteo posteo = indices.get(tipo).get(normalizado);
+        return posteo != null ? posteo.dnis() : VACIO;
+    }
+
+    private int[] idsPrefijo(TipoRegistroClinico tipo, String normalizado) {
+        NavigableMap<String, ListaPosteo> rango = indices.get(tipo)
+                .subMap(normalizado, true, normalizado + Character.MAX_VALUE, false);
+        List<int[]> listas = new ArrayList<>();
+        for (ListaPosteo posteo : rango.values()) {
+            listas.add(posteo.dnis());
+        }
+        return union(listas);
+    }
+
+    public List<String> sugerir(TipoRegistroClinico tipo, String prefijo, int maximo) {
+        String normalizado = TextoNormalizado.normalizar(prefijo);
+        List<String> sugerencias = new ArrayList<>(maximo);
+        for (String termino : indices.get(tipo).tailMap(normalizado, true).keySet()) {
+            if (!termino.startsWith(normalizado) || sugerencias.size() == maximo) {
+                break;
+            }
+            sugerencias.add(termino);
+        }
+        return sugerencias;
+    }
+
+    public int cantidadTerminos(TipoRegistroClinico tipo) {
+        return indices.get(tipo).size();
+    }
+
+    static int[] interseccion(int[] a, int[] b) {
+        int[] resultado = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                resultado[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /*
+     * Unión de k listas ordenadas con un heap de sus cabezas: O(n log k) para n elementos en
+     * total, en vez de unir de a pares y volver a copiar el acumulado con cada lista.
+     * Cada cabeza es {valor, lista, posición}.
+     */
+    static int[] union(List<int[]> listas) {
+        if (listas.isEmpty()) return VACIO;
+        if (listas.size() == 1) return listas.get(0);
+        PriorityQueue<int[]> cabezas = new PriorityQueue<>(listas.size(), Comparator.comparingInt(c -> c[0]));
+        int total = 0;
+        for (int i = 0; i < listas.size(); i++) {
+            int[] lista = listas.get(i);
+            total += lista.length;
+            if (lista.length > 0) {
+                cabezas.add(new int[]{lista[0], i, 0});
+            }
+        }
+        int[] resultado = new int[total];
+        int n = 0;
+        while (!cabezas.isEmpty()) {
+            int[] cabeza = cabezas.poll();
+            if (n == 0 || resultado[n - 1] != cabeza[0]) {
+                resultado[n++] = cabeza[0];
+            }
+            int[] lista = listas.get(cabeza[1]);
+            if (++cabeza[2] < lista.length) {
+                cabeza[0] = lista[cabeza[2]];
+                cabezas.add(cabeza);
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+}
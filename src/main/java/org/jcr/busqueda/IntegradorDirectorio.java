@@ -0,0 +1,110 @@
+package org.jcr.busqueda;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.jcr.entidades.Paciente;
+
+import java.util.Arrays;
+
+/*
+ * Actualiza los DirectorioPacientes que escuchan cambios cuando se confirma el INSERT,
+ * UPDATE o DELETE de un Paciente. Un rollback no toca el directorio: ni aparece un paciente
+ * que no se guardó ni desaparece uno que no se borró.
+ *
+ * Registrado en META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class IntegradorDirectorio implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                          SessionFactoryImplementor sessionFactory) {
+        EventListenerRegistry registro = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        if (registro == null) {
+            return;
+        }
+        registro.appendListeners(EventType.POST_COMMIT_INSERT, new AlInsertar());
+        registro.appendListeners(EventType.POST_COMMIT_UPDATE, new AlActualizar());
+        registro.appendListeners(EventType.POST_COMMIT_DELETE, new AlBorrar());
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private static boolean esPaciente(EntityPersister persister) {
+        return persister.getMappedClass() == Paciente.class;
+    }
+
+    private static final class AlInsertar implements PostCommitInsertEventListener {
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof Paciente paciente) {
+                DirectorioPacientes.pacienteGuardado(paciente, null);
+            }
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return esPaciente(persister);
+        }
+    }
+
+    private static final class AlActualizar implements PostCommitUpdateEventListener {
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (event.getEntity() instanceof Paciente paciente) {
+                DirectorioPacientes.pacienteGuardado(paciente, dniAnterior(event));
+            }
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return esPaciente(persister);
+        }
+
+        // Sin estado anterior (merge de una entidad separada sin select) no se sabe: null.
+        private static String dniAnterior(PostUpdateEvent event) {
+            Object[] anterior = event.getOldState();
+            int indice = Arrays.asList(event.getPersister().getPropertyNames()).indexOf("dni");
+            return anterior != null && indice >= 0 ? (String) anterior[indice] : null;
+        }
+    }
+
+    private static final class AlBorrar implements PostCommitDeleteEventListener {
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof Paciente paciente) {
+                DirectorioPacientes.pacienteEliminado(paciente.getDni());
+            }
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return esPaciente(persister);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.jcr.busqueda;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.jcr.entidades.HistoriaClinica;
+
+/*
+ * Pasa al IndiceClinico los registros pendientes de una HistoriaClinica cuando se confirma
+ * su INSERT o UPDATE, y los descarta si la transacción falla. Agregar un registro sube la
+ * versión de la historia, así que toda escritura de registros pasa por un UPDATE.
+ *
+ * Registrado en META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class IntegradorIndice implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                          SessionFactoryImplementor sessionFactory) {
+        EventListenerRegistry registro = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        if (registro == null) {
+            return;
+        }
+        registro.appendListeners(EventType.POST_COMMIT_INSERT, new AlInsertar());
+        registro.appendListeners(EventType.POST_COMMIT_UPDATE, new AlActualizar());
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private static boolean esHistoria(EntityPersister persister) {
+        return persister.getMappedClass() == HistoriaClinica.class;
+    }
+
+    private static void terminar(Object entidad, boolean confirmada) {
+        if (entidad instanceof HistoriaClinica historia) {
+            IndiceClinico.historiaConfirmada(historia, confirmada);
+        }
+    }
+
+    private static final class AlInsertar implements PostCommitInsertEventListener {
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            terminar(event.getEntity(), true);
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+            terminar(event.getEntity(), false);
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return esHistoria(persister);
+        }
+    }
+
+    private static final class AlActualizar implements PostCommitUpdateEventListener {
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            terminar(event.getEntity(), true);
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+            terminar(event.getEntity(), false);
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return esHistoria(persister);
+        }
+    }
+}
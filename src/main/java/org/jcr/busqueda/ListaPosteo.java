@@ -0,0 +1,43 @@
+package org.jcr.busqueda;
+
+import java.util.Arrays;
+
+// Números internos de paciente que contienen un término. Se agregan desordenados y se ordenan/deduplican al leer.
+final class ListaPosteo {
+
+    private int[] dnis = new int[4];
+    private int tamanio;
+    private boolean ordenada = true;
+
+    synchronized void agregar(int dni) {
+        if (tamanio > 0 && dnis[tamanio - 1] == dni) {
+            return;
+        }
+        if (tamanio == dnis.length) {
+            dnis = Arrays.copyOf(dnis, tamanio + (tamanio >> 1) + 1);
+        }
+        if (tamanio > 0 && dnis[tamanio - 1] > dni) {
+            ordenada = false;
+        }
+        dnis[tamanio++] = dni;
+    }
+
+    synchronized int[] dnis() {
+        if (!ordenada) {
+            Arrays.sort(dnis, 0, tamanio);
+            int unicos = 0;
+            for (int i = 0; i < tamanio; i++) {
+                if (unicos == 0 || dnis[unicos - 1] != dnis[i]) {
+                    dnis[unicos++] = dnis[i];
+                }
+            }
+            tamanio = unicos;
+            ordenada = true;
+        }
+        return Arrays.copyOf(dnis, tamanio);
+    }
+
+    synchronized int tamanio() {
+        return tamanio;
+    }
+}
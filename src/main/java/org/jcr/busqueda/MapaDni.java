@@ -0,0 +1,112 @@
+package org.jcr.busqueda;
+
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * Hash abierto DNI -> FichaPaciente. Lecturas optimistas, escrituras exclusivas.
+ * La clave es el DNI tal cual lo trae la ficha: "01234567" y "1234567" son pacientes
+ * distintos. Una posición está libre cuando no tiene ficha, así que no hay claves reservadas.
+ */
+final class MapaDni {
+
+    private final StampedLock candado = new StampedLock();
+    private FichaPaciente[] valores = new FichaPaciente[1024];
+    private int tamanio;
+
+    FichaPaciente get(String dni) {
+        long sello = candado.tryOptimisticRead();
+        FichaPaciente ficha = buscar(valores, dni);
+        if (!candado.validate(sello)) {
+            sello = candado.readLock();
+            try {
+                ficha = buscar(valores, dni);
+            } finally {
+                candado.unlockRead(sello);
+            }
+        }
+        return ficha;
+    }
+
+    void put(FichaPaciente ficha) {
+        long sello = candado.writeLock();
+        try {
+            if ((tamanio + 1) * 2 > valores.length) {
+                redimensionar();
+            }
+            int i = posicion(valores, ficha.dni());
+            if (valores[i] == null) {
+                tamanio++;
+            }
+            valores[i] = ficha;
+        } finally {
+            candado.unlockWrite(sello);
+        }
+    }
+
+    FichaPaciente remove(String dni) {
+        long sello = candado.writeLock();
+        try {
+            int i = posicion(valores, dni);
+            FichaPaciente anterior = valores[i];
+            if (anterior == null) {
+                return null;
+            }
+            valores[i] = null;
+            tamanio--;
+            // Reubicar el resto del grupo para no cortar las cadenas de sondeo
+            int mascara = valores.length - 1;
+            for (int j = (i + 1) & mascara; valores[j] != null; j = (j + 1) & mascara) {
+                FichaPaciente valor = valores[j];
+                valores[j] = null;
+                valores[posicion(valores, valor.dni())] = valor;
+            }
+            return anterior;
+        } finally {
+            candado.unlockWrite(sello);
+        }
+    }
+
+    int size() {
+        return tamanio;
+    }
+
+    // Acotado al largo de la tabla: una lectura optimista puede ver la tabla a medio reubicar.
+    private static FichaPaciente buscar(FichaPaciente[] valores, String dni) {
+        int mascara = valores.length - 1;
+        for (int i = mezclar(dni) & mascara, n = 0; n < valores.length; i = (i + 1) & mascara, n++) {
+            FichaPaciente valor = valores[i];
+            if (valor == null) {
+                return null;
+            }
+            if (valor.dni().equals(dni)) {
+                return valor;
+            }
+        }
+        return null;
+    }
+
+    private static int posicion(FichaPaciente[] valores, String dni) {
+        int mascara = valores.length - 1;
+        int i = mezclar(dni) & mascara;
+        while (valores[i] != null && !valores[i].dni().equals(dni)) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void redimensionar() {
+        FichaPaciente[] viejos = valores;
+        FichaPaciente[] nuevos = new FichaPaciente[viejos.length * 2];
+        for (FichaPaciente ficha : viejos) {
+            if (ficha != null) {
+                nuevos[posicion(nuevos, ficha.dni())] = ficha;
+            }
+        }
+        valores = nuevos;
+    }
+
+    private static int mezclar(String dni) {
+        int h = dni.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
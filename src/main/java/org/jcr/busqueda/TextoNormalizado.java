@@ -0,0 +1,78 @@
+package org.jcr.busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Plegado de mayúsculas y acentos para búsquedas en castellano: "Hipertensión" -> "hipertension".
+public final class TextoNormalizado {
+
+    private static final Set<String> VACIAS = Set.of(
+            "a", "al", "con", "de", "del", "el", "en", "la", "las", "lo", "los", "o", "por", "sin", "u", "un", "una", "y");
+
+    private TextoNormalizado() {
+    }
+
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(texto.length());
+        boolean ascii = true;
+        for (int i = 0; i < texto.length() && ascii; i++) {
+            ascii = texto.charAt(i) < 0x80;
+        }
+        String base = ascii ? texto : Normalizer.normalize(texto, Normalizer.Form.NFD);
+        for (int i = 0; i < base.length(); i++) {
+            char c = base.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    // Normaliza y deja las palabras separadas por un único espacio, sin descartar ninguna.
+    public static String normalizarFrase(String texto) {
+        String normalizado = normalizar(texto);
+        StringBuilder sb = new StringBuilder(normalizado.length());
+        boolean separar = false;
+        for (int i = 0; i < normalizado.length(); i++) {
+            char c = normalizado.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (separar && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(c);
+                separar = false;
+            } else {
+                separar = true;
+            }
+        }
+        // Conservar el espacio final: "lopez " sólo debe encontrar apellidos completos
+        if (separar && sb.length() > 0) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    public static List<String> terminos(String texto) {
+        List<String> terminos = new ArrayList<>();
+        String normalizado = normalizar(texto);
+        int inicio = -1;
+        for (int i = 0; i <= normalizado.length(); i++) {
+            boolean letra = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                String termino = normalizado.substring(inicio, i);
+                if (!VACIAS.contains(termino)) {
+                    terminos.add(termino);
+                }
+                inicio = -1;
+            }
+        }
+        return terminos;
+    }
+}
@@ -0,0 +1,163 @@
+package org.jcr.entidades;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Citas como columnas de primitivos (struct-of-arrays): una cita es una ranura con ids
+ * enteros de paciente/médico/sala, inicio y fin en minutos desde la época (UTC local),
+ * costo en centavos, estado como byte y el id y la versión que asigna la base (NULO
+ * mientras no los tenga). Unos 53 bytes por cita contra los ~250 de una Cita con su
+ * LocalDateTime y BigDecimal.
+ *
+ * Las observaciones casi siempre están vacías: sólo se guardan las que no lo están.
+ * No es thread-safe; CitaManager sincroniza el acceso.
+ */
+final class AgendaCompacta {
+
+    static final byte LIBRE = -1;
+    static final long NULO = Long.MIN_VALUE;
+    private static final EstadoCita[] ESTADOS = EstadoCita.values();
+
+    private int cantidad;
+    private int[] pacientes = new int[16];
+    private int[] medicos = new int[16];
+    private int[] salas = new int[16];
+    private int[] inicios = new int[16];
+    private int[] fines = new int[16];
+    private long[] costos = new long[16];
+    private byte[] estados = new byte[16];
+    private long[] ids = new long[16];
+    private long[] versiones = new long[16];
+    private final Map<Integer, String> observaciones = new HashMap<>();
+
+    int agregar(int paciente, int medico, int sala, int inicio, int fin, long costo, EstadoCita estado,
+                String observacion, Long id, Long version) {
+        if (cantidad == inicios.length) {
+            crecer(cantidad * 2);
+        }
+        int ranura = cantidad++;
+        pacientes[ranura] = paciente;
+        medicos[ranura] = medico;
+        salas[ranura] = sala;
+        inicios[ranura] = inicio;
+        fines[ranura] = fin;
+        costos[ranura] = costo;
+        estados[ranura] = (byte) estado.ordinal();
+        ids[ranura] = id != null ? id : NULO;
+        versiones[ranura] = version != null ? version : NULO;
+        if (observacion != null && !observacion.isEmpty()) {
+            observaciones.put(ranura, observacion);
+        }
+        return ranura;
+    }
+
+    private void crecer(int capacidad) {
+        pacientes = Arrays.copyOf(pacientes, capacidad);
+        medicos = Arrays.copyOf(medicos, capacidad);
+        salas = Arrays.copyOf(salas, capacidad);
+        inicios = Arrays.copyOf(inicios, capacidad);
+        fines = Arrays.copyOf(fines, capacidad);
+        costos = Arrays.copyOf(costos, capacidad);
+        estados = Arrays.copyOf(estados, capacidad);
+        ids = Arrays.copyOf(ids, capacidad);
+        versiones = Arrays.copyOf(versiones, capacidad);
+    }
+
+    // Las ranuras no se reutilizan: su número conserva el orden de alta.
+    void liberar(int ranura) {
+        estados[ranura] = LIBRE;
+        observaciones.remove(ranura);
+    }
+
+    void limpiar() {
+        cantidad = 0;
+        observaciones.clear();
+    }
+
+    boolean estaLibre(int ranura) {
+        return estados[ranura] == LIBRE;
+    }
+
+    int getCantidad() {
+        return cantidad;
+    }
+
+    int paciente(int ranura) {
+        return pacientes[ranura];
+    }
+
+    int medico(int ranura) {
+        return medicos[ranura];
+    }
+
+    int sala(int ranura) {
+        return salas[ranura];
+    }
+
+    int inicio(int ranura) {
+        return inicios[ranura];
+    }
+
+    int fin(int ranura) {
+        return fines[ranura];
+    }
+
+    long costo(int ranura) {
+        return costos[ranura];
+    }
+
+    EstadoCita estado(int ranura) {
+        return ESTADOS[estados[ranura]];
+    }
+
+    void setEstado(int ranura, EstadoCita estado) {
+        estados[ranura] = (byte) estado.ordinal();
+    }
+
+    String observaciones(int ranura) {
+        return observaciones.getOrDefault(ranura, "");
+    }
+
+    void setObservaciones(int ranura, String observacion) {
+        if (observacion == null || observacion.isEmpty()) {
+            observaciones.remove(ranura);
+        } else {
+            observaciones.put(ranura, observacion);
+        }
+    }
+
+    Long id(int ranura) {
+        return ids[ranura] != NULO ? ids[ranura] : null;
+    }
+
+    Long version(int ranura) {
+        return versiones[ranura] != NULO ? versiones[ranura] : null;
+    }
+
+    void setPersistencia(int ranura, Long id, Long version) {
+        ids[ranura] = id != null ? id : NULO;
+        versiones[ranura] = version != null ? version : NULO;
+    }
+
+    static int aMinutos(LocalDateTime fechaHora) {
+        return Math.toIntExact(Math.floorDiv(fechaHora.toEpochSecond(ZoneOffset.UTC), 60));
+    }
+
+    static LocalDateTime deMinutos(int minutos) {
+        return LocalDateTime.ofEpochSecond(minutos * 60L, 0, ZoneOffset.UTC);
+    }
+
+    static long aCentavos(BigDecimal costo) {
+        return costo.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal deCentavos(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+}
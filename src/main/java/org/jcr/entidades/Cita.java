@@ -43,8 +43,14 @@ public class Cita implements Serializable {
     private EstadoCita estado;
 
     @Column(length = 500)
+    @Convert(converter = TextoCompartido.class)
     private String observaciones;
 
+    // Control optimista: si dos transacciones parten de la misma versión, la segunda falla
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public Cita(Paciente paciente, Medico medico, Sala sala, LocalDateTime fechaHora, BigDecimal costo) {
         this.paciente = Objects.requireNonNull(paciente, "El paciente no puede ser nulo");
         this.medico = Objects.requireNonNull(medico, "El médico no puede ser nulo");
@@ -90,7 +96,8 @@ public class Cita implements Serializable {
                                      Map<String, Paciente> pacientes,
                                      Map<String, Medico> medicos,
                                      Map<String, Sala> salas) throws CitaException {
-        String[] values = csvString.split(",");
+        // -1: con observaciones vacías la línea termina en "," y split descartaría el último campo
+        String[] values = csvString.split(",", -1);
         if (values.length != 7) {
             throw new CitaException("Formato de CSV inválido para Cita: " + csvString);
         }
@@ -101,7 +108,8 @@ public class Cita implements Serializable {
         LocalDateTime fechaHora = LocalDateTime.parse(values[3]);
         BigDecimal costo = new BigDecimal(values[4]);
         EstadoCita estado = EstadoCita.valueOf(values[5]);
-        String observaciones = values[6].replaceAll(";", ",");
+        // Las observaciones se repiten mucho ("Control de rutina"): una copia compartida por texto
+        String observaciones = DiccionarioTextos.COMPARTIDO.canonico(values[6].replaceAll(";", ","));
 
         Paciente paciente = pacientes.get(dniPaciente);
         Medico medico = medicos.get(dniMedico);
@@ -1,175 +1,628 @@
 package org.jcr.entidades;
 
 import java.io.*;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.math.BigDecimal;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class CitaManager implements CitaService {
-    private final List<Cita> citas = new ArrayList<>();
-    private final Map<Paciente, List<Cita>> citasPorPaciente = new ConcurrentHashMap<>();
-    private final Map<Medico, List<Cita>> citasPorMedico = new ConcurrentHashMap<>();
-    private final Map<Sala, List<Cita>> citasPorSala = new ConcurrentHashMap<>();
+import org.jcr.jfr.EventoImportacionLote;
+import org.jcr.jfr.EventoPersistencia;
+import org.jcr.jfr.EventoReservaCita;
+import org.jcr.jfr.EventoVerificacionConflicto;
+import org.jcr.metricas.Metricas;
+import org.jcr.metricas.MotivoRechazo;
+
+/*
+ * El núcleo de agenda trabaja sobre AgendaCompacta (ids enteros, minutos, centavos) y sólo
+ * construye objetos Cita cuando alguien los pide. Las columnas son la fuente de verdad: los
+ * cambios entran por cambiarEstado, cambiarObservaciones y citaPersistida (el id y la versión
+ * que asigna la base), no por los setters de la Cita. La Cita de una reserva o de
+ * registrarCita se conserva por referencia débil: mientras quien la tiene no la suelte,
+ * getCitasPor* devuelve esa instancia. Las demás se arman en cada lectura y nadie las
+ * retiene, así que recorrer toda la agenda (facturación, volcados) no deja nada en memoria.
+ * Las listas de citas de Paciente, Medico y Sala son las que trae la base: reservar no las toca.
+ *
+ * Una Cita se ubica por su médico y su minuto de inicio, así que las operaciones aceptan
+ * también una copia y no sólo la instancia entregada.
+ *
+ * Dos citas del mismo médico o sala chocan si sus intervalos [inicio, inicio + duración)
+ * se superponen. La hora se guarda truncada al minuto.
+ */
+public class CitaManager implements CitaService, AutoCloseable {
+    public static final Duration DURACION_PREDETERMINADA = Duration.ofMinutes(60);
+
+    private final int duracionMinutos;
+    private final AgendaCompacta agenda = new AgendaCompacta();
+    private final Registro<Paciente> pacientes = new Registro<>();
+    private final Registro<Medico> medicos = new Registro<>();
+    private final Registro<Sala> salas = new Registro<>();
+
+    private final List<String> indicadores = new ArrayList<>(4);
+    private final List<OyenteCita> oyentes = new CopyOnWriteArrayList<>();
+
+    private final Map<Integer, Entregada> entregadas = new HashMap<>();
+    private final ReferenceQueue<Cita> soltadas = new ReferenceQueue<>();
+
+    public CitaManager() {
+        this(DURACION_PREDETERMINADA);
+    }
+
+    public CitaManager(Duration duracion) {
+        this(duracion, "indice");
+    }
+
+    // prefijo: nombre de los indicadores de métricas (una partición usa el suyo).
+    CitaManager(Duration duracion, String prefijo) {
+        this.duracionMinutos = Math.toIntExact(duracion.toMinutes());
+        if (duracionMinutos <= 0) {
+            throw new IllegalArgumentException("La duración de una cita debe ser de al menos un minuto");
+        }
+        indicadores.add(Metricas.registrarIndicador(prefijo + ".citas", agenda::getCantidad));
+        indicadores.add(Metricas.registrarIndicador(prefijo + ".pacientes", pacientes::size));
+        indicadores.add(Metricas.registrarIndicador(prefijo + ".medicos", medicos::size));
+        indicadores.add(Metricas.registrarIndicador(prefijo + ".salas", salas::size));
+    }
+
+    // Suelta los indicadores de métricas, que si no mantienen viva la agenda.
+    @Override
+    public synchronized void close() {
+        indicadores.forEach(Metricas::quitarIndicador);
+        indicadores.clear();
+    }
 
     @Override
-    public Cita programarCita(Paciente paciente, Medico medico, Sala sala,
+    public synchronized Cita programarCita(Paciente paciente, Medico medico, Sala sala,
                               LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
+        long inicio = Metricas.inicio();
+        EventoReservaCita evento = new EventoReservaCita();
+        evento.begin();
+        try {
+            Cita cita = reservar(paciente, medico, sala, fechaHora, costo);
+            if (Metricas.HABILITADAS) Metricas.citaProgramada(inicio);
+            registrarReserva(evento, medico, sala, fechaHora, null);
+            return cita;
+        } catch (CitaException e) {
+            registrarReserva(evento, medico, sala, fechaHora, e.getMessage());
+            throw e;
+        }
+    }
 
+    private Cita reservar(Paciente paciente, Medico medico, Sala sala,
+                          LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
         validarCita(fechaHora, costo);
+        LocalDateTime inicio = fechaHora.truncatedTo(ChronoUnit.MINUTES);
+        int minuto = AgendaCompacta.aMinutos(inicio);
 
-        if (!esMedicoDisponible(medico, fechaHora)) {
+        if (!esMedicoDisponible(medico, minuto)) {
+            if (Metricas.HABILITADAS) Metricas.rechazo(MotivoRechazo.MEDICO_OCUPADO);
             throw new CitaException("El médico no está disponible en la fecha y hora solicitadas.");
         }
 
-        if (!esSalaDisponible(sala, fechaHora)) {
+        if (!esSalaDisponible(sala, minuto)) {
+            if (Metricas.HABILITADAS) Metricas.rechazo(MotivoRechazo.SALA_OCUPADA);
             throw new CitaException("La sala no está disponible en la fecha y hora solicitadas.");
         }
 
         if (!medico.getEspecialidad().equals(sala.getDepartamento().getEspecialidad())) {
+            if (Metricas.HABILITADAS) Metricas.rechazo(MotivoRechazo.ESPECIALIDAD_INCOMPATIBLE);
             throw new CitaException("La especialidad del médico no coincide con el departamento de la sala.");
         }
 
-        Cita cita = new Cita(paciente, medico, sala, fechaHora, costo);
-        citas.add(cita);
+        Cita cita = new Cita(paciente, medico, sala, inicio, costo);
+        vincular(indexar(paciente, medico, sala, minuto, AgendaCompacta.aCentavos(costo),
+                EstadoCita.PROGRAMADA, "", null, null), cita);
 
-        actualizarIndicePaciente(paciente, cita);
-        actualizarIndiceMedico(medico, cita);
-        actualizarIndiceSala(sala, cita);
+        for (OyenteCita oyente : oyentes) {
+            oyente.citaReservada(cita);
+        }
+        return cita;
+    }
 
-        paciente.addCita(cita);
-        medico.addCita(cita);
-        sala.addCita(cita);
+    @Override
+    public void agregarOyente(OyenteCita oyente) {
+        oyentes.add(Objects.requireNonNull(oyente, "El oyente no puede ser nulo"));
+    }
 
-        return cita;
+    @Override
+    public void quitarOyente(OyenteCita oyente) {
+        oyentes.remove(oyente);
+    }
+
+    @Override
+    public synchronized void enExclusiva(Runnable accion) {
+        accion.run();
+    }
+
+    private void registrarReserva(EventoReservaCita evento, Medico medico, Sala sala,
+                                  LocalDateTime fechaHora, String motivo) {
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.medico = medico != null ? medico.getDni() : null;
+            evento.sala = sala != null ? sala.getNumero() : null;
+            evento.fechaHora = String.valueOf(fechaHora);
+            evento.exitosa = motivo == null;
+            evento.motivo = motivo;
+            evento.commit();
+        }
     }
 
     private void validarCita(LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
         if (fechaHora.isBefore(LocalDateTime.now())) {
+            if (Metricas.HABILITADAS) Metricas.rechazo(MotivoRechazo.FECHA_PASADA);
             throw new CitaException("No se puede programar una cita en el pasado.");
         }
 
         if (costo.compareTo(BigDecimal.ZERO) <= 0) {
+            if (Metricas.HABILITADAS) Metricas.rechazo(MotivoRechazo.COSTO_INVALIDO);
             throw new CitaException("El costo debe ser mayor que cero.");
         }
     }
 
-    private boolean esMedicoDisponible(Medico medico, LocalDateTime fechaHora) {
-        List<Cita> citasExistentes = citasPorMedico.get(medico);
-        if (citasExistentes != null) {
-            for (Cita citaExistente : citasExistentes) {
-                if (Math.abs(citaExistente.getFechaHora().compareTo(fechaHora)) < 2) {
-                    return false;
+    private boolean esMedicoDisponible(Medico medico, int minuto) {
+        long inicio = Metricas.inicio();
+        boolean disponible = sinConflictos("medico", medicos.ranurasDe(medico), minuto);
+        if (Metricas.HABILITADAS) Metricas.DISPONIBILIDAD_MEDICO.registrarDesde(inicio);
+        return disponible;
+    }
+
+    private boolean esSalaDisponible(Sala sala, int minuto) {
+        long inicio = Metricas.inicio();
+        boolean disponible = sinConflictos("sala", salas.ranurasDe(sala), minuto);
+        if (Metricas.HABILITADAS) Metricas.DISPONIBILIDAD_SALA.registrarDesde(inicio);
+        return disponible;
+    }
+
+    /*
+     * Las ranuras de un médico o sala están ordenadas por inicio y todas duran lo mismo:
+     * basta una búsqueda binaria de la primera que empieza después de minuto - duración.
+     */
+    private boolean sinConflictos(String recurso, ListaRanuras ranuras, int minuto) {
+        EventoVerificacionConflicto evento = new EventoVerificacionConflicto();
+        evento.begin();
+        int escaneados = 0;
+        boolean disponible = true;
+        if (ranuras != null) {
+            int desde = minuto - duracionMinutos;
+            int bajo = 0, alto = ranuras.size();
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                escaneados++;
+                if (agenda.inicio(ranuras.get(medio)) <= desde) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
                 }
             }
+            if (bajo < ranuras.size()) {
+                escaneados++;
+                disponible = agenda.inicio(ranuras.get(bajo)) >= minuto + duracionMinutos;
+            }
+        }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.recurso = recurso;
+            evento.candidatosEscaneados = escaneados;
+            evento.disponible = disponible;
+            evento.commit();
         }
-        return true;
+        return disponible;
     }
 
-    private boolean esSalaDisponible(Sala sala, LocalDateTime fechaHora) {
-        List<Cita> citasExistentes = citasPorSala.get(sala);
-        if (citasExistentes != null) {
-            for (Cita citaExistente : citasExistentes) {
-                if (Math.abs(citaExistente.getFechaHora().compareTo(fechaHora)) < 2) {
-                    return false;
-                }
-            }
+    private int indexar(Paciente paciente, Medico medico, Sala sala, int minuto, long centavos,
+                        EstadoCita estado, String observaciones, Long id, Long version) {
+        int idPaciente = pacientes.id(paciente);
+        int idMedico = medicos.id(medico);
+        int idSala = salas.id(sala);
+        int ranura = agenda.agregar(idPaciente, idMedico, idSala, minuto, minuto + duracionMinutos,
+                centavos, estado, observaciones, id, version);
+        pacientes.ranuras(idPaciente).add(ranura);
+        medicos.ranuras(idMedico).insertarOrdenado(ranura, agenda);
+        salas.ranuras(idSala).insertarOrdenado(ranura, agenda);
+        return ranura;
+    }
+
+    private void vincular(int ranura, Cita cita) {
+        purgar();
+        entregadas.put(ranura, new Entregada(cita, ranura, soltadas));
+    }
+
+    // Quita las citas que el recolector ya soltó.
+    private void purgar() {
+        for (Reference<? extends Cita> soltada; (soltada = soltadas.poll()) != null; ) {
+            Entregada entregada = (Entregada) soltada;
+            entregadas.remove(entregada.ranura, entregada);
         }
-        return true;
     }
 
-    private void actualizarIndicePaciente(Paciente paciente, Cita cita) {
-        List<Cita> citasPaciente = citasPorPaciente.get(paciente);
-        if (citasPaciente == null) {
-            citasPaciente = new ArrayList<>();
-            citasPorPaciente.put(paciente, citasPaciente);
+    // Una ranura como Cita: la instancia de la reserva si sigue viva, si no una copia de las columnas.
+    private Cita materializar(int ranura) {
+        Cita cita = entregada(ranura);
+        return cita != null ? cita : construir(ranura);
+    }
+
+    private Cita construir(int ranura) {
+        Cita cita = new Cita(pacientes.entidad(agenda.paciente(ranura)), medicos.entidad(agenda.medico(ranura)),
+                salas.entidad(agenda.sala(ranura)), AgendaCompacta.deMinutos(agenda.inicio(ranura)),
+                AgendaCompacta.deCentavos(agenda.costo(ranura)));
+        cita.setEstado(agenda.estado(ranura));
+        cita.setObservaciones(agenda.observaciones(ranura));
+        cita.setId(agenda.id(ranura));
+        cita.setVersion(agenda.version(ranura));
+        return cita;
+    }
+
+    private Cita entregada(int ranura) {
+        Entregada entregada = entregadas.get(ranura);
+        return entregada != null ? entregada.get() : null;
+    }
+
+    /*
+     * La ranura de la cita entre las del médico que empiezan en su minuto: la de la instancia
+     * entregada si es ésa, si no la primera con el mismo paciente, sala e id. -1 si no está.
+     */
+    private int ranura(Cita cita) {
+        ListaRanuras ranuras = medicos.ranurasDe(cita.getMedico());
+        if (ranuras == null) {
+            return -1;
         }
-        citasPaciente.add(cita);
+        int minuto = AgendaCompacta.aMinutos(cita.getFechaHora());
+        int encontrada = -1;
+        for (int i = ranuras.primeraDespuesDe(minuto - 1, agenda);
+             i < ranuras.size() && agenda.inicio(ranuras.get(i)) == minuto; i++) {
+            int ranura = ranuras.get(i);
+            if (entregada(ranura) == cita) {
+                return ranura;
+            }
+            if (encontrada < 0 && coincide(ranura, cita)) {
+                encontrada = ranura;
+            }
+        }
+        return encontrada;
+    }
+
+    private boolean coincide(int ranura, Cita cita) {
+        Long id = agenda.id(ranura);
+        return pacientes.entidad(agenda.paciente(ranura)).equals(cita.getPaciente())
+                && salas.entidad(agenda.sala(ranura)).equals(cita.getSala())
+                && (id == null || cita.getId() == null || id.equals(cita.getId()));
     }
 
-    private void actualizarIndiceMedico(Medico medico, Cita cita) {
-        List<Cita> citasMedico = citasPorMedico.get(medico);
-        if (citasMedico == null) {
-            citasMedico = new ArrayList<>();
-            citasPorMedico.put(medico, citasMedico);
+    // Indexa una cita ya existente (p. ej. cargada desde la base) sin volver a validarla.
+    public synchronized void registrarCita(Cita cita) {
+        vincular(indexar(cita.getPaciente(), cita.getMedico(), cita.getSala(),
+                AgendaCompacta.aMinutos(cita.getFechaHora()), AgendaCompacta.aCentavos(cita.getCosto()),
+                cita.getEstado(), cita.getObservaciones(), cita.getId(), cita.getVersion()), cita);
+    }
+
+    // Deshace una reserva cuya persistencia falló.
+    public synchronized void descartarCita(Cita cita) {
+        int ranura = ranura(cita);
+        if (ranura >= 0) {
+            pacientes.quitar(agenda.paciente(ranura), ranura);
+            medicos.quitar(agenda.medico(ranura), ranura);
+            salas.quitar(agenda.sala(ranura), ranura);
+            agenda.liberar(ranura);
+            entregadas.remove(ranura);
+        }
+        for (OyenteCita oyente : oyentes) {
+            oyente.citaDescartada(cita);
         }
-        citasMedico.add(cita);
     }
 
-    private void actualizarIndiceSala(Sala sala, Cita cita) {
-        List<Cita> citasSala = citasPorSala.get(sala);
-        if (citasSala == null) {
-            citasSala = new ArrayList<>();
-            citasPorSala.put(sala, citasSala);
+    // Lleva a la agenda el id y la versión que la base le dio a la cita al confirmar su escritura.
+    public synchronized void citaPersistida(Cita cita) {
+        int ranura = ranura(cita);
+        if (ranura >= 0) {
+            agenda.setPersistencia(ranura, cita.getId(), cita.getVersion());
+            Cita entregada = entregada(ranura);
+            if (entregada != null && entregada != cita) {
+                entregada.setId(cita.getId());
+                entregada.setVersion(cita.getVersion());
+            }
         }
-        citasSala.add(cita);
     }
 
+    // Cambia el estado en la cita, en la instancia entregada y en la agenda compacta.
     @Override
-    public List<Cita> getCitasPorPaciente(Paciente paciente) {
-        List<Cita> citasPaciente = citasPorPaciente.get(paciente);
-        if (citasPaciente != null) {
-            return Collections.unmodifiableList(citasPaciente);
-        } else {
-            return Collections.emptyList();
+    public synchronized void cambiarEstado(Cita cita, EstadoCita estado) {
+        Objects.requireNonNull(estado, "El estado no puede ser nulo");
+        EstadoCita anterior = cita.getEstado();
+        int ranura = ranura(cita);
+        cita.setEstado(estado);
+        if (ranura >= 0) {
+            agenda.setEstado(ranura, estado);
+            Cita entregada = entregada(ranura);
+            if (entregada != null) {
+                entregada.setEstado(estado);
+            }
+        }
+        if (anterior != estado) {
+            for (OyenteCita oyente : oyentes) {
+                oyente.estadoCambiado(cita, anterior);
+            }
         }
     }
 
     @Override
-    public List<Cita> getCitasPorMedico(Medico medico) {
-        List<Cita> citasMedico = citasPorMedico.get(medico);
-        if (citasMedico != null) {
-            return Collections.unmodifiableList(citasMedico);
-        } else {
-            return Collections.emptyList();
+    public synchronized void cambiarObservaciones(Cita cita, String observaciones) {
+        int ranura = ranura(cita);
+        cita.setObservaciones(observaciones);
+        if (ranura >= 0) {
+            agenda.setObservaciones(ranura, cita.getObservaciones());
+            Cita entregada = entregada(ranura);
+            if (entregada != null) {
+                entregada.setObservaciones(observaciones);
+            }
+        }
+    }
+
+    public synchronized int getCantidadCitas() {
+        int cantidad = 0;
+        for (int r = 0; r < agenda.getCantidad(); r++) {
+            if (!agenda.estaLibre(r)) cantidad++;
         }
+        return cantidad;
+    }
+
+    @Override
+    public synchronized List<Cita> getCitasPorPaciente(Paciente paciente) {
+        return materializar(pacientes.ranurasDe(paciente));
+    }
+
+    @Override
+    public synchronized List<Cita> getCitasPorMedico(Medico medico) {
+        return materializar(medicos.ranurasDe(medico));
     }
 
     @Override
-    public List<Cita> getCitasPorSala(Sala sala) {
-        List<Cita> citasSala = citasPorSala.get(sala);
-        if (citasSala != null) {
-            return Collections.unmodifiableList(citasSala);
-        } else {
+    public synchronized List<Cita> getCitasPorSala(Sala sala) {
+        return materializar(salas.ranurasDe(sala));
+    }
+
+    // En orden de alta, como antes; las listas de médico y sala están ordenadas por horario.
+    private List<Cita> materializar(ListaRanuras ranuras) {
+        if (ranuras == null || ranuras.size() == 0) {
             return Collections.emptyList();
         }
+        purgar();
+        int[] orden = ranuras.copia();
+        Arrays.sort(orden);
+        Cita[] resultado = new Cita[orden.length];
+        for (int i = 0; i < orden.length; i++) {
+            resultado[i] = materializar(orden[i]);
+        }
+        return List.of(resultado);
     }
 
     @Override
-    public void guardarCitas(String filename) throws IOException {
+    public synchronized void guardarCitas(String filename) throws IOException {
+        long inicio = Metricas.inicio();
+        EventoPersistencia evento = new EventoPersistencia();
+        evento.begin();
+        int guardadas;
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            for (Cita cita : citas) {
-                writer.println(cita.toCsvString());
-            }
+            guardadas = escribirCitas(writer);
+        }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.operacion = "guardarCitas";
+            evento.entidades = guardadas;
+            evento.commit();
+        }
+        if (Metricas.HABILITADAS) Metricas.GUARDAR_CITAS.registrarDesde(inicio);
+    }
+
+    // Vuelca las citas en CSV al writer dado; devuelve cuántas escribió.
+    synchronized int escribirCitas(PrintWriter writer) {
+        int guardadas = 0;
+        for (int r = 0; r < agenda.getCantidad(); r++) {
+            if (agenda.estaLibre(r)) continue;
+            writer.println(construir(r).toCsvString());
+            guardadas++;
         }
+        return guardadas;
     }
 
     @Override
-    public void cargarCitas(String filename, Map<String, Paciente> pacientes,
+    public synchronized void cargarCitas(String filename, Map<String, Paciente> pacientes,
                             Map<String, Medico> medicos, Map<String, Sala> salas)
             throws IOException, ClassNotFoundException, CitaException {
-        citas.clear();
-        citasPorPaciente.clear();
-        citasPorMedico.clear();
-        citasPorSala.clear();
-
         try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
+            cargarLineas(reader.lines().iterator(), filename, pacientes, medicos, salas);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Reemplaza el contenido por las líneas CSV dadas; origen sólo identifica los lotes en JFR.
+    synchronized void cargarLineas(Iterator<String> lineas, String origen, Map<String, Paciente> pacientes,
+                                   Map<String, Medico> medicos, Map<String, Sala> salas) throws CitaException {
+        limpiar();
+        long inicio = Metricas.inicio();
+
+        EventoImportacionLote lote = iniciarLote(origen, 1);
+        try {
+            while (lineas.hasNext()) {
+                String line = lineas.next();
                 try {
-                    Cita cita = Cita.fromCsvString(line, pacientes, medicos, salas);
-                    citas.add(cita);
-                    actualizarIndicePaciente(cita.getPaciente(), cita);
-                    actualizarIndiceMedico(cita.getMedico(), cita);
-                    actualizarIndiceSala(cita.getSala(), cita);
+                    importar(line, pacientes, medicos, salas);
                 } catch (CitaException e) {
                     System.err.println("Error al cargar cita desde CSV: " + line + " - " + e.getMessage());
                     throw e;
                 }
+                if (++lote.filas == EventoImportacionLote.TAMANIO_LOTE) {
+                    cerrarLote(lote);
+                    lote = iniciarLote(origen, lote.lote + 1);
+                }
+            }
+        } finally {
+            cerrarLote(lote);
+        }
+        if (Metricas.HABILITADAS) Metricas.importacion(agenda.getCantidad(), inicio);
+    }
+
+    // Mismo formato y errores que Cita.fromCsvString, pero directo a la agenda sin crear la Cita.
+    private void importar(String linea, Map<String, Paciente> pacientes,
+                          Map<String, Medico> medicos, Map<String, Sala> salas) throws CitaException {
+        String[] values = linea.split(",", -1);
+        if (values.length != 7) {
+            throw new CitaException("Formato de CSV inválido para Cita: " + linea);
+        }
+
+        Paciente paciente = pacientes.get(values[0]);
+        Medico medico = medicos.get(values[1]);
+        Sala sala = salas.get(values[2]);
+
+        if (paciente == null) throw new CitaException("Paciente no encontrado: " + values[0]);
+        if (medico == null) throw new CitaException("Médico no encontrado: " + values[1]);
+        if (sala == null) throw new CitaException("Sala no encontrada: " + values[2]);
+
+        indexar(paciente, medico, sala, AgendaCompacta.aMinutos(LocalDateTime.parse(values[3])),
+                AgendaCompacta.aCentavos(new BigDecimal(values[4])), EstadoCita.valueOf(values[5]),
+                DiccionarioTextos.COMPARTIDO.canonico(values[6].replace(';', ',')), null, null);
+    }
+
+    private void limpiar() {
+        agenda.limpiar();
+        pacientes.limpiar();
+        medicos.limpiar();
+        salas.limpiar();
+        entregadas.clear();
+    }
+
+    private static EventoImportacionLote iniciarLote(String archivo, int numero) {
+        EventoImportacionLote lote = new EventoImportacionLote();
+        lote.archivo = archivo;
+        lote.lote = numero;
+        lote.begin();
+        return lote;
+    }
+
+    private static void cerrarLote(EventoImportacionLote lote) {
+        if (lote.filas > 0) {
+            lote.commit();
+        }
+    }
+
+    // Entidades numeradas en orden de aparición, con las ranuras de cada una.
+    private static final class Registro<T> {
+        private final Map<T, Integer> ids = new HashMap<>();
+        private final List<T> entidades = new ArrayList<>();
+        private final List<ListaRanuras> ranuras = new ArrayList<>();
+
+        int id(T entidad) {
+            Integer id = ids.get(entidad);
+            if (id == null) {
+                id = entidades.size();
+                ids.put(entidad, id);
+                entidades.add(entidad);
+                ranuras.add(new ListaRanuras());
+            }
+            return id;
+        }
+
+        T entidad(int id) {
+            return entidades.get(id);
+        }
+
+        ListaRanuras ranuras(int id) {
+            return ranuras.get(id);
+        }
+
+        ListaRanuras ranurasDe(T entidad) {
+            Integer id = ids.get(entidad);
+            return id != null ? ranuras.get(id) : null;
+        }
+
+        void quitar(int id, int ranura) {
+            ranuras.get(id).remove(ranura);
+        }
+
+        int size() {
+            return ids.size();
+        }
+
+        void limpiar() {
+            ids.clear();
+            entidades.clear();
+            ranuras.clear();
+        }
+    }
+
+    private static final class Entregada extends WeakReference<Cita> {
+        final int ranura;
+
+        Entregada(Cita cita, int ranura, ReferenceQueue<Cita> soltadas) {
+            super(cita, soltadas);
+            this.ranura = ranura;
+        }
+    }
+
+    private static final class ListaRanuras {
+        private int[] valores = new int[4];
+        private int size;
+
+        void add(int ranura) {
+            if (size == valores.length) valores = Arrays.copyOf(valores, size * 2);
+            valores[size++] = ranura;
+        }
+
+        // Mantiene el orden por minuto de inicio (a igual inicio, orden de alta).
+        void insertarOrdenado(int ranura, AgendaCompacta agenda) {
+            int posicion = primeraDespuesDe(agenda.inicio(ranura), agenda);
+            if (size == valores.length) valores = Arrays.copyOf(valores, size * 2);
+            System.arraycopy(valores, posicion, valores, posicion + 1, size - posicion);
+            valores[posicion] = ranura;
+            size++;
+        }
+
+        void remove(int ranura) {
+            for (int i = 0; i < size; i++) {
+                if (valores[i] == ranura) {
+                    System.arraycopy(valores, i + 1, valores, i, size - i - 1);
+                    size--;
+                    return;
+                }
             }
         }
+
+        // Posición de la primera ranura que empieza después de minuto (size si no hay).
+        int primeraDespuesDe(int minuto, AgendaCompacta agenda) {
+            int bajo = 0, alto = size;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (agenda.inicio(valores[medio]) <= minuto) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        int get(int i) {
+            return valores[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] copia() {
+            return Arrays.copyOf(valores, size);
+        }
     }
 }
@@ -0,0 +1,247 @@
+package org.jcr.entidades;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Un CitaManager por especialidad, cada uno con su propio hilo de escritura. Una cita nunca
+ * cruza especialidades (médico y sala deben coincidir), así que las reservas de distintas
+ * especialidades no compiten por el mismo lock.
+ *
+ * La partición se elige por la especialidad del médico; si la sala es de otra, esa partición
+ * rechaza la cita igual que CitaManager. Las vistas por paciente juntan todas las particiones.
+ */
+public class CitaManagerParticionado implements CitaService, AutoCloseable {
+
+    private final Map<EspecialidadMedica, CitaManager> particiones = new EnumMap<>(EspecialidadMedica.class);
+    private final Map<EspecialidadMedica, ExecutorService> ejecutores = new EnumMap<>(EspecialidadMedica.class);
+
+    public CitaManagerParticionado() {
+        this(CitaManager.DURACION_PREDETERMINADA);
+    }
+
+    public CitaManagerParticionado(Duration duracion) {
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            String nombre = especialidad.name().toLowerCase();
+            particiones.put(especialidad, new CitaManager(duracion, "indice." + nombre));
+            // El hilo se crea con la primera tarea: especialidades sin uso no cuestan un hilo
+            ejecutores.put(especialidad, Executors.newSingleThreadExecutor(r -> {
+                Thread hilo = new Thread(r, "agenda-" + nombre);
+                hilo.setDaemon(true);
+                return hilo;
+            }));
+        }
+    }
+
+    @Override
+    public Cita programarCita(Paciente paciente, Medico medico, Sala sala,
+                              LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
+        return esperar(programarCitaAsync(paciente, medico, sala, fechaHora, costo), "Reserva interrumpida.");
+    }
+
+    // Encola la reserva en el hilo de la partición; falla con CitaException si hay conflicto.
+    public CompletableFuture<Cita> programarCitaAsync(Paciente paciente, Medico medico, Sala sala,
+                                                      LocalDateTime fechaHora, BigDecimal costo) {
+        EspecialidadMedica especialidad = especialidad(medico);
+        CitaManager particion = particiones.get(especialidad);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return particion.programarCita(paciente, medico, sala, fechaHora, costo);
+            } catch (CitaException e) {
+                throw new CompletionException(e);
+            }
+        }, ejecutores.get(especialidad));
+    }
+
+    private static <T> T esperar(Future<T> tarea, String siInterrumpida) throws CitaException {
+        try {
+            return tarea.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CitaException(siInterrumpida);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CitaException ce) throw ce;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void registrarCita(Cita cita) {
+        particion(cita.getMedico()).registrarCita(cita);
+    }
+
+    public void descartarCita(Cita cita) {
+        particion(cita.getMedico()).descartarCita(cita);
+    }
+
+    public void citaPersistida(Cita cita) {
+        particion(cita.getMedico()).citaPersistida(cita);
+    }
+
+    @Override
+    public void cambiarEstado(Cita cita, EstadoCita estado) {
+        particion(cita.getMedico()).cambiarEstado(cita, estado);
+    }
+
+    @Override
+    public void cambiarObservaciones(Cita cita, String observaciones) {
+        particion(cita.getMedico()).cambiarObservaciones(cita, observaciones);
+    }
+
+    public CitaManager getParticion(EspecialidadMedica especialidad) {
+        return particiones.get(Objects.requireNonNull(especialidad, "La especialidad no puede ser nula"));
+    }
+
+    public int getCantidadCitas() {
+        int cantidad = 0;
+        for (CitaManager particion : particiones.values()) {
+            cantidad += particion.getCantidadCitas();
+        }
+        return cantidad;
+    }
+
+    @Override
+    public List<Cita> getCitasPorPaciente(Paciente paciente) {
+        List<Cita> resultado = new ArrayList<>();
+        for (CitaManager particion : particiones.values()) {
+            resultado.addAll(particion.getCitasPorPaciente(paciente));
+        }
+        resultado.sort(Comparator.comparing(Cita::getFechaHora));
+        return List.copyOf(resultado);
+    }
+
+    @Override
+    public List<Cita> getCitasPorMedico(Medico medico) {
+        return particion(medico).getCitasPorMedico(medico);
+    }
+
+    @Override
+    public List<Cita> getCitasPorSala(Sala sala) {
+        return particiones.get(sala.getDepartamento().getEspecialidad()).getCitasPorSala(sala);
+    }
+
+    // Todas las particiones en un archivo, una después de la otra.
+    @Override
+    public void guardarCitas(String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            for (CitaManager particion : particiones.values()) {
+                particion.escribirCitas(writer);
+            }
+        }
+    }
+
+    // Instantánea de una sola partición, tomada en su hilo: no frena a las demás.
+    public Future<?> guardarParticion(EspecialidadMedica especialidad, String filename) {
+        CitaManager particion = getParticion(especialidad);
+        return ejecutores.get(especialidad).submit(() -> {
+            particion.guardarCitas(filename);
+            return null;
+        });
+    }
+
+    @Override
+    public void cargarCitas(String filename, Map<String, Paciente> pacientes,
+                            Map<String, Medico> medicos, Map<String, Sala> salas)
+            throws IOException, ClassNotFoundException, CitaException {
+        Map<EspecialidadMedica, List<String>> lineas = new EnumMap<>(EspecialidadMedica.class);
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            lineas.put(especialidad, new ArrayList<>());
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Sólo hace falta el médico para elegir la partición; el resto lo valida ella
+                String[] campos = line.split(",", 3);
+                Medico medico = campos.length == 3 ? medicos.get(campos[1]) : null;
+                if (medico == null) {
+                    String error = campos.length == 3 ? "Médico no encontrado: " + campos[1]
+                            : "Formato de CSV inválido para Cita: " + line;
+                    System.err.println("Error al cargar cita desde CSV: " + line + " - " + error);
+                    throw new CitaException(error);
+                }
+                lineas.get(medico.getEspecialidad()).add(line);
+            }
+        }
+
+        List<CompletableFuture<Void>> cargas = new ArrayList<>();
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            CitaManager particion = particiones.get(especialidad);
+            Iterable<String> propias = lineas.get(especialidad);
+            cargas.add(CompletableFuture.runAsync(() -> {
+                try {
+                    particion.cargarLineas(propias.iterator(), filename, pacientes, medicos, salas);
+                } catch (CitaException e) {
+                    throw new CompletionException(e);
+                }
+            }, ejecutores.get(especialidad)));
+        }
+        esperar(CompletableFuture.allOf(cargas.toArray(CompletableFuture[]::new)), "Carga interrumpida.");
+    }
+
+    // En todas las particiones: el oyente recibe los eventos de cualquier especialidad.
+    @Override
+    public void agregarOyente(OyenteCita oyente) {
+        Objects.requireNonNull(oyente, "El oyente no puede ser nulo");
+        particiones.values().forEach(particion -> particion.agregarOyente(oyente));
+    }
+
+    @Override
+    public void quitarOyente(OyenteCita oyente) {
+        particiones.values().forEach(particion -> particion.quitarOyente(oyente));
+    }
+
+    // Toma los locks de todas las particiones, siempre en el mismo orden.
+    @Override
+    public void enExclusiva(Runnable accion) {
+        enExclusiva(particiones.values().iterator(), accion);
+    }
+
+    private static void enExclusiva(Iterator<CitaManager> resto, Runnable accion) {
+        if (resto.hasNext()) {
+            resto.next().enExclusiva(() -> enExclusiva(resto, accion));
+        } else {
+            accion.run();
+        }
+    }
+
+    private CitaManager particion(Medico medico) {
+        return particiones.get(especialidad(medico));
+    }
+
+    private static EspecialidadMedica especialidad(Medico medico) {
+        return Objects.requireNonNull(medico, "El médico no puede ser nulo").getEspecialidad();
+    }
+
+    @Override
+    public void close() {
+        ejecutores.values().forEach(ExecutorService::shutdown);
+        try {
+            for (ExecutorService ejecutor : ejecutores.values()) {
+                ejecutor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        particiones.values().forEach(CitaManager::close);
+    }
+}
@@ -5,10 +5,14 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
-interface CitaService {
+public interface CitaService {
     Cita programarCita(Paciente paciente, Medico medico, Sala sala,
                        LocalDateTime fechaHora, BigDecimal costo) throws CitaException;
 
+    void cambiarEstado(Cita cita, EstadoCita estado);
+
+    void cambiarObservaciones(Cita cita, String observaciones);
+
     List<Cita> getCitasPorPaciente(Paciente paciente);
 
     List<Cita> getCitasPorMedico(Medico medico);
@@ -20,4 +24,13 @@ interface CitaService {
     void cargarCitas(String filename, Map<String, Paciente> pacientes,
                      Map<String, Medico> medicos, Map<String, Sala> salas)
             throws IOException, ClassNotFoundException, CitaException;
+
+    // Oyentes de las reservas, cambios de estado y bajas de esta agenda.
+    void agregarOyente(OyenteCita oyente);
+
+    void quitarOyente(OyenteCita oyente);
+
+    // Corre la acción sin reservas ni cambios de estado en curso: las listas de citas de
+    // pacientes, médicos y salas no cambian mientras tanto.
+    void enExclusiva(Runnable accion);
 }
@@ -23,6 +23,7 @@ public class Departamento implements Serializable {
     private Long id;
 
     @Column(nullable = false, length = 80)
+    @Convert(converter = TextoCompartido.class)
     private String nombre;
 
     @Enumerated(EnumType.STRING)
@@ -0,0 +1,76 @@
+package org.jcr.entidades;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Interna textos repetidos (tipos de sala, nombres de departamento, observaciones,
+ * diagnósticos, alergias...) para que un millón de filas con "Control de rutina" compartan
+ * un solo String en lugar de un millón de copias iguales.
+ *
+ * Es una tabla de tamaño fijo indexada por hash, sin candados y con pérdida: si dos textos
+ * caen en la misma posición el último desplaza al anterior, que simplemente deja de
+ * compartirse. La memoria queda acotada aunque lleguen millones de valores distintos, y a
+ * diferencia de String.intern() nada queda retenido para siempre.
+ *
+ * Las posiciones se leen y escriben sin sincronizar a propósito: String es inmutable, así
+ * que un hilo que ve un valor viejo sólo pierde una coincidencia.
+ */
+public final class DiccionarioTextos {
+
+    public static final DiccionarioTextos COMPARTIDO =
+            new DiccionarioTextos(Integer.getInteger("hospital.diccionario.posiciones", 1 << 14));
+
+    // Los textos largos casi nunca se repiten y ocuparían la posición de uno corto que sí
+    static final int LARGO_MAXIMO = 120;
+
+    private final String[] posiciones;
+    private final int mascara;
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder altas = new LongAdder();
+
+    // Con 0 posiciones no interna nada (-Dhospital.diccionario.posiciones=0 para comparar).
+    public DiccionarioTextos(int posiciones) {
+        if (posiciones < 0 || posiciones > 1 << 24) {
+            throw new IllegalArgumentException("Cantidad de posiciones inválida: " + posiciones);
+        }
+        // Potencia de dos para indexar con una máscara
+        int tamanio = Integer.highestOneBit(posiciones);
+        this.posiciones = new String[tamanio < posiciones ? tamanio << 1 : tamanio];
+        this.mascara = this.posiciones.length - 1;
+    }
+
+    public String canonico(String texto) {
+        if (texto == null || texto.isEmpty() || texto.length() > LARGO_MAXIMO || posiciones.length == 0) {
+            return texto;
+        }
+        int h = texto.hashCode();
+        int i = (h ^ (h >>> 16)) & mascara;
+        String existente = posiciones[i];
+        if (existente != null && existente.hashCode() == h && existente.equals(texto)) {
+            aciertos.increment();
+            return existente;
+        }
+        posiciones[i] = texto;
+        altas.increment();
+        return texto;
+    }
+
+    public int getPosiciones() {
+        return posiciones.length;
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getAltas() {
+        return altas.sum();
+    }
+
+    public void reiniciar() {
+        Arrays.fill(posiciones, null);
+        aciertos.reset();
+        altas.reset();
+    }
+}
@@ -2,6 +2,7 @@ package org.jcr.entidades;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
@@ -9,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Entity
 @Getter
@@ -18,6 +20,8 @@ import java.util.Objects;
 @Builder
 public class HistoriaClinica implements Serializable {
 
+    private static final List<OyenteHistoriaClinica> OYENTES = new CopyOnWriteArrayList<>();
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -31,19 +35,38 @@ public class HistoriaClinica implements Serializable {
 
     @Column(nullable = false)
     private LocalDateTime fechaCreacion;
+
+    // Agregar un registro a cualquiera de las listas también sube la versión
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    /*
+     * Listas con @OrderColumn: agregar un registro es un único INSERT en la posición nueva.
+     * Como bag (sin columna de orden) Hibernate borraba y reinsertaba la colección entera.
+     */
     @ElementCollection
+    @BatchSize(size = 100)
     @CollectionTable(name = "diagnosticos", joinColumns = @JoinColumn(name = "historia_id"))
+    @OrderColumn(name = "orden")
     @Column(name = "diagnostico", nullable = false, length = 200)
+    @Convert(converter = TextoCompartido.class)
     private List<String> diagnosticos = new ArrayList<>();
 
     @ElementCollection
+    @BatchSize(size = 100)
     @CollectionTable(name = "tratamientos", joinColumns = @JoinColumn(name = "historia_id"))
+    @OrderColumn(name = "orden")
     @Column(name = "tratamiento", nullable = false, length = 200)
+    @Convert(converter = TextoCompartido.class)
     private List<String> tratamientos = new ArrayList<>();
 
     @ElementCollection
+    @BatchSize(size = 100)
     @CollectionTable(name = "alergias", joinColumns = @JoinColumn(name = "historia_id"))
+    @OrderColumn(name = "orden")
     @Column(name = "alergia", nullable = false, length = 200)
+    @Convert(converter = TextoCompartido.class)
     private List<String> alergias = new ArrayList<>();
 
     public HistoriaClinica(Paciente paciente) {
@@ -59,18 +82,35 @@ public class HistoriaClinica implements Serializable {
     public void agregarDiagnostico(String diagnostico) {
         if (diagnostico != null && !diagnostico.trim().isEmpty()) {
             diagnosticos.add(diagnostico);
+            notificar(TipoRegistroClinico.DIAGNOSTICO, diagnostico);
         }
     }
 
     public void agregarTratamiento(String tratamiento) {
         if (tratamiento != null && !tratamiento.trim().isEmpty()) {
             tratamientos.add(tratamiento);
+            notificar(TipoRegistroClinico.TRATAMIENTO, tratamiento);
         }
     }
 
     public void agregarAlergia(String alergia) {
         if (alergia != null && !alergia.trim().isEmpty()) {
             alergias.add(alergia);
+            notificar(TipoRegistroClinico.ALERGIA, alergia);
+        }
+    }
+
+    public static void agregarOyente(OyenteHistoriaClinica oyente) {
+        OYENTES.add(Objects.requireNonNull(oyente, "El oyente no puede ser nulo"));
+    }
+
+    public static void quitarOyente(OyenteHistoriaClinica oyente) {
+        OYENTES.remove(oyente);
+    }
+
+    private void notificar(TipoRegistroClinico tipo, String texto) {
+        for (OyenteHistoriaClinica oyente : OYENTES) {
+            oyente.registroAgregado(this, tipo, texto);
         }
     }
 
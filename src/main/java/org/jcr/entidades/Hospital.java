@@ -22,12 +22,15 @@ public class Hospital implements Serializable {
     private Long id;
 
     @Column(nullable = false, length = 80)
+    @Convert(converter = TextoCompartido.class)
     private String nombre;
 
     @Column(nullable = false, length = 150)
+    @Convert(converter = TextoCompartido.class)
     private String direccion;
 
     @Column(nullable = false, length = 30)
+    @Convert(converter = TextoCompartido.class)
     private String telefono;
 
     @OneToMany(mappedBy = "hospital", cascade = CascadeType.ALL, orphanRemoval = true)
@@ -47,15 +50,22 @@ public class Hospital implements Serializable {
 
     public void agregarDepartamento(Departamento departamento) {
         if (departamento != null && !departamentos.contains(departamento)) {
-            departamentos.add(departamento);
-            departamento.setHospital(this);
+            // setHospital ya lo agrega a la lista; agregarlo acá también lo duplicaba
+            if (departamento.getHospital() == this) {
+                departamentos.add(departamento);
+            } else {
+                departamento.setHospital(this);
+            }
         }
     }
 
     public void agregarPaciente(Paciente paciente) {
         if (paciente != null && !pacientes.contains(paciente)) {
-            pacientes.add(paciente);
-            paciente.setHospital(this);
+            if (paciente.getHospital() == this) {
+                pacientes.add(paciente);
+            } else {
+                paciente.setHospital(this);
+            }
         }
     }
 
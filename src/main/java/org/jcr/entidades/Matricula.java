@@ -20,14 +20,31 @@ public class Matricula implements Serializable {
         this.numero = validarMatricula(numero);
     }
 
+    private Matricula(String numero, boolean sinValidar) {
+        this.numero = numero;
+    }
+
+    // Para números ya validados (ver Medico.sinValidar).
+    public static Matricula sinValidar(String numero) {
+        return new Matricula(numero, true);
+    }
+
     private String validarMatricula(String numero) {
         Objects.requireNonNull(numero, "El número de matrícula no puede ser nulo");
-        if (!numero.matches("MP-\\d{4,6}")) {
+        if (!esMatriculaValida(numero)) {
             throw new IllegalArgumentException("Formato de matrícula inválido. Debe ser como MP-12345");
         }
         return numero;
     }
 
+    // Equivale a numero.matches("MP-\\d{4,6}") sin compilar una expresión regular por llamada.
+    public static boolean esMatriculaValida(CharSequence numero) {
+        int largo = numero.length();
+        return largo >= 7 && largo <= 9
+                && numero.charAt(0) == 'M' && numero.charAt(1) == 'P' && numero.charAt(2) == '-'
+                && Persona.sonDigitos(numero, 3, largo);
+    }
+
     @Override
     public String toString() {
         return "Matricula{" +
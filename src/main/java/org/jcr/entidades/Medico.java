@@ -42,6 +42,24 @@ public class Medico extends Persona implements Serializable {
         this.citas = new ArrayList<>();
     }
 
+    private Medico(String nombre, String apellido, String dni, LocalDate fechaNacimiento,
+                   TipoSangre tipoSangre, Matricula matricula, EspecialidadMedica especialidad) {
+        super(nombre, apellido, dni, fechaNacimiento, tipoSangre, true);
+        this.matricula = matricula;
+        this.especialidad = especialidad;
+        this.citas = new ArrayList<>();
+    }
+
+    /*
+     * Construcción sin validaciones para cargas masivas de datos ya validados. Lo que viene de
+     * JPA no pasa por acá: Hibernate usa el constructor sin argumentos y asigna los campos.
+     */
+    public static Medico sinValidar(String nombre, String apellido, String dni, LocalDate fechaNacimiento,
+                                    TipoSangre tipoSangre, String numeroMatricula, EspecialidadMedica especialidad) {
+        return new Medico(nombre, apellido, dni, fechaNacimiento, tipoSangre,
+                Matricula.sinValidar(numeroMatricula), especialidad);
+    }
+
     public void setDepartamento(Departamento departamento) {
         if (this.departamento != departamento) {
             this.departamento = departamento;
@@ -0,0 +1,11 @@
+package org.jcr.entidades;
+
+public interface OyenteCita {
+
+    void citaReservada(Cita cita);
+
+    void estadoCambiado(Cita cita, EstadoCita anterior);
+
+    // Reserva deshecha porque no se pudo persistir.
+    void citaDescartada(Cita cita);
+}
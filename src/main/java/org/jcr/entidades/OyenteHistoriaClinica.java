@@ -0,0 +1,7 @@
+package org.jcr.entidades;
+
+@FunctionalInterface
+public interface OyenteHistoriaClinica {
+
+    void registroAgregado(HistoriaClinica historia, TipoRegistroClinico tipo, String texto);
+}
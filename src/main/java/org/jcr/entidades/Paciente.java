@@ -45,6 +45,22 @@ public class Paciente extends Persona implements Serializable {
         this.historiaClinica = new HistoriaClinica(this);
     }
 
+    private Paciente(String nombre, String apellido, String dni, LocalDate fechaNacimiento,
+                     TipoSangre tipoSangre, String telefono, String direccion, boolean sinValidar) {
+        super(nombre, apellido, dni, fechaNacimiento, tipoSangre, true);
+        this.telefono = telefono;
+        this.direccion = direccion;
+        this.citas = new ArrayList<>();
+
+        this.historiaClinica = new HistoriaClinica(this);
+    }
+
+    // Igual que Medico.sinValidar: para filas ya validadas, no revalida ningún campo.
+    public static Paciente sinValidar(String nombre, String apellido, String dni, LocalDate fechaNacimiento,
+                                      TipoSangre tipoSangre, String telefono, String direccion) {
+        return new Paciente(nombre, apellido, dni, fechaNacimiento, tipoSangre, telefono, direccion, true);
+    }
+
     public void setHospital(Hospital hospital) {
         if (this.hospital != hospital) {
             if (this.hospital != null) {
@@ -21,9 +21,11 @@ public abstract class Persona implements Serializable {
     private Long id;
 
     @Column(nullable = false, length = 50)
+    @Convert(converter = TextoCompartido.class)
     protected String nombre;
 
     @Column(nullable = false, length = 50)
+    @Convert(converter = TextoCompartido.class)
     protected String apellido;
 
     @Column(nullable = false, unique = true, length = 8)
@@ -44,6 +46,16 @@ public abstract class Persona implements Serializable {
         this.tipoSangre = Objects.requireNonNull(tipoSangre, "El tipo de sangre no puede ser nulo");
     }
 
+    // Hidratación confiable (filas ya validadas: volcados propios, datos generados); no revalida.
+    protected Persona(String nombre, String apellido, String dni, LocalDate fechaNacimiento, TipoSangre tipoSangre,
+                      boolean sinValidar) {
+        this.nombre = nombre;
+        this.apellido = apellido;
+        this.dni = dni;
+        this.fechaNacimiento = fechaNacimiento;
+        this.tipoSangre = tipoSangre;
+    }
+
     public String getNombreCompleto() {
         return nombre + " " + apellido;
     }
@@ -62,12 +74,28 @@ public abstract class Persona implements Serializable {
 
     private String validarDni(String dni) {
         Objects.requireNonNull(dni, "El DNI no puede ser nulo");
-        if (!dni.matches("\\d{7,8}")) {
+        if (!esDniValido(dni)) {
             throw new IllegalArgumentException("El DNI debe tener 7 u 8 dígitos");
         }
         return dni;
     }
 
+    // Equivale a dni.matches("\\d{7,8}") sin compilar una expresión regular por llamada.
+    public static boolean esDniValido(CharSequence dni) {
+        int largo = dni.length();
+        return (largo == 7 || largo == 8) && sonDigitos(dni, 0, largo);
+    }
+
+    static boolean sonDigitos(CharSequence texto, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String toString() {
         return "Persona{" +
@@ -25,6 +25,7 @@ public class Sala implements Serializable {
     private String numero;
 
     @Column(nullable = false, length = 50)
+    @Convert(converter = TextoCompartido.class)
     private String tipo;
 
     @ManyToOne(fetch = FetchType.LAZY)
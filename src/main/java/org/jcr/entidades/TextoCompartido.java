@@ -0,0 +1,23 @@
+package org.jcr.entidades;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/*
+ * Pasa por DiccionarioTextos los valores que Hibernate lee de columnas con textos muy
+ * repetidos. Se aplica campo por campo con @Convert y no con autoApply: DNI, número de
+ * historia y demás valores únicos sólo ensuciarían el diccionario.
+ */
+@Converter
+public class TextoCompartido implements AttributeConverter<String, String> {
+
+    @Override
+    public String convertToDatabaseColumn(String valor) {
+        return valor;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String columna) {
+        return DiccionarioTextos.COMPARTIDO.canonico(columna);
+    }
+}
@@ -0,0 +1,17 @@
+package org.jcr.entidades;
+
+public enum TipoRegistroClinico {
+    DIAGNOSTICO("Diagnóstico"),
+    TRATAMIENTO("Tratamiento"),
+    ALERGIA("Alergia");
+
+    private final String descripcion;
+
+    TipoRegistroClinico(String descripcion) {
+        this.descripcion = descripcion;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+}
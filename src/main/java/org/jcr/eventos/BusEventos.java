@@ -0,0 +1,188 @@
+package org.jcr.eventos;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Bus de eventos en proceso sobre un buffer circular sin locks (estilo disruptor):
+ *
+ * - Los productores reclaman una secuencia con getAndIncrement, escriben la entrada y la
+ *   marcan publicada en `publicadas` (escritura volátil). No se pisan entre sí.
+ * - Cada suscripción tiene su hilo y su cursor; lee lotes de entradas publicadas
+ *   consecutivas. Nadie bloquea a nadie salvo un productor que alcanza al consumidor
+ *   más lento: espera (spin, yield, park) a que libere lugar.
+ * - Con diario, todo evento queda en un archivo y una suscripción puede empezar desde
+ *   cualquier secuencia pasada: relee el diario y sigue desde el buffer. Si el diario no
+ *   se puede escribir su suscripción falla y ya no se aceptan relecturas.
+ * - Una suscripción entra a la lista antes de tomar su secuencia inicial: mientras no la
+ *   tiene, los productores que dan la vuelta al buffer la esperan, así que nadie pisa la
+ *   primera entrada que tiene que leer.
+ */
+public class BusEventos implements AutoCloseable {
+
+    public static final int CAPACIDAD_PREDETERMINADA = 1 << 16;
+    public static final int LOTE_PREDETERMINADO = 256;
+
+    private final int mascara;
+    private final EventoRegistrado[] entradas;
+    private final AtomicLongArray publicadas;
+    private final AtomicLong siguiente;
+    private final List<Suscripcion> suscripciones = new CopyOnWriteArrayList<>();
+    private volatile long minimoConocido = -1;
+    private final DiarioEventos diario;
+    private final Suscripcion escritorDiario;
+
+    public BusEventos() {
+        this(CAPACIDAD_PREDETERMINADA);
+    }
+
+    public BusEventos(int capacidad) {
+        if (capacidad <= 0 || Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser una potencia de 2: " + capacidad);
+        }
+        this.mascara = capacidad - 1;
+        this.entradas = new EventoRegistrado[capacidad];
+        this.publicadas = new AtomicLongArray(capacidad);
+        for (int i = 0; i < capacidad; i++) {
+            publicadas.set(i, -1);
+        }
+        this.siguiente = new AtomicLong();
+        this.diario = null;
+        this.escritorDiario = null;
+    }
+
+    // Con diario: la numeración sigue desde el último evento del archivo.
+    public BusEventos(int capacidad, Path archivoDiario) throws IOException {
+        if (capacidad <= 0 || Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser una potencia de 2: " + capacidad);
+        }
+        this.mascara = capacidad - 1;
+        this.entradas = new EventoRegistrado[capacidad];
+        this.publicadas = new AtomicLongArray(capacidad);
+        for (int i = 0; i < capacidad; i++) {
+            publicadas.set(i, -1);
+        }
+        this.diario = new DiarioEventos(archivoDiario);
+        this.siguiente = new AtomicLong(diario.getUltimaSecuencia() + 1);
+        Suscripcion escritor = agregar("diario", diario::escribir, LOTE_PREDETERMINADO, true);
+        escritor.iniciar(siguiente.get(), null);
+        this.escritorDiario = escritor;
+    }
+
+    public long publicar(Evento evento) {
+        Objects.requireNonNull(evento, "El evento no puede ser nulo");
+        long secuencia = siguiente.getAndIncrement();
+        esperarLugar(secuencia);
+        int posicion = (int) secuencia & mascara;
+        entradas[posicion] = new EventoRegistrado(secuencia, Instant.now(), System.nanoTime(), evento);
+        publicadas.set(posicion, secuencia);
+        return secuencia;
+    }
+
+    // La posición de `secuencia` la ocupaba secuencia - capacidad: todos deben haberla procesado.
+    private void esperarLugar(long secuencia) {
+        long requerido = secuencia - entradas.length;
+        if (requerido <= minimoConocido) {
+            return;
+        }
+        long minimo;
+        for (int intentos = 0; (minimo = minimoCursores()) < requerido; intentos++) {
+            esperar(intentos);
+        }
+        minimoConocido = minimo;
+    }
+
+    private long minimoCursores() {
+        long minimo = Long.MAX_VALUE;
+        for (Suscripcion suscripcion : suscripciones) {
+            minimo = Math.min(minimo, suscripcion.getCursor());
+        }
+        return minimo;
+    }
+
+    static void esperar(int intentos) {
+        if (intentos < 100) {
+            Thread.onSpinWait();
+        } else if (intentos < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(1_000_000L, 50_000L << Math.min(5, (intentos - 200) / 50)));
+        }
+    }
+
+    // Recibe los eventos que se publiquen de ahora en más.
+    public Suscripcion suscribir(String nombre, ConsumidorEventos consumidor) {
+        return suscribir(nombre, consumidor, LOTE_PREDETERMINADO);
+    }
+
+    public Suscripcion suscribir(String nombre, ConsumidorEventos consumidor, int tamanioLote) {
+        Suscripcion suscripcion = agregar(nombre, consumidor, tamanioLote, false);
+        suscripcion.iniciar(siguiente.get(), null);
+        return suscripcion;
+    }
+
+    // Relee del diario desde `desde` (inclusive) y sigue con los eventos nuevos, sin huecos ni repetidos.
+    public Suscripcion suscribirDesde(String nombre, ConsumidorEventos consumidor, long desde, int tamanioLote) {
+        Suscripcion suscripcion = agregar(nombre, consumidor, tamanioLote, false);
+        long actual = siguiente.get();
+        if (desde >= actual) {
+            suscripcion.iniciar(desde, null);
+            return suscripcion;
+        }
+        if (diario == null || escritorDiario.getError() != null) {
+            quitar(suscripcion);
+            throw new IllegalStateException(diario == null
+                    ? "Sin diario no se puede releer desde la secuencia " + desde
+                    : "El diario de eventos dejó de escribirse: " + escritorDiario.getError().getMessage());
+        }
+        suscripcion.iniciar(actual, new Suscripcion.Relectura(diario, escritorDiario, Math.max(desde, 0), actual - 1));
+        return suscripcion;
+    }
+
+    // En la lista todavía sin secuencia inicial; hay que llamar a iniciar() enseguida.
+    private Suscripcion agregar(String nombre, ConsumidorEventos consumidor, int tamanioLote, boolean critica) {
+        Suscripcion suscripcion = new Suscripcion(this, nombre, consumidor, tamanioLote, critica);
+        suscripciones.add(suscripcion);
+        return suscripcion;
+    }
+
+    void quitar(Suscripcion suscripcion) {
+        suscripciones.remove(suscripcion);
+    }
+
+    // Entrada publicada con esa secuencia, o null si todavía no lo está.
+    EventoRegistrado leer(long secuencia) {
+        int posicion = (int) secuencia & mascara;
+        return publicadas.get(posicion) == secuencia ? entradas[posicion] : null;
+    }
+
+    // Última secuencia reclamada; puede no estar publicada todavía.
+    public long getUltimaSecuencia() {
+        return siguiente.get() - 1;
+    }
+
+    public int getCapacidad() {
+        return entradas.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Suscripcion suscripcion : suscripciones) {
+            if (suscripcion != escritorDiario) {
+                suscripcion.close();
+            }
+        }
+        if (escritorDiario != null) {
+            escritorDiario.esperarHasta(getUltimaSecuencia(), 5_000);
+            escritorDiario.close();
+            diario.close();
+        }
+    }
+}
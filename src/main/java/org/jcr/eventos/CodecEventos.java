@@ -0,0 +1,119 @@
+package org.jcr.eventos;
+
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.TipoRegistroClinico;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Una línea del diario: secuencia, instante, tipo y campos separados por tabulador.
+ * Tabulador, salto de línea y barra invertida se escapan; un campo vacío en un id o
+ * enum es null.
+ */
+final class CodecEventos {
+
+    private CodecEventos() {
+    }
+
+    static String aLinea(EventoRegistrado registrado) {
+        StringBuilder linea = new StringBuilder(96);
+        linea.append(registrado.secuencia()).append('\t').append(registrado.instante());
+        Evento evento = registrado.evento();
+        if (evento instanceof Evento.CitaReservada e) {
+            campos(linea, "RESERVADA", e.paciente(), e.medico(), e.sala(), e.fechaHora(), e.costo());
+        } else if (evento instanceof Evento.EstadoCitaCambiado e) {
+            campos(linea, "ESTADO", e.paciente(), e.medico(), e.fechaHora(), e.anterior(), e.nuevo());
+        } else if (evento instanceof Evento.CitaCancelada e) {
+            campos(linea, "CANCELADA", e.paciente(), e.medico(), e.fechaHora(), e.motivo());
+        } else if (evento instanceof Evento.RegistroClinicoAgregado e) {
+            campos(linea, "REGISTRO", e.numeroHistoria(), e.paciente(), e.tipo(), e.texto());
+        } else if (evento instanceof Evento.CitaPersistida e) {
+            campos(linea, "PERSISTIDA", e.id(), e.pacienteId(), e.medicoId(), e.fechaHora(), e.estado(), e.nueva());
+        }
+        return linea.toString();
+    }
+
+    private static void campos(StringBuilder linea, Object... valores) {
+        for (Object valor : valores) {
+            linea.append('\t');
+            if (valor != null) {
+                escapar(linea, valor.toString());
+            }
+        }
+    }
+
+    private static void escapar(StringBuilder linea, String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '\t' -> linea.append("\\t");
+                case '\n' -> linea.append("\\n");
+                case '\r' -> linea.append("\\r");
+                case '\\' -> linea.append("\\\\");
+                default -> linea.append(c);
+            }
+        }
+    }
+
+    static EventoRegistrado deLinea(String linea) {
+        List<String> c = separar(linea);
+        if (c.size() < 3) {
+            throw new IllegalArgumentException("Línea de diario inválida: " + linea);
+        }
+        Evento evento = switch (c.get(2)) {
+            case "RESERVADA" -> new Evento.CitaReservada(c.get(3), c.get(4), c.get(5),
+                    LocalDateTime.parse(c.get(6)), new BigDecimal(c.get(7)));
+            case "ESTADO" -> new Evento.EstadoCitaCambiado(c.get(3), c.get(4), LocalDateTime.parse(c.get(5)),
+                    estado(c.get(6)), estado(c.get(7)));
+            case "CANCELADA" -> new Evento.CitaCancelada(c.get(3), c.get(4), LocalDateTime.parse(c.get(5)), c.get(6));
+            case "REGISTRO" -> new Evento.RegistroClinicoAgregado(c.get(3), c.get(4),
+                    TipoRegistroClinico.valueOf(c.get(5)), c.get(6));
+            case "PERSISTIDA" -> new Evento.CitaPersistida(Long.parseLong(c.get(3)), id(c.get(4)), id(c.get(5)),
+                    LocalDateTime.parse(c.get(6)), estado(c.get(7)), Boolean.parseBoolean(c.get(8)));
+            default -> throw new IllegalArgumentException("Tipo de evento desconocido: " + c.get(2));
+        };
+        return new EventoRegistrado(Long.parseLong(c.get(0)), Instant.parse(c.get(1)), 0, evento);
+    }
+
+    // Sólo la secuencia, para ubicarse en el diario sin decodificar el resto.
+    static long secuencia(String linea) {
+        int fin = linea.indexOf('\t');
+        return Long.parseLong(fin < 0 ? linea : linea.substring(0, fin));
+    }
+
+    private static List<String> separar(String linea) {
+        List<String> campos = new ArrayList<>(10);
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (c == '\t') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else if (c == '\\' && i + 1 < linea.length()) {
+                char siguiente = linea.charAt(++i);
+                actual.append(switch (siguiente) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> siguiente;
+                });
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    private static Long id(String campo) {
+        return campo.isEmpty() ? null : Long.valueOf(campo);
+    }
+
+    private static EstadoCita estado(String campo) {
+        return campo.isEmpty() ? null : EstadoCita.valueOf(campo);
+    }
+}
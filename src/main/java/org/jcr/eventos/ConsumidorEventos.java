@@ -0,0 +1,10 @@
+package org.jcr.eventos;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface ConsumidorEventos {
+
+    // Lote de eventos consecutivos, en orden de secuencia. Se llama siempre desde el mismo hilo.
+    void procesar(List<EventoRegistrado> lote) throws Exception;
+}
@@ -0,0 +1,93 @@
+package org.jcr.eventos;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Diario de eventos en texto, una línea por evento (ver CodecEventos). Lo escribe una
+ * suscripción propia del bus, con un flush por lote: lo que está en el archivo es lo que
+ * se puede releer.
+ */
+class DiarioEventos implements AutoCloseable {
+
+    private final Path archivo;
+    private final long ultimaSecuencia;
+    private final BufferedWriter escritor;
+
+    DiarioEventos(Path archivo) throws IOException {
+        this.archivo = archivo;
+        this.ultimaSecuencia = ultimaSecuencia(archivo);
+        this.escritor = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static long ultimaSecuencia(Path archivo) throws IOException {
+        long ultima = -1;
+        if (Files.exists(archivo)) {
+            try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    if (!linea.isEmpty()) {
+                        ultima = CodecEventos.secuencia(linea);
+                    }
+                }
+            }
+        }
+        return ultima;
+    }
+
+    long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    void escribir(List<EventoRegistrado> lote) throws IOException {
+        for (EventoRegistrado evento : lote) {
+            escritor.write(CodecEventos.aLinea(evento));
+            escritor.newLine();
+        }
+        escritor.flush();
+    }
+
+    // Entrega en lotes los eventos con secuencia entre desde y hasta (inclusive).
+    void releer(long desde, long hasta, int tamanioLote, ConsumidorLote consumidor) throws IOException {
+        List<EventoRegistrado> lote = new ArrayList<>(tamanioLote);
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                if (linea.isEmpty()) {
+                    continue;
+                }
+                long secuencia = CodecEventos.secuencia(linea);
+                if (secuencia > hasta) {
+                    break;
+                }
+                if (secuencia >= desde) {
+                    lote.add(CodecEventos.deLinea(linea));
+                    if (lote.size() == tamanioLote) {
+                        consumidor.entregar(lote);
+                        lote = new ArrayList<>(tamanioLote);
+                    }
+                }
+            }
+        }
+        if (!lote.isEmpty()) {
+            consumidor.entregar(lote);
+        }
+    }
+
+    interface ConsumidorLote {
+        void entregar(List<EventoRegistrado> lote);
+    }
+
+    @Override
+    public void close() throws IOException {
+        escritor.close();
+    }
+}
@@ -0,0 +1,36 @@
+package org.jcr.eventos;
+
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.TipoRegistroClinico;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/*
+ * Cambios publicados en el BusEventos. Las citas se identifican por paciente, médico y
+ * fecha (DNI, DNI, minuto) porque al reservarse todavía no tienen id; CitaPersistida trae
+ * el id una vez confirmada la transacción.
+ */
+public sealed interface Evento {
+
+    record CitaReservada(String paciente, String medico, String sala, LocalDateTime fechaHora,
+                         BigDecimal costo) implements Evento {
+    }
+
+    record EstadoCitaCambiado(String paciente, String medico, LocalDateTime fechaHora,
+                              EstadoCita anterior, EstadoCita nuevo) implements Evento {
+    }
+
+    // motivo: "cancelada" (estado CANCELADA) o "descartada" (no se pudo persistir)
+    record CitaCancelada(String paciente, String medico, LocalDateTime fechaHora, String motivo) implements Evento {
+    }
+
+    record RegistroClinicoAgregado(String numeroHistoria, String paciente, TipoRegistroClinico tipo,
+                                   String texto) implements Evento {
+    }
+
+    // Desde Hibernate, después del commit: nueva = INSERT, si no UPDATE.
+    record CitaPersistida(long id, Long pacienteId, Long medicoId, LocalDateTime fechaHora,
+                          EstadoCita estado, boolean nueva) implements Evento {
+    }
+}
@@ -0,0 +1,7 @@
+package org.jcr.eventos;
+
+import java.time.Instant;
+
+// publicadoNanos (System.nanoTime) sirve para medir latencia en el proceso; es 0 si viene del diario.
+public record EventoRegistrado(long secuencia, Instant instante, long publicadoNanos, Evento evento) {
+}
@@ -0,0 +1,201 @@
+package org.jcr.eventos;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PreCollectionUpdateEvent;
+import org.hibernate.event.spi.PreCollectionUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.TipoRegistroClinico;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/*
+ * Publica CitaPersistida cuando se confirma el INSERT o UPDATE de una Cita: los
+ * consumidores ven el id recién asignado y nunca una escritura que terminó en rollback.
+ * Sólo se leen ids de paciente y médico, que no inicializan proxies.
+ *
+ * RegistroClinicoAgregado sale del mismo lado: al hacer flush de una lista de registros
+ * de HistoriaClinica se compara con la foto que Hibernate tomó al cargarla, y lo nuevo
+ * queda pendiente hasta el commit de la historia (agregar un registro sube su versión, así
+ * que siempre hay UPDATE). Una historia nueva publica todos sus registros con el INSERT.
+ * Un rollback descarta lo pendiente, y armar historias en memoria (RestauradorVolcado)
+ * no publica nada.
+ *
+ * Registrado en META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class IntegradorEventos implements Integrator {
+
+    // Débil: la historia de una sesión abandonada sin commit ni rollback se lleva lo suyo
+    private final Map<HistoriaClinica, List<Evento>> pendientes = new WeakHashMap<>();
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                          SessionFactoryImplementor sessionFactory) {
+        EventListenerRegistry registro = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        if (registro == null) {
+            return;
+        }
+        registro.appendListeners(EventType.POST_COMMIT_INSERT, new AlInsertar());
+        registro.appendListeners(EventType.POST_COMMIT_UPDATE, new AlActualizar());
+        registro.appendListeners(EventType.PRE_COLLECTION_UPDATE, new AlCambiarRegistros());
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private static boolean esCitaOHistoria(EntityPersister persister) {
+        return persister.getMappedClass() == Cita.class || persister.getMappedClass() == HistoriaClinica.class;
+    }
+
+    private static TipoRegistroClinico tipo(String rol) {
+        return switch (rol.substring(rol.lastIndexOf('.') + 1)) {
+            case "diagnosticos" -> TipoRegistroClinico.DIAGNOSTICO;
+            case "tratamientos" -> TipoRegistroClinico.TRATAMIENTO;
+            case "alergias" -> TipoRegistroClinico.ALERGIA;
+            default -> null;
+        };
+    }
+
+    private static Evento registro(HistoriaClinica historia, TipoRegistroClinico tipo, String texto) {
+        Paciente paciente = historia.getPaciente();
+        return new Evento.RegistroClinicoAgregado(historia.getNumeroHistoria(),
+                paciente != null ? paciente.getDni() : null, tipo, texto);
+    }
+
+    // Los registros de `actual` que no estaban en `anterior`, contando repetidos.
+    private static List<String> nuevos(List<?> anterior, List<?> actual) {
+        Map<Object, Integer> previos = new HashMap<>();
+        for (Object texto : anterior) {
+            previos.merge(texto, 1, Integer::sum);
+        }
+        List<String> nuevos = new ArrayList<>();
+        for (Object texto : actual) {
+            if (previos.merge(texto, -1, Integer::sum) < 0) {
+                nuevos.add((String) texto);
+            }
+        }
+        return nuevos;
+    }
+
+    private void confirmarHistoria(HistoriaClinica historia, boolean nueva, boolean confirmada) {
+        List<Evento> eventos;
+        synchronized (pendientes) {
+            eventos = pendientes.remove(historia);
+        }
+        if (!confirmada) {
+            return;
+        }
+        if (nueva) {
+            // El INSERT ya incluye todo lo que se haya agregado antes del commit
+            eventos = new ArrayList<>();
+            for (String texto : historia.getDiagnosticos()) {
+                eventos.add(registro(historia, TipoRegistroClinico.DIAGNOSTICO, texto));
+            }
+            for (String texto : historia.getTratamientos()) {
+                eventos.add(registro(historia, TipoRegistroClinico.TRATAMIENTO, texto));
+            }
+            for (String texto : historia.getAlergias()) {
+                eventos.add(registro(historia, TipoRegistroClinico.ALERGIA, texto));
+            }
+        }
+        if (eventos != null) {
+            eventos.forEach(PuenteEventos::publicar);
+        }
+    }
+
+    private static void publicar(Object entidad, boolean nueva) {
+        if (entidad instanceof Cita cita && cita.getId() != null) {
+            PuenteEventos.publicar(new Evento.CitaPersistida(cita.getId(),
+                    cita.getPaciente() != null ? cita.getPaciente().getId() : null,
+                    cita.getMedico() != null ? cita.getMedico().getId() : null,
+                    cita.getFechaHora(), cita.getEstado(), nueva));
+        }
+    }
+
+    private final class AlInsertar implements PostCommitInsertEventListener {
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof HistoriaClinica historia) {
+                confirmarHistoria(historia, true, true);
+            } else {
+                publicar(event.getEntity(), true);
+            }
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+            if (event.getEntity() instanceof HistoriaClinica historia) {
+                confirmarHistoria(historia, true, false);
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return esCitaOHistoria(persister);
+        }
+    }
+
+    private final class AlActualizar implements PostCommitUpdateEventListener {
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (event.getEntity() instanceof HistoriaClinica historia) {
+                confirmarHistoria(historia, false, true);
+            } else {
+                publicar(event.getEntity(), false);
+            }
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+            if (event.getEntity() instanceof HistoriaClinica historia) {
+                confirmarHistoria(historia, false, false);
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return esCitaOHistoria(persister);
+        }
+    }
+
+    // En el flush, antes de escribir la lista: la foto guardada todavía es la de la base.
+    private final class AlCambiarRegistros implements PreCollectionUpdateEventListener {
+        @Override
+        public void onPreUpdateCollection(PreCollectionUpdateEvent event) {
+            if (!(event.getAffectedOwnerOrNull() instanceof HistoriaClinica historia)
+                    || !(event.getCollection().getStoredSnapshot() instanceof List<?> anterior)
+                    || !(event.getCollection() instanceof List<?> actual)) {
+                return;
+            }
+            TipoRegistroClinico tipo = tipo(event.getCollection().getRole());
+            if (tipo == null) {
+                return;
+            }
+            List<String> nuevos = nuevos(anterior, actual);
+            if (nuevos.isEmpty()) {
+                return;
+            }
+            synchronized (pendientes) {
+                List<Evento> eventos = pendientes.computeIfAbsent(historia, h -> new ArrayList<>());
+                nuevos.forEach(texto -> eventos.add(registro(historia, tipo, texto)));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.jcr.eventos;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaService;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.OyenteCita;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Conecta las fuentes de cambios con un BusEventos: los oyentes de una agenda de citas y los
+ * listeners de Hibernate de IntegradorEventos (citas y registros clínicos confirmados). Un
+ * solo bus a la vez.
+ *
+ * Los oyentes de citas corren dentro del lock de CitaManager: sólo arman el evento y lo
+ * dejan en una cola. Un hilo propio lo publica en el bus, así que un suscriptor lento que
+ * llena el buffer frena ese hilo y no las reservas. La cola no tiene límite; desconectar()
+ * publica lo que quede antes de soltar el bus.
+ */
+public final class PuenteEventos {
+
+    private static volatile Reenvio reenvio;
+    private static CitaService agenda;
+    private static OyenteCita oyenteCitas;
+
+    private PuenteEventos() {
+    }
+
+    public static synchronized void conectar(BusEventos destino, CitaService citas) {
+        Objects.requireNonNull(destino, "El bus no puede ser nulo");
+        Objects.requireNonNull(citas, "La agenda no puede ser nula");
+        desconectar();
+        Reenvio salida = new Reenvio(destino);
+        oyenteCitas = new OyenteCita() {
+            @Override
+            public void citaReservada(Cita cita) {
+                salida.encolar(new Evento.CitaReservada(cita.getPaciente().getDni(), cita.getMedico().getDni(),
+                        cita.getSala().getNumero(), cita.getFechaHora(), cita.getCosto()));
+            }
+
+            @Override
+            public void estadoCambiado(Cita cita, EstadoCita anterior) {
+                if (cita.getEstado() == EstadoCita.CANCELADA) {
+                    salida.encolar(cancelada(cita, "cancelada"));
+                } else {
+                    salida.encolar(new Evento.EstadoCitaCambiado(cita.getPaciente().getDni(),
+                            cita.getMedico().getDni(), cita.getFechaHora(), anterior, cita.getEstado()));
+                }
+            }
+
+            @Override
+            public void citaDescartada(Cita cita) {
+                salida.encolar(cancelada(cita, "descartada"));
+            }
+        };
+        citas.agregarOyente(oyenteCitas);
+        agenda = citas;
+        reenvio = salida;
+    }
+
+    public static synchronized void desconectar() {
+        if (oyenteCitas != null) {
+            agenda.quitarOyente(oyenteCitas);
+            agenda = null;
+            oyenteCitas = null;
+        }
+        if (reenvio != null) {
+            reenvio.cerrar();
+            reenvio = null;
+        }
+    }
+
+    // Para IntegradorEventos: sin bus conectado los eventos de Hibernate se ignoran.
+    static void publicar(Evento evento) {
+        Reenvio salida = reenvio;
+        if (salida != null) {
+            salida.encolar(evento);
+        }
+    }
+
+    // Cola de eventos hacia un bus, vaciada en orden por un solo hilo.
+    private static final class Reenvio {
+        private final BusEventos destino;
+        private final BlockingQueue<Evento> cola = new LinkedBlockingQueue<>();
+        private final Thread hilo;
+        private volatile boolean abierto = true;
+
+        Reenvio(BusEventos destino) {
+            this.destino = destino;
+            this.hilo = new Thread(this::reenviar, "puente-eventos");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+
+        void encolar(Evento evento) {
+            cola.add(evento);
+        }
+
+        private void reenviar() {
+            try {
+                while (abierto || !cola.isEmpty()) {
+                    Evento evento = cola.poll(50, TimeUnit.MILLISECONDS);
+                    if (evento != null) {
+                        destino.publicar(evento);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void cerrar() {
+            abierto = false;
+            try {
+                hilo.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Evento cancelada(Cita cita, String motivo) {
+        return new Evento.CitaCancelada(cita.getPaciente().getDni(), cita.getMedico().getDni(),
+                cita.getFechaHora(), motivo);
+    }
+}
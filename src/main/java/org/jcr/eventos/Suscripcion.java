@@ -0,0 +1,155 @@
+package org.jcr.eventos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Un consumidor del bus con su propio hilo y cursor (última secuencia procesada).
+ *
+ * Un error del consumidor se informa y el cursor sigue, salvo en una suscripción crítica
+ * (la que escribe el diario): ahí la suscripción falla sin avanzar el cursor, sale del bus y
+ * getError() devuelve la causa. Avanzar dejaría un hueco en el diario que las relecturas
+ * no verían.
+ */
+public class Suscripcion implements AutoCloseable {
+
+    // Tramo del diario a entregar antes de pasar al buffer.
+    record Relectura(DiarioEventos diario, Suscripcion escritor, long desde, long hasta) {
+    }
+
+    private final BusEventos bus;
+    private final String nombre;
+    private final ConsumidorEventos consumidor;
+    private final int tamanioLote;
+    private final boolean critica;
+    // Sin secuencia inicial todavía: los productores que dan la vuelta esperan a iniciar()
+    private final AtomicLong cursor = new AtomicLong(Long.MIN_VALUE);
+    private Relectura relectura;
+    private volatile boolean activa = true;
+    private volatile Exception error;
+    private Thread hilo;
+
+    Suscripcion(BusEventos bus, String nombre, ConsumidorEventos consumidor, int tamanioLote, boolean critica) {
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo");
+        }
+        this.bus = bus;
+        this.nombre = nombre;
+        this.consumidor = consumidor;
+        this.tamanioLote = tamanioLote;
+        this.critica = critica;
+    }
+
+    void iniciar(long desde, Relectura relectura) {
+        this.relectura = relectura;
+        cursor.set(desde - 1);
+        hilo = new Thread(this::consumir, "eventos-" + nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private void consumir() {
+        if (relectura != null && !releer()) {
+            // Sin la relectura completa no puede seguir: su cursor frenaría a los productores
+            activa = false;
+            bus.quitar(this);
+            return;
+        }
+        List<EventoRegistrado> lote = new ArrayList<>(tamanioLote);
+        int intentos = 0;
+        while (activa) {
+            long proxima = cursor.get() + 1;
+            EventoRegistrado evento;
+            while (lote.size() < tamanioLote && (evento = bus.leer(proxima + lote.size())) != null) {
+                lote.add(evento);
+            }
+            if (lote.isEmpty()) {
+                BusEventos.esperar(intentos++);
+                continue;
+            }
+            intentos = 0;
+            if (!entregar(lote)) {
+                return;
+            }
+            cursor.set(proxima + lote.size() - 1);
+            // Lista nueva por lote: el consumidor puede quedarse con la que recibió
+            lote = new ArrayList<>(tamanioLote);
+        }
+    }
+
+    // El cursor ya está en el presente, así que el buffer guarda lo nuevo mientras se relee.
+    private boolean releer() {
+        try {
+            if (!relectura.escritor().esperarHasta(relectura.hasta(), Long.MAX_VALUE)) {
+                if (relectura.escritor().getError() != null) {
+                    System.err.println("No se pudo releer el diario para " + nombre + ": el diario dejó de escribirse");
+                }
+                return false;
+            }
+            relectura.diario().releer(relectura.desde(), relectura.hasta(), tamanioLote, lote -> entregar(lote));
+            return activa;
+        } catch (IOException e) {
+            System.err.println("No se pudo releer el diario para " + nombre + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // false si la suscripción falló y el lote no cuenta como procesado.
+    private boolean entregar(List<EventoRegistrado> lote) {
+        try {
+            consumidor.procesar(lote);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error en el consumidor de eventos " + nombre + " (secuencias "
+                    + lote.get(0).secuencia() + "-" + lote.get(lote.size() - 1).secuencia() + "): " + e);
+            if (!critica) {
+                return true;
+            }
+            error = e;
+            activa = false;
+            bus.quitar(this);
+            return false;
+        }
+    }
+
+    // Espera a que el cursor llegue a `secuencia`; false si se agotó el tiempo o se cerró.
+    public boolean esperarHasta(long secuencia, long milisegundos) {
+        long limite = milisegundos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + milisegundos * 1_000_000;
+        while (cursor.get() < secuencia) {
+            if (!activa || System.nanoTime() > limite) {
+                return false;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    // Causa por la que falló una suscripción crítica, o null.
+    public Exception getError() {
+        return error;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    @Override
+    public void close() {
+        activa = false;
+        bus.quitar(this);
+        if (hilo != null && hilo != Thread.currentThread()) {
+            try {
+                hilo.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
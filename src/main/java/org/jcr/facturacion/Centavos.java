@@ -0,0 +1,58 @@
+package org.jcr.facturacion;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/*
+ * Montos como long de centavos: sumar es una instrucción y no un BigDecimal nuevo. Toda
+ * operación que pueda desbordar usa Math.*Exact, así que un total imposible corta la
+ * facturación con ArithmeticException en vez de dar la vuelta en silencio.
+ *
+ * Los porcentajes van en puntos base (1 % = 100) y se redondean al centavo par más cercano,
+ * igual que BigDecimal con RoundingMode.HALF_EVEN.
+ */
+public final class Centavos {
+
+    public static final int PUNTOS_BASE_TOTAL = 10_000;
+
+    private Centavos() {
+    }
+
+    // Exacto: un monto con fracciones de centavo o fuera de rango es un error, no se redondea.
+    public static long de(BigDecimal monto) {
+        return monto.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal aBigDecimal(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    public static long porcentaje(long centavos, int puntosBase) {
+        return dividir(Math.multiplyExact(centavos, (long) puntosBase), PUNTOS_BASE_TOTAL);
+    }
+
+    // División entera con redondeo HALF_EVEN para cualquier signo.
+    public static long dividir(long dividendo, long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("División por cero");
+        }
+        // El único cociente de long que no entra en un long: / lo devuelve con la vuelta dada
+        if (dividendo == Long.MIN_VALUE && divisor == -1) {
+            throw new ArithmeticException("long overflow");
+        }
+        long cociente = dividendo / divisor;
+        long resto = Math.abs(dividendo % divisor);
+        if (resto == 0) {
+            return cociente;
+        }
+        long faltante = Math.abs(divisor) - resto;
+        if (resto > faltante || (resto == faltante && (cociente & 1) != 0)) {
+            return (dividendo < 0) == (divisor < 0) ? Math.addExact(cociente, 1) : Math.subtractExact(cociente, 1);
+        }
+        return cociente;
+    }
+
+    public static String formatear(long centavos) {
+        return aBigDecimal(centavos).toPlainString();
+    }
+}
@@ -0,0 +1,25 @@
+package org.jcr.facturacion;
+
+import java.util.Objects;
+
+/*
+ * Parte que paga la aseguradora de cada cita: un porcentaje del importe neto con un tope
+ * por cita. El resto (copago) queda a cargo del paciente.
+ */
+public record Cobertura(String aseguradora, int puntosBase, long topePorCitaCentavos) {
+
+    public Cobertura {
+        Objects.requireNonNull(aseguradora, "La aseguradora no puede ser nula");
+        if (puntosBase < 0 || puntosBase > Centavos.PUNTOS_BASE_TOTAL || topePorCitaCentavos < 0) {
+            throw new IllegalArgumentException("Cobertura inválida: " + puntosBase + " pb, tope " + topePorCitaCentavos);
+        }
+    }
+
+    public static Cobertura sinTope(String aseguradora, int puntosBase) {
+        return new Cobertura(aseguradora, puntosBase, Long.MAX_VALUE);
+    }
+
+    public long aCargoAseguradora(long netoCentavos) {
+        return Math.min(Centavos.porcentaje(netoCentavos, puntosBase), topePorCitaCentavos);
+    }
+}
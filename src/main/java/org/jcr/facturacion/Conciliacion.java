@@ -0,0 +1,88 @@
+package org.jcr.facturacion;
+
+import jakarta.persistence.EntityManager;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * Cruce de una corrida de facturación con la tabla Cita: la base suma la columna costo como
+ * BigDecimal (SUM en SQL), la corrida en centavos, y tienen que coincidir exacto, por
+ * especialidad y por mes, en cantidad de citas y en monto. Una diferencia quiere decir que
+ * la agenda en memoria y la base no tienen las mismas citas.
+ */
+public record Conciliacion(List<Diferencia> diferencias, long citasBase, long citasFacturadas) {
+
+    public record Diferencia(String clave, long citasBase, BigDecimal costoBase,
+                             long citasFacturadas, BigDecimal costoFacturado) {
+    }
+
+    public boolean cuadra() {
+        return diferencias.isEmpty() && citasBase == citasFacturadas;
+    }
+
+    public static Conciliacion contra(EntityManager em, ResumenFacturacion resumen, Set<EstadoCita> estados,
+                                      YearMonth desde, YearMonth hasta) {
+        LocalDateTime inicio = desde.atDay(1).atStartOfDay();
+        LocalDateTime fin = hasta.plusMonths(1).atDay(1).atStartOfDay();
+        List<Diferencia> diferencias = new ArrayList<>();
+        long citasBase = 0;
+
+        List<Object[]> porEspecialidad = em.createQuery("SELECT c.medico.especialidad, COUNT(c), SUM(c.costo) "
+                        + "FROM Cita c WHERE c.estado IN :estados AND c.fechaHora >= :inicio AND c.fechaHora < :fin "
+                        + "GROUP BY c.medico.especialidad", Object[].class)
+                .setParameter("estados", estados)
+                .setParameter("inicio", inicio)
+                .setParameter("fin", fin)
+                .getResultList();
+        long[] citas = new long[EspecialidadMedica.values().length];
+        BigDecimal[] costos = new BigDecimal[citas.length];
+        for (Object[] fila : porEspecialidad) {
+            int i = ((EspecialidadMedica) fila[0]).ordinal();
+            citas[i] = ((Number) fila[1]).longValue();
+            costos[i] = (BigDecimal) fila[2];
+            citasBase += citas[i];
+        }
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            int i = especialidad.ordinal();
+            comparar(diferencias, especialidad.name(), citas[i], costos[i],
+                    resumen.getCitas(especialidad), resumen.getCosto(especialidad));
+        }
+
+        List<Object[]> porMes = em.createQuery("SELECT YEAR(c.fechaHora), MONTH(c.fechaHora), COUNT(c), SUM(c.costo) "
+                        + "FROM Cita c WHERE c.estado IN :estados AND c.fechaHora >= :inicio AND c.fechaHora < :fin "
+                        + "GROUP BY YEAR(c.fechaHora), MONTH(c.fechaHora)", Object[].class)
+                .setParameter("estados", estados)
+                .setParameter("inicio", inicio)
+                .setParameter("fin", fin)
+                .getResultList();
+        Set<YearMonth> meses = new TreeSet<>(resumen.getMeses());
+        for (Object[] fila : porMes) {
+            YearMonth mes = YearMonth.of(((Number) fila[0]).intValue(), ((Number) fila[1]).intValue());
+            meses.remove(mes);
+            comparar(diferencias, mes.toString(), ((Number) fila[2]).longValue(), (BigDecimal) fila[3],
+                    resumen.getCitas(mes), resumen.getCosto(mes));
+        }
+        // Meses que la corrida facturó y la base no tiene
+        for (YearMonth mes : meses) {
+            comparar(diferencias, mes.toString(), 0, null, resumen.getCitas(mes), resumen.getCosto(mes));
+        }
+        return new Conciliacion(List.copyOf(diferencias), citasBase, resumen.getCitas());
+    }
+
+    private static void comparar(List<Diferencia> diferencias, String clave, long citasBase, BigDecimal costoBase,
+                                 long citasFacturadas, long costoFacturado) {
+        BigDecimal base = costoBase != null ? costoBase : BigDecimal.ZERO;
+        BigDecimal facturado = Centavos.aBigDecimal(costoFacturado);
+        if (citasBase != citasFacturadas || base.compareTo(facturado) != 0) {
+            diferencias.add(new Diferencia(clave, citasBase, base, citasFacturadas, facturado));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.jcr.facturacion;
+
+import java.util.Objects;
+
+/*
+ * Descuento por porcentaje (puntos base), por monto fijo o ambos. Nunca deja un importe
+ * negativo: lo más que descuenta es el importe entero.
+ */
+public record Descuento(String motivo, int puntosBase, long montoCentavos) {
+
+    public Descuento {
+        Objects.requireNonNull(motivo, "El motivo no puede ser nulo");
+        if (puntosBase < 0 || puntosBase > Centavos.PUNTOS_BASE_TOTAL || montoCentavos < 0) {
+            throw new IllegalArgumentException("Descuento inválido: " + puntosBase + " pb, " + montoCentavos);
+        }
+    }
+
+    public static Descuento porcentaje(String motivo, int puntosBase) {
+        return new Descuento(motivo, puntosBase, 0);
+    }
+
+    public static Descuento fijo(String motivo, long montoCentavos) {
+        return new Descuento(motivo, 0, montoCentavos);
+    }
+
+    public long aplicar(long importeCentavos) {
+        long descuento = Math.addExact(montoCentavos, Centavos.porcentaje(importeCentavos, puntosBase));
+        return Math.min(descuento, importeCentavos);
+    }
+}
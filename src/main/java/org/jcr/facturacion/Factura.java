@@ -0,0 +1,20 @@
+package org.jcr.facturacion;
+
+import java.time.YearMonth;
+import java.util.List;
+
+// Las citas facturables de un paciente en un mes. aseguradora es null si no tiene cobertura.
+public record Factura(String dniPaciente, YearMonth periodo, String aseguradora, List<LineaFactura> lineas,
+                      long costo, long neto, long aCargoAseguradora, long aCargoPaciente) {
+
+    static Factura de(String dniPaciente, YearMonth periodo, String aseguradora, List<LineaFactura> lineas) {
+        long costo = 0, aseguradoraTotal = 0, paciente = 0;
+        for (LineaFactura linea : lineas) {
+            costo = Math.addExact(costo, linea.costo());
+            aseguradoraTotal = Math.addExact(aseguradoraTotal, linea.aCargoAseguradora());
+            paciente = Math.addExact(paciente, linea.aCargoPaciente());
+        }
+        return new Factura(dniPaciente, periodo, aseguradora, List.copyOf(lineas), costo,
+                Math.addExact(aseguradoraTotal, paciente), aseguradoraTotal, paciente);
+    }
+}
@@ -0,0 +1,18 @@
+package org.jcr.facturacion;
+
+import org.jcr.entidades.EspecialidadMedica;
+
+import java.time.LocalDateTime;
+
+/*
+ * Una cita liquidada, todo en centavos: costo pactado + adicional de la tarifa - descuentos
+ * = neto, repartido entre la aseguradora y el paciente.
+ */
+public record LineaFactura(LocalDateTime fechaHora, EspecialidadMedica especialidad, String dniMedico,
+                           long costo, long adicional, long descuento,
+                           long aCargoAseguradora, long aCargoPaciente) {
+
+    public long neto() {
+        return Math.addExact(aCargoAseguradora, aCargoPaciente);
+    }
+}
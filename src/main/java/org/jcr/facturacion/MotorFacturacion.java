@@ -0,0 +1,127 @@
+package org.jcr.facturacion;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaService;
+import org.jcr.entidades.Paciente;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/*
+ * Liquidación de citas y facturación por lotes sobre la agenda en memoria (CitaService).
+ * Cada costo se pasa a centavos una vez y de ahí en más todo es aritmética de long con
+ * control de desborde.
+ *
+ * facturar() reparte los pacientes en partes que corren en el ejecutor dado; cada parte
+ * arma sus facturas y su ResumenFacturacion, y al final se juntan en el orden de entrada,
+ * así que el resultado no depende de cuántos hilos hubo.
+ */
+public class MotorFacturacion {
+
+    private final Tarifario tarifario;
+
+    public MotorFacturacion(Tarifario tarifario) {
+        this.tarifario = Objects.requireNonNull(tarifario, "El tarifario no puede ser nulo");
+    }
+
+    public LineaFactura liquidar(Cita cita) {
+        String dni = cita.getPaciente().getDni();
+        return liquidar(cita, tarifario.getDescuentos(dni), tarifario.getCobertura(dni));
+    }
+
+    private LineaFactura liquidar(Cita cita, List<Descuento> descuentos, Cobertura cobertura) {
+        long costo = Centavos.de(cita.getCosto());
+        long adicional = tarifario.getTarifa(cita.getMedico().getEspecialidad()).adicional(costo);
+        long importe = Math.addExact(costo, adicional);
+        long descontado = 0;
+        for (Descuento descuento : descuentos) {
+            long monto = descuento.aplicar(Math.subtractExact(importe, descontado));
+            descontado = Math.addExact(descontado, monto);
+        }
+        long neto = Math.subtractExact(importe, descontado);
+        long aseguradora = cobertura != null ? cobertura.aCargoAseguradora(neto) : 0;
+        return new LineaFactura(cita.getFechaHora(), cita.getMedico().getEspecialidad(), cita.getMedico().getDni(),
+                costo, adicional, descontado, aseguradora, Math.subtractExact(neto, aseguradora));
+    }
+
+    /*
+     * Facturas de un paciente, una por mes de [desde, hasta] con citas facturables, y sus
+     * líneas sumadas a resumen.
+     */
+    public List<Factura> facturar(Paciente paciente, List<Cita> citas, YearMonth desde, YearMonth hasta,
+                                  ResumenFacturacion resumen) {
+        LocalDateTime inicio = desde.atDay(1).atStartOfDay();
+        LocalDateTime fin = hasta.plusMonths(1).atDay(1).atStartOfDay();
+        String dni = paciente.getDni();
+        List<Descuento> descuentos = tarifario.getDescuentos(dni);
+        Cobertura cobertura = tarifario.getCobertura(dni);
+
+        TreeMap<YearMonth, List<LineaFactura>> porMes = new TreeMap<>();
+        for (Cita cita : citas) {
+            LocalDateTime fechaHora = cita.getFechaHora();
+            if (!tarifario.esFacturable(cita.getEstado()) || fechaHora.isBefore(inicio) || !fechaHora.isBefore(fin)) {
+                continue;
+            }
+            YearMonth mes = YearMonth.from(fechaHora);
+            LineaFactura linea = liquidar(cita, descuentos, cobertura);
+            porMes.computeIfAbsent(mes, m -> new ArrayList<>()).add(linea);
+            resumen.agregar(linea, mes);
+        }
+
+        List<Factura> facturas = new ArrayList<>(porMes.size());
+        String aseguradora = cobertura != null ? cobertura.aseguradora() : null;
+        porMes.forEach((mes, lineas) -> {
+            lineas.sort(Comparator.comparing(LineaFactura::fechaHora));
+            facturas.add(Factura.de(dni, mes, aseguradora, lineas));
+        });
+        return facturas;
+    }
+
+    public Lote facturar(CitaService agenda, List<Paciente> pacientes, YearMonth desde, YearMonth hasta,
+                         Executor ejecutor, int partes) {
+        if (partes < 1) {
+            throw new IllegalArgumentException("Hace falta al menos una parte");
+        }
+        int tamanio = Math.max(1, (pacientes.size() + partes - 1) / partes);
+        List<CompletableFuture<Lote>> tareas = new ArrayList<>();
+        for (int desdeIndice = 0; desdeIndice < pacientes.size(); desdeIndice += tamanio) {
+            List<Paciente> parte = pacientes.subList(desdeIndice, Math.min(pacientes.size(), desdeIndice + tamanio));
+            tareas.add(CompletableFuture.supplyAsync(() -> facturarParte(agenda, parte, desde, hasta), ejecutor));
+        }
+
+        List<Factura> facturas = new ArrayList<>();
+        ResumenFacturacion resumen = new ResumenFacturacion();
+        try {
+            for (CompletableFuture<Lote> tarea : tareas) {
+                Lote lote = tarea.join();
+                facturas.addAll(lote.facturas());
+                resumen.combinar(lote.resumen());
+            }
+        } catch (CompletionException e) {
+            // Desborde u otro error de una parte: se relanza tal cual
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+        return new Lote(facturas, resumen);
+    }
+
+    private Lote facturarParte(CitaService agenda, List<Paciente> pacientes, YearMonth desde, YearMonth hasta) {
+        List<Factura> facturas = new ArrayList<>();
+        ResumenFacturacion resumen = new ResumenFacturacion();
+        for (Paciente paciente : pacientes) {
+            facturas.addAll(facturar(paciente, agenda.getCitasPorPaciente(paciente), desde, hasta, resumen));
+        }
+        return new Lote(facturas, resumen);
+    }
+
+    public record Lote(List<Factura> facturas, ResumenFacturacion resumen) {
+    }
+}
@@ -0,0 +1,86 @@
+package org.jcr.facturacion;
+
+import org.jcr.entidades.EspecialidadMedica;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+/*
+ * Totales de una corrida por especialidad y por mes: cantidad de citas, costo pactado (lo
+ * que está en la columna costo de Cita, para conciliar) y neto facturado. Cada hilo llena
+ * el suyo y al final se combinan; no es thread-safe.
+ */
+public class ResumenFacturacion {
+
+    private static final EspecialidadMedica[] ESPECIALIDADES = EspecialidadMedica.values();
+
+    // [citas, costo, neto] por especialidad y por mes
+    private final long[][] porEspecialidad = new long[ESPECIALIDADES.length][3];
+    private final TreeMap<YearMonth, long[]> porMes = new TreeMap<>();
+
+    void agregar(LineaFactura linea, YearMonth mes) {
+        acumular(porEspecialidad[linea.especialidad().ordinal()], 1, linea.costo(), linea.neto());
+        acumular(porMes.computeIfAbsent(mes, m -> new long[3]), 1, linea.costo(), linea.neto());
+    }
+
+    void combinar(ResumenFacturacion otro) {
+        for (int i = 0; i < ESPECIALIDADES.length; i++) {
+            long[] suyo = otro.porEspecialidad[i];
+            acumular(porEspecialidad[i], suyo[0], suyo[1], suyo[2]);
+        }
+        otro.porMes.forEach((mes, suyo) ->
+                acumular(porMes.computeIfAbsent(mes, m -> new long[3]), suyo[0], suyo[1], suyo[2]));
+    }
+
+    private static void acumular(long[] totales, long citas, long costo, long neto) {
+        totales[0] = Math.addExact(totales[0], citas);
+        totales[1] = Math.addExact(totales[1], costo);
+        totales[2] = Math.addExact(totales[2], neto);
+    }
+
+    public long getCitas(EspecialidadMedica especialidad) {
+        return porEspecialidad[especialidad.ordinal()][0];
+    }
+
+    public long getCosto(EspecialidadMedica especialidad) {
+        return porEspecialidad[especialidad.ordinal()][1];
+    }
+
+    public long getNeto(EspecialidadMedica especialidad) {
+        return porEspecialidad[especialidad.ordinal()][2];
+    }
+
+    public NavigableSet<YearMonth> getMeses() {
+        return Collections.unmodifiableNavigableSet(porMes.navigableKeySet());
+    }
+
+    public long getCitas(YearMonth mes) {
+        return porMes.getOrDefault(mes, new long[3])[0];
+    }
+
+    public long getCosto(YearMonth mes) {
+        return porMes.getOrDefault(mes, new long[3])[1];
+    }
+
+    public long getNeto(YearMonth mes) {
+        return porMes.getOrDefault(mes, new long[3])[2];
+    }
+
+    public long getCitas() {
+        long total = 0;
+        for (long[] totales : porEspecialidad) {
+            total = Math.addExact(total, totales[0]);
+        }
+        return total;
+    }
+
+    public long getNeto() {
+        long total = 0;
+        for (long[] totales : porEspecialidad) {
+            total = Math.addExact(total, totales[2]);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,21 @@
+package org.jcr.facturacion;
+
+/*
+ * Lo que una especialidad agrega al costo pactado de cada cita: un arancel fijo (uso de
+ * sala, insumos) y un recargo en puntos base sobre el costo.
+ */
+public record Tarifa(long arancelCentavos, int recargoPuntosBase) {
+
+    public static final Tarifa NINGUNA = new Tarifa(0, 0);
+
+    public Tarifa {
+        if (arancelCentavos < 0 || recargoPuntosBase < 0) {
+            throw new IllegalArgumentException("El arancel y el recargo no pueden ser negativos");
+        }
+    }
+
+    // Arancel + recargo para una cita de ese costo.
+    public long adicional(long costoCentavos) {
+        return Math.addExact(arancelCentavos, Centavos.porcentaje(costoCentavos, recargoPuntosBase));
+    }
+}
@@ -0,0 +1,71 @@
+package org.jcr.facturacion;
+
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+ * Reglas de facturación: tarifa por especialidad, descuentos y cobertura por paciente (por
+ * DNI) y qué estados de cita se facturan. Se arma antes de facturar; durante una corrida
+ * sólo se lee, desde varios hilos, así que no hay que modificarlo mientras tanto.
+ */
+public class Tarifario {
+
+    private final Map<EspecialidadMedica, Tarifa> tarifas = new EnumMap<>(EspecialidadMedica.class);
+    private final Map<String, List<Descuento>> descuentos = new HashMap<>();
+    private final Map<String, Cobertura> coberturas = new HashMap<>();
+    private final Set<EstadoCita> facturables = EnumSet.of(EstadoCita.COMPLETADA);
+
+    public Tarifario tarifa(EspecialidadMedica especialidad, Tarifa tarifa) {
+        tarifas.put(Objects.requireNonNull(especialidad, "La especialidad no puede ser nula"),
+                Objects.requireNonNull(tarifa, "La tarifa no puede ser nula"));
+        return this;
+    }
+
+    // Los descuentos de un paciente se aplican en el orden en que se agregaron.
+    public Tarifario descuento(String dniPaciente, Descuento descuento) {
+        descuentos.computeIfAbsent(Objects.requireNonNull(dniPaciente, "El DNI no puede ser nulo"),
+                dni -> new ArrayList<>()).add(Objects.requireNonNull(descuento, "El descuento no puede ser nulo"));
+        return this;
+    }
+
+    public Tarifario cobertura(String dniPaciente, Cobertura cobertura) {
+        coberturas.put(Objects.requireNonNull(dniPaciente, "El DNI no puede ser nulo"),
+                Objects.requireNonNull(cobertura, "La cobertura no puede ser nula"));
+        return this;
+    }
+
+    // Por defecto sólo COMPLETADA; p. ej. NO_ASISTIO para cobrar las ausencias.
+    public Tarifario facturable(EstadoCita estado) {
+        facturables.add(Objects.requireNonNull(estado, "El estado no puede ser nulo"));
+        return this;
+    }
+
+    public Tarifa getTarifa(EspecialidadMedica especialidad) {
+        return tarifas.getOrDefault(especialidad, Tarifa.NINGUNA);
+    }
+
+    public List<Descuento> getDescuentos(String dniPaciente) {
+        return descuentos.getOrDefault(dniPaciente, List.of());
+    }
+
+    public Cobertura getCobertura(String dniPaciente) {
+        return coberturas.get(dniPaciente);
+    }
+
+    public boolean esFacturable(EstadoCita estado) {
+        return facturables.contains(estado);
+    }
+
+    public Set<EstadoCita> getFacturables() {
+        return EnumSet.copyOf(facturables);
+    }
+}
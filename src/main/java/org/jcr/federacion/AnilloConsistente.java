@@ -0,0 +1,77 @@
+package org.jcr.federacion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/*
+ * Hash consistente con nodos virtuales: cada nodo ocupa varios puntos del anillo y una
+ * clave (el nombre del hospital) va al primer punto igual o siguiente a su hash. Agregar
+ * o quitar un nodo sólo mueve las claves de los tramos que ese nodo ocupaba.
+ */
+public class AnilloConsistente<T> {
+
+    public static final int VIRTUALES_PREDETERMINADOS = 128;
+
+    private final int virtuales;
+    private final NavigableMap<Long, String> puntos = new TreeMap<>();
+    private final Map<String, T> nodos = new LinkedHashMap<>();
+
+    public AnilloConsistente() {
+        this(VIRTUALES_PREDETERMINADOS);
+    }
+
+    public AnilloConsistente(int virtuales) {
+        if (virtuales <= 0) {
+            throw new IllegalArgumentException("Cada nodo necesita al menos un punto en el anillo");
+        }
+        this.virtuales = virtuales;
+    }
+
+    public synchronized void agregar(String id, T nodo) {
+        Objects.requireNonNull(nodo, "El nodo no puede ser nulo");
+        if (nodos.put(Objects.requireNonNull(id, "El id del nodo no puede ser nulo"), nodo) == null) {
+            for (int v = 0; v < virtuales; v++) {
+                puntos.put(hash(id + "#" + v), id);
+            }
+        }
+    }
+
+    public synchronized void quitar(String id) {
+        if (nodos.remove(id) != null) {
+            puntos.values().removeIf(id::equals);
+        }
+    }
+
+    public synchronized T nodoPara(String clave) {
+        if (puntos.isEmpty()) {
+            throw new IllegalStateException("El anillo no tiene nodos");
+        }
+        Map.Entry<Long, String> punto = puntos.ceilingEntry(hash(clave));
+        return nodos.get((punto != null ? punto : puntos.firstEntry()).getValue());
+    }
+
+    public synchronized List<T> getNodos() {
+        return new ArrayList<>(nodos.values());
+    }
+
+    // FNV-1a de 64 bits con el mezclador final de MurmurHash3 para repartir bien claves parecidas.
+    static long hash(String clave) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : clave.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,99 @@
+package org.jcr.federacion;
+
+import org.jcr.entidades.CitaException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Acceso a la federación desde un cliente: las reservas van al nodo dueño del hospital
+ * según el anillo; búsquedas de pacientes e historias consultan a todos los nodos.
+ *
+ * Las filas devueltas son "hospital|csv de la cita" (formato de Cita.toCsvString) o
+ * "hospital|nombre|apellido|fechaNacimiento" para pacientes.
+ */
+public class ClienteFederacion implements AutoCloseable {
+
+    private final AnilloConsistente<ConexionNodo> anillo = new AnilloConsistente<>();
+
+    public ClienteFederacion(Collection<DireccionNodo> nodos) {
+        for (DireccionNodo nodo : nodos) {
+            anillo.agregar(nodo.id(), new ConexionNodo(nodo));
+        }
+    }
+
+    public DireccionNodo nodoDe(String hospital) {
+        return anillo.nodoPara(hospital).getDestino();
+    }
+
+    public String reservar(String hospital, String dniPaciente, String dniMedico, String numeroSala,
+                           LocalDateTime fechaHora, BigDecimal costo) throws IOException, CitaException {
+        Protocolo.Mensaje respuesta = anillo.nodoPara(hospital).solicitar(Protocolo.RESERVAR,
+                List.of(hospital, dniPaciente, dniMedico, numeroSala, fechaHora.toString(), costo.toString()));
+        if (respuesta.tipo() != Protocolo.OK) {
+            throw new CitaException(respuesta.campo(0));
+        }
+        return respuesta.campo(0);
+    }
+
+    public List<String> buscarPaciente(String dni) throws IOException {
+        return consultarTodos(Protocolo.PACIENTE, dni);
+    }
+
+    // Historia autoritativa: las citas que cada nodo tiene en su agenda, ordenadas por fecha.
+    public List<String> historialPaciente(String dni) throws IOException {
+        List<String> citas = consultarTodos(Protocolo.CITAS_LOCALES, dni);
+        citas.sort(Comparator.comparing(ClienteFederacion::fechaHora));
+        return citas;
+    }
+
+    /*
+     * Historia según un solo nodo (el dueño del hospital dado): sus citas más las que conoce
+     * por eventos de los demás. Un salto de red, pero puede no tener las reservas más recientes.
+     */
+    public List<String> historialReplicado(String hospital, String dni) throws IOException, CitaException {
+        Protocolo.Mensaje respuesta = anillo.nodoPara(hospital).solicitar(Protocolo.CITAS, List.of(dni));
+        if (respuesta.tipo() != Protocolo.OK) {
+            throw new CitaException(respuesta.campo(0));
+        }
+        List<String> citas = new ArrayList<>(respuesta.campos());
+        citas.sort(Comparator.comparing(ClienteFederacion::fechaHora));
+        return citas;
+    }
+
+    public boolean disponible(DireccionNodo nodo) {
+        try (ConexionNodo conexion = new ConexionNodo(nodo)) {
+            return conexion.solicitar(Protocolo.PING, List.of()).tipo() == Protocolo.OK;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private List<String> consultarTodos(byte tipo, String clave) throws IOException {
+        List<String> resultado = new ArrayList<>();
+        for (ConexionNodo nodo : anillo.getNodos()) {
+            Protocolo.Mensaje respuesta = nodo.solicitar(tipo, List.of(clave));
+            if (respuesta.tipo() != Protocolo.OK) {
+                throw new IOException(nodo.getDestino() + ": " + respuesta.campo(0));
+            }
+            resultado.addAll(respuesta.campos());
+        }
+        return resultado;
+    }
+
+    // hospital|dniPaciente,dniMedico,sala,fechaHora,...
+    private static String fechaHora(String fila) {
+        String[] campos = fila.split(",", 5);
+        return campos.length > 3 ? campos[3] : "";
+    }
+
+    @Override
+    public void close() {
+        anillo.getNodos().forEach(ConexionNodo::close);
+    }
+}
@@ -0,0 +1,64 @@
+package org.jcr.federacion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+// Una conexión persistente a otro nodo; las solicitudes se serializan y se reconecta tras un error.
+final class ConexionNodo implements AutoCloseable {
+
+    private static final int TIEMPO_ESPERA_MS = 5_000;
+
+    private final DireccionNodo destino;
+    private Socket socket;
+    private DataInputStream entrada;
+    private DataOutputStream salida;
+
+    ConexionNodo(DireccionNodo destino) {
+        this.destino = destino;
+    }
+
+    DireccionNodo getDestino() {
+        return destino;
+    }
+
+    synchronized Protocolo.Mensaje solicitar(byte tipo, List<String> campos) throws IOException {
+        try {
+            if (socket == null) {
+                conectar();
+            }
+            Protocolo.escribir(salida, tipo, campos);
+            return Protocolo.leer(entrada);
+        } catch (IOException e) {
+            close();
+            throw new IOException("Sin respuesta de " + destino + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void conectar() throws IOException {
+        Socket nuevo = new Socket();
+        nuevo.setTcpNoDelay(true);
+        nuevo.setSoTimeout(TIEMPO_ESPERA_MS);
+        nuevo.connect(new InetSocketAddress(destino.host(), destino.puerto()), TIEMPO_ESPERA_MS);
+        socket = nuevo;
+        entrada = new DataInputStream(new BufferedInputStream(nuevo.getInputStream()));
+        salida = new DataOutputStream(new BufferedOutputStream(nuevo.getOutputStream()));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ya no importa
+            }
+            socket = null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.jcr.federacion;
+
+import java.util.Objects;
+
+// Nodo de la federación: "id@host:puerto", p. ej. "nodo-1@127.0.0.1:7101".
+public record DireccionNodo(String id, String host, int puerto) {
+
+    public DireccionNodo {
+        Objects.requireNonNull(id, "El id del nodo no puede ser nulo");
+        Objects.requireNonNull(host, "El host no puede ser nulo");
+        if (puerto <= 0 || puerto > 65_535) {
+            throw new IllegalArgumentException("Puerto inválido: " + puerto);
+        }
+    }
+
+    public static DireccionNodo parse(String texto) {
+        int arroba = texto.indexOf('@');
+        int dosPuntos = texto.lastIndexOf(':');
+        if (arroba <= 0 || dosPuntos < arroba) {
+            throw new IllegalArgumentException("Dirección de nodo inválida: " + texto);
+        }
+        return new DireccionNodo(texto.substring(0, arroba), texto.substring(arroba + 1, dosPuntos),
+                Integer.parseInt(texto.substring(dosPuntos + 1)));
+    }
+
+    @Override
+    public String toString() {
+        return id + "@" + host + ":" + puerto;
+    }
+}
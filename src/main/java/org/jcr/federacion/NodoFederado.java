@@ -0,0 +1,400 @@
+package org.jcr.federacion;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaException;
+import org.jcr.entidades.CitaManagerParticionado;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+import org.jcr.persistencia.ArranqueRapido;
+import org.jcr.persistencia.PersistenciaDiferida;
+import org.jcr.servidor.ServidorHospital;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Nodo de agenda de la federación: aloja los hospitales que el anillo le asigna, cada uno
+ * con su CitaManagerParticionado, y atiende a clientes y pares por sockets de loopback.
+ *
+ * Con una base, cada reserva aceptada se persiste con PersistenciaDiferida, como en
+ * ServidorHospital: la respuesta no espera a la base y una cita que no se pudo guardar se
+ * descarta de la agenda. Sin base (NodoPrueba) las reservas quedan sólo en memoria.
+ *
+ * Cada reserva confirmada se difunde a los demás nodos (EVENTO_RESERVA, mejor esfuerzo, en
+ * segundo plano). Con esos eventos un nodo arma la historia de un paciente compartido sin
+ * consultar a los demás; la consulta autoritativa es CITAS_LOCALES a todos los nodos. Las
+ * citas remotas se guardan para los PACIENTES_REMOTOS pacientes consultados o reservados más
+ * recientemente, hasta CITAS_REMOTAS_POR_PACIENTE cada uno (las más nuevas).
+ */
+public class NodoFederado implements AutoCloseable {
+
+    static final int PACIENTES_REMOTOS = 100_000;
+    static final int CITAS_REMOTAS_POR_PACIENTE = 64;
+
+    private final DireccionNodo direccion;
+    private final List<ConexionNodo> pares = new ArrayList<>();
+    private final Map<String, Sede> sedes = new ConcurrentHashMap<>();
+    // Acceso sincronizado sobre el mapa: el orden de acceso cambia también al leer
+    private final Map<String, Deque<String>> citasRemotas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Deque<String>> mayor) {
+            return size() > PACIENTES_REMOTOS;
+        }
+    };
+    private final PersistenciaDiferida escritor;
+    private final ExecutorService difusion = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "federacion-eventos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private ServerSocket servidor;
+
+    // Un hospital alojado en este nodo
+    private static final class Sede {
+        final CitaManagerParticionado citas = new CitaManagerParticionado();
+        final Map<String, Paciente> pacientes = new ConcurrentHashMap<>();
+        final Map<String, Medico> medicos = new ConcurrentHashMap<>();
+        final Map<String, Sala> salas = new ConcurrentHashMap<>();
+    }
+
+    public NodoFederado(DireccionNodo direccion, Collection<DireccionNodo> nodos) {
+        this(direccion, nodos, null);
+    }
+
+    // emf puede ser null: las reservas no se persisten.
+    public NodoFederado(DireccionNodo direccion, Collection<DireccionNodo> nodos, EntityManagerFactory emf) {
+        this.direccion = direccion;
+        this.escritor = emf == null ? null
+                : new PersistenciaDiferida(emf, 10_000, 500, 5, Duration.ofMillis(50), this::descartar,
+                        this::confirmar);
+        for (DireccionNodo nodo : nodos) {
+            if (!nodo.id().equals(direccion.id())) {
+                pares.add(new ConexionNodo(nodo));
+            }
+        }
+    }
+
+    public void alojar(Hospital hospital) {
+        Sede sede = new Sede();
+        hospital.getPacientes().forEach(p -> sede.pacientes.put(p.getDni(), p));
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            departamento.getMedicos().forEach(m -> sede.medicos.put(m.getDni(), m));
+            departamento.getSalas().forEach(s -> sede.salas.put(s.getNumero(), s));
+        }
+        if (sedes.putIfAbsent(hospital.getNombre(), sede) != null) {
+            sede.citas.close();
+            throw new IllegalArgumentException("El hospital ya está alojado en " + direccion.id() + ": "
+                    + hospital.getNombre());
+        }
+    }
+
+    // Hospitales de la base que el anillo asigna a este nodo, con sus citas futuras programadas.
+    public void alojarDesde(EntityManagerFactory emf, AnilloConsistente<DireccionNodo> anillo) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (Hospital hospital : em.createQuery("SELECT h FROM Hospital h", Hospital.class).getResultList()) {
+                if (!anillo.nodoPara(hospital.getNombre()).id().equals(direccion.id())) {
+                    continue;
+                }
+                // Las reservas agregan a estas colecciones después de cerrar la sesión
+                for (String jpql : List.of(
+                        "SELECT DISTINCT p FROM Paciente p LEFT JOIN FETCH p.citas WHERE p.hospital = :hospital",
+                        "SELECT DISTINCT m FROM Medico m LEFT JOIN FETCH m.citas WHERE m.departamento.hospital = :hospital",
+                        "SELECT DISTINCT s FROM Sala s LEFT JOIN FETCH s.citas WHERE s.departamento.hospital = :hospital")) {
+                    em.createQuery(jpql).setParameter("hospital", hospital).getResultList();
+                }
+                alojar(hospital);
+                Sede sede = sedes.get(hospital.getNombre());
+                em.createQuery("SELECT c FROM Cita c JOIN FETCH c.paciente JOIN FETCH c.medico JOIN FETCH c.sala "
+                                + "WHERE c.medico.departamento.hospital = :hospital AND c.estado = :estado "
+                                + "AND c.fechaHora > :ahora", Cita.class)
+                        .setParameter("hospital", hospital)
+                        .setParameter("estado", EstadoCita.PROGRAMADA)
+                        .setParameter("ahora", LocalDateTime.now())
+                        .getResultList()
+                        .forEach(sede.citas::registrarCita);
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    public Set<String> getHospitales() {
+        return Set.copyOf(sedes.keySet());
+    }
+
+    public DireccionNodo getDireccion() {
+        return direccion;
+    }
+
+    public synchronized void iniciar() throws IOException {
+        servidor = new ServerSocket(direccion.puerto(), 128, InetAddress.getByName(direccion.host()));
+        Thread aceptador = new Thread(this::aceptar, "nodo-" + direccion.id());
+        aceptador.setDaemon(true);
+        aceptador.start();
+    }
+
+    private void aceptar() {
+        ServerSocket escucha = servidor;
+        while (!escucha.isClosed()) {
+            try {
+                Socket socket = escucha.accept();
+                socket.setTcpNoDelay(true);
+                Thread hilo = new Thread(() -> atender(socket), "nodo-" + direccion.id() + "-conexion");
+                hilo.setDaemon(true);
+                hilo.start();
+            } catch (SocketException e) {
+                return; // servidor cerrado
+            } catch (IOException e) {
+                System.err.println("Error aceptando conexión en " + direccion + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void atender(Socket socket) {
+        try (socket;
+             DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                Protocolo.Mensaje respuesta;
+                Protocolo.Mensaje solicitud = Protocolo.leer(entrada);
+                try {
+                    respuesta = procesar(solicitud);
+                } catch (RuntimeException e) {
+                    respuesta = new Protocolo.Mensaje(Protocolo.ERROR, List.of(String.valueOf(e.getMessage())));
+                }
+                Protocolo.escribir(salida, respuesta.tipo(), respuesta.campos());
+            }
+        } catch (EOFException | SocketException e) {
+            // el otro extremo cerró la conexión
+        } catch (IOException e) {
+            System.err.println("Error en conexión de " + direccion + ": " + e.getMessage());
+        }
+    }
+
+    private Protocolo.Mensaje procesar(Protocolo.Mensaje solicitud) {
+        return switch (solicitud.tipo()) {
+            case Protocolo.PING -> ok(List.of(direccion.id()));
+            case Protocolo.RESERVAR -> reservar(solicitud);
+            case Protocolo.PACIENTE -> ok(paciente(solicitud.campo(0)));
+            case Protocolo.CITAS_LOCALES -> ok(citasLocales(solicitud.campo(0)));
+            case Protocolo.CITAS -> {
+                List<String> citas = citasLocales(solicitud.campo(0));
+                citas.addAll(citasRemotas(solicitud.campo(0)));
+                yield ok(citas);
+            }
+            case Protocolo.EVENTO_RESERVA -> {
+                String csv = solicitud.campo(1);
+                agregarCitaRemota(csv.substring(0, csv.indexOf(',')), solicitud.campo(0) + "|" + csv);
+                yield ok(List.of());
+            }
+            default -> error("Tipo de mensaje desconocido: " + solicitud.tipo());
+        };
+    }
+
+    private Protocolo.Mensaje reservar(Protocolo.Mensaje solicitud) {
+        String hospital = solicitud.campo(0);
+        Sede sede = sedes.get(hospital);
+        if (sede == null) {
+            return error("El hospital " + hospital + " no está alojado en " + direccion.id());
+        }
+        Paciente paciente = sede.pacientes.get(solicitud.campo(1));
+        Medico medico = sede.medicos.get(solicitud.campo(2));
+        Sala sala = sede.salas.get(solicitud.campo(3));
+        if (paciente == null) return error("Paciente no encontrado: " + solicitud.campo(1));
+        if (medico == null) return error("Médico no encontrado: " + solicitud.campo(2));
+        if (sala == null) return error("Sala no encontrada: " + solicitud.campo(3));
+        try {
+            Cita cita = sede.citas.programarCita(paciente, medico, sala,
+                    LocalDateTime.parse(solicitud.campo(4)), new BigDecimal(solicitud.campo(5)));
+            String csv = cita.toCsvString();
+            if (escritor == null) {
+                difundir(hospital, csv);
+            } else {
+                // Los demás nodos se enteran recién cuando la cita quedó en la base
+                try {
+                    escritor.guardar(cita).thenRun(() -> difundir(hospital, csv));
+                } catch (IllegalStateException e) {
+                    // El nodo se está cerrando: la cita no llegaría a la base
+                    sede.citas.descartarCita(cita);
+                    return error(e.getMessage());
+                }
+            }
+            return ok(List.of(hospital + "|" + csv));
+        } catch (CitaException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    // Para PersistenciaDiferida: una cita que no se pudo guardar sale de la agenda de su sede.
+    private void descartar(Cita cita) {
+        Sede sede = sede(cita);
+        if (sede != null) {
+            sede.citas.descartarCita(cita);
+        }
+    }
+
+    // Para PersistenciaDiferida: la agenda de la sede guarda el id y la versión de la cita escrita.
+    private void confirmar(Cita cita) {
+        Sede sede = sede(cita);
+        if (sede != null) {
+            sede.citas.citaPersistida(cita);
+        }
+    }
+
+    private Sede sede(Cita cita) {
+        for (Sede sede : sedes.values()) {
+            if (sede.medicos.get(cita.getMedico().getDni()) == cita.getMedico()) {
+                return sede;
+            }
+        }
+        return null;
+    }
+
+    private void agregarCitaRemota(String dni, String cita) {
+        synchronized (citasRemotas) {
+            Deque<String> citas = citasRemotas.computeIfAbsent(dni, k -> new ArrayDeque<>());
+            citas.addLast(cita);
+            if (citas.size() > CITAS_REMOTAS_POR_PACIENTE) {
+                citas.removeFirst();
+            }
+        }
+    }
+
+    private List<String> citasRemotas(String dni) {
+        synchronized (citasRemotas) {
+            Deque<String> citas = citasRemotas.get(dni);
+            return citas == null ? List.of() : List.copyOf(citas);
+        }
+    }
+
+    private void difundir(String hospital, String csv) {
+        List<String> evento = List.of(hospital, csv);
+        difusion.execute(() -> {
+            for (ConexionNodo par : pares) {
+                try {
+                    par.solicitar(Protocolo.EVENTO_RESERVA, evento);
+                } catch (IOException e) {
+                    System.err.println("Evento de reserva no entregado a " + par.getDestino() + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private List<String> paciente(String dni) {
+        List<String> encontrados = new ArrayList<>();
+        sedes.forEach((hospital, sede) -> {
+            Paciente paciente = sede.pacientes.get(dni);
+            if (paciente != null) {
+                encontrados.add(hospital + "|" + paciente.getNombre() + "|" + paciente.getApellido() + "|"
+                        + paciente.getFechaNacimiento());
+            }
+        });
+        return encontrados;
+    }
+
+    private List<String> citasLocales(String dni) {
+        List<String> citas = new ArrayList<>();
+        sedes.forEach((hospital, sede) -> {
+            Paciente paciente = sede.pacientes.get(dni);
+            if (paciente != null) {
+                for (Cita cita : sede.citas.getCitasPorPaciente(paciente)) {
+                    citas.add(hospital + "|" + cita.toCsvString());
+                }
+            }
+        });
+        return citas;
+    }
+
+    private static Protocolo.Mensaje ok(List<String> campos) {
+        return new Protocolo.Mensaje(Protocolo.OK, campos);
+    }
+
+    private static Protocolo.Mensaje error(String mensaje) {
+        return new Protocolo.Mensaje(Protocolo.ERROR, List.of(mensaje));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (servidor != null) {
+            try {
+                servidor.close();
+            } catch (IOException e) {
+                // ya no importa
+            }
+            servidor = null;
+        }
+        if (escritor != null) {
+            // Antes de cerrar la difusión: las reservas que se confirman todavía se difunden
+            try {
+                escritor.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        difusion.shutdown();
+        try {
+            difusion.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pares.forEach(ConexionNodo::close);
+        sedes.values().forEach(sede -> sede.citas.close());
+    }
+
+    /*
+     * java org.jcr.federacion.NodoFederado nodo-1@127.0.0.1:7101 nodo-1@127.0.0.1:7101,nodo-2@127.0.0.1:7102
+     * Cada nodo usa su propia base: -Dhospital.jdbc.url=jdbc:h2:file:./data/nodo-1
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: NodoFederado <id@host:puerto> <id@host:puerto,...>");
+            System.exit(2);
+        }
+        DireccionNodo yo = DireccionNodo.parse(args[0]);
+        List<DireccionNodo> nodos = Arrays.stream(args[1].split(",")).map(DireccionNodo::parse).toList();
+        AnilloConsistente<DireccionNodo> anillo = new AnilloConsistente<>();
+        nodos.forEach(n -> anillo.agregar(n.id(), n));
+
+        EntityManagerFactory emf = ArranqueRapido.crearFabrica(ServidorHospital.propiedadesPersistencia(4));
+        NodoFederado nodo = new NodoFederado(yo, nodos, emf);
+        nodo.alojarDesde(emf, anillo);
+        nodo.iniciar();
+        System.out.println("Nodo " + yo + " alojando " + nodo.getHospitales());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            nodo.close();
+            emf.close();
+        }));
+    }
+}
@@ -0,0 +1,56 @@
+package org.jcr.federacion;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Marcos del transporte entre nodos: tipo (byte), cantidad de campos (int) y cada campo
+ * como writeUTF. Cada solicitud recibe exactamente una respuesta OK o ERROR por la misma
+ * conexión.
+ */
+final class Protocolo {
+
+    static final byte PING = 1;
+    static final byte RESERVAR = 2;          // hospital, dni paciente, dni médico, sala, fechaHora, costo
+    static final byte PACIENTE = 3;          // dni -> hospital|nombre|apellido|fechaNacimiento por hospital
+    static final byte CITAS_LOCALES = 4;     // dni -> hospital|csv de las citas de este nodo
+    static final byte CITAS = 5;             // dni -> las locales más las conocidas por eventos
+    static final byte EVENTO_RESERVA = 6;    // hospital, csv
+
+    static final byte OK = 100;
+    static final byte ERROR = 101;
+
+    record Mensaje(byte tipo, List<String> campos) {
+        String campo(int i) {
+            return campos.get(i);
+        }
+    }
+
+    private Protocolo() {
+    }
+
+    static void escribir(DataOutputStream salida, byte tipo, List<String> campos) throws IOException {
+        salida.writeByte(tipo);
+        salida.writeInt(campos.size());
+        for (String campo : campos) {
+            salida.writeUTF(campo);
+        }
+        salida.flush();
+    }
+
+    static Mensaje leer(DataInputStream entrada) throws IOException {
+        byte tipo = entrada.readByte();
+        int cantidad = entrada.readInt();
+        if (cantidad < 0 || cantidad > 1_000_000) {
+            throw new IOException("Marco inválido: " + cantidad + " campos");
+        }
+        List<String> campos = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            campos.add(entrada.readUTF());
+        }
+        return new Mensaje(tipo, campos);
+    }
+}
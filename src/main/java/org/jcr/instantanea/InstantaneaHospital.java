@@ -0,0 +1,112 @@
+package org.jcr.instantanea;
+
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/*
+ * Una versión inmutable del hospital: departamentos, médicos, salas, pacientes y sus citas
+ * como valores. Se puede recorrer desde cualquier hilo sin locks y sin riesgo de
+ * ConcurrentModificationException; lo que se lee es siempre el mismo estado, aunque
+ * mientras tanto se publiquen versiones nuevas. Ver PublicadorInstantaneas.
+ */
+public final class InstantaneaHospital {
+
+    public record VistaCita(String paciente, String medico, String sala, LocalDateTime fechaHora,
+                            BigDecimal costo, EstadoCita estado) {
+    }
+
+    public record VistaMedico(String dni, String nombreCompleto, EspecialidadMedica especialidad,
+                              VectorPersistente<VistaCita> citas) {
+    }
+
+    public record VistaSala(String numero, String tipo, VectorPersistente<VistaCita> citas) {
+    }
+
+    public record VistaPaciente(String dni, String nombreCompleto, VectorPersistente<VistaCita> citas) {
+    }
+
+    public record VistaDepartamento(String nombre, EspecialidadMedica especialidad,
+                                    VectorPersistente<VistaMedico> medicos, VectorPersistente<VistaSala> salas) {
+    }
+
+    // Posición de un médico o sala: departamento e índice dentro de él.
+    record Ubicacion(int departamento, int posicion) {
+    }
+
+    private final long version;
+    private final String nombre;
+    private final VectorPersistente<VistaDepartamento> departamentos;
+    private final VectorPersistente<VistaPaciente> pacientes;
+    /*
+     * Índices compartidos entre versiones: sólo se agregan claves y una posición nunca cambia,
+     * así que alcanza con verificar que la posición exista en esta versión.
+     */
+    private final Map<String, Ubicacion> medicosPorDni;
+    private final Map<String, Ubicacion> salasPorNumero;
+    private final Map<String, Integer> pacientesPorDni;
+
+    InstantaneaHospital(long version, String nombre, VectorPersistente<VistaDepartamento> departamentos,
+                        VectorPersistente<VistaPaciente> pacientes, Map<String, Ubicacion> medicosPorDni,
+                        Map<String, Ubicacion> salasPorNumero, Map<String, Integer> pacientesPorDni) {
+        this.version = version;
+        this.nombre = nombre;
+        this.departamentos = departamentos;
+        this.pacientes = pacientes;
+        this.medicosPorDni = medicosPorDni;
+        this.salasPorNumero = salasPorNumero;
+        this.pacientesPorDni = pacientesPorDni;
+    }
+
+    InstantaneaHospital con(VectorPersistente<VistaDepartamento> departamentos,
+                            VectorPersistente<VistaPaciente> pacientes) {
+        return new InstantaneaHospital(version + 1, nombre, departamentos, pacientes,
+                medicosPorDni, salasPorNumero, pacientesPorDni);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public VectorPersistente<VistaDepartamento> getDepartamentos() {
+        return departamentos;
+    }
+
+    public VectorPersistente<VistaPaciente> getPacientes() {
+        return pacientes;
+    }
+
+    public VistaMedico medico(String dni) {
+        Ubicacion ubicacion = medicosPorDni.get(dni);
+        if (ubicacion == null || ubicacion.departamento() >= departamentos.size()) {
+            return null;
+        }
+        VectorPersistente<VistaMedico> medicos = departamentos.get(ubicacion.departamento()).medicos();
+        return ubicacion.posicion() < medicos.size() ? medicos.get(ubicacion.posicion()) : null;
+    }
+
+    public VistaSala sala(String numero) {
+        Ubicacion ubicacion = salasPorNumero.get(numero);
+        if (ubicacion == null || ubicacion.departamento() >= departamentos.size()) {
+            return null;
+        }
+        VectorPersistente<VistaSala> salas = departamentos.get(ubicacion.departamento()).salas();
+        return ubicacion.posicion() < salas.size() ? salas.get(ubicacion.posicion()) : null;
+    }
+
+    public VistaPaciente paciente(String dni) {
+        Integer posicion = pacientesPorDni.get(dni);
+        return posicion != null && posicion < pacientes.size() ? pacientes.get(posicion) : null;
+    }
+
+    Map<String, Integer> indicePacientes() {
+        return pacientesPorDni;
+    }
+}
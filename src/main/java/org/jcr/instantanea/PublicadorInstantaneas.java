@@ -0,0 +1,201 @@
+package org.jcr.instantanea;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaService;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.OyenteCita;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+import org.jcr.instantanea.InstantaneaHospital.Ubicacion;
+import org.jcr.instantanea.InstantaneaHospital.VistaCita;
+import org.jcr.instantanea.InstantaneaHospital.VistaDepartamento;
+import org.jcr.instantanea.InstantaneaHospital.VistaMedico;
+import org.jcr.instantanea.InstantaneaHospital.VistaPaciente;
+import org.jcr.instantanea.InstantaneaHospital.VistaSala;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/*
+ * Mantiene la InstantaneaHospital vigente de un hospital. Como OyenteCita de su agenda,
+ * cada reserva, cambio de estado o baja arma una versión nueva copiando sólo el camino que
+ * cambia (las citas del médico, la sala y el paciente, su departamento y la raíz) y la
+ * publica en un AtomicReference. Los lectores toman la referencia y nunca esperan; los
+ * escritores se serializan acá, después del lock de CitaManager.
+ *
+ * Una cita es de este hospital si su médico y su sala son entidades de él (por identidad, no
+ * por DNI ni número: un médico que trabaja en dos hospitales tiene un Médico en cada uno).
+ *
+ * Departamentos, médicos o salas nuevos no llegan por eventos: hay que llamar a
+ * reconstruir(). Los pacientes nuevos se agregan con su primera cita.
+ */
+public class PublicadorInstantaneas implements OyenteCita, AutoCloseable {
+
+    private final Hospital hospital;
+    private final CitaService agenda;
+    private final AtomicReference<InstantaneaHospital> actual = new AtomicReference<>();
+    private final Map<Medico, Ubicacion> medicos = new IdentityHashMap<>();
+    private final Map<Sala, Ubicacion> salas = new IdentityHashMap<>();
+
+    public PublicadorInstantaneas(Hospital hospital, CitaService agenda) {
+        this.hospital = Objects.requireNonNull(hospital, "El hospital no puede ser nulo");
+        this.agenda = Objects.requireNonNull(agenda, "La agenda no puede ser nula");
+        // Sin reservas entre la primera versión y el alta del oyente
+        agenda.enExclusiva(() -> {
+            armar();
+            agenda.agregarOyente(this);
+        });
+    }
+
+    public InstantaneaHospital getInstantanea() {
+        return actual.get();
+    }
+
+    // Versión completa desde la agenda, quieta mientras se recorren sus citas.
+    public void reconstruir() {
+        agenda.enExclusiva(this::armar);
+    }
+
+    // Siempre dentro del lock de la agenda: el orden es agenda y después este objeto, como en los oyentes.
+    private synchronized void armar() {
+        medicos.clear();
+        salas.clear();
+        Map<String, Ubicacion> medicosPorDni = new ConcurrentHashMap<>();
+        Map<String, Ubicacion> salasPorNumero = new ConcurrentHashMap<>();
+        Map<String, Integer> pacientesPorDni = new ConcurrentHashMap<>();
+        List<VistaDepartamento> departamentos = new ArrayList<>();
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            int d = departamentos.size();
+            List<VistaMedico> vistasMedicos = new ArrayList<>();
+            for (Medico medico : departamento.getMedicos()) {
+                Ubicacion ubicacion = new Ubicacion(d, vistasMedicos.size());
+                medicos.put(medico, ubicacion);
+                medicosPorDni.put(medico.getDni(), ubicacion);
+                vistasMedicos.add(new VistaMedico(medico.getDni(), medico.getNombreCompleto(),
+                        medico.getEspecialidad(), vistas(agenda.getCitasPorMedico(medico))));
+            }
+            List<VistaSala> vistasSalas = new ArrayList<>();
+            for (Sala sala : departamento.getSalas()) {
+                Ubicacion ubicacion = new Ubicacion(d, vistasSalas.size());
+                salas.put(sala, ubicacion);
+                salasPorNumero.put(sala.getNumero(), ubicacion);
+                vistasSalas.add(new VistaSala(sala.getNumero(), sala.getTipo(), vistas(agenda.getCitasPorSala(sala))));
+            }
+            departamentos.add(new VistaDepartamento(departamento.getNombre(), departamento.getEspecialidad(),
+                    VectorPersistente.de(vistasMedicos), VectorPersistente.de(vistasSalas)));
+        }
+        VectorPersistente<VistaPaciente> pacientes = VectorPersistente.vacio();
+        for (Paciente paciente : hospital.getPacientes()) {
+            pacientesPorDni.put(paciente.getDni(), pacientes.size());
+            pacientes = pacientes.agregar(vistaPaciente(paciente, vistas(agenda.getCitasPorPaciente(paciente))));
+        }
+        InstantaneaHospital anterior = actual.get();
+        actual.set(new InstantaneaHospital(anterior == null ? 0 : anterior.getVersion() + 1, hospital.getNombre(),
+                VectorPersistente.de(departamentos), pacientes, medicosPorDni, salasPorNumero, pacientesPorDni));
+    }
+
+    @Override
+    public void citaReservada(Cita cita) {
+        VistaCita vista = vista(cita);
+        actualizar(cita, citas -> citas.agregar(vista));
+    }
+
+    @Override
+    public void estadoCambiado(Cita cita, EstadoCita anterior) {
+        VistaCita vista = vista(cita);
+        actualizar(cita, citas -> {
+            int posicion = buscar(citas, vista, anterior);
+            return posicion < 0 ? citas : citas.con(posicion, vista);
+        });
+    }
+
+    @Override
+    public void citaDescartada(Cita cita) {
+        VistaCita vista = vista(cita);
+        actualizar(cita, citas -> {
+            int posicion = buscar(citas, vista, vista.estado());
+            return posicion < 0 ? citas : citas.sin(posicion);
+        });
+    }
+
+    // Aplica el cambio a las citas del médico, la sala y el paciente y publica la versión nueva.
+    private synchronized void actualizar(Cita cita, UnaryOperator<VectorPersistente<VistaCita>> cambio) {
+        InstantaneaHospital base = actual.get();
+        Ubicacion enMedico = medicos.get(cita.getMedico());
+        Ubicacion enSala = salas.get(cita.getSala());
+        if (enMedico == null || enSala == null) {
+            return; // cita de otro hospital
+        }
+        VectorPersistente<VistaDepartamento> departamentos = base.getDepartamentos();
+
+        VistaDepartamento departamento = departamentos.get(enMedico.departamento());
+        VistaMedico medico = departamento.medicos().get(enMedico.posicion());
+        departamentos = departamentos.con(enMedico.departamento(), new VistaDepartamento(departamento.nombre(),
+                departamento.especialidad(), departamento.medicos().con(enMedico.posicion(),
+                new VistaMedico(medico.dni(), medico.nombreCompleto(), medico.especialidad(),
+                        cambio.apply(medico.citas()))), departamento.salas()));
+
+        departamento = departamentos.get(enSala.departamento());
+        VistaSala sala = departamento.salas().get(enSala.posicion());
+        departamentos = departamentos.con(enSala.departamento(), new VistaDepartamento(departamento.nombre(),
+                departamento.especialidad(), departamento.medicos(), departamento.salas().con(enSala.posicion(),
+                new VistaSala(sala.numero(), sala.tipo(), cambio.apply(sala.citas())))));
+
+        VectorPersistente<VistaPaciente> pacientes = base.getPacientes();
+        Paciente paciente = cita.getPaciente();
+        Integer enPaciente = base.indicePacientes().get(paciente.getDni());
+        if (enPaciente == null) {
+            // La posición se anota antes de publicar: hasta entonces los lectores no la ven
+            base.indicePacientes().put(paciente.getDni(), pacientes.size());
+            pacientes = pacientes.agregar(vistaPaciente(paciente, cambio.apply(VectorPersistente.vacio())));
+        } else {
+            VistaPaciente vista = pacientes.get(enPaciente);
+            pacientes = pacientes.con(enPaciente,
+                    new VistaPaciente(vista.dni(), vista.nombreCompleto(), cambio.apply(vista.citas())));
+        }
+        actual.set(base.con(departamentos, pacientes));
+    }
+
+    // La misma cita en otra lista: mismo médico, paciente y hora, con el estado dado. Desde el final.
+    private static int buscar(VectorPersistente<VistaCita> citas, VistaCita cita, EstadoCita estado) {
+        for (int i = citas.size() - 1; i >= 0; i--) {
+            VistaCita candidata = citas.get(i);
+            if (candidata.estado() == estado && candidata.fechaHora().equals(cita.fechaHora())
+                    && candidata.medico().equals(cita.medico()) && candidata.paciente().equals(cita.paciente())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static VectorPersistente<VistaCita> vistas(List<Cita> citas) {
+        VectorPersistente<VistaCita> resultado = VectorPersistente.vacio();
+        for (Cita cita : citas) {
+            resultado = resultado.agregar(vista(cita));
+        }
+        return resultado;
+    }
+
+    private static VistaCita vista(Cita cita) {
+        return new VistaCita(cita.getPaciente().getDni(), cita.getMedico().getDni(), cita.getSala().getNumero(),
+                cita.getFechaHora(), cita.getCosto(), cita.getEstado());
+    }
+
+    private static VistaPaciente vistaPaciente(Paciente paciente, VectorPersistente<VistaCita> citas) {
+        return new VistaPaciente(paciente.getDni(), paciente.getNombreCompleto(), citas);
+    }
+
+    @Override
+    public void close() {
+        agenda.quitarOyente(this);
+    }
+}
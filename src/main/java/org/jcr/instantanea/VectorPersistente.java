@@ -0,0 +1,189 @@
+package org.jcr.instantanea;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/*
+ * Lista inmutable con modificaciones por copia de camino (el vector persistente de
+ * Clojure): un árbol de 32 ramas más una cola con los últimos elementos. agregar y con
+ * copian sólo los nodos del camino hasta la hoja, O(log32 n); el resto se comparte con la
+ * versión anterior, que sigue siendo válida para quien la esté leyendo.
+ *
+ * Los métodos de modificación de List lanzan UnsupportedOperationException.
+ */
+public final class VectorPersistente<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int ANCHO = 1 << BITS;
+    private static final int MASCARA = ANCHO - 1;
+    private static final Object[] NODO_VACIO = new Object[0];
+    private static final VectorPersistente<?> VACIO = new VectorPersistente<>(0, BITS, NODO_VACIO, NODO_VACIO);
+
+    private final int cantidad;
+    private final int desplazamiento;
+    private final Object[] raiz;
+    private final Object[] cola;
+
+    private VectorPersistente(int cantidad, int desplazamiento, Object[] raiz, Object[] cola) {
+        this.cantidad = cantidad;
+        this.desplazamiento = desplazamiento;
+        this.raiz = raiz;
+        this.cola = cola;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> VectorPersistente<T> vacio() {
+        return (VectorPersistente<T>) VACIO;
+    }
+
+    public static <T> VectorPersistente<T> de(Iterable<? extends T> elementos) {
+        VectorPersistente<T> vector = vacio();
+        for (T elemento : elementos) {
+            vector = vector.agregar(elemento);
+        }
+        return vector;
+    }
+
+    @Override
+    public int size() {
+        return cantidad;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int indice) {
+        return (T) hoja(indice)[indice & MASCARA];
+    }
+
+    // Índice del primer elemento que está en la cola.
+    private int inicioCola() {
+        return cantidad < ANCHO ? 0 : ((cantidad - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] hoja(int indice) {
+        if (indice < 0 || indice >= cantidad) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fuera de rango (tamaño " + cantidad + ")");
+        }
+        if (indice >= inicioCola()) {
+            return cola;
+        }
+        Object[] nodo = raiz;
+        for (int nivel = desplazamiento; nivel > 0; nivel -= BITS) {
+            nodo = (Object[]) nodo[(indice >>> nivel) & MASCARA];
+        }
+        return nodo;
+    }
+
+    public VectorPersistente<T> agregar(T elemento) {
+        if (cantidad - inicioCola() < ANCHO) {
+            Object[] nuevaCola = Arrays.copyOf(cola, cola.length + 1);
+            nuevaCola[cola.length] = elemento;
+            return new VectorPersistente<>(cantidad + 1, desplazamiento, raiz, nuevaCola);
+        }
+        // Cola llena: pasa al árbol como hoja y empieza una cola nueva
+        Object[] nuevaRaiz;
+        int nuevoDesplazamiento = desplazamiento;
+        if ((cantidad >>> BITS) > (1 << desplazamiento)) {
+            nuevaRaiz = new Object[]{raiz, camino(desplazamiento, cola)};
+            nuevoDesplazamiento += BITS;
+        } else {
+            nuevaRaiz = empujarCola(desplazamiento, raiz, cola);
+        }
+        return new VectorPersistente<>(cantidad + 1, nuevoDesplazamiento, nuevaRaiz, new Object[]{elemento});
+    }
+
+    private Object[] empujarCola(int nivel, Object[] padre, Object[] hoja) {
+        int posicion = ((cantidad - 1) >>> nivel) & MASCARA;
+        Object[] copia = Arrays.copyOf(padre, Math.max(padre.length, posicion + 1));
+        if (nivel == BITS) {
+            copia[posicion] = hoja;
+        } else {
+            Object[] hijo = posicion < padre.length ? (Object[]) padre[posicion] : null;
+            copia[posicion] = hijo != null ? empujarCola(nivel - BITS, hijo, hoja) : camino(nivel - BITS, hoja);
+        }
+        return copia;
+    }
+
+    private static Object[] camino(int nivel, Object[] hoja) {
+        return nivel == 0 ? hoja : new Object[]{camino(nivel - BITS, hoja)};
+    }
+
+    // Versión con el elemento `indice` reemplazado.
+    public VectorPersistente<T> con(int indice, T elemento) {
+        if (indice < 0 || indice >= cantidad) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fuera de rango (tamaño " + cantidad + ")");
+        }
+        if (indice >= inicioCola()) {
+            Object[] nuevaCola = cola.clone();
+            nuevaCola[indice & MASCARA] = elemento;
+            return new VectorPersistente<>(cantidad, desplazamiento, raiz, nuevaCola);
+        }
+        return new VectorPersistente<>(cantidad, desplazamiento, reemplazar(desplazamiento, raiz, indice, elemento), cola);
+    }
+
+    private static Object[] reemplazar(int nivel, Object[] nodo, int indice, Object elemento) {
+        Object[] copia = nodo.clone();
+        if (nivel == 0) {
+            copia[indice & MASCARA] = elemento;
+        } else {
+            int posicion = (indice >>> nivel) & MASCARA;
+            copia[posicion] = reemplazar(nivel - BITS, (Object[]) nodo[posicion], indice, elemento);
+        }
+        return copia;
+    }
+
+    // Versión sin el elemento `indice`. Reconstruye el vector: O(n), para bajas poco frecuentes.
+    public VectorPersistente<T> sin(int indice) {
+        if (indice < 0 || indice >= cantidad) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fuera de rango (tamaño " + cantidad + ")");
+        }
+        VectorPersistente<T> resultado = vacio();
+        for (int i = 0; i < cantidad; i++) {
+            if (i != indice) {
+                resultado = resultado.agregar(get(i));
+            }
+        }
+        return resultado;
+    }
+
+    // Recorre hoja por hoja en lugar de bajar por el árbol en cada elemento.
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> accion) {
+        for (int inicio = 0; inicio < cantidad; inicio += ANCHO) {
+            Object[] hoja = hoja(inicio);
+            for (int i = 0, fin = Math.min(ANCHO, cantidad - inicio); i < fin; i++) {
+                accion.accept((T) hoja[i]);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int siguiente;
+            private Object[] hoja;
+
+            @Override
+            public boolean hasNext() {
+                return siguiente < cantidad;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (siguiente >= cantidad) {
+                    throw new NoSuchElementException();
+                }
+                if ((siguiente & MASCARA) == 0 || hoja == null) {
+                    hoja = hoja(siguiente);
+                }
+                return (T) hoja[siguiente++ & MASCARA];
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package org.jcr.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.jcr.ImportacionLote")
+@Label("Lote de importación CSV")
+@Category({"Hospital", "Importación"})
+@Description("Bloque de filas leído por cargarCitas")
+public class EventoImportacionLote extends Event {
+
+    public static final int TAMANIO_LOTE = 1_000;
+
+    @Label("Archivo")
+    public String archivo;
+
+    @Label("Número de lote")
+    public int lote;
+
+    @Label("Filas")
+    public int filas;
+}
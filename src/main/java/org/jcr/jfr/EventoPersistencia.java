@@ -0,0 +1,23 @@
+package org.jcr.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.jcr.Persistencia")
+@Label("Flush de persistencia")
+@Category({"Hospital", "Persistencia"})
+@Description("Flush de Hibernate o escritura de citas a disco")
+public class EventoPersistencia extends Event {
+
+    @Label("Operación")
+    public String operacion;
+
+    @Label("Entidades")
+    public int entidades;
+
+    @Label("Colecciones")
+    public int colecciones;
+}
@@ -0,0 +1,29 @@
+package org.jcr.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.jcr.ReservaCita")
+@Label("Reserva de cita")
+@Category({"Hospital", "Agenda"})
+@Description("Intento de programar una cita en CitaManager")
+public class EventoReservaCita extends Event {
+
+    @Label("DNI médico")
+    public String medico;
+
+    @Label("Sala")
+    public String sala;
+
+    @Label("Fecha y hora")
+    public String fechaHora;
+
+    @Label("Exitosa")
+    public boolean exitosa;
+
+    @Label("Motivo de rechazo")
+    public String motivo;
+}
@@ -0,0 +1,23 @@
+package org.jcr.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.jcr.VerificacionConflicto")
+@Label("Verificación de conflicto")
+@Category({"Hospital", "Agenda"})
+@Description("Chequeo de disponibilidad de médico o sala")
+public class EventoVerificacionConflicto extends Event {
+
+    @Label("Recurso")
+    public String recurso;
+
+    @Label("Candidatos escaneados")
+    public int candidatosEscaneados;
+
+    @Label("Disponible")
+    public boolean disponible;
+}
@@ -0,0 +1,31 @@
+package org.jcr.jfr;
+
+import org.hibernate.SessionEventListener;
+
+// Registrado con hibernate.session.events.auto; Hibernate crea una instancia por sesión.
+public class OyenteSesionJfr implements SessionEventListener {
+
+    private EventoPersistencia flush;
+
+    @Override
+    public void flushStart() {
+        flush = new EventoPersistencia();
+        flush.begin();
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        EventoPersistencia evento = flush;
+        flush = null;
+        if (evento == null) {
+            return;
+        }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.operacion = "flush";
+            evento.entidades = numberOfEntities;
+            evento.colecciones = numberOfCollections;
+            evento.commit();
+        }
+    }
+}
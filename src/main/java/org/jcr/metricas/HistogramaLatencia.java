@@ -0,0 +1,102 @@
+package org.jcr.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histograma log-lineal al estilo HdrHistogram: 64 sub-buckets por potencia de dos (~1.5% de error relativo).
+public class HistogramaLatencia {
+
+    private static final int BITS_SUB_BUCKET = 7;
+    private static final int SUB_BUCKETS = 1 << BITS_SUB_BUCKET;
+    private static final int MITAD_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int CANTIDAD_BUCKETS = (64 - BITS_SUB_BUCKET + 1) * MITAD_SUB_BUCKETS;
+
+    private final String nombre;
+    private final AtomicLongArray conteos = new AtomicLongArray(CANTIDAD_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    public HistogramaLatencia(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void registrar(long valor) {
+        if (valor < 0) {
+            valor = 0;
+        }
+        conteos.incrementAndGet(indice(valor));
+        total.increment();
+        suma.add(valor);
+        long actual = maximo.get();
+        while (valor > actual && !maximo.compareAndSet(actual, valor)) {
+            actual = maximo.get();
+        }
+    }
+
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    public long getConteo() {
+        return total.sum();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getMedia() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    public long percentil(double percentil) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(n * Math.min(percentil, 100.0) / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < CANTIDAD_BUCKETS; i++) {
+            acumulado += conteos.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(valorSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    public void reiniciar() {
+        for (int i = 0; i < CANTIDAD_BUCKETS; i++) {
+            conteos.set(i, 0);
+        }
+        total.reset();
+        suma.reset();
+        maximo.set(0);
+    }
+
+    public String resumen() {
+        return String.format("%s: n=%d media=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                nombre, getConteo(), getMedia() / 1_000.0,
+                percentil(50) / 1_000.0, percentil(99) / 1_000.0,
+                percentil(99.9) / 1_000.0, getMaximo() / 1_000.0);
+    }
+
+    static int indice(long valor) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(valor | (SUB_BUCKETS - 1)) - (BITS_SUB_BUCKET - 1));
+        int subBucket = (int) (valor >>> bucket);
+        return bucket * MITAD_SUB_BUCKETS + subBucket;
+    }
+
+    static long valorSuperior(int indice) {
+        int bucket = Math.max(0, indice / MITAD_SUB_BUCKETS - 1);
+        long subBucket = indice - (long) bucket * MITAD_SUB_BUCKETS;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+}
@@ -0,0 +1,207 @@
+package org.jcr.metricas;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+public final class Metricas {
+
+    // Constante para que el JIT elimine la instrumentación cuando está deshabilitada.
+    public static final boolean HABILITADAS = Boolean.getBoolean("hospital.metricas");
+
+    public static final HistogramaLatencia PROGRAMAR_CITA = new HistogramaLatencia("programarCita");
+    public static final HistogramaLatencia DISPONIBILIDAD_MEDICO = new HistogramaLatencia("esMedicoDisponible");
+    public static final HistogramaLatencia DISPONIBILIDAD_SALA = new HistogramaLatencia("esSalaDisponible");
+    public static final HistogramaLatencia GUARDAR_CITAS = new HistogramaLatencia("guardarCitas");
+    public static final HistogramaLatencia CARGAR_CITAS = new HistogramaLatencia("cargarCitas");
+
+    private static final LongAdder CITAS_PROGRAMADAS = new LongAdder();
+    private static final LongAdder FILAS_IMPORTADAS = new LongAdder();
+    private static final Map<MotivoRechazo, LongAdder> RECHAZOS = new EnumMap<>(MotivoRechazo.class);
+    private static final Map<String, HistogramaLatencia> CONSULTAS = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> INDICADORES = new ConcurrentHashMap<>();
+
+    private static volatile double filasPorSegundoUltimaImportacion;
+    private static volatile Statistics estadisticasHibernate;
+    private static volatile VolcadoPeriodico volcado;
+
+    static {
+        for (MotivoRechazo motivo : MotivoRechazo.values()) {
+            RECHAZOS.put(motivo, new LongAdder());
+        }
+    }
+
+    private Metricas() {
+    }
+
+    public static Map<String, Object> propiedadesHibernate() {
+        if (!HABILITADAS) {
+            return Collections.emptyMap();
+        }
+        return Map.of("hibernate.generate_statistics", "true",
+                "hibernate.session.events.log", "false");
+    }
+
+    public static synchronized void iniciar(EntityManagerFactory emf) {
+        if (!HABILITADAS || volcado != null) {
+            return;
+        }
+        estadisticasHibernate = emf.unwrap(SessionFactory.class).getStatistics();
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new MetricasHospital(), MetricasHospital.NOMBRE);
+        } catch (Exception e) {
+            System.err.println("No se pudo registrar el MBean de métricas: " + e.getMessage());
+        }
+        long intervalo = Long.getLong("hospital.metricas.intervalo", 60);
+        volcado = new VolcadoPeriodico(intervalo);
+        volcado.iniciar();
+    }
+
+    public static synchronized void detener() {
+        if (volcado != null) {
+            volcado.detener();
+            volcado = null;
+        }
+        try {
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(MetricasHospital.NOMBRE)) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(MetricasHospital.NOMBRE);
+            }
+        } catch (Exception e) {
+            System.err.println("No se pudo desregistrar el MBean de métricas: " + e.getMessage());
+        }
+    }
+
+    public static long inicio() {
+        return HABILITADAS ? System.nanoTime() : 0L;
+    }
+
+    public static void citaProgramada(long inicioNanos) {
+        CITAS_PROGRAMADAS.increment();
+        PROGRAMAR_CITA.registrarDesde(inicioNanos);
+    }
+
+    public static void rechazo(MotivoRechazo motivo) {
+        RECHAZOS.get(motivo).increment();
+    }
+
+    public static void importacion(long filas, long inicioNanos) {
+        long duracion = System.nanoTime() - inicioNanos;
+        CARGAR_CITAS.registrar(duracion);
+        FILAS_IMPORTADAS.add(filas);
+        filasPorSegundoUltimaImportacion = duracion == 0 ? 0 : filas * 1_000_000_000.0 / duracion;
+    }
+
+    public static <T> T medirConsulta(String nombre, Supplier<T> consulta) {
+        if (!HABILITADAS) {
+            return consulta.get();
+        }
+        long inicio = System.nanoTime();
+        try {
+            return consulta.get();
+        } finally {
+            CONSULTAS.computeIfAbsent(nombre, n -> new HistogramaLatencia("jpa." + n)).registrarDesde(inicio);
+        }
+    }
+
+    /*
+     * Devuelve el nombre con que quedó registrado: si otra instancia ya usa el nombre se le
+     * agrega "#2", "#3"... El mapa mantiene vivo al dueño del indicador, así que quien lo
+     * registra tiene que quitarlo al cerrarse.
+     */
+    public static String registrarIndicador(String nombre, LongSupplier indicador) {
+        Objects.requireNonNull(indicador, "El indicador no puede ser nulo");
+        if (!HABILITADAS) {
+            return nombre;
+        }
+        String unico = nombre;
+        for (int n = 2; INDICADORES.putIfAbsent(unico, indicador) != null; n++) {
+            unico = nombre + "#" + n;
+        }
+        return unico;
+    }
+
+    public static void quitarIndicador(String nombre) {
+        INDICADORES.remove(nombre);
+    }
+
+    public static long getCitasProgramadas() {
+        return CITAS_PROGRAMADAS.sum();
+    }
+
+    public static long getRechazos(MotivoRechazo motivo) {
+        return RECHAZOS.get(motivo).sum();
+    }
+
+    public static long getFilasImportadas() {
+        return FILAS_IMPORTADAS.sum();
+    }
+
+    public static double getFilasPorSegundoUltimaImportacion() {
+        return filasPorSegundoUltimaImportacion;
+    }
+
+    public static Map<String, Long> getIndicadores() {
+        Map<String, Long> valores = new TreeMap<>();
+        INDICADORES.forEach((nombre, indicador) -> valores.put(nombre, indicador.getAsLong()));
+        return valores;
+    }
+
+    public static Statistics getEstadisticasHibernate() {
+        return estadisticasHibernate;
+    }
+
+    public static void reiniciar() {
+        PROGRAMAR_CITA.reiniciar();
+        DISPONIBILIDAD_MEDICO.reiniciar();
+        DISPONIBILIDAD_SALA.reiniciar();
+        GUARDAR_CITAS.reiniciar();
+        CARGAR_CITAS.reiniciar();
+        CONSULTAS.values().forEach(HistogramaLatencia::reiniciar);
+        CITAS_PROGRAMADAS.reset();
+        FILAS_IMPORTADAS.reset();
+        RECHAZOS.values().forEach(LongAdder::reset);
+        Statistics estadisticas = estadisticasHibernate;
+        if (estadisticas != null) {
+            estadisticas.clear();
+        }
+    }
+
+    public static String resumen() {
+        StringBuilder sb = new StringBuilder("--- MÉTRICAS ---\n");
+        sb.append("Citas programadas: ").append(getCitasProgramadas()).append('\n');
+        for (MotivoRechazo motivo : MotivoRechazo.values()) {
+            sb.append("Rechazos (").append(motivo.getDescripcion()).append("): ")
+                    .append(getRechazos(motivo)).append('\n');
+        }
+        for (HistogramaLatencia h : new HistogramaLatencia[]{PROGRAMAR_CITA, DISPONIBILIDAD_MEDICO,
+                DISPONIBILIDAD_SALA, GUARDAR_CITAS, CARGAR_CITAS}) {
+            sb.append(h.resumen()).append('\n');
+        }
+        CONSULTAS.values().forEach(h -> sb.append(h.resumen()).append('\n'));
+        sb.append(String.format("Importación: %d filas, %.0f filas/s (última)%n",
+                getFilasImportadas(), getFilasPorSegundoUltimaImportacion()));
+        getIndicadores().forEach((nombre, valor) -> sb.append(nombre).append(": ").append(valor).append('\n'));
+        Statistics estadisticas = estadisticasHibernate;
+        if (estadisticas != null) {
+            sb.append(String.format("Hibernate: consultas=%d (max %dms, lenta: %s), sentencias=%d, flushes=%d, "
+                            + "transacciones=%d, entidades cargadas=%d, colecciones cargadas=%d",
+                    estadisticas.getQueryExecutionCount(), estadisticas.getQueryExecutionMaxTime(),
+                    estadisticas.getQueryExecutionMaxTimeQueryString(), estadisticas.getPrepareStatementCount(),
+                    estadisticas.getFlushCount(), estadisticas.getTransactionCount(),
+                    estadisticas.getEntityLoadCount(), estadisticas.getCollectionLoadCount()));
+        }
+        return sb.toString();
+    }
+}
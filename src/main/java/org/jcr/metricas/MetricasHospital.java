@@ -0,0 +1,96 @@
+package org.jcr.metricas;
+
+import org.hibernate.stat.Statistics;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+public class MetricasHospital implements MetricasHospitalMBean {
+
+    static final ObjectName NOMBRE = crearNombre();
+
+    private static ObjectName crearNombre() {
+        try {
+            return new ObjectName("org.jcr:type=MetricasHospital");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public long getCitasProgramadas() {
+        return Metricas.getCitasProgramadas();
+    }
+
+    @Override
+    public long getRechazosMedicoOcupado() {
+        return Metricas.getRechazos(MotivoRechazo.MEDICO_OCUPADO);
+    }
+
+    @Override
+    public long getRechazosSalaOcupada() {
+        return Metricas.getRechazos(MotivoRechazo.SALA_OCUPADA);
+    }
+
+    @Override
+    public long getRechazosEspecialidadIncompatible() {
+        return Metricas.getRechazos(MotivoRechazo.ESPECIALIDAD_INCOMPATIBLE);
+    }
+
+    @Override
+    public long getRechazosFechaPasada() {
+        return Metricas.getRechazos(MotivoRechazo.FECHA_PASADA);
+    }
+
+    @Override
+    public long getRechazosCostoInvalido() {
+        return Metricas.getRechazos(MotivoRechazo.COSTO_INVALIDO);
+    }
+
+    @Override
+    public long getProgramarCitaP50Nanos() {
+        return Metricas.PROGRAMAR_CITA.percentil(50);
+    }
+
+    @Override
+    public long getProgramarCitaP99Nanos() {
+        return Metricas.PROGRAMAR_CITA.percentil(99);
+    }
+
+    @Override
+    public long getProgramarCitaMaxNanos() {
+        return Metricas.PROGRAMAR_CITA.getMaximo();
+    }
+
+    @Override
+    public long getFilasImportadas() {
+        return Metricas.getFilasImportadas();
+    }
+
+    @Override
+    public double getFilasPorSegundoUltimaImportacion() {
+        return Metricas.getFilasPorSegundoUltimaImportacion();
+    }
+
+    @Override
+    public long getConsultasHibernate() {
+        Statistics estadisticas = Metricas.getEstadisticasHibernate();
+        return estadisticas != null ? estadisticas.getQueryExecutionCount() : 0;
+    }
+
+    @Override
+    public long getSentenciasHibernate() {
+        Statistics estadisticas = Metricas.getEstadisticasHibernate();
+        return estadisticas != null ? estadisticas.getPrepareStatementCount() : 0;
+    }
+
+    @Override
+    public String getResumen() {
+        return Metricas.resumen();
+    }
+
+    @Override
+    public void reiniciar() {
+        Metricas.reiniciar();
+    }
+}
@@ -0,0 +1,34 @@
+package org.jcr.metricas;
+
+public interface MetricasHospitalMBean {
+
+    long getCitasProgramadas();
+
+    long getRechazosMedicoOcupado();
+
+    long getRechazosSalaOcupada();
+
+    long getRechazosEspecialidadIncompatible();
+
+    long getRechazosFechaPasada();
+
+    long getRechazosCostoInvalido();
+
+    long getProgramarCitaP50Nanos();
+
+    long getProgramarCitaP99Nanos();
+
+    long getProgramarCitaMaxNanos();
+
+    long getFilasImportadas();
+
+    double getFilasPorSegundoUltimaImportacion();
+
+    long getConsultasHibernate();
+
+    long getSentenciasHibernate();
+
+    String getResumen();
+
+    void reiniciar();
+}
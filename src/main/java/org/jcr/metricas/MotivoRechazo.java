@@ -0,0 +1,19 @@
+package org.jcr.metricas;
+
+public enum MotivoRechazo {
+    MEDICO_OCUPADO("Médico ocupado"),
+    SALA_OCUPADA("Sala ocupada"),
+    ESPECIALIDAD_INCOMPATIBLE("Especialidad incompatible"),
+    FECHA_PASADA("Fecha en el pasado"),
+    COSTO_INVALIDO("Costo inválido");
+
+    private final String descripcion;
+
+    MotivoRechazo(String descripcion) {
+        this.descripcion = descripcion;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+}
@@ -0,0 +1,41 @@
+package org.jcr.metricas;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class VolcadoPeriodico {
+
+    private static final Logger log = LoggerFactory.getLogger(VolcadoPeriodico.class);
+
+    private final long intervaloSegundos;
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread hilo = new Thread(r, "volcado-metricas");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    VolcadoPeriodico(long intervaloSegundos) {
+        this.intervaloSegundos = Math.max(1, intervaloSegundos);
+    }
+
+    void iniciar() {
+        ejecutor.scheduleAtFixedRate(this::volcar, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    void detener() {
+        ejecutor.shutdownNow();
+        volcar();
+    }
+
+    private void volcar() {
+        try {
+            log.info("\n{}", Metricas.resumen());
+        } catch (RuntimeException e) {
+            log.warn("Error al volcar métricas", e);
+        }
+    }
+}
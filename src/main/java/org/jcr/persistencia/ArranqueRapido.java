@@ -0,0 +1,107 @@
+package org.jcr.persistencia;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Creación de la EntityManagerFactory. Con -Dhospital.arranque.rapido=true:
+ *
+ * - hbm2ddl.auto=none: no se inspecciona ni se altera el esquema al arrancar. La
+ *   validación corre después, en segundo plano, y sólo avisa; para migrar hay que arrancar
+ *   una vez en modo normal.
+ * - Sin lectura de metadatos JDBC al construir la fábrica (la versión de H2 va fija) y sin
+ *   SQL en consola.
+ *
+ * main() mide el tiempo desde el inicio de la JVM hasta la primera consulta; también es
+ * la corrida de entrenamiento del archivo CDS (tarea archivoCds).
+ */
+public final class ArranqueRapido {
+
+    public static final String UNIDAD = "hospital-persistence-unit";
+    public static final boolean HABILITADO = Boolean.getBoolean("hospital.arranque.rapido");
+    private static final long DEMORA_VALIDACION_MS = Long.getLong("hospital.arranque.demoraValidacion", 2_000);
+
+    private ArranqueRapido() {
+    }
+
+    public static EntityManagerFactory crearFabrica(Map<String, Object> propiedades) {
+        if (!HABILITADO) {
+            return Persistence.createEntityManagerFactory(UNIDAD, propiedades);
+        }
+        Map<String, Object> rapidas = new HashMap<>(propiedades);
+        rapidas.putAll(propiedadesRapidas());
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(UNIDAD, rapidas);
+        validarEsquema(emf);
+        return emf;
+    }
+
+    public static Map<String, Object> propiedadesRapidas() {
+        return Map.of(AvailableSettings.HBM2DDL_AUTO, "none",
+                AvailableSettings.JAKARTA_HBM2DDL_DB_NAME, "H2",
+                AvailableSettings.JAKARTA_HBM2DDL_DB_MAJOR_VERSION, "2",
+                AvailableSettings.JAKARTA_HBM2DDL_DB_MINOR_VERSION, "2",
+                "hibernate.temp.use_jdbc_metadata_defaults", "false",
+                AvailableSettings.SHOW_SQL, "false",
+                AvailableSettings.FORMAT_SQL, "false");
+    }
+
+    /*
+     * Compara el mapeo con la base en un hilo aparte y de baja prioridad, después de una
+     * demora para no competir con las primeras consultas. Una diferencia se informa y no
+     * detiene nada; un proceso que termina antes de la demora no valida.
+     */
+    public static CompletableFuture<Boolean> validarEsquema(EntityManagerFactory emf) {
+        CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+        Thread hilo = new Thread(() -> {
+            try {
+                Thread.sleep(DEMORA_VALIDACION_MS);
+                emf.unwrap(SessionFactory.class).getSchemaManager().validateMappedObjects();
+                resultado.complete(true);
+            } catch (InterruptedException e) {
+                resultado.complete(false);
+            } catch (RuntimeException e) {
+                if (emf.isOpen()) {
+                    System.err.println("El esquema no coincide con las entidades; arranque sin "
+                            + "-Dhospital.arranque.rapido para actualizarlo: " + e.getMessage());
+                }
+                resultado.complete(false);
+            }
+        }, "validacion-esquema");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        hilo.start();
+        return resultado;
+    }
+
+    public static void main(String[] args) {
+        Map<String, Object> propiedades = new HashMap<>();
+        propiedades.put(AvailableSettings.SHOW_SQL, "false");
+        String url = System.getProperty("hospital.jdbc.url");
+        if (url != null) {
+            propiedades.put("jakarta.persistence.jdbc.url", url);
+        }
+        long inicioJvm = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long t0 = System.currentTimeMillis();
+        EntityManagerFactory emf = crearFabrica(propiedades);
+        long t1 = System.currentTimeMillis();
+        EntityManager em = emf.createEntityManager();
+        try {
+            long pacientes = em.createQuery("SELECT count(p) FROM Paciente p", Long.class).getSingleResult();
+            long t2 = System.currentTimeMillis();
+            System.out.printf("primera consulta: %d ms desde el inicio de la JVM (antes de la fábrica %d ms, "
+                    + "fábrica %d ms, consulta %d ms) - %d pacientes%n", t2 - inicioJvm, t0 - inicioJvm,
+                    t1 - t0, t2 - t1, pacientes);
+        } finally {
+            em.close();
+            emf.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.jcr.persistencia;
+
+import jakarta.persistence.EntityManager;
+import org.jcr.entidades.Paciente;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Listados de historias clínicas sin el 1 + 4N de navegar Paciente -> HistoriaClinica -> colecciones.
+ *
+ * resumenes*(): sólo lectura, dos consultas por bloque de 1000 historias: cabeceras
+ * (paciente + historia) y un UNION ALL con diagnósticos, tratamientos y alergias.
+ *
+ * pacientesConHistoria(): entidades administradas; la historia viene en el mismo JOIN y
+ * las tres colecciones se inicializan por @BatchSize al recorrerlas.
+ */
+public final class ConsultasClinicas {
+
+    private static final int TAMANIO_BLOQUE = 1_000;
+
+    private static final String REGISTROS_SQL =
+            "SELECT historia_id, 'D', diagnostico, orden FROM diagnosticos WHERE historia_id IN (:ids) "
+                    + "UNION ALL SELECT historia_id, 'T', tratamiento, orden FROM tratamientos WHERE historia_id IN (:ids) "
+                    + "UNION ALL SELECT historia_id, 'A', alergia, orden FROM alergias WHERE historia_id IN (:ids) "
+                    + "ORDER BY 1, 4";
+
+    private ConsultasClinicas() {
+    }
+
+    public static List<Paciente> pacientesConHistoria(EntityManager em, Long hospitalId) {
+        return em.createQuery("SELECT p FROM Paciente p LEFT JOIN FETCH p.historiaClinica "
+                        + "WHERE p.hospital.id = :hospital ORDER BY p.apellido, p.nombre", Paciente.class)
+                .setParameter("hospital", hospitalId)
+                .getResultList();
+    }
+
+    public static List<ResumenClinico> resumenesPorHospital(EntityManager em, Long hospitalId) {
+        List<Object[]> cabeceras = em.createQuery("SELECT h.id, p.dni, p.nombre, p.apellido, h.numeroHistoria "
+                        + "FROM HistoriaClinica h JOIN h.paciente p WHERE p.hospital.id = :hospital "
+                        + "ORDER BY p.apellido, p.nombre", Object[].class)
+                .setParameter("hospital", hospitalId)
+                .getResultList();
+        return armar(em, cabeceras);
+    }
+
+    public static List<ResumenClinico> resumenesPorDni(EntityManager em, Collection<String> dnis) {
+        List<Object[]> cabeceras = new ArrayList<>(dnis.size());
+        List<String> lista = new ArrayList<>(dnis);
+        for (int i = 0; i < lista.size(); i += TAMANIO_BLOQUE) {
+            cabeceras.addAll(em.createQuery("SELECT h.id, p.dni, p.nombre, p.apellido, h.numeroHistoria "
+                            + "FROM HistoriaClinica h JOIN h.paciente p WHERE p.dni IN :dnis", Object[].class)
+                    .setParameter("dnis", lista.subList(i, Math.min(i + TAMANIO_BLOQUE, lista.size())))
+                    .getResultList());
+        }
+        return armar(em, cabeceras);
+    }
+
+    private static List<ResumenClinico> armar(EntityManager em, List<Object[]> cabeceras) {
+        Map<Long, Registros> porHistoria = new LinkedHashMap<>();
+        for (Object[] cabecera : cabeceras) {
+            porHistoria.put((Long) cabecera[0], new Registros());
+        }
+
+        List<Long> ids = new ArrayList<>(porHistoria.keySet());
+        for (int i = 0; i < ids.size(); i += TAMANIO_BLOQUE) {
+            @SuppressWarnings("unchecked")
+            List<Object[]> filas = em.createNativeQuery(REGISTROS_SQL)
+                    .setParameter("ids", ids.subList(i, Math.min(i + TAMANIO_BLOQUE, ids.size())))
+                    .getResultList();
+            for (Object[] fila : filas) {
+                Registros registros = porHistoria.get(((Number) fila[0]).longValue());
+                String texto = (String) fila[2];
+                switch (fila[1].toString()) {
+                    case "D" -> registros.diagnosticos.add(texto);
+                    case "T" -> registros.tratamientos.add(texto);
+                    default -> registros.alergias.add(texto);
+                }
+            }
+        }
+
+        List<ResumenClinico> resumenes = new ArrayList<>(cabeceras.size());
+        for (Object[] cabecera : cabeceras) {
+            Registros registros = porHistoria.get((Long) cabecera[0]);
+            resumenes.add(new ResumenClinico((String) cabecera[1], cabecera[2] + " " + cabecera[3],
+                    (String) cabecera[4], List.copyOf(registros.diagnosticos),
+                    List.copyOf(registros.tratamientos), List.copyOf(registros.alergias)));
+        }
+        return resumenes;
+    }
+
+    private static final class Registros {
+        final List<String> diagnosticos = new ArrayList<>();
+        final List<String> tratamientos = new ArrayList<>();
+        final List<String> alergias = new ArrayList<>();
+    }
+}
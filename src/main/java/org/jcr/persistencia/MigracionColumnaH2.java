@@ -0,0 +1,94 @@
+package org.jcr.persistencia;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/*
+ * Agrega a una base H2 existente una columna que hbm2ddl=update no puede agregar (NOT NULL
+ * en una tabla con filas). Los integradores corren antes que la herramienta de esquema, así
+ * que cuando ésta mira la tabla la columna ya está. Cada subclase da la columna, las tablas y
+ * las sentencias para una tabla que existe y todavía no la tiene; todas corren en una sola
+ * transacción.
+ */
+abstract class MigracionColumnaH2 implements Integrator {
+
+    private final String columna;
+    private final List<String> tablas;
+
+    MigracionColumnaH2(String columna, String... tablas) {
+        this.columna = columna;
+        this.tablas = List.of(tablas);
+    }
+
+    abstract List<String> sentencias(String tabla);
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                          SessionFactoryImplementor sessionFactory) {
+        // Sin herramienta de esquema (arranque rápido) no hay nada que preparar
+        if ("none".equals(sessionFactory.getProperties().get(AvailableSettings.HBM2DDL_AUTO))) {
+            return;
+        }
+        ConnectionProvider conexiones = sessionFactory.getServiceRegistry().getService(ConnectionProvider.class);
+        if (conexiones == null) {
+            return;
+        }
+        try {
+            Connection conexion = conexiones.getConnection();
+            try {
+                if (conexion.getMetaData().getDatabaseProductName().equals("H2")) {
+                    migrar(conexion);
+                }
+            } finally {
+                conexiones.closeConnection(conexion);
+            }
+        } catch (SQLException e) {
+            System.err.println("No se pudo completar la columna " + columna.toLowerCase() + ": " + e.getMessage());
+        }
+    }
+
+    private void migrar(Connection conexion) throws SQLException {
+        DatabaseMetaData metadatos = conexion.getMetaData();
+        boolean autoCommit = conexion.getAutoCommit();
+        conexion.setAutoCommit(false);
+        try (Statement sentencia = conexion.createStatement()) {
+            for (String tabla : tablas) {
+                if (!existe(metadatos.getTables(null, null, tabla, null))
+                        || existe(metadatos.getColumns(null, null, tabla, columna))) {
+                    continue;
+                }
+                for (String sql : sentencias(tabla)) {
+                    sentencia.execute(sql);
+                }
+            }
+            conexion.commit();
+        } catch (SQLException e) {
+            conexion.rollback();
+            throw e;
+        } finally {
+            conexion.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean existe(ResultSet resultado) throws SQLException {
+        try (resultado) {
+            return resultado.next();
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,29 @@
+package org.jcr.persistencia;
+
+import java.util.List;
+
+/*
+ * Bases creadas antes de @OrderColumn en HistoriaClinica: hbm2ddl=update intenta
+ * "add column orden integer not null" y H2 lo rechaza si la tabla tiene filas.
+ * Acá se agrega la columna y se numera cada colección en el orden en que se insertaron
+ * sus filas.
+ *
+ * Registrado en META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class MigracionColumnaOrden extends MigracionColumnaH2 {
+
+    public MigracionColumnaOrden() {
+        super("ORDEN", "DIAGNOSTICOS", "TRATAMIENTOS", "ALERGIAS");
+    }
+
+    @Override
+    List<String> sentencias(String tabla) {
+        return List.of(
+                "ALTER TABLE " + tabla + " ADD COLUMN orden INTEGER",
+                "MERGE INTO " + tabla + " t USING (SELECT _ROWID_ fila, "
+                        + "ROW_NUMBER() OVER (PARTITION BY historia_id ORDER BY _ROWID_) - 1 posicion FROM "
+                        + tabla + ") s ON t._ROWID_ = s.fila WHEN MATCHED THEN UPDATE SET orden = s.posicion",
+                "ALTER TABLE " + tabla + " ALTER COLUMN orden SET NOT NULL",
+                "ALTER TABLE " + tabla + " ADD PRIMARY KEY (historia_id, orden)");
+    }
+}
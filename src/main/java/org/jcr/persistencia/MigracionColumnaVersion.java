@@ -0,0 +1,22 @@
+package org.jcr.persistencia;
+
+import java.util.List;
+
+/*
+ * Bases creadas antes de @Version en Cita e HistoriaClinica: igual que con la columna
+ * orden, hbm2ddl=update no puede agregar "version bigint not null" a una tabla con filas.
+ * Acá se agrega con valor 0 para las filas existentes.
+ *
+ * Registrado en META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class MigracionColumnaVersion extends MigracionColumnaH2 {
+
+    public MigracionColumnaVersion() {
+        super("VERSION", "CITA", "HISTORIACLINICA");
+    }
+
+    @Override
+    List<String> sentencias(String tabla) {
+        return List.of("ALTER TABLE " + tabla + " ADD COLUMN version BIGINT DEFAULT 0 NOT NULL");
+    }
+}
@@ -0,0 +1,271 @@
+package org.jcr.persistencia;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.jfr.EventoPersistencia;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/*
+ * Write-behind de citas: las reservas se aceptan en memoria y un único hilo de fondo las
+ * persiste en lotes, en el mismo orden en que se encolaron. Varias operaciones sobre la
+ * misma cita dentro de un lote se combinan en una sola escritura. Un lote fallido se
+ * reintenta con espera exponencial antes de pasar al siguiente; si agota los intentos se
+ * escribe por mitades hasta aislar las citas que fallan solas (una fila con datos inválidos
+ * no arrastra al resto): sólo esas se informan a alFallar y sólo sus futuros terminan con
+ * error. Un conflicto de versión (otra escritura cambió la cita en la base) no se reintenta
+ * con espera, porque repetir el merge falla igual: se pasa directo a las mitades y falla sólo
+ * la cita desactualizada, no las reservas que compartían el lote con ella. Cada cita escrita
+ * se informa a alConfirmar, ya con el id y la versión que le dio la base.
+ */
+public class PersistenciaDiferida implements AutoCloseable {
+
+    private static final Operacion FIN = new Operacion(null, null);
+
+    private final EntityManagerFactory emf;
+    private final BlockingQueue<Operacion> cola;
+    private final int tamanioLote;
+    private final int maximoIntentos;
+    private final Duration esperaInicial;
+    private final Consumer<Cita> alFallar;
+    private final Consumer<Cita> alConfirmar;
+    private final Thread escritor;
+    private volatile boolean cerrada;
+
+    public PersistenciaDiferida(EntityManagerFactory emf, int capacidad, int tamanioLote,
+                                int maximoIntentos, Duration esperaInicial, Consumer<Cita> alFallar) {
+        this(emf, capacidad, tamanioLote, maximoIntentos, esperaInicial, alFallar, null);
+    }
+
+    public PersistenciaDiferida(EntityManagerFactory emf, int capacidad, int tamanioLote, int maximoIntentos,
+                                Duration esperaInicial, Consumer<Cita> alFallar, Consumer<Cita> alConfirmar) {
+        this.emf = emf;
+        this.cola = new LinkedBlockingQueue<>(capacidad);
+        this.tamanioLote = tamanioLote;
+        this.maximoIntentos = maximoIntentos;
+        this.esperaInicial = esperaInicial;
+        this.alFallar = alFallar != null ? alFallar : c -> { };
+        this.alConfirmar = alConfirmar != null ? alConfirmar : c -> { };
+        this.escritor = new Thread(this::procesar, "persistencia-diferida");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    public PersistenciaDiferida(EntityManagerFactory emf) {
+        this(emf, 10_000, 500, 5, Duration.ofMillis(50), null);
+    }
+
+    // Bloquea si la cola está llena: la contrapresión llega hasta quien reserva.
+    public CompletableFuture<Cita> guardar(Cita cita) {
+        if (cerrada) {
+            throw new IllegalStateException("La persistencia diferida está cerrada.");
+        }
+        Operacion operacion = new Operacion(cita, new CompletableFuture<>());
+        try {
+            cola.put(operacion);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            operacion.resultado.completeExceptionally(e);
+        }
+        return operacion.resultado;
+    }
+
+    // Se completa cuando todo lo encolado antes de la llamada quedó confirmado en la base.
+    public CompletableFuture<Cita> barrera() {
+        Operacion marca = new Operacion(null, new CompletableFuture<>());
+        try {
+            cola.put(marca);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            marca.resultado.completeExceptionally(e);
+        }
+        return marca.resultado;
+    }
+
+    public void esperar(Duration limite) throws InterruptedException, TimeoutException {
+        try {
+            barrera().get(limite.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló la persistencia diferida", e.getCause());
+        }
+    }
+
+    public int getPendientes() {
+        return cola.size();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (cerrada) {
+            return;
+        }
+        cerrada = true;
+        cola.put(FIN);
+        escritor.join();
+    }
+
+    private void procesar() {
+        List<Operacion> lote = new ArrayList<>(tamanioLote);
+        while (true) {
+            try {
+                lote.add(cola.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            cola.drainTo(lote, tamanioLote - 1);
+
+            boolean terminar = lote.remove(FIN);
+            if (terminar) {
+                // Carreras con close(): lo que haya quedado detrás de FIN también se escribe
+                cola.drainTo(lote);
+            }
+            escribirConReintentos(lote);
+            if (terminar) {
+                return;
+            }
+            lote.clear();
+        }
+    }
+
+    private void escribirConReintentos(List<Operacion> lote) {
+        // Combinar: una escritura por cita, en el orden de su primera aparición
+        Map<Cita, Boolean> citas = new IdentityHashMap<>();
+        List<Cita> orden = new ArrayList<>();
+        for (Operacion operacion : lote) {
+            if (operacion.cita != null && citas.put(operacion.cita, Boolean.TRUE) == null) {
+                orden.add(operacion.cita);
+            }
+        }
+
+        RuntimeException ultimoError = null;
+        long espera = esperaInicial.toMillis();
+        for (int intento = 1; intento <= maximoIntentos && !orden.isEmpty(); intento++) {
+            try {
+                escribir(orden);
+                ultimoError = null;
+                break;
+            } catch (RuntimeException e) {
+                ultimoError = e;
+                System.err.println("Error al persistir lote de " + orden.size() + " citas (intento "
+                        + intento + "/" + maximoIntentos + "): " + e.getMessage());
+                // Otra escritura ya cambió alguna de estas citas: repetir el lote falla igual, se aísla
+                if (ReintentoOptimista.esConflicto(e)) {
+                    break;
+                }
+                if (intento < maximoIntentos && !dormir(espera)) {
+                    break;
+                }
+                espera *= 2;
+            }
+        }
+
+        Map<Cita, RuntimeException> fallidas = new IdentityHashMap<>();
+        if (ultimoError != null) {
+            if (orden.size() == 1) {
+                fallidas.put(orden.get(0), ultimoError);
+            } else {
+                aislar(orden, fallidas);
+            }
+        }
+        RuntimeException primerError = null;
+        for (Cita cita : orden) {
+            RuntimeException error = fallidas.get(cita);
+            if (error != null) {
+                alFallar.accept(cita);
+                if (primerError == null) primerError = error;
+            } else {
+                alConfirmar.accept(cita);
+            }
+        }
+        for (Operacion operacion : lote) {
+            // Una barrera falla si algo de lo anterior en su lote no se pudo escribir
+            RuntimeException error = operacion.cita != null ? fallidas.get(operacion.cita) : primerError;
+            if (error == null) {
+                operacion.resultado.complete(operacion.cita);
+            } else {
+                operacion.resultado.completeExceptionally(error);
+            }
+        }
+    }
+
+    // Escribe por mitades hasta dejar sólo las citas que fallan solas: O(f log n) transacciones.
+    private void aislar(List<Cita> citas, Map<Cita, RuntimeException> fallidas) {
+        int mitad = citas.size() / 2;
+        for (List<Cita> parte : List.of(citas.subList(0, mitad), citas.subList(mitad, citas.size()))) {
+            try {
+                escribir(parte);
+            } catch (RuntimeException e) {
+                if (parte.size() > 1) {
+                    aislar(parte, fallidas);
+                } else {
+                    System.err.println("No se pudo persistir la cita " + parte.get(0) + ": " + e.getMessage());
+                    fallidas.put(parte.get(0), e);
+                }
+            }
+        }
+    }
+
+    private void escribir(List<Cita> citas) {
+        EventoPersistencia evento = new EventoPersistencia();
+        evento.begin();
+        List<Cita> nuevas = new ArrayList<>();
+        Map<Cita, Cita> copias = new IdentityHashMap<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (Cita cita : citas) {
+                if (cita.getId() == null) {
+                    nuevas.add(cita);
+                    em.persist(cita);
+                } else {
+                    copias.put(cita, em.merge(cita));
+                }
+            }
+            em.getTransaction().commit();
+            // merge sube la versión de la copia administrada; la cita en memoria la necesita
+            // para que su próximo merge no parezca desactualizado
+            copias.forEach((cita, copia) -> cita.setVersion(copia.getVersion()));
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            // Con IDENTITY el persist ya asignó ids que el rollback deshizo en la base
+            nuevas.forEach(cita -> {
+                cita.setId(null);
+                cita.setVersion(null);
+            });
+            throw e;
+        } finally {
+            em.close();
+        }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.operacion = "escrituraDiferida";
+            evento.entidades = citas.size();
+            evento.commit();
+        }
+    }
+
+    private static boolean dormir(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record Operacion(Cita cita, CompletableFuture<Cita> resultado) {
+    }
+}
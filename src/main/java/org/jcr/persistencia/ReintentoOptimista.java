@@ -0,0 +1,181 @@
+package org.jcr.persistencia;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.HistoriaClinica;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*
+ * Actualizaciones cortas con control optimista (@Version en Cita e HistoriaClinica). Si al
+ * confirmar otra transacción ya cambió la fila, se deshace todo y la operación se vuelve a
+ * ejecutar sobre datos recién leídos, hasta maximoIntentos veces con una espera al azar que
+ * se duplica en cada intento.
+ *
+ * Reintentar sólo vale para cambios conmutativos (agregar un diagnóstico o una observación):
+ * aplicarlos sobre la versión nueva da lo mismo que si hubieran ido en serie. Un cambio que
+ * depende de lo que el usuario vio, como el estado de una cita, va por actualizarCita: el
+ * conflicto no se reintenta y le llega a quien llamó como OptimisticLockException.
+ */
+public class ReintentoOptimista {
+
+    private static final int LARGO_OBSERVACIONES = 500;
+
+    private final EntityManagerFactory emf;
+    private final int maximoIntentos;
+    private final long esperaInicialMicros;
+    private final LongAdder conflictos = new LongAdder();
+
+    public ReintentoOptimista(EntityManagerFactory emf, int maximoIntentos, long esperaInicialMicros) {
+        if (maximoIntentos < 1) {
+            throw new IllegalArgumentException("Hace falta al menos un intento");
+        }
+        this.emf = Objects.requireNonNull(emf, "La fábrica no puede ser nula");
+        this.maximoIntentos = maximoIntentos;
+        this.esperaInicialMicros = esperaInicialMicros;
+    }
+
+    public ReintentoOptimista(EntityManagerFactory emf) {
+        this(emf, 5, 500);
+    }
+
+    /*
+     * Ejecuta operacion en su propia transacción. Ante un conflicto la reintenta con un
+     * EntityManager nuevo; agotados los intentos, relanza el último conflicto.
+     */
+    public <T> T ejecutar(Function<EntityManager, T> operacion) {
+        long espera = esperaInicialMicros;
+        for (int intento = 1; ; intento++) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                T resultado = operacion.apply(em);
+                em.getTransaction().commit();
+                return resultado;
+            } catch (RuntimeException e) {
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                if (!esConflicto(e) || intento == maximoIntentos) {
+                    throw e;
+                }
+                conflictos.increment();
+                if (!dormir(ThreadLocalRandom.current().nextLong(espera + 1))) {
+                    throw e;
+                }
+            } finally {
+                em.close();
+            }
+            espera *= 2;
+        }
+    }
+
+    public void agregarDiagnostico(Long historiaId, String diagnostico) {
+        actualizarHistoria(historiaId, historia -> historia.agregarDiagnostico(diagnostico));
+    }
+
+    public void agregarTratamiento(Long historiaId, String tratamiento) {
+        actualizarHistoria(historiaId, historia -> historia.agregarTratamiento(tratamiento));
+    }
+
+    public void agregarAlergia(Long historiaId, String alergia) {
+        actualizarHistoria(historiaId, historia -> historia.agregarAlergia(alergia));
+    }
+
+    private void actualizarHistoria(Long historiaId, Consumer<HistoriaClinica> cambio) {
+        ejecutar(em -> {
+            cambio.accept(buscar(em, HistoriaClinica.class, historiaId));
+            return null;
+        });
+    }
+
+    // Agrega una línea a las observaciones de la cita, sin pisar lo que otro haya escrito.
+    public void agregarObservacion(Long citaId, String observacion) {
+        if (observacion == null || observacion.isBlank()) {
+            return;
+        }
+        ejecutar(em -> {
+            Cita cita = buscar(em, Cita.class, citaId);
+            String actuales = cita.getObservaciones();
+            String nuevas = actuales == null || actuales.isEmpty() ? observacion : actuales + "\n" + observacion;
+            if (nuevas.length() > LARGO_OBSERVACIONES) {
+                throw new IllegalArgumentException("Las observaciones superan los "
+                        + LARGO_OBSERVACIONES + " caracteres");
+            }
+            cita.setObservaciones(nuevas);
+            return null;
+        });
+    }
+
+    /*
+     * Aplica cambios a la cita sólo si sigue en la versión que vio quien la editó; si no,
+     * OptimisticLockException sin reintentar. Devuelve la versión nueva.
+     */
+    public long actualizarCita(Long citaId, long versionVista, Consumer<Cita> cambios) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Cita cita = buscar(em, Cita.class, citaId);
+            if (cita.getVersion() != versionVista) {
+                throw new OptimisticLockException("La cita " + citaId + " cambió (versión "
+                        + cita.getVersion() + ", se editó la " + versionVista + ")", null, cita);
+            }
+            cambios.accept(cita);
+            em.getTransaction().commit();
+            return cita.getVersion();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            if (esConflicto(e)) conflictos.increment();
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    // Conflictos resueltos con un reintento (o informados por actualizarCita).
+    public long getConflictos() {
+        return conflictos.sum();
+    }
+
+    /*
+     * Otra transacción ganó la fila: versión vieja al confirmar, o la base cortó la espera
+     * por el lock de la fila que la otra tenía tomada.
+     */
+    public static boolean esConflicto(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof OptimisticLockException || causa instanceof StaleStateException
+                    || causa instanceof PessimisticLockException || causa instanceof LockTimeoutException
+                    || causa instanceof LockAcquisitionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> T buscar(EntityManager em, Class<T> tipo, Long id) {
+        T entidad = em.find(tipo, Objects.requireNonNull(id, "El id no puede ser nulo"));
+        if (entidad == null) {
+            throw new EntityNotFoundException(tipo.getSimpleName() + " no encontrada: " + id);
+        }
+        return entidad;
+    }
+
+    private static boolean dormir(long micros) {
+        try {
+            Thread.sleep(micros / 1_000, (int) (micros % 1_000) * 1_000);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
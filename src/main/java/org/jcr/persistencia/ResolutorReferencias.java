@@ -0,0 +1,190 @@
+package org.jcr.persistencia;
+
+import jakarta.persistence.EntityManager;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/*
+ * Construye los mapas DNI/número -> entidad que pide CitaManager.cargarCitas sin cargar
+ * las entidades: una proyección (clave, id) por tabla y em.getReference para cada fila,
+ * así ni la HistoriaClinica ni las citas de cada paciente se leen de la base.
+ *
+ * Para padrones muy grandes, los mapas "bajo demanda" resuelven cada clave con una
+ * consulta por id la primera vez que se pide y mantienen sólo las últimas N en un LRU,
+ * incluidas las que no existen.
+ * precargar() resuelve un bloque de claves conocidas con una sola consulta IN.
+ */
+public class ResolutorReferencias {
+
+    private static final int TAMANIO_BLOQUE_IN = 500;
+
+    private final EntityManager em;
+
+    public ResolutorReferencias(EntityManager em) {
+        this.em = em;
+    }
+
+    public Map<String, Paciente> pacientes() {
+        return proyectar("SELECT p.dni, p.id FROM Paciente p", Paciente.class);
+    }
+
+    public Map<String, Medico> medicos() {
+        return proyectar("SELECT m.dni, m.id FROM Medico m", Medico.class);
+    }
+
+    public Map<String, Sala> salas() {
+        return proyectar("SELECT s.numero, s.id FROM Sala s", Sala.class);
+    }
+
+    public Map<String, Paciente> pacientesBajoDemanda(int capacidad) {
+        return new CacheReferencias<>(capacidad, claves -> resolver(
+                "SELECT p.dni, p.id FROM Paciente p WHERE p.dni IN :claves", Paciente.class, claves));
+    }
+
+    public Map<String, Medico> medicosBajoDemanda(int capacidad) {
+        return new CacheReferencias<>(capacidad, claves -> resolver(
+                "SELECT m.dni, m.id FROM Medico m WHERE m.dni IN :claves", Medico.class, claves));
+    }
+
+    public Map<String, Sala> salasBajoDemanda(int capacidad) {
+        return new CacheReferencias<>(capacidad, claves -> resolver(
+                "SELECT s.numero, s.id FROM Sala s WHERE s.numero IN :claves", Sala.class, claves));
+    }
+
+    public static <T> void precargar(Map<String, T> mapa, Collection<String> claves) {
+        if (mapa instanceof CacheReferencias<T> cache) {
+            cache.precargar(claves);
+        }
+    }
+
+    private <T> Map<String, T> proyectar(String jpql, Class<T> tipo) {
+        Map<String, T> resultado = new HashMap<>();
+        // El cursor necesita la conexión abierta hasta el final: fuera de una transacción se abre una
+        boolean transaccionPropia = !em.getTransaction().isActive();
+        if (transaccionPropia) em.getTransaction().begin();
+        try (Stream<Object[]> filas = em.createQuery(jpql, Object[].class).getResultStream()) {
+            filas.forEach(fila -> resultado.put((String) fila[0], em.getReference(tipo, fila[1])));
+        } finally {
+            if (transaccionPropia) em.getTransaction().commit();
+        }
+        return resultado;
+    }
+
+    private <T> Map<String, T> resolver(String jpql, Class<T> tipo, Collection<String> claves) {
+        Map<String, T> resultado = new HashMap<>();
+        for (Object[] fila : em.createQuery(jpql, Object[].class).setParameter("claves", claves).getResultList()) {
+            resultado.put((String) fila[0], em.getReference(tipo, fila[1]));
+        }
+        return resultado;
+    }
+
+    /*
+     * LRU de claves resueltas. Una clave que no existe en la base también se recuerda (con
+     * AUSENTE), así que pedirla de nuevo no vuelve a consultar; ocupa lugar en el LRU como
+     * cualquier otra. Como vista de Map, size() y entrySet() cuentan sólo las claves que se
+     * resolvieron a una entidad, no las ausentes ni las que nunca se pidieron.
+     */
+    private static final class CacheReferencias<T> extends AbstractMap<String, T> {
+
+        private static final Object AUSENTE = new Object();
+
+        private final int capacidad;
+        private final Function<Collection<String>, Map<String, T>> cargador;
+        private final LinkedHashMap<String, Object> entradas;
+        private int ausentes;
+
+        CacheReferencias(int capacidad, Function<Collection<String>, Map<String, T>> cargador) {
+            this.capacidad = capacidad;
+            this.cargador = cargador;
+            this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> mayor) {
+                    boolean quitar = size() > CacheReferencias.this.capacidad;
+                    if (quitar && mayor.getValue() == AUSENTE) {
+                        ausentes--;
+                    }
+                    return quitar;
+                }
+            };
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(Object clave) {
+            if (!(clave instanceof String texto)) {
+                return null;
+            }
+            Object valor = entradas.get(texto);
+            if (valor == null) {
+                valor = cargador.apply(Collections.singletonList(texto)).get(texto);
+                guardar(texto, valor);
+            }
+            return valor != AUSENTE ? (T) valor : null;
+        }
+
+        @Override
+        public boolean containsKey(Object clave) {
+            return get(clave) != null;
+        }
+
+        void precargar(Collection<String> claves) {
+            List<String> faltantes = new ArrayList<>();
+            for (String clave : claves) {
+                if (!entradas.containsKey(clave)) {
+                    faltantes.add(clave);
+                }
+            }
+            for (int i = 0; i < faltantes.size(); i += TAMANIO_BLOQUE_IN) {
+                List<String> bloque = faltantes.subList(i, Math.min(i + TAMANIO_BLOQUE_IN, faltantes.size()));
+                Map<String, T> resueltas = cargador.apply(bloque);
+                for (String clave : bloque) {
+                    guardar(clave, resueltas.get(clave));
+                }
+            }
+        }
+
+        // valor null: la clave no está en la base.
+        private void guardar(String clave, Object valor) {
+            if (valor == null) {
+                valor = AUSENTE;
+                ausentes++;
+            }
+            entradas.put(clave, valor);
+        }
+
+        @Override
+        public Set<Entry<String, T>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Iterator<Entry<String, T>> iterator() {
+                    return entradas.entrySet().stream()
+                            .filter(entrada -> entrada.getValue() != AUSENTE)
+                            .map(entrada -> (Entry<String, T>) new SimpleImmutableEntry<>(entrada.getKey(),
+                                    (T) entrada.getValue()))
+                            .iterator();
+                }
+
+                @Override
+                public int size() {
+                    return entradas.size() - ausentes;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package org.jcr.persistencia;
+
+import java.util.List;
+
+public record ResumenClinico(String dni, String nombreCompleto, String numeroHistoria,
+                             List<String> diagnosticos, List<String> tratamientos, List<String> alergias) {
+}
@@ -0,0 +1,95 @@
+package org.jcr.pronostico;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/*
+ * Lee el historial de citas de la base a una DemandaSemanal sin materializar entidades: una
+ * proyección (especialidad, fechaHora) recorrida con cursor. El período se parte por año
+ * calendario y cada año se lee en el ejecutor dado con su propio EntityManager; al final los
+ * histogramas se combinan, así que el resultado no depende de cuántos hilos hubo.
+ */
+public final class CargaHistorica {
+
+    // Las canceladas no ocupan consultorio; las ausencias sí, el turno quedó reservado
+    public static final Set<EstadoCita> OCUPAN_CONSULTORIO =
+            EnumSet.of(EstadoCita.PROGRAMADA, EstadoCita.EN_CURSO, EstadoCita.COMPLETADA, EstadoCita.NO_ASISTIO);
+
+    private static final int TAMANIO_CURSOR = 1_000;
+
+    private CargaHistorica() {
+    }
+
+    public static DemandaSemanal cargar(EntityManagerFactory emf, LocalDate desde, LocalDate hasta, Executor ejecutor) {
+        return cargar(emf, desde, hasta, OCUPAN_CONSULTORIO, ejecutor);
+    }
+
+    // Citas con fechaHora en [desde, hasta).
+    public static DemandaSemanal cargar(EntityManagerFactory emf, LocalDate desde, LocalDate hasta,
+                                        Set<EstadoCita> estados, Executor ejecutor) {
+        Objects.requireNonNull(emf, "La fábrica no puede ser nula");
+        if (!desde.isBefore(hasta)) {
+            throw new IllegalArgumentException("El período está vacío: " + desde + " a " + hasta);
+        }
+        List<CompletableFuture<DemandaSemanal>> tareas = new ArrayList<>();
+        for (LocalDate inicio = desde; inicio.isBefore(hasta); ) {
+            LocalDate siguienteAnio = LocalDate.of(inicio.getYear() + 1, 1, 1);
+            LocalDate fin = siguienteAnio.isBefore(hasta) ? siguienteAnio : hasta;
+            LocalDate inicioTramo = inicio;
+            tareas.add(CompletableFuture.supplyAsync(() -> leerTramo(emf, inicioTramo, fin, estados), ejecutor));
+            inicio = fin;
+        }
+
+        DemandaSemanal demanda = new DemandaSemanal();
+        try {
+            for (CompletableFuture<DemandaSemanal> tarea : tareas) {
+                demanda.combinar(tarea.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+        return demanda;
+    }
+
+    private static DemandaSemanal leerTramo(EntityManagerFactory emf, LocalDate desde, LocalDate hasta,
+                                            Set<EstadoCita> estados) {
+        DemandaSemanal demanda = new DemandaSemanal();
+        demanda.cubrir(desde, hasta);
+        EntityManager em = emf.createEntityManager();
+        try {
+            // El cursor necesita la conexión abierta hasta el final
+            em.getTransaction().begin();
+            try (Stream<Object[]> filas = em.createQuery("SELECT m.especialidad, c.fechaHora FROM Cita c "
+                            + "JOIN c.medico m WHERE c.estado IN :estados "
+                            + "AND c.fechaHora >= :inicio AND c.fechaHora < :fin", Object[].class)
+                    .setParameter("estados", estados)
+                    .setParameter("inicio", desde.atStartOfDay())
+                    .setParameter("fin", hasta.atStartOfDay())
+                    .setHint("org.hibernate.fetchSize", TAMANIO_CURSOR)
+                    .setHint("org.hibernate.readOnly", true)
+                    .getResultStream()) {
+                filas.forEach(fila -> demanda.registrar((EspecialidadMedica) fila[0], (LocalDateTime) fila[1]));
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+        return demanda;
+    }
+}
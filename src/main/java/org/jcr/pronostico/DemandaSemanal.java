@@ -0,0 +1,81 @@
+package org.jcr.pronostico;
+
+import org.jcr.entidades.EspecialidadMedica;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/*
+ * Histograma de citas por especialidad y hora de la semana (lunes 0-1 h = franja 0, domingo
+ * 23-24 h = franja 167), más cuántos lunes, martes, ... abarca el período leído. Con eso la
+ * tasa de llegadas de una franja es citas / días de ese tipo, sin suponer semanas completas.
+ *
+ * Cada hilo llena el suyo y al final se combinan; no es thread-safe.
+ */
+public class DemandaSemanal {
+
+    public static final int FRANJAS = 7 * 24;
+
+    private static final EspecialidadMedica[] ESPECIALIDADES = EspecialidadMedica.values();
+
+    private final long[][] citas = new long[ESPECIALIDADES.length][FRANJAS];
+    private final long[] dias = new long[7];
+    private long total;
+
+    public static int franja(DayOfWeek dia, int hora) {
+        if (hora < 0 || hora > 23) {
+            throw new IllegalArgumentException("Hora fuera de rango: " + hora);
+        }
+        return (dia.getValue() - 1) * 24 + hora;
+    }
+
+    public static int franja(LocalDateTime fechaHora) {
+        return franja(fechaHora.getDayOfWeek(), fechaHora.getHour());
+    }
+
+    public void registrar(EspecialidadMedica especialidad, LocalDateTime fechaHora) {
+        citas[especialidad.ordinal()][franja(fechaHora)]++;
+        total++;
+    }
+
+    // Cuenta los días de [desde, hasta) como observados, tengan citas o no.
+    public void cubrir(LocalDate desde, LocalDate hasta) {
+        long cantidad = Math.max(0, ChronoUnit.DAYS.between(desde, hasta));
+        for (int d = 0; d < 7 && d < cantidad; d++) {
+            // Cada día de la semana aparece cantidad / 7 veces, y uno más para los primeros cantidad % 7
+            dias[desde.plusDays(d).getDayOfWeek().ordinal()] += cantidad / 7 + (d < cantidad % 7 ? 1 : 0);
+        }
+    }
+
+    void combinar(DemandaSemanal otra) {
+        for (int e = 0; e < ESPECIALIDADES.length; e++) {
+            for (int f = 0; f < FRANJAS; f++) {
+                citas[e][f] += otra.citas[e][f];
+            }
+        }
+        for (int d = 0; d < 7; d++) {
+            dias[d] += otra.dias[d];
+        }
+        total += otra.total;
+    }
+
+    public long getCitas(EspecialidadMedica especialidad, DayOfWeek dia, int hora) {
+        return citas[especialidad.ordinal()][franja(dia, hora)];
+    }
+
+    public long getDias(DayOfWeek dia) {
+        return dias[dia.ordinal()];
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    // Citas que empiezan en esa hora, en promedio, en un día de ese tipo.
+    public double llegadasPorHora(EspecialidadMedica especialidad, DayOfWeek dia, int hora) {
+        long observados = dias[dia.ordinal()];
+        return observados == 0 ? 0 : (double) getCitas(especialidad, dia, hora) / observados;
+    }
+}
@@ -0,0 +1,60 @@
+package org.jcr.pronostico;
+
+/*
+ * Cola M/M/c: llegadas de Poisson a tasa lambda, atención exponencial de duración media 1/mu
+ * y c servidores (consultorios, o médicos). La carga a = lambda / mu se mide en Erlangs.
+ *
+ * Erlang B se calcula con la recurrencia B(k) = a B(k-1) / (k + a B(k-1)), que no desborda
+ * con c grande como la fórmula con factoriales, y Erlang C sale de B.
+ */
+public final class ErlangC {
+
+    private ErlangC() {
+    }
+
+    // Probabilidad de que una llegada tenga que esperar; 1 si la carga no cabe en los servidores.
+    public static double probabilidadEspera(int servidores, double carga) {
+        validar(servidores, carga);
+        if (carga == 0) {
+            return 0;
+        }
+        if (carga >= servidores) {
+            return 1;
+        }
+        double b = 1;
+        for (int k = 1; k <= servidores; k++) {
+            b = carga * b / (k + carga * b);
+        }
+        return servidores * b / (servidores - carga * (1 - b));
+    }
+
+    // Espera media en cola, en las mismas unidades que la duración de la atención.
+    public static double esperaMedia(int servidores, double carga, double duracionAtencion) {
+        if (carga >= servidores) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return probabilidadEspera(servidores, carga) * duracionAtencion / (servidores - carga);
+    }
+
+    // Mínima cantidad de servidores con probabilidad de espera <= objetivo.
+    public static int servidoresNecesarios(double carga, double probabilidadEsperaMaxima) {
+        if (probabilidadEsperaMaxima <= 0 || probabilidadEsperaMaxima > 1) {
+            throw new IllegalArgumentException("La probabilidad de espera debe estar en (0, 1]");
+        }
+        validar(0, carga);
+        if (carga == 0) {
+            return 0;
+        }
+        int servidores = (int) Math.floor(carga) + 1;
+        while (probabilidadEspera(servidores, carga) > probabilidadEsperaMaxima) {
+            servidores++;
+        }
+        return servidores;
+    }
+
+    private static void validar(int servidores, double carga) {
+        if (servidores < 0 || carga < 0 || Double.isNaN(carga) || Double.isInfinite(carga)) {
+            throw new IllegalArgumentException("Servidores y carga deben ser no negativos y finitos");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.jcr.pronostico;
+
+import org.jcr.entidades.EspecialidadMedica;
+
+import java.time.DayOfWeek;
+
+/*
+ * Dimensionamiento de una franja de una hora: llegadas promedio, carga en Erlangs y los
+ * consultorios (o médicos) que hacen falta para no pasar la probabilidad de espera pedida,
+ * con la ocupación y la espera que resultan de esa cantidad.
+ */
+public record Estimacion(EspecialidadMedica especialidad, DayOfWeek dia, int hora, double llegadasPorHora,
+                         double carga, int servidores, double utilizacion, double probabilidadEspera,
+                         double esperaMediaMinutos) {
+}
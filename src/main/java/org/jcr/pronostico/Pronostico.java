@@ -0,0 +1,104 @@
+package org.jcr.pronostico;
+
+import jakarta.persistence.EntityManager;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.EspecialidadMedica;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * Preguntas de capacidad sobre una DemandaSemanal ya cargada, p. ej. cuántos consultorios
+ * necesita PEDIATRIA los martes de 8 a 12. Cada franja horaria se trata como una cola M/M/c
+ * (ErlangC) con las llegadas promedio de esa hora y la duración de atención dada; el
+ * histograma es chico, así que las respuestas no vuelven a tocar la base.
+ *
+ * El promedio no ve picos de una semana en particular: la probabilidad de espera objetivo
+ * es el margen para eso.
+ */
+public class Pronostico {
+
+    private final DemandaSemanal demanda;
+    private final double horasPorAtencion;
+
+    public Pronostico(DemandaSemanal demanda) {
+        this(demanda, CitaManager.DURACION_PREDETERMINADA);
+    }
+
+    public Pronostico(DemandaSemanal demanda, Duration atencion) {
+        this.demanda = Objects.requireNonNull(demanda, "La demanda no puede ser nula");
+        if (atencion.isNegative() || atencion.isZero()) {
+            throw new IllegalArgumentException("La duración de la atención debe ser positiva");
+        }
+        this.horasPorAtencion = atencion.toMinutes() / 60.0;
+    }
+
+    public DemandaSemanal getDemanda() {
+        return demanda;
+    }
+
+    public Estimacion estimar(EspecialidadMedica especialidad, DayOfWeek dia, int hora,
+                              double probabilidadEsperaMaxima) {
+        double llegadas = demanda.llegadasPorHora(especialidad, dia, hora);
+        double carga = llegadas * horasPorAtencion;
+        int servidores = ErlangC.servidoresNecesarios(carga, probabilidadEsperaMaxima);
+        if (servidores == 0) {
+            return new Estimacion(especialidad, dia, hora, 0, 0, 0, 0, 0, 0);
+        }
+        return new Estimacion(especialidad, dia, hora, llegadas, carga, servidores, carga / servidores,
+                ErlangC.probabilidadEspera(servidores, carga),
+                ErlangC.esperaMedia(servidores, carga, horasPorAtencion * 60));
+    }
+
+    // Una estimación por hora de [desde, hasta); una hora empezada cuenta entera.
+    public List<Estimacion> estimar(EspecialidadMedica especialidad, DayOfWeek dia, LocalTime desde, LocalTime hasta,
+                                    double probabilidadEsperaMaxima) {
+        int horaFin = hasta.getMinute() > 0 || hasta.getSecond() > 0 ? hasta.getHour() + 1 : hasta.getHour();
+        if (hasta.equals(LocalTime.MIDNIGHT)) {
+            horaFin = 24;
+        }
+        List<Estimacion> estimaciones = new ArrayList<>();
+        for (int hora = desde.getHour(); hora < horaFin; hora++) {
+            estimaciones.add(estimar(especialidad, dia, hora, probabilidadEsperaMaxima));
+        }
+        return estimaciones;
+    }
+
+    // Lo que pide la hora más cargada de la franja.
+    public int salasNecesarias(EspecialidadMedica especialidad, DayOfWeek dia, LocalTime desde, LocalTime hasta,
+                               double probabilidadEsperaMaxima) {
+        int salas = 0;
+        for (Estimacion estimacion : estimar(especialidad, dia, desde, hasta, probabilidadEsperaMaxima)) {
+            salas = Math.max(salas, estimacion.servidores());
+        }
+        return salas;
+    }
+
+    // Ocupación por hora de la semana con las salas que hay; más de 1 quiere decir que no alcanzan.
+    public double[] utilizacion(EspecialidadMedica especialidad, int salas) {
+        double[] ocupacion = new double[DemandaSemanal.FRANJAS];
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            for (int hora = 0; hora < 24; hora++) {
+                double carga = demanda.llegadasPorHora(especialidad, dia, hora) * horasPorAtencion;
+                ocupacion[DemandaSemanal.franja(dia, hora)] = salas > 0 ? carga / salas
+                        : carga > 0 ? Double.POSITIVE_INFINITY : 0;
+            }
+        }
+        return ocupacion;
+    }
+
+    public static Map<EspecialidadMedica, Integer> salasPorEspecialidad(EntityManager em) {
+        Map<EspecialidadMedica, Integer> salas = new EnumMap<>(EspecialidadMedica.class);
+        for (Object[] fila : em.createQuery("SELECT d.especialidad, COUNT(s) FROM Sala s JOIN s.departamento d "
+                + "GROUP BY d.especialidad", Object[].class).getResultList()) {
+            salas.put((EspecialidadMedica) fila[0], ((Number) fila[1]).intValue());
+        }
+        return salas;
+    }
+}
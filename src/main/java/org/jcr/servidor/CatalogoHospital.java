@@ -0,0 +1,104 @@
+package org.jcr.servidor;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaManagerParticionado;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+// Pacientes, médicos y salas desconectados con sus colecciones ya inicializadas,
+// para que el planificador de citas pueda usarlos desde cualquier hilo sin una sesión abierta.
+class CatalogoHospital {
+
+    private final EntityManagerFactory emf;
+    private final Semaphore permisosJdbc;
+    private final Map<String, Paciente> pacientes = new ConcurrentHashMap<>();
+    private final Map<String, Medico> medicos = new ConcurrentHashMap<>();
+    private final Map<String, Sala> salas = new ConcurrentHashMap<>();
+
+    CatalogoHospital(EntityManagerFactory emf, Semaphore permisosJdbc) {
+        this.emf = emf;
+        this.permisosJdbc = permisosJdbc;
+    }
+
+    // Devuelve las citas todavía abiertas (PROGRAMADA o EN_CURSO), pasadas o futuras.
+    List<Cita> cargar(CitaManagerParticionado manager) {
+        List<Cita> abiertas = new ArrayList<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.createQuery("SELECT DISTINCT p FROM Paciente p LEFT JOIN FETCH p.citas", Paciente.class)
+                    .getResultList().forEach(p -> pacientes.put(p.getDni(), p));
+            em.createQuery("SELECT DISTINCT m FROM Medico m LEFT JOIN FETCH m.citas", Medico.class)
+                    .getResultList().forEach(m -> medicos.put(m.getDni(), m));
+            em.createQuery("SELECT DISTINCT s FROM Sala s JOIN FETCH s.departamento LEFT JOIN FETCH s.citas", Sala.class)
+                    .getResultList().forEach(s -> salas.put(s.getNumero(), s));
+
+            // Sólo las citas futuras participan de los chequeos de disponibilidad
+            LocalDateTime ahora = LocalDateTime.now();
+            for (Medico medico : medicos.values()) {
+                for (Cita cita : medico.getCitas()) {
+                    if (cita.getEstado() == EstadoCita.PROGRAMADA && cita.getFechaHora().isAfter(ahora)) {
+                        manager.registrarCita(cita);
+                    }
+                    if (cita.getEstado() == EstadoCita.PROGRAMADA || cita.getEstado() == EstadoCita.EN_CURSO) {
+                        abiertas.add(cita);
+                    }
+                }
+            }
+        } finally {
+            em.close();
+        }
+        return abiertas;
+    }
+
+    Paciente paciente(String dni) {
+        return pacientes.computeIfAbsent(dni, d -> buscarUno(
+                "SELECT p FROM Paciente p LEFT JOIN FETCH p.citas WHERE p.dni = :clave", Paciente.class, d));
+    }
+
+    Medico medico(String dni) {
+        return medicos.computeIfAbsent(dni, d -> buscarUno(
+                "SELECT m FROM Medico m LEFT JOIN FETCH m.citas WHERE m.dni = :clave", Medico.class, d));
+    }
+
+    Sala sala(String numero) {
+        return salas.computeIfAbsent(numero, n -> buscarUno(
+                "SELECT s FROM Sala s JOIN FETCH s.departamento LEFT JOIN FETCH s.citas WHERE s.numero = :clave",
+                Sala.class, n));
+    }
+
+    Collection<Paciente> getPacientes() {
+        return pacientes.values();
+    }
+
+    Collection<Medico> getMedicos() {
+        return medicos.values();
+    }
+
+    Collection<Sala> getSalas() {
+        return salas.values();
+    }
+
+    private <T> T buscarUno(String jpql, Class<T> tipo, String clave) {
+        permisosJdbc.acquireUninterruptibly();
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<T> resultado = em.createQuery(jpql, tipo).setParameter("clave", clave).getResultList();
+            return resultado.isEmpty() ? null : resultado.get(0);
+        } finally {
+            em.close();
+            permisosJdbc.release();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.jcr.servidor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class Ejecutores {
+
+    private Ejecutores() {
+    }
+
+    /*
+     * Un hilo virtual por solicitud en JDK 21+; en JDK anteriores, hilos de plataforma con un
+     * tope. La cola del pool no está acotada: quien lo usa tiene que limitar lo que encola
+     * (ServidorHospital toma el permiso antes de entregarle la solicitud).
+     */
+    static ExecutorService porSolicitud(int maximoHilosPlataforma) {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(maximoHilosPlataforma, r -> {
+                Thread hilo = new Thread(r, "solicitud-hospital");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+    }
+
+    static boolean hilosVirtualesDisponibles() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
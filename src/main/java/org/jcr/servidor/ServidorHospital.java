@@ -0,0 +1,355 @@
+package org.jcr.servidor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaException;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.CitaManagerParticionado;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+import org.jcr.metricas.Metricas;
+import org.jcr.persistencia.ArranqueRapido;
+import org.jcr.persistencia.PersistenciaDiferida;
+import org.jcr.temporizacion.PlanificadorVencimientos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/*
+ * Front end HTTP liviano sobre CitaManagerParticionado y las consultas JPA.
+ *
+ *   POST /citas                  paciente, medico, sala, fechaHora, costo (form-urlencoded);
+ *                                con durable=true espera la confirmación de la base
+ *   GET  /pacientes/{dni}/citas  citas en memoria del paciente (CSV)
+ *   GET  /medicos?especialidad=  consulta JPA
+ *   GET  /catalogo               pacientes, médicos y salas conocidos
+ *   GET  /metricas               resumen de métricas
+ *
+ * Cada solicitud corre en su propio hilo virtual (JDK 21+) o en un pool de plataforma. La
+ * admisión se decide en el hilo despachador de HttpServer, antes de entregar la solicitud
+ * al ejecutor: si ya hay solicitudesMaximas en curso se contesta 503 con Retry-After ahí
+ * mismo, sin encolarla. El acceso a JDBC se limita al tamaño del pool de conexiones. Las reservas se persisten en segundo plano con
+ * PersistenciaDiferida, que usa una de esas conexiones.
+ */
+public class ServidorHospital {
+
+    // Marca la solicitud que el despachador contesta como rechazada
+    private static final ThreadLocal<Boolean> SATURADO = new ThreadLocal<>();
+
+    private final EntityManagerFactory emf;
+    private final CitaManagerParticionado citas;
+    private final CatalogoHospital catalogo;
+    private final PersistenciaDiferida escritor;
+    private final PlanificadorVencimientos vencimientos;
+    private final Semaphore permisosSolicitudes;
+    private final Semaphore permisosJdbc;
+    private HttpServer servidor;
+    private ExecutorService ejecutor;
+
+    public ServidorHospital(EntityManagerFactory emf, int solicitudesMaximas, int conexionesJdbc) {
+        this.emf = emf;
+        this.permisosSolicitudes = new Semaphore(solicitudesMaximas);
+        // Una conexión queda reservada para el escritor diferido
+        this.permisosJdbc = new Semaphore(Math.max(1, conexionesJdbc - 1), true);
+        CitaManagerParticionado manager = new CitaManagerParticionado();
+        this.catalogo = new CatalogoHospital(emf, permisosJdbc);
+        List<Cita> abiertas = this.catalogo.cargar(manager);
+        this.citas = manager;
+        this.escritor = new PersistenciaDiferida(emf, 10_000, 500, 5, Duration.ofMillis(50),
+                manager::descartarCita, manager::citaPersistida);
+        // Los cambios automáticos de estado se persisten por la misma cola que las reservas
+        this.vencimientos = new PlanificadorVencimientos(manager, Clock.systemDefaultZone(),
+                PlanificadorVencimientos.TICK_PREDETERMINADO, PlanificadorVencimientos.ANTICIPACION_PREDETERMINADA,
+                PlanificadorVencimientos.TOLERANCIA_PREDETERMINADA, CitaManager.DURACION_PREDETERMINADA,
+                escritor::guardar);
+        this.vencimientos.restaurar(abiertas);
+    }
+
+    public static Map<String, Object> propiedadesPersistencia(int conexionesJdbc) {
+        Map<String, Object> propiedades = new HashMap<>(Metricas.propiedadesHibernate());
+        propiedades.put("hibernate.connection.pool_size", String.valueOf(conexionesJdbc));
+        propiedades.put("hibernate.show_sql", "false");
+        String url = System.getProperty("hospital.jdbc.url");
+        if (url != null) {
+            propiedades.put("jakarta.persistence.jdbc.url", url);
+        }
+        return propiedades;
+    }
+
+    public synchronized void iniciar(int puerto) throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", puerto), 1024);
+        ejecutor = Ejecutores.porSolicitud(Math.max(permisosSolicitudes.availablePermits(), 1));
+        servidor.setExecutor(this::despachar);
+        servidor.createContext("/citas", ex -> atender(ex, this::reservar));
+        servidor.createContext("/llegadas", ex -> atender(ex, this::registrarLlegada));
+        servidor.createContext("/pacientes/", ex -> atender(ex, this::citasPaciente));
+        servidor.createContext("/medicos", ex -> atender(ex, this::medicosPorEspecialidad));
+        servidor.createContext("/catalogo", ex -> atender(ex, this::catalogo));
+        servidor.createContext("/metricas", ex -> atender(ex, e -> new Respuesta(200, Metricas.resumen())));
+        servidor.start();
+        vencimientos.iniciar();
+    }
+
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    public synchronized void detener() {
+        if (servidor != null) {
+            servidor.stop(1);
+            ejecutor.shutdown();
+            servidor = null;
+        }
+        vencimientos.close();
+        try {
+            escritor.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        citas.close();
+    }
+
+    /*
+     * Ejecutor de HttpServer: corre en el hilo despachador. Con el pool de plataforma de
+     * JDK 17 la cola nunca pasa de las solicitudes admitidas, porque el permiso se toma antes
+     * de encolar; una rechazada se contesta en el despachador, que sólo escribe el 503.
+     */
+    private void despachar(Runnable solicitud) {
+        if (!permisosSolicitudes.tryAcquire()) {
+            SATURADO.set(Boolean.TRUE);
+            try {
+                solicitud.run();
+            } finally {
+                SATURADO.remove();
+            }
+            return;
+        }
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    solicitud.run();
+                } finally {
+                    permisosSolicitudes.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permisosSolicitudes.release();
+            throw e;
+        }
+    }
+
+    private void atender(HttpExchange intercambio, Manejador manejador) throws IOException {
+        Respuesta respuesta;
+        if (SATURADO.get() != null) {
+            intercambio.getResponseHeaders().add("Retry-After", "1");
+            responder(intercambio, new Respuesta(503, "Servidor saturado, reintente más tarde."));
+            return;
+        }
+        try {
+            respuesta = manejador.manejar(intercambio);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            respuesta = new Respuesta(400, e.getMessage());
+        } catch (RuntimeException e) {
+            respuesta = new Respuesta(500, "Error interno: " + e.getMessage());
+        }
+        responder(intercambio, respuesta);
+    }
+
+    private Respuesta reservar(HttpExchange intercambio) throws IOException {
+        if (!"POST".equals(intercambio.getRequestMethod())) {
+            return new Respuesta(405, "Use POST.");
+        }
+        Map<String, String> form = parametros(leerCuerpo(intercambio.getRequestBody()));
+        Paciente paciente = catalogo.paciente(requerido(form, "paciente"));
+        Medico medico = catalogo.medico(requerido(form, "medico"));
+        Sala sala = catalogo.sala(requerido(form, "sala"));
+        if (paciente == null || medico == null || sala == null) {
+            return new Respuesta(404, "Paciente, médico o sala inexistente.");
+        }
+        LocalDateTime fechaHora = LocalDateTime.parse(requerido(form, "fechaHora"));
+        BigDecimal costo = new BigDecimal(requerido(form, "costo"));
+
+        Cita cita;
+        try {
+            cita = citas.programarCita(paciente, medico, sala, fechaHora, costo);
+        } catch (CitaException e) {
+            return new Respuesta(409, e.getMessage());
+        }
+
+        CompletableFuture<Cita> guardada = escritor.guardar(cita);
+        if (Boolean.parseBoolean(form.get("durable"))) {
+            try {
+                guardada.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Respuesta(503, "Solicitud interrumpida.");
+            } catch (ExecutionException e) {
+                return new Respuesta(500, "No se pudo persistir la cita: " + e.getCause().getMessage());
+            }
+            return new Respuesta(201, cita.toCsvString());
+        }
+        return new Respuesta(202, cita.toCsvString());
+    }
+
+    // medico + fechaHora identifican la cita: un médico no tiene dos citas a la misma hora.
+    private Respuesta registrarLlegada(HttpExchange intercambio) throws IOException {
+        if (!"POST".equals(intercambio.getRequestMethod())) {
+            return new Respuesta(405, "Use POST.");
+        }
+        Map<String, String> form = parametros(leerCuerpo(intercambio.getRequestBody()));
+        Medico medico = catalogo.medico(requerido(form, "medico"));
+        if (medico == null) {
+            return new Respuesta(404, "Médico inexistente.");
+        }
+        LocalDateTime fechaHora = LocalDateTime.parse(requerido(form, "fechaHora"));
+        for (Cita cita : citas.getCitasPorMedico(medico)) {
+            if (cita.getFechaHora().equals(fechaHora)) {
+                try {
+                    vencimientos.registrarLlegada(cita);
+                } catch (CitaException e) {
+                    return new Respuesta(409, e.getMessage());
+                }
+                return new Respuesta(200, cita.toCsvString());
+            }
+        }
+        return new Respuesta(404, "Cita no encontrada.");
+    }
+
+    private Respuesta citasPaciente(HttpExchange intercambio) {
+        // /pacientes/{dni}/citas
+        String[] partes = intercambio.getRequestURI().getPath().split("/");
+        if (partes.length != 4 || !"citas".equals(partes[3])) {
+            return new Respuesta(404, "Ruta desconocida.");
+        }
+        Paciente paciente = catalogo.paciente(partes[2]);
+        if (paciente == null) {
+            return new Respuesta(404, "Paciente no encontrado: " + partes[2]);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Cita cita : citas.getCitasPorPaciente(paciente)) {
+            sb.append(cita.toCsvString()).append('\n');
+        }
+        return new Respuesta(200, sb.toString());
+    }
+
+    private Respuesta medicosPorEspecialidad(HttpExchange intercambio) {
+        String especialidad = parametros(intercambio.getRequestURI().getRawQuery()).get("especialidad");
+        EspecialidadMedica esp = EspecialidadMedica.valueOf(especialidad != null ? especialidad : "");
+        permisosJdbc.acquireUninterruptibly();
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Object[]> filas = Metricas.medirConsulta("medicosPorEspecialidad", () -> em.createQuery(
+                            "SELECT m.dni, m.nombre, m.apellido FROM Medico m WHERE m.especialidad = :esp", Object[].class)
+                    .setParameter("esp", esp)
+                    .getResultList());
+            StringBuilder sb = new StringBuilder();
+            for (Object[] fila : filas) {
+                sb.append(fila[0]).append(',').append(fila[1]).append(' ').append(fila[2]).append('\n');
+            }
+            return new Respuesta(200, sb.toString());
+        } finally {
+            em.close();
+            permisosJdbc.release();
+        }
+    }
+
+    private Respuesta catalogo(HttpExchange intercambio) {
+        StringBuilder sb = new StringBuilder();
+        catalogo.getPacientes().forEach(p -> sb.append("paciente,").append(p.getDni()).append('\n'));
+        catalogo.getMedicos().forEach(m -> sb.append("medico,").append(m.getDni()).append(',')
+                .append(m.getEspecialidad().name()).append('\n'));
+        catalogo.getSalas().forEach(s -> sb.append("sala,").append(s.getNumero()).append(',')
+                .append(s.getDepartamento().getEspecialidad().name()).append('\n'));
+        return new Respuesta(200, sb.toString());
+    }
+
+    private static void responder(HttpExchange intercambio, Respuesta respuesta) throws IOException {
+        byte[] cuerpo = respuesta.cuerpo().getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+        intercambio.sendResponseHeaders(respuesta.estado(), cuerpo.length == 0 ? -1 : cuerpo.length);
+        if (cuerpo.length > 0) {
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        }
+        intercambio.close();
+    }
+
+    private static String leerCuerpo(InputStream entrada) throws IOException {
+        try (entrada) {
+            return new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> resultado = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) {
+            return resultado;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                resultado.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return resultado;
+    }
+
+    private static String requerido(Map<String, String> form, String nombre) {
+        String valor = form.get(nombre);
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Falta el parámetro: " + nombre);
+        }
+        return valor;
+    }
+
+    @FunctionalInterface
+    private interface Manejador {
+        Respuesta manejar(HttpExchange intercambio) throws IOException;
+    }
+
+    private record Respuesta(int estado, String cuerpo) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int puerto = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int conexiones = Integer.getInteger("hospital.jdbc.conexiones", 16);
+        int solicitudes = Integer.getInteger("hospital.solicitudes.maximas", 2_000);
+
+        EntityManagerFactory emf = ArranqueRapido.crearFabrica(propiedadesPersistencia(conexiones));
+        Metricas.iniciar(emf);
+        ServidorHospital servidor = new ServidorHospital(emf, solicitudes, conexiones);
+        servidor.iniciar(puerto);
+        System.out.println("Servidor escuchando en http://127.0.0.1:" + servidor.getPuerto()
+                + (Ejecutores.hilosVirtualesDisponibles() ? " (hilos virtuales)" : " (hilos de plataforma)"));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.detener();
+            Metricas.detener();
+            emf.close();
+        }));
+    }
+}
@@ -0,0 +1,9 @@
+package org.jcr.temporizacion;
+
+import org.jcr.entidades.Cita;
+
+public interface OyenteRecordatorio {
+
+    // Se llama desde el hilo del planificador, una vez por cita.
+    void recordatorio(Cita cita);
+}
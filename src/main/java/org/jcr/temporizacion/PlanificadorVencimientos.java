@@ -0,0 +1,298 @@
+package org.jcr.temporizacion;
+
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaException;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.CitaService;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.OyenteCita;
+import org.jcr.metricas.Metricas;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Recordatorios y cambios de estado por tiempo de las citas, sobre una RuedaTemporal.
+ * Cada cita pendiente tiene un solo temporizador con su próxima etapa:
+ *
+ *   RECORDATORIO  fechaHora - anticipación: avisa a los oyentes
+ *   INICIO        fechaHora: EN_CURSO si el paciente ya llegó, si no espera la tolerancia
+ *   AUSENCIA      fechaHora + tolerancia: NO_ASISTIO si sigue PROGRAMADA
+ *   FIN           fechaHora + duración: COMPLETADA si está EN_CURSO
+ *
+ * Se entera de las reservas como OyenteCita del servicio que recibe, no de otras agendas. Los cambios de estado, propios
+ * o manuales, pasan por el mismo oyente: EN_CURSO programa el FIN y los estados finales
+ * cancelan el temporizador. Reprogramar una cita es cancelar y reservar: dos operaciones O(1).
+ *
+ * Los temporizadores viven en memoria; al reiniciar se reconstruyen con restaurar() a partir
+ * de las citas leídas de la base.
+ */
+public class PlanificadorVencimientos implements OyenteCita, AutoCloseable {
+
+    public static final Duration TICK_PREDETERMINADO = Duration.ofSeconds(1);
+    public static final Duration ANTICIPACION_PREDETERMINADA = Duration.ofHours(24);
+    public static final Duration TOLERANCIA_PREDETERMINADA = Duration.ofMinutes(15);
+
+    private enum Etapa { RECORDATORIO, INICIO, AUSENCIA, FIN }
+
+    private static final class Pendiente {
+        final Cita cita;
+        Etapa etapa;
+        boolean llegada;
+        RuedaTemporal.Temporizador<Pendiente> temporizador;
+
+        Pendiente(Cita cita) {
+            this.cita = cita;
+        }
+    }
+
+    private final CitaService servicio;
+    private final Clock reloj;
+    private final long tickMillis;
+    private final Duration anticipacion;
+    private final Duration tolerancia;
+    private final Duration duracion;
+    private final Consumer<Cita> alCambiarEstado;
+    private final RuedaTemporal<Pendiente> rueda;
+    private final Map<Cita, Pendiente> pendientes = new IdentityHashMap<>();
+    private final List<OyenteRecordatorio> oyentes = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService ejecutor;
+    private String indicador;
+
+    public PlanificadorVencimientos(CitaService servicio) {
+        this(servicio, Clock.systemDefaultZone(), TICK_PREDETERMINADO, ANTICIPACION_PREDETERMINADA,
+                TOLERANCIA_PREDETERMINADA, CitaManager.DURACION_PREDETERMINADA, cita -> { });
+    }
+
+    // alCambiarEstado: después de cada cambio automático (por ejemplo, encolar la cita para persistirla).
+    public PlanificadorVencimientos(CitaService servicio, Clock reloj, Duration tick, Duration anticipacion,
+                                    Duration tolerancia, Duration duracion, Consumer<Cita> alCambiarEstado) {
+        this.servicio = Objects.requireNonNull(servicio, "El servicio de citas no puede ser nulo");
+        this.reloj = Objects.requireNonNull(reloj, "El reloj no puede ser nulo");
+        this.tickMillis = tick.toMillis();
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("El tick debe ser de al menos un milisegundo");
+        }
+        this.anticipacion = anticipacion;
+        this.tolerancia = tolerancia;
+        this.duracion = duracion;
+        this.alCambiarEstado = Objects.requireNonNull(alCambiarEstado, "La acción no puede ser nula");
+        this.rueda = new RuedaTemporal<>(reloj.millis() / tickMillis);
+        this.indicador = Metricas.registrarIndicador("vencimientos.pendientes", this::getPendientes);
+    }
+
+    // Engancha el planificador a las reservas y arranca el hilo que avanza la rueda cada tick.
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        servicio.agregarOyente(this);
+        ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "vencimientos-citas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        ejecutor.scheduleAtFixedRate(() -> {
+            try {
+                avanzar(reloj.instant());
+            } catch (RuntimeException e) {
+                System.err.println("Error al procesar vencimientos: " + e.getMessage());
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void agregarOyente(OyenteRecordatorio oyente) {
+        oyentes.add(Objects.requireNonNull(oyente, "El oyente no puede ser nulo"));
+    }
+
+    public void quitarOyente(OyenteRecordatorio oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /*
+     * Temporizadores de citas ya existentes (al arrancar, las leídas de la base). Las que ya
+     * están dentro de la anticipación no repiten el recordatorio. Las llegadas anotadas
+     * antes del reinicio se pierden: hay que volver a registrarlas.
+     */
+    public int restaurar(Iterable<Cita> citas) {
+        int restauradas = 0;
+        for (Cita cita : citas) {
+            if (cita.getEstado() == EstadoCita.PROGRAMADA || cita.getEstado() == EstadoCita.EN_CURSO) {
+                programar(cita, true);
+                restauradas++;
+            }
+        }
+        return restauradas;
+    }
+
+    /*
+     * El paciente se presentó. Antes de la hora queda anotado para el INICIO; dentro de la
+     * tolerancia la cita pasa a EN_CURSO en el momento.
+     */
+    public void registrarLlegada(Cita cita) throws CitaException {
+        if (cita.getEstado() != EstadoCita.PROGRAMADA) {
+            throw new CitaException("La cita no está programada: " + cita.getEstado().getDescripcion());
+        }
+        Pendiente pendiente;
+        boolean iniciar;
+        synchronized (this) {
+            pendiente = pendientes.get(cita);
+            if (pendiente == null) {
+                throw new CitaException("La cita no tiene vencimientos pendientes.");
+            }
+            pendiente.llegada = true;
+            iniciar = pendiente.etapa == Etapa.AUSENCIA;
+            // Si la ausencia ya venció y se está procesando, llegó tarde
+            if (iniciar && !rueda.cancelar(pendiente.temporizador)) {
+                throw new CitaException("Se superó la tolerancia de llegada de la cita.");
+            }
+        }
+        if (iniciar) {
+            transicion(pendiente, EstadoCita.PROGRAMADA, EstadoCita.EN_CURSO);
+        }
+    }
+
+    // Procesa todo lo vencido hasta `ahora`; las acciones corren fuera del lock.
+    public int avanzar(Instant ahora) {
+        List<Pendiente> vencidos = new ArrayList<>();
+        synchronized (this) {
+            rueda.avanzarHasta(ahora.toEpochMilli() / tickMillis, vencidos::add);
+        }
+        for (Pendiente vencido : vencidos) {
+            ejecutar(vencido);
+        }
+        return vencidos.size();
+    }
+
+    private void ejecutar(Pendiente pendiente) {
+        Cita cita = pendiente.cita;
+        switch (pendiente.etapa) {
+            case RECORDATORIO -> {
+                if (cita.getEstado() == EstadoCita.PROGRAMADA) {
+                    for (OyenteRecordatorio oyente : oyentes) {
+                        oyente.recordatorio(cita);
+                    }
+                }
+                siguiente(pendiente, Etapa.INICIO, cita.getFechaHora());
+            }
+            case INICIO -> {
+                if (cita.getEstado() == EstadoCita.EN_CURSO) {
+                    siguiente(pendiente, Etapa.FIN, cita.getFechaHora().plus(duracion));
+                } else if (pendiente.llegada) {
+                    transicion(pendiente, EstadoCita.PROGRAMADA, EstadoCita.EN_CURSO);
+                } else {
+                    siguiente(pendiente, Etapa.AUSENCIA, cita.getFechaHora().plus(tolerancia));
+                }
+            }
+            case AUSENCIA -> transicion(pendiente, EstadoCita.PROGRAMADA, EstadoCita.NO_ASISTIO);
+            case FIN -> transicion(pendiente, EstadoCita.EN_CURSO, EstadoCita.COMPLETADA);
+        }
+    }
+
+    // El oyente reprograma o cancela según el estado nuevo.
+    private void transicion(Pendiente pendiente, EstadoCita desde, EstadoCita hasta) {
+        Cita cita = pendiente.cita;
+        if (cita.getEstado() != desde) {
+            // Cambió por fuera de CitaManager: si nadie lo reprogramó, no queda nada pendiente
+            synchronized (this) {
+                if (pendientes.get(cita) == pendiente && !pendiente.temporizador.isPendiente()) {
+                    pendientes.remove(cita);
+                }
+            }
+            return;
+        }
+        servicio.cambiarEstado(cita, hasta);
+        alCambiarEstado.accept(cita);
+    }
+
+    // Mantiene el temporizador si la cita sigue pendiente (nadie la canceló mientras tanto).
+    private synchronized void siguiente(Pendiente pendiente, Etapa etapa, LocalDateTime vencimiento) {
+        if (pendientes.get(pendiente.cita) != pendiente) {
+            return;
+        }
+        pendiente.etapa = etapa;
+        rueda.reprogramar(pendiente.temporizador, tick(vencimiento));
+    }
+
+    private synchronized void programar(Cita cita, boolean restaurando) {
+        Pendiente pendiente = pendientes.computeIfAbsent(cita, Pendiente::new);
+        LocalDateTime fechaHora = cita.getFechaHora();
+        long ahora = reloj.millis() / tickMillis;
+        if (cita.getEstado() == EstadoCita.EN_CURSO) {
+            pendiente.etapa = Etapa.FIN;
+            fechaHora = fechaHora.plus(duracion);
+        } else if (tick(fechaHora.minus(anticipacion)) > ahora) {
+            pendiente.etapa = Etapa.RECORDATORIO;
+            fechaHora = fechaHora.minus(anticipacion);
+        } else if (tick(fechaHora) > ahora && !restaurando) {
+            // Reservada dentro de la anticipación: el recordatorio sale en el próximo tick
+            pendiente.etapa = Etapa.RECORDATORIO;
+            fechaHora = LocalDateTime.now(reloj);
+        } else {
+            pendiente.etapa = Etapa.INICIO;
+        }
+        if (pendiente.temporizador == null) {
+            pendiente.temporizador = rueda.programar(tick(fechaHora), pendiente);
+        } else {
+            rueda.reprogramar(pendiente.temporizador, tick(fechaHora));
+        }
+    }
+
+    private synchronized void cancelar(Cita cita) {
+        Pendiente pendiente = pendientes.remove(cita);
+        if (pendiente != null && pendiente.temporizador != null) {
+            rueda.cancelar(pendiente.temporizador);
+        }
+    }
+
+    private long tick(LocalDateTime fechaHora) {
+        return fechaHora.atZone(reloj.getZone()).toInstant().toEpochMilli() / tickMillis;
+    }
+
+    @Override
+    public void citaReservada(Cita cita) {
+        programar(cita, false);
+    }
+
+    @Override
+    public void estadoCambiado(Cita cita, EstadoCita anterior) {
+        switch (cita.getEstado()) {
+            case EN_CURSO, PROGRAMADA -> programar(cita, false);
+            case COMPLETADA, CANCELADA, NO_ASISTIO -> cancelar(cita);
+        }
+    }
+
+    @Override
+    public void citaDescartada(Cita cita) {
+        cancelar(cita);
+    }
+
+    public synchronized int getPendientes() {
+        return pendientes.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        servicio.quitarOyente(this);
+        if (indicador != null) {
+            Metricas.quitarIndicador(indicador);
+            indicador = null;
+        }
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.jcr.temporizacion;
+
+import java.util.function.Consumer;
+
+/*
+ * Rueda de tiempo jerárquica (como los timers del kernel de Linux): 4 niveles de 256
+ * casilleros. El nivel 0 cubre 256 ticks de a uno, el nivel 1 256 x 256 ticks de a 256, y
+ * así; con ticks de un segundo alcanza para más de 130 años.
+ *
+ * Programar y cancelar son O(1): cada casillero es una lista doblemente enlazada y el
+ * temporizador sabe dónde está. Un temporizador baja de nivel a lo sumo tres veces antes
+ * de vencer, así que el costo por evento es O(1) amortizado, sin recorrer los pendientes.
+ *
+ * No es thread-safe; PlanificadorVencimientos sincroniza el acceso.
+ */
+public class RuedaTemporal<T> {
+
+    private static final int BITS = 8;
+    private static final int CASILLEROS = 1 << BITS;
+    private static final int MASCARA = CASILLEROS - 1;
+    private static final int NIVELES = 4;
+    private static final long ALCANCE = (1L << (BITS * NIVELES)) - 1;
+
+    public static final class Temporizador<T> {
+        private final T carga;
+        private long vencimiento;
+        private Temporizador<T> anterior;
+        private Temporizador<T> siguiente;
+        private Temporizador<T>[] casillero;
+        private int posicion = -1;
+
+        private Temporizador(T carga, long vencimiento) {
+            this.carga = carga;
+            this.vencimiento = vencimiento;
+        }
+
+        public T getCarga() {
+            return carga;
+        }
+
+        public long getVencimiento() {
+            return vencimiento;
+        }
+
+        public boolean isPendiente() {
+            return posicion >= 0;
+        }
+    }
+
+    private final Temporizador<T>[][] niveles;
+    private long actual;
+    private int pendientes;
+
+    @SuppressWarnings("unchecked")
+    public RuedaTemporal(long tickInicial) {
+        this.niveles = new Temporizador[NIVELES][CASILLEROS];
+        this.actual = tickInicial;
+    }
+
+    // Un vencimiento ya pasado cae en el tick actual y sale en el próximo avance.
+    public Temporizador<T> programar(long vencimiento, T carga) {
+        Temporizador<T> temporizador = new Temporizador<>(carga, vencimiento);
+        insertar(temporizador);
+        pendientes++;
+        return temporizador;
+    }
+
+    public void reprogramar(Temporizador<T> temporizador, long vencimiento) {
+        if (temporizador.isPendiente()) {
+            desenlazar(temporizador);
+        } else {
+            pendientes++;
+        }
+        temporizador.vencimiento = vencimiento;
+        insertar(temporizador);
+    }
+
+    public boolean cancelar(Temporizador<T> temporizador) {
+        if (!temporizador.isPendiente()) {
+            return false;
+        }
+        desenlazar(temporizador);
+        pendientes--;
+        return true;
+    }
+
+    // Avanza hasta `tick` (inclusive) entregando los vencidos en orden de tick.
+    public int avanzarHasta(long tick, Consumer<T> vencidos) {
+        int entregados = 0;
+        while (actual <= tick) {
+            int indice = (int) (actual & MASCARA);
+            if (indice == 0) {
+                for (int nivel = 1; nivel < NIVELES && bajar(nivel) == 0; nivel++) {
+                    // el nivel siguiente baja sólo cuando éste dio la vuelta completa
+                }
+            }
+            Temporizador<T> temporizador;
+            while ((temporizador = niveles[0][indice]) != null) {
+                desenlazar(temporizador);
+                pendientes--;
+                vencidos.accept(temporizador.carga);
+                entregados++;
+            }
+            actual++;
+        }
+        return entregados;
+    }
+
+    // Redistribuye el casillero vigente de `nivel` en los niveles inferiores; devuelve su índice.
+    private int bajar(int nivel) {
+        int indice = (int) ((actual >>> (BITS * nivel)) & MASCARA);
+        Temporizador<T> temporizador = niveles[nivel][indice];
+        niveles[nivel][indice] = null;
+        while (temporizador != null) {
+            Temporizador<T> siguiente = temporizador.siguiente;
+            temporizador.anterior = temporizador.siguiente = null;
+            temporizador.posicion = -1;
+            insertar(temporizador);
+            temporizador = siguiente;
+        }
+        return indice;
+    }
+
+    private void insertar(Temporizador<T> temporizador) {
+        long vencimiento = Math.max(temporizador.vencimiento, actual);
+        long distancia = Math.min(vencimiento - actual, ALCANCE);
+        if (distancia == ALCANCE) {
+            vencimiento = actual + ALCANCE;
+        }
+        int nivel = 0;
+        while (nivel < NIVELES - 1 && distancia >= 1L << (BITS * (nivel + 1))) {
+            nivel++;
+        }
+        Temporizador<T>[] casillero = niveles[nivel];
+        int posicion = (int) ((vencimiento >>> (BITS * nivel)) & MASCARA);
+        temporizador.casillero = casillero;
+        temporizador.posicion = posicion;
+        temporizador.anterior = null;
+        temporizador.siguiente = casillero[posicion];
+        if (casillero[posicion] != null) {
+            casillero[posicion].anterior = temporizador;
+        }
+        casillero[posicion] = temporizador;
+    }
+
+    private void desenlazar(Temporizador<T> temporizador) {
+        if (temporizador.anterior != null) {
+            temporizador.anterior.siguiente = temporizador.siguiente;
+        } else {
+            temporizador.casillero[temporizador.posicion] = temporizador.siguiente;
+        }
+        if (temporizador.siguiente != null) {
+            temporizador.siguiente.anterior = temporizador.anterior;
+        }
+        temporizador.anterior = temporizador.siguiente = null;
+        temporizador.posicion = -1;
+    }
+
+    public long getTickActual() {
+        return actual;
+    }
+
+    public int getPendientes() {
+        return pendientes;
+    }
+}
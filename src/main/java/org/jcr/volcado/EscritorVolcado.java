@@ -0,0 +1,135 @@
+package org.jcr.volcado;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/*
+ * Escribe registros a medida que llegan, sin retener ninguno: cada uno se arma en un buffer
+ * reutilizado para conocer su largo y se copia a la salida. Los tipos tienen que llegar en
+ * orden (hospital, departamentos, salas, médicos, pacientes, citas) para que toda referencia
+ * apunte a algo ya escrito. close() agrega el registro FIN.
+ */
+public class EscritorVolcado implements Closeable {
+
+    private final DataOutputStream salida;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream campos = new DataOutputStream(buffer);
+    private final long[] cantidades = new long[FormatoVolcado.TIPOS];
+    private int ultimoTipo = FormatoVolcado.FIN;
+    private boolean cerrado;
+
+    public EscritorVolcado(OutputStream salida) throws IOException {
+        this.salida = new DataOutputStream(new BufferedOutputStream(salida, 64 * 1024));
+        this.salida.writeInt(FormatoVolcado.MAGIA);
+        this.salida.writeShort(FormatoVolcado.VERSION);
+        FormatoVolcado.escribirNombres(this.salida);
+    }
+
+    public void escribir(RegistroVolcado registro) throws IOException {
+        if (cerrado) {
+            throw new IllegalStateException("El volcado ya está cerrado");
+        }
+        byte tipo = FormatoVolcado.tipo(registro);
+        if (tipo < ultimoTipo) {
+            throw new IllegalStateException("Un registro de " + FormatoVolcado.nombre(tipo)
+                    + " no puede ir después de uno de " + FormatoVolcado.nombre(ultimoTipo));
+        }
+        ultimoTipo = tipo;
+        buffer.reset();
+        if (registro instanceof RegistroVolcado.Hospital h) {
+            campos.writeLong(h.id());
+            FormatoVolcado.texto(campos, h.nombre());
+            FormatoVolcado.texto(campos, h.direccion());
+            FormatoVolcado.texto(campos, h.telefono());
+        } else if (registro instanceof RegistroVolcado.Departamento d) {
+            campos.writeLong(d.id());
+            campos.writeLong(d.hospital());
+            FormatoVolcado.texto(campos, d.nombre());
+            campos.writeByte(d.especialidad().ordinal());
+        } else if (registro instanceof RegistroVolcado.Sala s) {
+            campos.writeLong(s.id());
+            campos.writeLong(s.departamento());
+            FormatoVolcado.texto(campos, s.numero());
+            FormatoVolcado.texto(campos, s.tipo());
+        } else if (registro instanceof RegistroVolcado.Medico m) {
+            campos.writeLong(m.id());
+            campos.writeLong(m.departamento());
+            FormatoVolcado.texto(campos, m.nombre());
+            FormatoVolcado.texto(campos, m.apellido());
+            FormatoVolcado.texto(campos, m.dni());
+            FormatoVolcado.fecha(campos, m.fechaNacimiento());
+            campos.writeByte(m.tipoSangre().ordinal());
+            FormatoVolcado.texto(campos, m.matricula());
+            campos.writeByte(m.especialidad().ordinal());
+        } else if (registro instanceof RegistroVolcado.Paciente p) {
+            campos.writeLong(p.id());
+            campos.writeLong(p.hospital());
+            FormatoVolcado.texto(campos, p.nombre());
+            FormatoVolcado.texto(campos, p.apellido());
+            FormatoVolcado.texto(campos, p.dni());
+            FormatoVolcado.fecha(campos, p.fechaNacimiento());
+            campos.writeByte(p.tipoSangre().ordinal());
+            FormatoVolcado.texto(campos, p.telefono());
+            FormatoVolcado.texto(campos, p.direccion());
+            FormatoVolcado.texto(campos, p.numeroHistoria());
+            FormatoVolcado.fechaHora(campos, p.fechaCreacionHistoria());
+            lista(p.diagnosticos());
+            lista(p.tratamientos());
+            lista(p.alergias());
+        } else if (registro instanceof RegistroVolcado.Cita c) {
+            campos.writeLong(c.paciente());
+            campos.writeLong(c.medico());
+            campos.writeLong(c.sala());
+            FormatoVolcado.fechaHora(campos, c.fechaHora());
+            campos.writeLong(c.costoCentavos());
+            campos.writeByte(c.estado().ordinal());
+            FormatoVolcado.texto(campos, c.observaciones());
+        }
+        marco(tipo);
+        cantidades[tipo]++;
+    }
+
+    private void lista(List<String> textos) throws IOException {
+        campos.writeInt(textos.size());
+        for (String texto : textos) {
+            campos.writeUTF(texto);
+        }
+    }
+
+    private void marco(byte tipo) throws IOException {
+        salida.writeByte(tipo);
+        salida.writeInt(buffer.size());
+        buffer.writeTo(salida);
+    }
+
+    public long getCantidad() {
+        long total = 0;
+        for (long cantidad : cantidades) {
+            total += cantidad;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        try {
+            buffer.reset();
+            for (int tipo = FormatoVolcado.HOSPITAL; tipo < FormatoVolcado.TIPOS; tipo++) {
+                campos.writeLong(cantidades[tipo]);
+            }
+            marco(FormatoVolcado.FIN);
+            salida.flush();
+        } finally {
+            salida.close();
+        }
+    }
+}
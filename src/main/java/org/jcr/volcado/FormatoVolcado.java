@@ -0,0 +1,130 @@
+package org.jcr.volcado;
+
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.TipoSangre;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/*
+ * Formato binario del volcado:
+ *
+ *   cabecera  MAGIA (int), VERSION (short) y los nombres de EstadoCita, EspecialidadMedica y
+ *             TipoSangre en orden; los registros usan el ordinal, que se traduce por nombre al
+ *             leer, así que reordenar un enum no rompe volcados viejos
+ *   registro  tipo (byte), largo (int) y largo bytes de campos; un lector saltea los tipos que
+ *             no conoce y rechaza un registro al que le sobran o le faltan bytes
+ *   FIN       cantidad de registros de cada tipo, para detectar un archivo truncado
+ *
+ * Textos con writeUTF precedidos de un byte 0/1 para null; fechas como día o segundo época
+ * (más nanos); costos en centavos.
+ */
+final class FormatoVolcado {
+
+    static final int MAGIA = 0x48535056; // "HSPV"
+    static final short VERSION = 1;
+
+    static final byte FIN = 0;
+    static final byte HOSPITAL = 1;
+    static final byte DEPARTAMENTO = 2;
+    static final byte SALA = 3;
+    static final byte MEDICO = 4;
+    static final byte PACIENTE = 5;
+    static final byte CITA = 6;
+    static final int TIPOS = 7;
+
+    static final int LARGO_MAXIMO = 16 * 1024 * 1024;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+
+    private FormatoVolcado() {
+    }
+
+    static byte tipo(RegistroVolcado registro) {
+        if (registro instanceof RegistroVolcado.Hospital) return HOSPITAL;
+        if (registro instanceof RegistroVolcado.Departamento) return DEPARTAMENTO;
+        if (registro instanceof RegistroVolcado.Sala) return SALA;
+        if (registro instanceof RegistroVolcado.Medico) return MEDICO;
+        if (registro instanceof RegistroVolcado.Paciente) return PACIENTE;
+        return CITA;
+    }
+
+    static String nombre(int tipo) {
+        return switch (tipo) {
+            case HOSPITAL -> "hospital";
+            case DEPARTAMENTO -> "departamento";
+            case SALA -> "sala";
+            case MEDICO -> "médico";
+            case PACIENTE -> "paciente";
+            case CITA -> "cita";
+            default -> "tipo " + tipo;
+        };
+    }
+
+    static void escribirNombres(DataOutput salida) throws IOException {
+        for (Enum<?>[] valores : new Enum<?>[][]{EstadoCita.values(), EspecialidadMedica.values(), TipoSangre.values()}) {
+            salida.writeShort(valores.length);
+            for (Enum<?> valor : valores) {
+                salida.writeUTF(valor.name());
+            }
+        }
+    }
+
+    static <E extends Enum<E>> E[] leerNombres(DataInput entrada, Class<E> tipo) throws IOException {
+        int cantidad = entrada.readShort();
+        @SuppressWarnings("unchecked")
+        E[] valores = (E[]) Array.newInstance(tipo, cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            String nombre = entrada.readUTF();
+            try {
+                valores[i] = Enum.valueOf(tipo, nombre);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Valor de " + tipo.getSimpleName() + " desconocido en el volcado: " + nombre);
+            }
+        }
+        return valores;
+    }
+
+    static void texto(DataOutput salida, String texto) throws IOException {
+        salida.writeBoolean(texto != null);
+        if (texto != null) {
+            salida.writeUTF(texto);
+        }
+    }
+
+    static String texto(DataInput entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readUTF() : null;
+    }
+
+    static void fecha(DataOutput salida, LocalDate fecha) throws IOException {
+        salida.writeLong(fecha != null ? fecha.toEpochDay() : SIN_FECHA);
+    }
+
+    static LocalDate fecha(DataInput entrada) throws IOException {
+        long dia = entrada.readLong();
+        return dia == SIN_FECHA ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    static void fechaHora(DataOutput salida, LocalDateTime fechaHora) throws IOException {
+        salida.writeLong(fechaHora != null ? fechaHora.toEpochSecond(ZoneOffset.UTC) : SIN_FECHA);
+        salida.writeInt(fechaHora != null ? fechaHora.getNano() : 0);
+    }
+
+    static LocalDateTime fechaHora(DataInput entrada) throws IOException {
+        long segundo = entrada.readLong();
+        int nanos = entrada.readInt();
+        return segundo == SIN_FECHA ? null : LocalDateTime.ofEpochSecond(segundo, nanos, ZoneOffset.UTC);
+    }
+
+    static <E extends Enum<E>> E valor(E[] valores, int ordinal, String campo) throws IOException {
+        if (ordinal < 0 || ordinal >= valores.length) {
+            throw new IOException("Ordinal de " + campo + " fuera de rango: " + ordinal);
+        }
+        return valores[ordinal];
+    }
+}
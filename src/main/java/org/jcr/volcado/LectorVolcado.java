@@ -0,0 +1,173 @@
+package org.jcr.volcado;
+
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.TipoSangre;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Lee un volcado registro por registro: cada marco se carga entero en un buffer reutilizado
+ * y se decodifica desde ahí, así que un registro corrupto no desalinea los siguientes. leer()
+ * devuelve null al llegar a FIN, después de comparar las cantidades anunciadas con las leídas.
+ */
+public class LectorVolcado implements Closeable {
+
+    private final DataInputStream entrada;
+    private final Marco marco = new Marco();
+    private final DataInputStream campos = new DataInputStream(marco);
+    private final EstadoCita[] estados;
+    private final EspecialidadMedica[] especialidades;
+    private final TipoSangre[] tiposSangre;
+    private final long[] cantidades = new long[FormatoVolcado.TIPOS];
+    private byte[] bytes = new byte[256];
+    private boolean terminado;
+
+    public LectorVolcado(InputStream entrada) throws IOException {
+        this.entrada = new DataInputStream(new BufferedInputStream(entrada, 64 * 1024));
+        try {
+            if (this.entrada.readInt() != FormatoVolcado.MAGIA) {
+                throw new IOException("No es un volcado de hospital");
+            }
+            short version = this.entrada.readShort();
+            if (version > FormatoVolcado.VERSION) {
+                throw new IOException("Versión de volcado no soportada: " + version);
+            }
+            estados = FormatoVolcado.leerNombres(this.entrada, EstadoCita.class);
+            especialidades = FormatoVolcado.leerNombres(this.entrada, EspecialidadMedica.class);
+            tiposSangre = FormatoVolcado.leerNombres(this.entrada, TipoSangre.class);
+        } catch (EOFException e) {
+            throw new IOException("Volcado truncado en la cabecera", e);
+        }
+    }
+
+    public RegistroVolcado leer() throws IOException {
+        while (!terminado) {
+            byte tipo;
+            try {
+                tipo = entrada.readByte();
+                int largo = entrada.readInt();
+                if (largo < 0 || largo > FormatoVolcado.LARGO_MAXIMO) {
+                    throw new IOException("Largo de registro inválido: " + largo);
+                }
+                if (largo > bytes.length) {
+                    bytes = new byte[Math.max(largo, bytes.length * 2)];
+                }
+                entrada.readFully(bytes, 0, largo);
+                marco.cargar(bytes, largo);
+            } catch (EOFException e) {
+                throw new IOException("Volcado truncado: falta el registro FIN", e);
+            }
+            RegistroVolcado registro;
+            try {
+                registro = decodificar(tipo);
+            } catch (EOFException e) {
+                throw new IOException("Registro de " + FormatoVolcado.nombre(tipo) + " incompleto", e);
+            }
+            if (tipo >= 0 && tipo < FormatoVolcado.TIPOS && marco.available() > 0) {
+                throw new IOException("Registro de " + FormatoVolcado.nombre(tipo) + " con "
+                        + marco.available() + " bytes de más");
+            }
+            if (registro != null) {
+                cantidades[tipo]++;
+                return registro;
+            }
+        }
+        return null;
+    }
+
+    // null para FIN y para tipos de una versión posterior, que se saltean.
+    private RegistroVolcado decodificar(byte tipo) throws IOException {
+        return switch (tipo) {
+            case FormatoVolcado.FIN -> {
+                fin();
+                yield null;
+            }
+            case FormatoVolcado.HOSPITAL -> new RegistroVolcado.Hospital(campos.readLong(),
+                    FormatoVolcado.texto(campos), FormatoVolcado.texto(campos), FormatoVolcado.texto(campos));
+            case FormatoVolcado.DEPARTAMENTO -> new RegistroVolcado.Departamento(campos.readLong(), campos.readLong(),
+                    FormatoVolcado.texto(campos), especialidad());
+            case FormatoVolcado.SALA -> new RegistroVolcado.Sala(campos.readLong(), campos.readLong(),
+                    FormatoVolcado.texto(campos), FormatoVolcado.texto(campos));
+            case FormatoVolcado.MEDICO -> new RegistroVolcado.Medico(campos.readLong(), campos.readLong(),
+                    FormatoVolcado.texto(campos), FormatoVolcado.texto(campos), FormatoVolcado.texto(campos),
+                    FormatoVolcado.fecha(campos), tipoSangre(), FormatoVolcado.texto(campos), especialidad());
+            case FormatoVolcado.PACIENTE -> new RegistroVolcado.Paciente(campos.readLong(), campos.readLong(),
+                    FormatoVolcado.texto(campos), FormatoVolcado.texto(campos), FormatoVolcado.texto(campos),
+                    FormatoVolcado.fecha(campos), tipoSangre(), FormatoVolcado.texto(campos),
+                    FormatoVolcado.texto(campos), FormatoVolcado.texto(campos), FormatoVolcado.fechaHora(campos),
+                    lista(), lista(), lista());
+            case FormatoVolcado.CITA -> new RegistroVolcado.Cita(campos.readLong(), campos.readLong(),
+                    campos.readLong(), FormatoVolcado.fechaHora(campos), campos.readLong(),
+                    FormatoVolcado.valor(estados, campos.readUnsignedByte(), "estado"), FormatoVolcado.texto(campos));
+            default -> null;
+        };
+    }
+
+    private void fin() throws IOException {
+        for (int tipo = FormatoVolcado.HOSPITAL; tipo < FormatoVolcado.TIPOS; tipo++) {
+            long anunciados = campos.readLong();
+            if (anunciados != cantidades[tipo]) {
+                throw new IOException("El volcado anuncia " + anunciados + " registros de " + FormatoVolcado.nombre(tipo)
+                        + " y se leyeron " + cantidades[tipo]);
+            }
+        }
+        terminado = true;
+    }
+
+    private EspecialidadMedica especialidad() throws IOException {
+        return FormatoVolcado.valor(especialidades, campos.readUnsignedByte(), "especialidad");
+    }
+
+    private TipoSangre tipoSangre() throws IOException {
+        return FormatoVolcado.valor(tiposSangre, campos.readUnsignedByte(), "tipo de sangre");
+    }
+
+    private List<String> lista() throws IOException {
+        int cantidad = campos.readInt();
+        if (cantidad < 0 || cantidad > marco.available()) {
+            throw new IOException("Cantidad de registros clínicos inválida: " + cantidad);
+        }
+        List<String> textos = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            textos.add(campos.readUTF());
+        }
+        return textos;
+    }
+
+    public long getCantidad() {
+        long total = 0;
+        for (long cantidad : cantidades) {
+            total += cantidad;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+    }
+
+    // ByteArrayInputStream que se vuelve a apuntar a cada marco sin copiarlo.
+    private static final class Marco extends ByteArrayInputStream {
+
+        Marco() {
+            super(new byte[0]);
+        }
+
+        void cargar(byte[] bytes, int largo) {
+            this.buf = bytes;
+            this.pos = 0;
+            this.count = largo;
+            this.mark = 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.jcr.volcado;
+
+// Hash abierto long -> long sin boxing: id del volcado -> id nuevo. 0 es "libre" y "ausente".
+final class MapaIds {
+
+    private static final long LIBRE = 0;
+
+    private long[] claves = new long[1024];
+    private long[] valores = new long[1024];
+    private int tamanio;
+
+    long get(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = mezclar(clave) & mascara; claves[i] != LIBRE; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                return valores[i];
+            }
+        }
+        return LIBRE;
+    }
+
+    // Devuelve false si la clave ya estaba.
+    boolean put(long clave, long valor) {
+        if ((tamanio + 1) * 2 > claves.length) {
+            redimensionar();
+        }
+        int i = posicion(claves, clave);
+        if (claves[i] != LIBRE) {
+            return false;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        tamanio++;
+        return true;
+    }
+
+    int size() {
+        return tamanio;
+    }
+
+    private static int posicion(long[] claves, long clave) {
+        int mascara = claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        while (claves[i] != LIBRE && claves[i] != clave) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void redimensionar() {
+        long[] nuevasClaves = new long[claves.length * 2];
+        long[] nuevosValores = new long[nuevasClaves.length];
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != LIBRE) {
+                int destino = posicion(nuevasClaves, claves[i]);
+                nuevasClaves[destino] = claves[i];
+                nuevosValores[destino] = valores[i];
+            }
+        }
+        claves = nuevasClaves;
+        valores = nuevosValores;
+    }
+
+    private static int mezclar(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,42 @@
+package org.jcr.volcado;
+
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.TipoSangre;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+ * Un registro del volcado. Los ids son los del origen y sólo sirven para enlazar registros
+ * dentro del mismo archivo: cada referencia apunta a un registro ya escrito (0 = ninguno),
+ * así que se restaura en una sola pasada. El orden es el de los tipos de abajo.
+ */
+public sealed interface RegistroVolcado {
+
+    record Hospital(long id, String nombre, String direccion, String telefono) implements RegistroVolcado {
+    }
+
+    record Departamento(long id, long hospital, String nombre, EspecialidadMedica especialidad)
+            implements RegistroVolcado {
+    }
+
+    record Sala(long id, long departamento, String numero, String tipo) implements RegistroVolcado {
+    }
+
+    record Medico(long id, long departamento, String nombre, String apellido, String dni, LocalDate fechaNacimiento,
+                  TipoSangre tipoSangre, String matricula, EspecialidadMedica especialidad) implements RegistroVolcado {
+    }
+
+    // La historia clínica va adentro del paciente: es uno a uno y se crea con él.
+    record Paciente(long id, long hospital, String nombre, String apellido, String dni, LocalDate fechaNacimiento,
+                    TipoSangre tipoSangre, String telefono, String direccion, String numeroHistoria,
+                    LocalDateTime fechaCreacionHistoria, List<String> diagnosticos, List<String> tratamientos,
+                    List<String> alergias) implements RegistroVolcado {
+    }
+
+    record Cita(long paciente, long medico, long sala, LocalDateTime fechaHora, long costoCentavos,
+                EstadoCita estado, String observaciones) implements RegistroVolcado {
+    }
+}
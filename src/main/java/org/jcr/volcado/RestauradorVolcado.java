@@ -0,0 +1,481 @@
+package org.jcr.volcado;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.jcr.busqueda.DirectorioPacientes;
+import org.jcr.busqueda.IndiceClinico;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.DiccionarioTextos;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/*
+ * Restaura un volcado en una sola pasada: como cada referencia apunta a un registro anterior,
+ * alcanza con traducir ids del volcado a ids nuevos a medida que se insertan.
+ *
+ * aBase escribe por JDBC en lotes: Hibernate no agrupa INSERTs de entidades con IDENTITY, y
+ * acá los ids nuevos salen de las claves generadas de cada lote. Cada lote es su propia
+ * transacción, así que la memoria no crece con el volcado; si algo falla a mitad (también las
+ * cantidades del FIN) se borra lo ya confirmado de los hospitales restaurados. No pasa por los
+ * oyentes de las entidades (IntegradorEventos): son datos que ya existían. Los índices de
+ * búsqueda que escuchan cambios se cargan con los pacientes restaurados al terminar.
+ *
+ * aMemoria arma el grafo con los constructores sinValidar y entrega cada cita a la agenda
+ * sin agregarla a las listas del paciente, el médico y la sala.
+ */
+public final class RestauradorVolcado {
+
+    private static final int LOTE = 1_000;
+
+    private static final String INSERTAR_HOSPITAL =
+            "INSERT INTO Hospital (nombre, direccion, telefono) VALUES (?, ?, ?)";
+    private static final String INSERTAR_DEPARTAMENTO =
+            "INSERT INTO Departamento (nombre, especialidad, hospital_id) VALUES (?, ?, ?)";
+    private static final String INSERTAR_SALA =
+            "INSERT INTO Sala (numero, tipo, departamento_id) VALUES (?, ?, ?)";
+    private static final String INSERTAR_MEDICO = "INSERT INTO Medico (nombre, apellido, dni, fechaNacimiento, "
+            + "tipoSangre, matricula_numero, especialidad, departamento_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERTAR_PACIENTE = "INSERT INTO Paciente (nombre, apellido, dni, fechaNacimiento, "
+            + "tipoSangre, telefono, direccion, hospital_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERTAR_HISTORIA =
+            "INSERT INTO HistoriaClinica (numero_historia, paciente_id, fechaCreacion, version) VALUES (?, ?, ?, 0)";
+    private static final String INSERTAR_DIAGNOSTICO =
+            "INSERT INTO diagnosticos (historia_id, diagnostico, orden) VALUES (?, ?, ?)";
+    private static final String INSERTAR_TRATAMIENTO =
+            "INSERT INTO tratamientos (historia_id, tratamiento, orden) VALUES (?, ?, ?)";
+    private static final String INSERTAR_ALERGIA =
+            "INSERT INTO alergias (historia_id, alergia, orden) VALUES (?, ?, ?)";
+    private static final String INSERTAR_CITA = "INSERT INTO Cita (paciente_id, medico_id, sala_id, fechaHora, "
+            + "costo, estado, observaciones, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+
+    // Lo restaurado de un hospital, de las hojas a la raíz; cada ? es el id nuevo del hospital.
+    private static final String[] BORRAR_HOSPITAL = {
+            "DELETE FROM Cita WHERE paciente_id IN (SELECT id FROM Paciente WHERE hospital_id = ?) "
+                    + "OR medico_id IN (SELECT m.id FROM Medico m JOIN Departamento d ON m.departamento_id = d.id "
+                    + "WHERE d.hospital_id = ?) "
+                    + "OR sala_id IN (SELECT s.id FROM Sala s JOIN Departamento d ON s.departamento_id = d.id "
+                    + "WHERE d.hospital_id = ?)",
+            "DELETE FROM diagnosticos WHERE historia_id IN (SELECT h.id FROM HistoriaClinica h "
+                    + "JOIN Paciente p ON h.paciente_id = p.id WHERE p.hospital_id = ?)",
+            "DELETE FROM tratamientos WHERE historia_id IN (SELECT h.id FROM HistoriaClinica h "
+                    + "JOIN Paciente p ON h.paciente_id = p.id WHERE p.hospital_id = ?)",
+            "DELETE FROM alergias WHERE historia_id IN (SELECT h.id FROM HistoriaClinica h "
+                    + "JOIN Paciente p ON h.paciente_id = p.id WHERE p.hospital_id = ?)",
+            "DELETE FROM HistoriaClinica WHERE paciente_id IN (SELECT id FROM Paciente WHERE hospital_id = ?)",
+            "DELETE FROM Paciente WHERE hospital_id = ?",
+            "DELETE FROM Medico WHERE departamento_id IN (SELECT id FROM Departamento WHERE hospital_id = ?)",
+            "DELETE FROM Sala WHERE departamento_id IN (SELECT id FROM Departamento WHERE hospital_id = ?)",
+            "DELETE FROM Departamento WHERE hospital_id = ?",
+            "DELETE FROM Hospital WHERE id = ?",
+    };
+
+    private static final String[] ID = {"id"};
+
+    public record Resultado(long hospital, long departamentos, long salas, long medicos, long pacientes,
+                            long citas) {
+    }
+
+    private RestauradorVolcado() {
+    }
+
+    // origen queda cerrado.
+    public static Resultado aBase(EntityManagerFactory emf, InputStream origen) throws IOException {
+        EntityManager em = emf.createEntityManager();
+        try (LectorVolcado lector = new LectorVolcado(origen)) {
+            CargaJdbc carga = new CargaJdbc();
+            em.unwrap(Session.class).doWork(conexion -> {
+                try {
+                    carga.ejecutar(conexion, lector);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (long hospital : carga.hospitalesNuevos) {
+                DirectorioPacientes.hospitalRestaurado(em, hospital);
+                IndiceClinico.hospitalRestaurado(em, hospital);
+            }
+            return carga.resultado();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            em.close();
+        }
+    }
+
+    // Devuelve el hospital con sus departamentos, salas, médicos y pacientes; origen queda cerrado.
+    public static Hospital aMemoria(InputStream origen, Consumer<Cita> agenda) throws IOException {
+        Objects.requireNonNull(agenda, "La agenda no puede ser nula");
+        DiccionarioTextos textos = DiccionarioTextos.COMPARTIDO;
+        Hospital hospital = null;
+        long hospitalId = 0;
+        Map<Long, Departamento> departamentos = new HashMap<>();
+        Map<Long, Sala> salas = new HashMap<>();
+        Map<Long, Medico> medicos = new HashMap<>();
+        Map<Long, Paciente> pacientes = new HashMap<>();
+        try (LectorVolcado lector = new LectorVolcado(origen)) {
+            RegistroVolcado registro;
+            while ((registro = lector.leer()) != null) {
+                if (registro instanceof RegistroVolcado.Hospital h) {
+                    if (hospital != null) {
+                        throw new IOException("El volcado tiene más de un hospital");
+                    }
+                    hospital = new Hospital(h.nombre(), h.direccion(), h.telefono());
+                    hospitalId = h.id();
+                } else if (registro instanceof RegistroVolcado.Departamento d) {
+                    Departamento departamento = new Departamento(textos.canonico(d.nombre()), d.especialidad());
+                    referencia(d.hospital() == hospitalId ? hospital : null, "hospital", d.hospital())
+                            .agregarDepartamento(departamento);
+                    alta(departamentos, d.id(), departamento, "departamento");
+                } else if (registro instanceof RegistroVolcado.Sala s) {
+                    Departamento departamento = referencia(departamentos.get(s.departamento()), "departamento",
+                            s.departamento());
+                    alta(salas, s.id(), departamento.crearSala(s.numero(), textos.canonico(s.tipo())), "sala");
+                } else if (registro instanceof RegistroVolcado.Medico m) {
+                    Medico medico = Medico.sinValidar(textos.canonico(m.nombre()), textos.canonico(m.apellido()),
+                            m.dni(), m.fechaNacimiento(), m.tipoSangre(), m.matricula(), m.especialidad());
+                    if (m.departamento() != 0) {
+                        referencia(departamentos.get(m.departamento()), "departamento", m.departamento())
+                                .agregarMedico(medico);
+                    }
+                    alta(medicos, m.id(), medico, "médico");
+                } else if (registro instanceof RegistroVolcado.Paciente p) {
+                    Paciente paciente = Paciente.sinValidar(textos.canonico(p.nombre()), textos.canonico(p.apellido()),
+                            p.dni(), p.fechaNacimiento(), p.tipoSangre(), p.telefono(), p.direccion());
+                    HistoriaClinica historia = paciente.getHistoriaClinica();
+                    if (p.numeroHistoria() != null) {
+                        historia.setNumeroHistoria(p.numeroHistoria());
+                        historia.setFechaCreacion(p.fechaCreacionHistoria());
+                    }
+                    p.diagnosticos().forEach(texto -> historia.agregarDiagnostico(textos.canonico(texto)));
+                    p.tratamientos().forEach(texto -> historia.agregarTratamiento(textos.canonico(texto)));
+                    p.alergias().forEach(texto -> historia.agregarAlergia(textos.canonico(texto)));
+                    if (p.hospital() != 0) {
+                        // setHospital agrega sin buscar en la lista, a diferencia de agregarPaciente
+                        paciente.setHospital(referencia(p.hospital() == hospitalId ? hospital : null, "hospital",
+                                p.hospital()));
+                    }
+                    alta(pacientes, p.id(), paciente, "paciente");
+                } else if (registro instanceof RegistroVolcado.Cita c) {
+                    Cita cita = new Cita(referencia(pacientes.get(c.paciente()), "paciente", c.paciente()),
+                            referencia(medicos.get(c.medico()), "médico", c.medico()),
+                            referencia(salas.get(c.sala()), "sala", c.sala()),
+                            c.fechaHora(), BigDecimal.valueOf(c.costoCentavos(), 2));
+                    cita.setEstado(c.estado());
+                    cita.setObservaciones(textos.canonico(c.observaciones()));
+                    agenda.accept(cita);
+                }
+            }
+        }
+        if (hospital == null) {
+            throw new IOException("El volcado no tiene hospital");
+        }
+        return hospital;
+    }
+
+    private static <T> T referencia(T entidad, String tipo, long id) throws IOException {
+        if (entidad == null) {
+            throw new IOException("Referencia a " + tipo + " " + id + " que no está antes en el volcado");
+        }
+        return entidad;
+    }
+
+    private static <T> void alta(Map<Long, T> entidades, long id, T entidad, String tipo) throws IOException {
+        if (entidades.putIfAbsent(id, entidad) != null) {
+            throw new IOException("Id de " + tipo + " repetido en el volcado: " + id);
+        }
+    }
+
+    // Estado de una restauración por JDBC: lote pendiente del tipo actual e ids ya traducidos.
+    private static final class CargaJdbc {
+
+        private final MapaIds hospitales = new MapaIds();
+        private final MapaIds departamentos = new MapaIds();
+        private final MapaIds salas = new MapaIds();
+        private final MapaIds medicos = new MapaIds();
+        private final MapaIds pacientes = new MapaIds();
+        private final long[] cantidades = new long[FormatoVolcado.TIPOS];
+        private final List<RegistroVolcado> pendientes = new ArrayList<>(LOTE);
+        private final List<Long> hospitalesNuevos = new ArrayList<>();
+        private byte tipoPendiente = FormatoVolcado.FIN;
+        private long primerHospital;
+
+        void ejecutar(Connection conexion, LectorVolcado lector) throws SQLException, IOException {
+            boolean autoCommit = conexion.getAutoCommit();
+            conexion.setAutoCommit(false);
+            try {
+                RegistroVolcado registro;
+                while ((registro = lector.leer()) != null) {
+                    byte tipo = FormatoVolcado.tipo(registro);
+                    if (tipo != tipoPendiente || pendientes.size() == LOTE) {
+                        volcar(conexion);
+                    }
+                    pendientes.add(registro);
+                    tipoPendiente = tipo;
+                }
+                volcar(conexion);
+            } catch (SQLException | IOException | RuntimeException e) {
+                conexion.rollback();
+                if (!hospitalesNuevos.isEmpty()) {
+                    try {
+                        borrarRestaurado(conexion);
+                    } catch (SQLException borrado) {
+                        conexion.rollback();
+                        e.addSuppressed(borrado);
+                        throw new IOException("Restauración interrumpida: el hospital " + hospitalesNuevos.get(0)
+                                + " quedó incompleto y no se pudo borrar", e);
+                    }
+                    throw new IOException("Restauración interrumpida: se borró lo restaurado del hospital "
+                            + hospitalesNuevos.get(0), e);
+                }
+                throw e;
+            } finally {
+                conexion.setAutoCommit(autoCommit);
+            }
+        }
+
+        // Deja la base como antes de restaurar, en una sola transacción.
+        private void borrarRestaurado(Connection conexion) throws SQLException {
+            for (String sql : BORRAR_HOSPITAL) {
+                long parametros = sql.chars().filter(c -> c == '?').count();
+                try (PreparedStatement sentencia = conexion.prepareStatement(sql)) {
+                    for (long hospital : hospitalesNuevos) {
+                        for (int i = 1; i <= parametros; i++) {
+                            sentencia.setLong(i, hospital);
+                        }
+                        sentencia.addBatch();
+                    }
+                    sentencia.executeBatch();
+                }
+            }
+            conexion.commit();
+        }
+
+        private void volcar(Connection conexion) throws SQLException, IOException {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            switch (tipoPendiente) {
+                case FormatoVolcado.HOSPITAL -> hospitales(conexion);
+                case FormatoVolcado.DEPARTAMENTO -> departamentos(conexion);
+                case FormatoVolcado.SALA -> salas(conexion);
+                case FormatoVolcado.MEDICO -> medicos(conexion);
+                case FormatoVolcado.PACIENTE -> pacientes(conexion);
+                default -> citas(conexion);
+            }
+            conexion.commit();
+            if (tipoPendiente == FormatoVolcado.HOSPITAL && primerHospital == 0) {
+                primerHospital = hospitales.get(((RegistroVolcado.Hospital) pendientes.get(0)).id());
+            }
+            cantidades[tipoPendiente] += pendientes.size();
+            pendientes.clear();
+        }
+
+        private void hospitales(Connection conexion) throws SQLException, IOException {
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERTAR_HOSPITAL, ID)) {
+                for (RegistroVolcado registro : pendientes) {
+                    RegistroVolcado.Hospital h = (RegistroVolcado.Hospital) registro;
+                    sentencia.setString(1, h.nombre());
+                    sentencia.setString(2, h.direccion());
+                    sentencia.setString(3, h.telefono());
+                    sentencia.addBatch();
+                }
+                long[] ids = insertar(sentencia);
+                for (int i = 0; i < ids.length; i++) {
+                    alta(hospitales, ((RegistroVolcado.Hospital) pendientes.get(i)).id(), ids[i], "hospital");
+                    hospitalesNuevos.add(ids[i]);
+                }
+            }
+        }
+
+        private void departamentos(Connection conexion) throws SQLException, IOException {
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERTAR_DEPARTAMENTO, ID)) {
+                for (RegistroVolcado registro : pendientes) {
+                    RegistroVolcado.Departamento d = (RegistroVolcado.Departamento) registro;
+                    sentencia.setString(1, d.nombre());
+                    sentencia.setString(2, nombre(d.especialidad()));
+                    sentencia.setLong(3, referencia(hospitales, d.hospital(), "hospital"));
+                    sentencia.addBatch();
+                }
+                long[] ids = insertar(sentencia);
+                for (int i = 0; i < ids.length; i++) {
+                    alta(departamentos, ((RegistroVolcado.Departamento) pendientes.get(i)).id(), ids[i],
+                            "departamento");
+                }
+            }
+        }
+
+        private void salas(Connection conexion) throws SQLException, IOException {
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERTAR_SALA, ID)) {
+                for (RegistroVolcado registro : pendientes) {
+                    RegistroVolcado.Sala s = (RegistroVolcado.Sala) registro;
+                    sentencia.setString(1, s.numero());
+                    sentencia.setString(2, s.tipo());
+                    sentencia.setLong(3, referencia(departamentos, s.departamento(), "departamento"));
+                    sentencia.addBatch();
+                }
+                long[] ids = insertar(sentencia);
+                for (int i = 0; i < ids.length; i++) {
+                    alta(salas, ((RegistroVolcado.Sala) pendientes.get(i)).id(), ids[i], "sala");
+                }
+            }
+        }
+
+        private void medicos(Connection conexion) throws SQLException, IOException {
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERTAR_MEDICO, ID)) {
+                for (RegistroVolcado registro : pendientes) {
+                    RegistroVolcado.Medico m = (RegistroVolcado.Medico) registro;
+                    sentencia.setString(1, m.nombre());
+                    sentencia.setString(2, m.apellido());
+                    sentencia.setString(3, m.dni());
+                    sentencia.setObject(4, m.fechaNacimiento());
+                    sentencia.setString(5, nombre(m.tipoSangre()));
+                    sentencia.setString(6, m.matricula());
+                    sentencia.setString(7, nombre(m.especialidad()));
+                    sentencia.setObject(8, m.departamento() != 0
+                            ? referencia(departamentos, m.departamento(), "departamento") : null);
+                    sentencia.addBatch();
+                }
+                long[] ids = insertar(sentencia);
+                for (int i = 0; i < ids.length; i++) {
+                    alta(medicos, ((RegistroVolcado.Medico) pendientes.get(i)).id(), ids[i], "médico");
+                }
+            }
+        }
+
+        private void pacientes(Connection conexion) throws SQLException, IOException {
+            long[] ids;
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERTAR_PACIENTE, ID)) {
+                for (RegistroVolcado registro : pendientes) {
+                    RegistroVolcado.Paciente p = (RegistroVolcado.Paciente) registro;
+                    sentencia.setString(1, p.nombre());
+                    sentencia.setString(2, p.apellido());
+                    sentencia.setString(3, p.dni());
+                    sentencia.setObject(4, p.fechaNacimiento());
+                    sentencia.setString(5, nombre(p.tipoSangre()));
+                    sentencia.setString(6, p.telefono());
+                    sentencia.setString(7, p.direccion());
+                    sentencia.setObject(8, p.hospital() != 0 ? referencia(hospitales, p.hospital(), "hospital") : null);
+                    sentencia.addBatch();
+                }
+                ids = insertar(sentencia);
+            }
+            List<RegistroVolcado.Paciente> conHistoria = new ArrayList<>(pendientes.size());
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERTAR_HISTORIA, ID)) {
+                for (int i = 0; i < ids.length; i++) {
+                    RegistroVolcado.Paciente p = (RegistroVolcado.Paciente) pendientes.get(i);
+                    alta(pacientes, p.id(), ids[i], "paciente");
+                    if (p.numeroHistoria() != null) {
+                        sentencia.setString(1, p.numeroHistoria());
+                        sentencia.setLong(2, ids[i]);
+                        sentencia.setObject(3, p.fechaCreacionHistoria());
+                        sentencia.addBatch();
+                        conHistoria.add(p);
+                    }
+                }
+                if (conHistoria.isEmpty()) {
+                    return;
+                }
+                ids = insertar(sentencia);
+            }
+            try (PreparedStatement diagnosticos = conexion.prepareStatement(INSERTAR_DIAGNOSTICO);
+                 PreparedStatement tratamientos = conexion.prepareStatement(INSERTAR_TRATAMIENTO);
+                 PreparedStatement alergias = conexion.prepareStatement(INSERTAR_ALERGIA)) {
+                for (int i = 0; i < ids.length; i++) {
+                    RegistroVolcado.Paciente p = conHistoria.get(i);
+                    agregar(diagnosticos, ids[i], p.diagnosticos());
+                    agregar(tratamientos, ids[i], p.tratamientos());
+                    agregar(alergias, ids[i], p.alergias());
+                }
+                diagnosticos.executeBatch();
+                tratamientos.executeBatch();
+                alergias.executeBatch();
+            }
+        }
+
+        private void citas(Connection conexion) throws SQLException, IOException {
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERTAR_CITA)) {
+                for (RegistroVolcado registro : pendientes) {
+                    RegistroVolcado.Cita c = (RegistroVolcado.Cita) registro;
+                    sentencia.setLong(1, referencia(pacientes, c.paciente(), "paciente"));
+                    sentencia.setLong(2, referencia(medicos, c.medico(), "médico"));
+                    sentencia.setLong(3, referencia(salas, c.sala(), "sala"));
+                    sentencia.setObject(4, c.fechaHora());
+                    sentencia.setBigDecimal(5, BigDecimal.valueOf(c.costoCentavos(), 2));
+                    sentencia.setString(6, nombre(c.estado()));
+                    sentencia.setString(7, c.observaciones());
+                    sentencia.addBatch();
+                }
+                sentencia.executeBatch();
+            }
+        }
+
+        Resultado resultado() {
+            return new Resultado(primerHospital, cantidades[FormatoVolcado.DEPARTAMENTO],
+                    cantidades[FormatoVolcado.SALA], cantidades[FormatoVolcado.MEDICO],
+                    cantidades[FormatoVolcado.PACIENTE], cantidades[FormatoVolcado.CITA]);
+        }
+
+        private static void agregar(PreparedStatement sentencia, long historia, List<String> textos)
+                throws SQLException {
+            for (int orden = 0; orden < textos.size(); orden++) {
+                sentencia.setLong(1, historia);
+                sentencia.setString(2, textos.get(orden));
+                sentencia.setInt(3, orden);
+                sentencia.addBatch();
+            }
+        }
+
+        // Ejecuta el lote y devuelve las claves generadas en el orden de las filas.
+        private long[] insertar(PreparedStatement sentencia) throws SQLException {
+            int filas = sentencia.executeBatch().length;
+            long[] ids = new long[filas];
+            try (ResultSet claves = sentencia.getGeneratedKeys()) {
+                for (int i = 0; i < filas; i++) {
+                    if (!claves.next()) {
+                        throw new SQLException("El driver devolvió " + i + " claves generadas para " + filas + " filas");
+                    }
+                    ids[i] = claves.getLong(1);
+                }
+            }
+            return ids;
+        }
+
+        private static long referencia(MapaIds ids, long id, String tipo) throws IOException {
+            long nuevo = ids.get(id);
+            if (nuevo == 0) {
+                throw new IOException("Referencia a " + tipo + " " + id + " que no está antes en el volcado");
+            }
+            return nuevo;
+        }
+
+        private static void alta(MapaIds ids, long id, long nuevo, String tipo) throws IOException {
+            if (id == 0 || !ids.put(id, nuevo)) {
+                throw new IOException("Id de " + tipo + " inválido o repetido en el volcado: " + id);
+            }
+        }
+
+        private static String nombre(Enum<?> valor) {
+            return valor != null ? valor.name() : null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.jcr;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.jcr.entidades.Departamento;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Medico;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.Sala;
+import org.jcr.entidades.TipoSangre;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+// Un hospital chico y una base H2 en memoria por prueba.
+public final class DatosPrueba {
+
+    private DatosPrueba() {
+    }
+
+    public static EntityManagerFactory fabrica(String base) {
+        Map<String, Object> propiedades = new HashMap<>();
+        propiedades.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:" + base + ";DB_CLOSE_DELAY=-1");
+        propiedades.put("hibernate.hbm2ddl.auto", "create-drop");
+        propiedades.put("hibernate.show_sql", "false");
+        propiedades.put("hibernate.format_sql", "false");
+        return Persistence.createEntityManagerFactory("hospital-persistence-unit", propiedades);
+    }
+
+    // Un departamento de CARDIOLOGIA con dos salas y dos médicos, y pacientes cantidad de pacientes.
+    public static Hospital hospital(String nombre, int pacientes) {
+        Hospital hospital = new Hospital(nombre, "Av. Siempre Viva 742", "011-0000-0000");
+        Departamento departamento = new Departamento("Cardiología", EspecialidadMedica.CARDIOLOGIA);
+        hospital.agregarDepartamento(departamento);
+        departamento.crearSala("CARD-100", "Consultorio");
+        departamento.crearSala("CARD-101", "Consultorio");
+        for (int i = 0; i < 2; i++) {
+            departamento.agregarMedico(Medico.sinValidar("Médico" + i, "Apellido", String.valueOf(90_000_000 + i),
+                    LocalDate.of(1970, 1, 1 + i), TipoSangre.A_POSITIVO, "MP-" + (10_000 + i),
+                    EspecialidadMedica.CARDIOLOGIA));
+        }
+        for (int i = 0; i < pacientes; i++) {
+            hospital.agregarPaciente(Paciente.sinValidar("Paciente" + i, "Apellido", String.valueOf(10_000_000 + i),
+                    LocalDate.of(1980, 1, 1 + i % 28), TipoSangre.O_POSITIVO, "011-1000-0000", "Calle " + i));
+        }
+        return hospital;
+    }
+
+    public static Medico medico(Hospital hospital, int i) {
+        return hospital.getDepartamentos().get(0).getMedicos().get(i);
+    }
+
+    public static Sala sala(Hospital hospital, int i) {
+        return hospital.getDepartamentos().get(0).getSalas().get(i);
+    }
+
+    public static void persistir(EntityManagerFactory emf, Object entidad) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.persist(entidad);
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    public static long contar(EntityManagerFactory emf, String jpql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(jpql, Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
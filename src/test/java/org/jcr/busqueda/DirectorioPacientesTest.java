@@ -0,0 +1,97 @@
+package org.jcr.busqueda;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.TipoSangre;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DirectorioPacientesTest {
+
+    private static final LocalDate NACIMIENTO = LocalDate.of(1990, 5, 1);
+
+    // Persona.esDniValido acepta "01234567" y "1234567": son dos pacientes y ninguno pisa al otro.
+    @Test
+    void dosDnisQueSoloDifierenEnUnCeroInicialConviven() {
+        DirectorioPacientes directorio = new DirectorioPacientes();
+        directorio.agregar(new FichaPaciente(1, "01234567", "Ana", "López", NACIMIENTO));
+        directorio.agregar(new FichaPaciente(2, "1234567", "Luis", "López", NACIMIENTO));
+
+        assertEquals(2, directorio.size());
+        assertEquals("Ana", directorio.porDni("01234567").nombre());
+        assertEquals("Luis", directorio.porDni("1234567").nombre());
+        assertEquals(2, directorio.autocompletar("lopez", 10).size());
+        int edad = NACIMIENTO.until(LocalDate.now()).getYears();
+        assertEquals(2, directorio.cantidadEnRangoDeEdad(edad, edad));
+
+        directorio.quitar("1234567");
+        assertNull(directorio.porDni("1234567"));
+        assertEquals("Ana", directorio.porDni("01234567").nombre());
+        assertEquals(List.of("01234567"), directorio.porRangoDeEdad(edad, edad, 10).stream()
+                .map(FichaPaciente::dni).toList());
+    }
+
+    // El directorio cambia recién con el commit: un rollback no agrega ni borra pacientes.
+    @Test
+    void soloLosCambiosConfirmadosLleganAlDirectorio() {
+        EntityManagerFactory emf = DatosPrueba.fabrica("directorio");
+        DirectorioPacientes directorio = new DirectorioPacientes();
+        directorio.escucharCambios();
+        try {
+            enTransaccion(emf, em -> em.persist(paciente("01234567")), false);
+            assertNull(directorio.porDni("01234567"));
+
+            enTransaccion(emf, em -> em.persist(paciente("01234567")), true);
+            assertNotNull(directorio.porDni("01234567"));
+
+            enTransaccion(emf, em -> em.remove(buscar(em, "01234567")), false);
+            assertNotNull(directorio.porDni("01234567"));
+
+            enTransaccion(emf, em -> buscar(em, "01234567").setDni("1234567"), true);
+            assertNull(directorio.porDni("01234567"));
+            assertEquals("Ana", directorio.porDni("1234567").nombre());
+
+            enTransaccion(emf, em -> em.remove(buscar(em, "1234567")), true);
+            assertNull(directorio.porDni("1234567"));
+            assertEquals(0, directorio.size());
+        } finally {
+            directorio.dejarDeEscuchar();
+            emf.close();
+        }
+    }
+
+    private static Paciente paciente(String dni) {
+        return Paciente.sinValidar("Ana", "López", dni, NACIMIENTO, TipoSangre.A_POSITIVO, "011-1000-0000", "Calle 1");
+    }
+
+    private static Paciente buscar(EntityManager em, String dni) {
+        return em.createQuery("SELECT p FROM Paciente p WHERE p.dni = :dni", Paciente.class)
+                .setParameter("dni", dni).getSingleResult();
+    }
+
+    // Con confirmar en false, hace flush (los callbacks de JPA ya corrieron) y después rollback.
+    private static void enTransaccion(EntityManagerFactory emf, Consumer<EntityManager> cambio, boolean confirmar) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            cambio.accept(em);
+            em.flush();
+            if (confirmar) {
+                em.getTransaction().commit();
+            } else {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+}
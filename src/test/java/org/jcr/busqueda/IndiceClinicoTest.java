@@ -0,0 +1,111 @@
+package org.jcr.busqueda;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.jcr.entidades.TipoRegistroClinico;
+import org.jcr.entidades.TipoSangre;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndiceClinicoTest {
+
+    private static final String DNI = "01234567";
+
+    private EntityManagerFactory emf;
+    private Long historiaId;
+    private final IndiceClinico indice = new IndiceClinico();
+
+    @BeforeEach
+    void crearBase() {
+        emf = DatosPrueba.fabrica("indice");
+        Hospital hospital = DatosPrueba.hospital("Hospital Índice", 3);
+        Paciente paciente = Paciente.sinValidar("Ana", "Cero", DNI, LocalDate.of(1990, 5, 1),
+                TipoSangre.A_POSITIVO, "011-1000-0000", "Calle 1");
+        hospital.agregarPaciente(paciente);
+        DatosPrueba.persistir(emf, hospital);
+        historiaId = paciente.getHistoriaClinica().getId();
+        indice.escucharCambios();
+    }
+
+    @AfterEach
+    void cerrarBase() {
+        indice.dejarDeEscuchar();
+        emf.close();
+    }
+
+    @Test
+    void unRegistroEntraAlIndiceRecienConElCommit() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.find(HistoriaClinica.class, historiaId).agregarAlergia("Penicilina");
+            em.flush();
+            assertEquals(List.of(), indice.buscar(TipoRegistroClinico.ALERGIA, "penicilina"));
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        // El cero inicial del DNI se conserva
+        assertEquals(List.of(DNI), indice.buscar(TipoRegistroClinico.ALERGIA, "penic"));
+    }
+
+    @Test
+    void unRollbackNoDejaResultadosFantasma() {
+        enTransaccionFallida(historia -> historia.agregarAlergia("Ibuprofeno"), true);
+        enTransaccionFallida(historia -> historia.agregarDiagnostico("Asma bronquial"), false);
+
+        assertEquals(List.of(), indice.buscar(TipoRegistroClinico.ALERGIA, "ibuprofeno"));
+        assertEquals(List.of(), indice.buscar(TipoRegistroClinico.DIAGNOSTICO, "asma"));
+    }
+
+    // Muchos términos con el mismo prefijo y pacientes repetidos entre ellos: un resultado por paciente.
+    @Test
+    void buscarPrefijoUneTodosLosTerminosSinRepetir() {
+        IndiceClinico enMemoria = new IndiceClinico();
+        List<String> esperados = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String dni = String.format("%08d", i);
+            esperados.add(dni);
+            enMemoria.indexar(TipoRegistroClinico.DIAGNOSTICO, dni, "Hipertensión estadio" + (i % 13));
+            enMemoria.indexar(TipoRegistroClinico.DIAGNOSTICO, dni, "hipertrofia" + (i % 5));
+        }
+        assertEquals(esperados, enMemoria.buscarPrefijo(TipoRegistroClinico.DIAGNOSTICO, "hipert"));
+        // estadio0 e hipertrofia0: múltiplos de 13 y de 5
+        assertEquals(List.of("00000000", "00000065", "00000130", "00000195"),
+                enMemoria.buscar(TipoRegistroClinico.DIAGNOSTICO, "estadio0 hipertrofia0"));
+    }
+
+    @Test
+    void unionDeVariasListasOrdenadas() {
+        assertArrayEquals(new int[]{1, 2, 3, 5, 8, 9}, IndiceClinico.union(List.of(
+                new int[]{1, 5, 9}, new int[]{}, new int[]{2, 3, 5}, new int[]{1, 8, 9})));
+        assertArrayEquals(new int[0], IndiceClinico.union(List.of()));
+    }
+
+    private void enTransaccionFallida(Consumer<HistoriaClinica> cambio, boolean flush) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            cambio.accept(em.find(HistoriaClinica.class, historiaId));
+            if (flush) {
+                em.flush();
+            }
+            em.getTransaction().rollback();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.jcr.busqueda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MapaDniTest {
+
+    // "0000000" no es una clave reservada: tiene que guardarse como cualquier otro DNI.
+    @Test
+    void elDniCeroEsUnaClaveMas() {
+        MapaDni mapa = new MapaDni();
+        FichaPaciente cero = ficha("0000000");
+        assertNull(mapa.get("0000000"));
+        mapa.put(cero);
+        assertEquals(1, mapa.size());
+        assertSame(cero, mapa.get("0000000"));
+
+        // Más fichas de las que entran en la tabla inicial: fuerza redimensionar
+        for (int dni = 1; dni <= 2000; dni++) {
+            mapa.put(ficha(String.valueOf(10_000_000 + dni)));
+        }
+        assertSame(cero, mapa.get("0000000"));
+        assertEquals(2001, mapa.size());
+
+        assertSame(cero, mapa.remove("0000000"));
+        assertNull(mapa.get("0000000"));
+        assertNull(mapa.remove("0000000"));
+        for (int dni = 1; dni <= 2000; dni++) {
+            String clave = String.valueOf(10_000_000 + dni);
+            assertEquals(clave, mapa.get(clave).dni());
+        }
+        assertEquals(2000, mapa.size());
+    }
+
+    // Con el DNI como número los dos caían en la misma clave.
+    @Test
+    void unCeroALaIzquierdaDistingueDosDnis() {
+        MapaDni mapa = new MapaDni();
+        FichaPaciente largo = ficha("01234567");
+        FichaPaciente corto = ficha("1234567");
+        mapa.put(largo);
+        mapa.put(corto);
+        assertEquals(2, mapa.size());
+        assertSame(largo, mapa.get("01234567"));
+        assertSame(corto, mapa.get("1234567"));
+        assertSame(corto, mapa.remove("1234567"));
+        assertSame(largo, mapa.get("01234567"));
+    }
+
+    private static FichaPaciente ficha(String dni) {
+        return new FichaPaciente(0, dni, "Nombre" + dni, "Apellido", LocalDate.of(1990, 1, 1));
+    }
+}
@@ -0,0 +1,170 @@
+package org.jcr.entidades;
+
+import org.jcr.DatosPrueba;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CitaManagerTest {
+
+    private static final int PACIENTES = 50;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2030, 3, 4, 8, 0);
+
+    @TempDir
+    Path carpeta;
+
+    private Hospital hospital;
+    private CitaManager manager;
+
+    @BeforeEach
+    void crearAgenda() {
+        hospital = DatosPrueba.hospital("Hospital Agenda", PACIENTES);
+        manager = new CitaManager();
+    }
+
+    @AfterEach
+    void cerrarAgenda() {
+        manager.close();
+    }
+
+    // Los cambios hechos por la agenda quedan en las columnas: sobreviven a que se suelte la cita.
+    @Test
+    void losCambiosPorLaAgendaSobrevivenAlRecolector() throws Exception {
+        cargar(PACIENTES);
+        Paciente paciente = hospital.getPacientes().get(7);
+        Cita cita = manager.getCitasPorPaciente(paciente).get(0);
+        manager.cambiarObservaciones(cita, "Trae estudios");
+        manager.cambiarEstado(cita, EstadoCita.EN_CURSO);
+        cita.setId(42L);
+        cita.setVersion(3L);
+        manager.citaPersistida(cita);
+        cita = null;
+
+        recolectar();
+
+        Cita otra = manager.getCitasPorPaciente(paciente).get(0);
+        assertEquals(42L, otra.getId());
+        assertEquals(3L, otra.getVersion());
+        assertEquals("Trae estudios", otra.getObservaciones());
+        assertEquals(EstadoCita.EN_CURSO, otra.getEstado());
+
+        Path salida = carpeta.resolve("salida.csv");
+        manager.guardarCitas(salida.toString());
+        List<String> lineas = Files.readAllLines(salida);
+        assertEquals(PACIENTES, lineas.size());
+        assertEquals(otra.toCsvString(), lineas.get(7));
+    }
+
+    @Test
+    void unaCitaLeidaNoQuedaRetenidaPorLaAgenda() throws Exception {
+        cargar(PACIENTES);
+        Medico medico = DatosPrueba.medico(hospital, 0);
+        Cita cita = manager.getCitasPorMedico(medico).get(3);
+        WeakReference<Cita> referencia = new WeakReference<>(cita);
+        cita = null;
+
+        recolectar();
+
+        assertNull(referencia.get());
+        assertEquals(PACIENTES / 2, manager.getCitasPorMedico(medico).size());
+    }
+
+    @Test
+    void guardarYCargarConservaLasCitasSinPedir() throws Exception {
+        Path origen = cargar(PACIENTES);
+        Path salida = carpeta.resolve("salida.csv");
+        manager.guardarCitas(salida.toString());
+        assertEquals(Files.readAllLines(origen), Files.readAllLines(salida));
+        assertEquals(PACIENTES, manager.getCantidadCitas());
+    }
+
+    @Test
+    void descartarUnaCitaLaQuitaDeLaAgenda() throws Exception {
+        Paciente paciente = hospital.getPacientes().get(0);
+        Cita cita = manager.programarCita(paciente, DatosPrueba.medico(hospital, 0), DatosPrueba.sala(hospital, 0),
+                INICIO, new BigDecimal("1500.00"));
+        // Mientras quien reservó tenga la cita, la agenda devuelve esa misma instancia
+        assertSame(cita, manager.getCitasPorPaciente(paciente).get(0));
+
+        manager.descartarCita(cita);
+
+        assertEquals(List.of(), manager.getCitasPorPaciente(paciente));
+        assertEquals(0, manager.getCantidadCitas());
+        // El horario queda libre de nuevo
+        manager.programarCita(paciente, DatosPrueba.medico(hospital, 0), DatosPrueba.sala(hospital, 0),
+                INICIO, new BigDecimal("1500.00"));
+    }
+
+    // Una copia (p. ej. la misma fila leída de la base) ubica la cita por médico y horario.
+    @Test
+    void unaCopiaDeLaCitaSirveParaCambiarlaYDescartarla() throws Exception {
+        Paciente paciente = hospital.getPacientes().get(0);
+        Cita cita = manager.programarCita(paciente, DatosPrueba.medico(hospital, 0), DatosPrueba.sala(hospital, 0),
+                INICIO, new BigDecimal("1500.00"));
+        Cita copia = new Cita(paciente, cita.getMedico(), cita.getSala(), cita.getFechaHora(), cita.getCosto());
+
+        manager.cambiarEstado(copia, EstadoCita.CANCELADA);
+        assertEquals(EstadoCita.CANCELADA, cita.getEstado());
+
+        manager.descartarCita(copia);
+        assertEquals(0, manager.getCantidadCitas());
+    }
+
+    // Con la duración predeterminada de 60 minutos una cita a las 8:30 choca con la de las 8:00.
+    @Test
+    void unaCitaSuperpuestaConOtraDelMismoMedicoSeRechaza() throws Exception {
+        Medico medico = DatosPrueba.medico(hospital, 0);
+        manager.programarCita(hospital.getPacientes().get(0), medico, DatosPrueba.sala(hospital, 0), INICIO,
+                new BigDecimal("1500.00"));
+
+        assertThrows(CitaException.class, () -> manager.programarCita(hospital.getPacientes().get(1), medico,
+                DatosPrueba.sala(hospital, 1), INICIO.plusMinutes(30), new BigDecimal("1500.00")));
+        manager.programarCita(hospital.getPacientes().get(1), medico, DatosPrueba.sala(hospital, 1),
+                INICIO.plusMinutes(60), new BigDecimal("1500.00"));
+        assertEquals(2, manager.getCitasPorMedico(medico).size());
+    }
+
+    // Una cita por paciente, alternando médico y sala, escrita a un CSV y cargada en la agenda.
+    private Path cargar(int cantidad) throws Exception {
+        Map<String, Paciente> pacientes = new HashMap<>();
+        Map<String, Medico> medicos = new HashMap<>();
+        Map<String, Sala> salas = new HashMap<>();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < cantidad; i++) {
+            Paciente paciente = hospital.getPacientes().get(i);
+            Medico medico = DatosPrueba.medico(hospital, i % 2);
+            Sala sala = DatosPrueba.sala(hospital, i % 2);
+            pacientes.put(paciente.getDni(), paciente);
+            medicos.put(medico.getDni(), medico);
+            salas.put(sala.getNumero(), sala);
+            csv.append(new Cita(paciente, medico, sala, INICIO.plusHours(i), new BigDecimal("1500.00"))
+                    .toCsvString()).append('\n');
+        }
+        Path archivo = carpeta.resolve("citas.csv");
+        Files.writeString(archivo, csv);
+        manager.cargarCitas(archivo.toString(), pacientes, medicos, salas);
+        return archivo;
+    }
+
+    private static void recolectar() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.jcr.eventos;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.HistoriaClinica;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.TipoRegistroClinico;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PuenteEventosTest {
+
+    private static final int CITAS = 20;
+
+    // Con un buffer de 2 y un suscriptor trabado, las reservas no pueden quedar esperando lugar en el bus.
+    @Test
+    void unSuscriptorLentoNoFrenaLasReservas() throws Exception {
+        Hospital hospital = DatosPrueba.hospital("Hospital Eventos", CITAS);
+        CitaManager manager = new CitaManager();
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicLong recibidos = new AtomicLong();
+        try (BusEventos bus = new BusEventos(2)) {
+            Suscripcion lenta = bus.suscribir("lenta", lote -> {
+                liberar.await();
+                recibidos.addAndGet(lote.size());
+            }, 1);
+            PuenteEventos.conectar(bus, manager);
+            try {
+                LocalDateTime inicio = LocalDateTime.of(2030, 3, 4, 8, 0);
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                    for (int i = 0; i < CITAS; i++) {
+                        manager.programarCita(hospital.getPacientes().get(i), DatosPrueba.medico(hospital, 0),
+                                DatosPrueba.sala(hospital, 0), inicio.plusHours(i), new BigDecimal("1500.00"));
+                    }
+                });
+            } finally {
+                liberar.countDown();
+                PuenteEventos.desconectar();
+            }
+            assertTrue(lenta.esperarHasta(bus.getUltimaSecuencia(), TimeUnit.SECONDS.toMillis(10)));
+            assertEquals(CITAS, recibidos.get());
+        } finally {
+            manager.close();
+        }
+    }
+
+    // Un registro clínico es un evento recién cuando se confirma: ni el rollback ni armar la
+    // historia en memoria publican nada.
+    @Test
+    void unRegistroClinicoSePublicaSoloConElCommit() throws Exception {
+        EntityManagerFactory emf = DatosPrueba.fabrica("eventos-registros");
+        Hospital hospital = DatosPrueba.hospital("Hospital Registros", 1);
+        hospital.getPacientes().get(0).getHistoriaClinica().agregarAlergia("Látex");
+        List<Evento> recibidos = new CopyOnWriteArrayList<>();
+        try (BusEventos bus = new BusEventos(64)) {
+            Suscripcion registros = bus.suscribir("registros", lote -> lote.stream()
+                    .map(EventoRegistrado::evento)
+                    .filter(e -> e instanceof Evento.RegistroClinicoAgregado)
+                    .forEach(recibidos::add));
+            PuenteEventos.conectar(bus, new CitaManager());
+            try {
+                DatosPrueba.persistir(emf, hospital);
+                Long historiaId = hospital.getPacientes().get(0).getHistoriaClinica().getId();
+
+                DatosPrueba.hospital("Hospital en memoria", 1).getPacientes().get(0).getHistoriaClinica()
+                        .agregarDiagnostico("Sólo en memoria");
+                enTransaccion(emf, historiaId, historia -> historia.agregarDiagnostico("Asma"), false);
+                enTransaccion(emf, historiaId, historia -> historia.agregarDiagnostico("Hipertensión"), true);
+            } finally {
+                PuenteEventos.desconectar();
+            }
+            assertTrue(registros.esperarHasta(bus.getUltimaSecuencia(), TimeUnit.SECONDS.toMillis(10)));
+            String dni = hospital.getPacientes().get(0).getDni();
+            String numero = hospital.getPacientes().get(0).getHistoriaClinica().getNumeroHistoria();
+            assertEquals(List.of(
+                    new Evento.RegistroClinicoAgregado(numero, dni, TipoRegistroClinico.ALERGIA, "Látex"),
+                    new Evento.RegistroClinicoAgregado(numero, dni, TipoRegistroClinico.DIAGNOSTICO, "Hipertensión")),
+                    recibidos);
+        } finally {
+            emf.close();
+        }
+    }
+
+    private static void enTransaccion(EntityManagerFactory emf, Long historiaId,
+                                      Consumer<HistoriaClinica> cambio, boolean confirmar) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            cambio.accept(em.find(HistoriaClinica.class, historiaId));
+            em.flush();
+            if (confirmar) {
+                em.getTransaction().commit();
+            } else {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.jcr.facturacion;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.EspecialidadMedica;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MotorFacturacionTest {
+
+    private static final int PACIENTES = 20;
+    private static final int CITAS = 60;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2030, 1, 1, 8, 0);
+    private static final YearMonth DESDE = YearMonth.of(2030, 1);
+    private static final YearMonth HASTA = YearMonth.of(2030, 3);
+
+    private Hospital hospital;
+    private List<Cita> citas;
+    private CitaManager agenda;
+    private Tarifario tarifario;
+
+    @BeforeEach
+    void crearAgenda() {
+        hospital = DatosPrueba.hospital("Hospital Facturación", PACIENTES);
+        citas = new ArrayList<>();
+        agenda = new CitaManager();
+        for (int i = 0; i < CITAS; i++) {
+            Paciente paciente = hospital.getPacientes().get(i % PACIENTES);
+            Cita cita = new Cita(paciente, DatosPrueba.medico(hospital, i % 2), DatosPrueba.sala(hospital, i % 2),
+                    INICIO.plusHours(29L * i), new BigDecimal("1234.5").add(BigDecimal.valueOf(i * 37L, 2)));
+            cita.setEstado(i % 7 == 0 ? EstadoCita.CANCELADA : EstadoCita.COMPLETADA);
+            paciente.addCita(cita);
+            citas.add(cita);
+            agenda.registrarCita(cita);
+        }
+        tarifario = new Tarifario()
+                .tarifa(EspecialidadMedica.CARDIOLOGIA, new Tarifa(50_000, 750))
+                .descuento(dni(0), Descuento.porcentaje("Jubilado", 1_250))
+                .descuento(dni(1), Descuento.fijo("Convenio", 10_001))
+                .cobertura(dni(1), Cobertura.sinTope("Obra Social", 6_667))
+                .cobertura(dni(2), new Cobertura("Prepaga", 8_000, 100_000));
+    }
+
+    @AfterEach
+    void cerrarAgenda() {
+        agenda.close();
+    }
+
+    @Test
+    void dividirRedondeaComoBigDecimalHalfEven() {
+        long[] divisores = {1, 2, 3, 4, 7, 10, 100, 10_000, -1, -2, -3, -7, -10, -10_000};
+        for (long divisor : divisores) {
+            for (long dividendo = -25_000; dividendo <= 25_000; dividendo += 7) {
+                assertEquals(halfEven(dividendo, divisor), Centavos.dividir(dividendo, divisor),
+                        dividendo + " / " + divisor);
+            }
+            for (long dividendo : new long[]{Long.MAX_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1}) {
+                assertEquals(halfEven(dividendo, divisor), Centavos.dividir(dividendo, divisor),
+                        dividendo + " / " + divisor);
+            }
+        }
+        // Empates exactos: al par, con cualquier signo
+        assertEquals(2, Centavos.dividir(5, 2));
+        assertEquals(4, Centavos.dividir(7, 2));
+        assertEquals(-2, Centavos.dividir(-5, 2));
+        assertEquals(-4, Centavos.dividir(7, -2));
+        assertEquals(2, Centavos.dividir(-25, -10));
+        assertEquals(0, Centavos.dividir(5_000, 10_000));
+        assertEquals(2, Centavos.dividir(15_000, 10_000));
+    }
+
+    @Test
+    void unDesbordeCortaEnVezDeDarLaVuelta() {
+        assertThrows(ArithmeticException.class, () -> Centavos.porcentaje(Long.MAX_VALUE / 2, 300));
+        assertThrows(ArithmeticException.class, () -> Centavos.dividir(Long.MIN_VALUE, -1));
+
+        // Un arancel imposible corta toda la corrida con la misma excepción
+        tarifario.tarifa(EspecialidadMedica.CARDIOLOGIA, new Tarifa(Long.MAX_VALUE, 0));
+        MotorFacturacion motor = new MotorFacturacion(tarifario);
+        assertThrows(ArithmeticException.class,
+                () -> motor.facturar(agenda, hospital.getPacientes(), DESDE, HASTA, Runnable::run, 3));
+    }
+
+    @Test
+    void facturarEnUnaParteOEnVariasDaLoMismo() {
+        MotorFacturacion motor = new MotorFacturacion(tarifario);
+        MotorFacturacion.Lote uno = motor.facturar(agenda, hospital.getPacientes(), DESDE, HASTA, Runnable::run, 1);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(4);
+        MotorFacturacion.Lote varios;
+        try {
+            varios = motor.facturar(agenda, hospital.getPacientes(), DESDE, HASTA, ejecutor, 7);
+        } finally {
+            ejecutor.shutdown();
+        }
+
+        assertFalse(uno.facturas().isEmpty());
+        assertEquals(uno.facturas(), varios.facturas());
+        assertEquals(uno.resumen().getCitas(), varios.resumen().getCitas());
+        assertEquals(uno.resumen().getNeto(), varios.resumen().getNeto());
+        assertEquals(uno.resumen().getMeses(), varios.resumen().getMeses());
+        for (YearMonth mes : uno.resumen().getMeses()) {
+            assertEquals(uno.resumen().getCosto(mes), varios.resumen().getCosto(mes));
+            assertEquals(uno.resumen().getNeto(mes), varios.resumen().getNeto(mes));
+        }
+        long facturables = citas.stream().filter(c -> c.getEstado() == EstadoCita.COMPLETADA).count();
+        assertEquals(facturables, uno.resumen().getCitas());
+    }
+
+    // La corrida sobre la agenda cuadra con la tabla Cita; sin una cita en la agenda, ya no.
+    @Test
+    void laConciliacionContraLaBaseCuadraYDetectaUnaCitaFaltante() {
+        EntityManagerFactory emf = DatosPrueba.fabrica("facturacion");
+        try {
+            DatosPrueba.persistir(emf, hospital);
+            MotorFacturacion motor = new MotorFacturacion(tarifario);
+
+            ResumenFacturacion resumen = motor.facturar(agenda, hospital.getPacientes(), DESDE, HASTA,
+                    Runnable::run, 3).resumen();
+            Conciliacion conciliacion = conciliar(emf, resumen);
+            assertTrue(conciliacion.cuadra(), conciliacion.diferencias().toString());
+            assertEquals(conciliacion.citasBase(), conciliacion.citasFacturadas());
+
+            Cita faltante = citas.get(1);
+            agenda.descartarCita(faltante);
+            resumen = motor.facturar(agenda, hospital.getPacientes(), DESDE, HASTA, Runnable::run, 3).resumen();
+            conciliacion = conciliar(emf, resumen);
+            assertFalse(conciliacion.cuadra());
+            assertEquals(conciliacion.citasBase() - 1, conciliacion.citasFacturadas());
+            assertEquals(List.of(EspecialidadMedica.CARDIOLOGIA.name(), YearMonth.from(faltante.getFechaHora()).toString()),
+                    conciliacion.diferencias().stream().map(Conciliacion.Diferencia::clave).toList());
+            Conciliacion.Diferencia porEspecialidad = conciliacion.diferencias().get(0);
+            assertEquals(0, porEspecialidad.costoBase().subtract(porEspecialidad.costoFacturado())
+                    .compareTo(faltante.getCosto()));
+        } finally {
+            emf.close();
+        }
+    }
+
+    private Conciliacion conciliar(EntityManagerFactory emf, ResumenFacturacion resumen) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return Conciliacion.contra(em, resumen, tarifario.getFacturables(), DESDE, HASTA);
+        } finally {
+            em.close();
+        }
+    }
+
+    private String dni(int paciente) {
+        return hospital.getPacientes().get(paciente).getDni();
+    }
+
+    private static long halfEven(long dividendo, long divisor) {
+        return BigDecimal.valueOf(dividendo).divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_EVEN)
+                .longValueExact();
+    }
+}
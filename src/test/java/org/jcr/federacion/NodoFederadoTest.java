@@ -0,0 +1,76 @@
+package org.jcr.federacion;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.Hospital;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NodoFederadoTest {
+
+    private static final String HOSPITAL = "Hospital Federado";
+
+    private EntityManagerFactory emf;
+    private DireccionNodo direccion;
+    private NodoFederado nodo;
+    private ConexionNodo cliente;
+
+    @BeforeEach
+    void iniciarNodo() throws IOException {
+        emf = DatosPrueba.fabrica("federacion");
+        DatosPrueba.persistir(emf, DatosPrueba.hospital(HOSPITAL, 3));
+        direccion = new DireccionNodo("nodo-1", "127.0.0.1", puertoLibre());
+        AnilloConsistente<DireccionNodo> anillo = new AnilloConsistente<>();
+        anillo.agregar(direccion.id(), direccion);
+        nodo = new NodoFederado(direccion, List.of(direccion), emf);
+        nodo.alojarDesde(emf, anillo);
+        nodo.iniciar();
+        cliente = new ConexionNodo(direccion);
+    }
+
+    @AfterEach
+    void cerrarNodo() {
+        cliente.close();
+        nodo.close();
+        emf.close();
+    }
+
+    @Test
+    void unaReservaFederadaQuedaEnLaBase() throws IOException {
+        Hospital hospital = DatosPrueba.hospital(HOSPITAL, 3);
+        Protocolo.Mensaje respuesta = cliente.solicitar(Protocolo.RESERVAR, List.of(HOSPITAL,
+                hospital.getPacientes().get(0).getDni(), DatosPrueba.medico(hospital, 0).getDni(), "CARD-100",
+                "2030-03-04T08:00", "1500.00"));
+        assertEquals(Protocolo.OK, respuesta.tipo(), respuesta.campos().toString());
+
+        // close() espera a que la persistencia diferida vacíe su cola
+        nodo.close();
+        assertEquals(1, DatosPrueba.contar(emf, "SELECT COUNT(c) FROM Cita c"));
+    }
+
+    @Test
+    void lasCitasRemotasDeUnPacienteTienenTope() throws IOException {
+        String dni = "20000000";
+        for (int i = 0; i < NodoFederado.CITAS_REMOTAS_POR_PACIENTE + 10; i++) {
+            cliente.solicitar(Protocolo.EVENTO_RESERVA, List.of("Hospital Remoto", dni + ",cita" + i));
+        }
+        List<String> citas = cliente.solicitar(Protocolo.CITAS, List.of(dni)).campos();
+        assertEquals(NodoFederado.CITAS_REMOTAS_POR_PACIENTE, citas.size());
+        // Se conservan las más nuevas
+        assertEquals("Hospital Remoto|" + dni + ",cita" + (NodoFederado.CITAS_REMOTAS_POR_PACIENTE + 9),
+                citas.get(citas.size() - 1));
+    }
+
+    private static int puertoLibre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
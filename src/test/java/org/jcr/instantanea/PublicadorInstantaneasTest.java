@@ -0,0 +1,54 @@
+package org.jcr.instantanea;
+
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.CitaManager;
+import org.jcr.entidades.Hospital;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PublicadorInstantaneasTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2030, 3, 4, 8, 0);
+
+    // DatosPrueba repite DNIs de médicos y números de sala en cada hospital, como un médico que atiende en dos.
+    @Test
+    void unaCitaDeOtroHospitalConElMismoMedicoNoEntraEnLaInstantanea() throws Exception {
+        Hospital propio = DatosPrueba.hospital("Hospital Propio", 2);
+        Hospital otro = DatosPrueba.hospital("Hospital Otro", 2);
+        try (CitaManager manager = new CitaManager();
+             PublicadorInstantaneas publicador = new PublicadorInstantaneas(propio, manager)) {
+            manager.programarCita(otro.getPacientes().get(0), DatosPrueba.medico(otro, 0), DatosPrueba.sala(otro, 0),
+                    INICIO, new BigDecimal("1500.00"));
+            InstantaneaHospital instantanea = publicador.getInstantanea();
+            String dni = DatosPrueba.medico(propio, 0).getDni();
+            assertEquals(0, instantanea.getVersion());
+            assertEquals(0, instantanea.medico(dni).citas().size());
+
+            manager.programarCita(propio.getPacientes().get(0), DatosPrueba.medico(propio, 0),
+                    DatosPrueba.sala(propio, 0), INICIO, new BigDecimal("1500.00"));
+            instantanea = publicador.getInstantanea();
+            assertEquals(1, instantanea.medico(dni).citas().size());
+            assertEquals(1, instantanea.sala("CARD-100").citas().size());
+            assertEquals(1, instantanea.paciente(propio.getPacientes().get(0).getDni()).citas().size());
+        }
+    }
+
+    @Test
+    void reconstruirIncluyeLasCitasYaReservadas() throws Exception {
+        Hospital hospital = DatosPrueba.hospital("Hospital Propio", 2);
+        try (CitaManager manager = new CitaManager();
+             PublicadorInstantaneas publicador = new PublicadorInstantaneas(hospital, manager)) {
+            manager.programarCita(hospital.getPacientes().get(0), DatosPrueba.medico(hospital, 0),
+                    DatosPrueba.sala(hospital, 0), INICIO, new BigDecimal("1500.00"));
+            publicador.reconstruir();
+            manager.programarCita(hospital.getPacientes().get(1), DatosPrueba.medico(hospital, 0),
+                    DatosPrueba.sala(hospital, 0), INICIO.plusHours(1), new BigDecimal("1500.00"));
+            assertEquals(2, publicador.getInstantanea().medico(DatosPrueba.medico(hospital, 0).getDni())
+                    .citas().size());
+        }
+    }
+}
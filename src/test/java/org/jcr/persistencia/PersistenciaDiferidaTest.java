@@ -0,0 +1,135 @@
+package org.jcr.persistencia;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.Cita;
+import org.jcr.entidades.EstadoCita;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.Paciente;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistenciaDiferidaTest {
+
+    private static final int CITAS = 200;
+
+    private EntityManagerFactory emf;
+    private Hospital hospital;
+    private final List<Cita> fallidas = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void crearBase() {
+        emf = DatosPrueba.fabrica("diferida");
+        hospital = DatosPrueba.hospital("Hospital Diferido", CITAS);
+        DatosPrueba.persistir(emf, hospital);
+    }
+
+    @AfterEach
+    void cerrarBase() {
+        emf.close();
+    }
+
+    @Test
+    void unaFilaInvalidaSoloHaceFallarSuCita() throws Exception {
+        List<Cita> citas = citas();
+        Cita invalida = citas.get(CITAS / 3);
+        invalida.setObservaciones("x".repeat(600)); // la columna admite 500
+
+        List<CompletableFuture<Cita>> futuros = new ArrayList<>();
+        try (PersistenciaDiferida escritor = new PersistenciaDiferida(emf, 1_000, 500, 2, Duration.ofMillis(1),
+                fallidas::add)) {
+            citas.forEach(cita -> futuros.add(escritor.guardar(cita)));
+            escritor.esperar(Duration.ofSeconds(30));
+        } catch (IllegalStateException e) {
+            // La barrera de esperar() falla si su lote tuvo una cita fallida
+        }
+
+        for (int i = 0; i < CITAS; i++) {
+            CompletableFuture<Cita> futuro = futuros.get(i);
+            if (citas.get(i) == invalida) {
+                assertThrows(ExecutionException.class, () -> futuro.get(30, TimeUnit.SECONDS));
+            } else {
+                assertNotNull(futuro.get(30, TimeUnit.SECONDS).getId());
+            }
+        }
+        assertEquals(List.of(invalida), fallidas);
+        assertEquals(CITAS - 1, DatosPrueba.contar(emf, "SELECT COUNT(c) FROM Cita c"));
+    }
+
+    @Test
+    void unLoteSinErroresNoInformaFallas() throws Exception {
+        List<Cita> citas = citas();
+        try (PersistenciaDiferida escritor = new PersistenciaDiferida(emf, 1_000, 500, 2, Duration.ofMillis(1),
+                fallidas::add)) {
+            List<CompletableFuture<Cita>> futuros = new ArrayList<>();
+            citas.forEach(cita -> futuros.add(escritor.guardar(cita)));
+            for (int i = 0; i < CITAS; i++) {
+                assertSame(citas.get(i), futuros.get(i).get(30, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(List.of(), fallidas);
+        assertEquals(CITAS, DatosPrueba.contar(emf, "SELECT COUNT(c) FROM Cita c"));
+    }
+
+    @Test
+    void unConflictoDeVersionSoloHaceFallarLaCitaDesactualizada() throws Exception {
+        List<Cita> citas = citas();
+        try (PersistenciaDiferida escritor = new PersistenciaDiferida(emf, 1_000, 500, 2, Duration.ofMillis(1),
+                fallidas::add)) {
+            citas.forEach(escritor::guardar);
+            escritor.esperar(Duration.ofSeconds(30));
+
+            // Una nota de recepción sube la versión en la base por detrás de la cita en memoria
+            Cita desactualizada = citas.get(CITAS / 2);
+            new ReintentoOptimista(emf).agregarObservacion(desactualizada.getId(), "Trae estudios");
+
+            List<CompletableFuture<Cita>> futuros = new ArrayList<>();
+            for (Cita cita : citas) {
+                cita.setEstado(EstadoCita.COMPLETADA);
+                futuros.add(escritor.guardar(cita));
+            }
+            for (int i = 0; i < CITAS; i++) {
+                CompletableFuture<Cita> futuro = futuros.get(i);
+                if (citas.get(i) == desactualizada) {
+                    ExecutionException error = assertThrows(ExecutionException.class,
+                            () -> futuro.get(30, TimeUnit.SECONDS));
+                    assertTrue(ReintentoOptimista.esConflicto(error.getCause()));
+                } else {
+                    assertSame(citas.get(i), futuro.get(30, TimeUnit.SECONDS));
+                }
+            }
+            assertEquals(List.of(desactualizada), fallidas);
+        }
+        assertEquals(CITAS - 1, DatosPrueba.contar(emf,
+                "SELECT COUNT(c) FROM Cita c WHERE c.estado = org.jcr.entidades.EstadoCita.COMPLETADA"));
+    }
+
+    // Una cita por paciente, alternando médico y sala, cada una en su propio horario.
+    private List<Cita> citas() {
+        List<Cita> citas = new ArrayList<>();
+        LocalDateTime inicio = LocalDateTime.of(2030, 3, 4, 8, 0);
+        List<Paciente> pacientes = hospital.getPacientes();
+        for (int i = 0; i < CITAS; i++) {
+            citas.add(new Cita(pacientes.get(i), DatosPrueba.medico(hospital, i % 2), DatosPrueba.sala(hospital, i % 2),
+                    inicio.plusMinutes(30L * i), new BigDecimal("1500.00")));
+        }
+        return citas;
+    }
+}
@@ -0,0 +1,68 @@
+package org.jcr.persistencia;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jcr.DatosPrueba;
+import org.jcr.entidades.Paciente;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResolutorReferenciasTest {
+
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void abrirBase() {
+        emf = DatosPrueba.fabrica("referencias");
+        DatosPrueba.persistir(emf, DatosPrueba.hospital("Hospital Referencias", 3));
+        em = emf.createEntityManager();
+        estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+        estadisticas.clear();
+    }
+
+    @AfterEach
+    void cerrarBase() {
+        em.close();
+        emf.close();
+    }
+
+    // Un DNI inexistente se consulta una sola vez, y no cuenta como entrada del mapa.
+    @Test
+    void unaClaveInexistenteNoSeVuelveAConsultar() {
+        Map<String, Paciente> pacientes = new ResolutorReferencias(em).pacientesBajoDemanda(10);
+        assertNull(pacientes.get("99999999"));
+        assertNull(pacientes.get("99999999"));
+        assertFalse(pacientes.containsKey("99999999"));
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+
+        assertNotNull(pacientes.get("10000000"));
+        assertEquals(1, pacientes.size());
+        assertEquals(List.of("10000000"), pacientes.keySet().stream().toList());
+    }
+
+    @Test
+    void precargarRecuerdaTambienLasQueFaltan() {
+        Map<String, Paciente> pacientes = new ResolutorReferencias(em).pacientesBajoDemanda(10);
+        ResolutorReferencias.precargar(pacientes, List.of("10000000", "10000001", "99999999"));
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+
+        assertNotNull(pacientes.get("10000001"));
+        assertNull(pacientes.get("99999999"));
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+        assertEquals(2, pacientes.size());
+    }
+}
@@ -0,0 +1,82 @@
+package org.jcr.volcado;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.jcr.DatosPrueba;
+import org.jcr.busqueda.DirectorioPacientes;
+import org.jcr.busqueda.IndiceClinico;
+import org.jcr.entidades.Hospital;
+import org.jcr.entidades.TipoRegistroClinico;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RestauradorVolcadoTest {
+
+    private EntityManagerFactory origen;
+    private EntityManagerFactory destino;
+    private byte[] volcado;
+
+    @BeforeEach
+    void exportar() throws IOException {
+        origen = DatosPrueba.fabrica("volcado-origen");
+        destino = DatosPrueba.fabrica("volcado-destino");
+        Hospital hospital = DatosPrueba.hospital("Hospital Volcado", 5);
+        hospital.getPacientes().get(0).getHistoriaClinica().agregarAlergia("Penicilina");
+        DatosPrueba.persistir(origen, hospital);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        EntityManager em = origen.createEntityManager();
+        try {
+            ExportadorVolcado.exportar(em, hospital.getId(), salida);
+        } finally {
+            em.close();
+        }
+        volcado = salida.toByteArray();
+    }
+
+    @AfterEach
+    void cerrar() {
+        origen.close();
+        destino.close();
+    }
+
+    // Los lotes ya confirmados cuando falla el FIN no pueden quedar como un hospital a medias.
+    @Test
+    void unVolcadoTruncadoNoDejaUnHospitalIncompleto() {
+        byte[] truncado = Arrays.copyOf(volcado, volcado.length - 3);
+        assertThrows(IOException.class, () -> RestauradorVolcado.aBase(destino, new ByteArrayInputStream(truncado)));
+
+        assertEquals(0, DatosPrueba.contar(destino, "SELECT COUNT(h) FROM Hospital h"));
+        assertEquals(0, DatosPrueba.contar(destino, "SELECT COUNT(p) FROM Paciente p"));
+        assertEquals(0, DatosPrueba.contar(destino, "SELECT COUNT(m) FROM Medico m"));
+        assertEquals(0, DatosPrueba.contar(destino, "SELECT COUNT(h) FROM HistoriaClinica h"));
+    }
+
+    @Test
+    void losIndicesQueEscuchanVenLosPacientesRestaurados() throws IOException {
+        DirectorioPacientes directorio = new DirectorioPacientes();
+        IndiceClinico indice = new IndiceClinico();
+        directorio.escucharCambios();
+        indice.escucharCambios();
+        try {
+            RestauradorVolcado.Resultado resultado =
+                    RestauradorVolcado.aBase(destino, new ByteArrayInputStream(volcado));
+            assertEquals(5, resultado.pacientes());
+            assertNotNull(directorio.porDni("10000004"));
+            assertEquals(List.of("10000000"), indice.buscar(TipoRegistroClinico.ALERGIA, "penicilina"));
+        } finally {
+            directorio.dejarDeEscuchar();
+            indice.dejarDeEscuchar();
+        }
+    }
+}